@@ -27,7 +27,7 @@ public class DoubleList extends AbstractList<Double> {
       final int newCapacity = this.values.length + (this.values.length >> 1);
       this.values = Arrays.copyOf(this.values, newCapacity);
     }
-    if (index == this.size) {
+    if (index < this.size) {
       System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
     }
     this.values[index] = value;
@@ -35,6 +35,11 @@ public class DoubleList extends AbstractList<Double> {
     return true;
   }
 
+  @Override
+  public void clear() {
+    this.size = 0;
+  }
+
   @Override
   public Double get(final int index) {
     return getDouble(index);
@@ -67,4 +72,8 @@ public class DoubleList extends AbstractList<Double> {
   public int size() {
     return this.size;
   }
+
+  public double[] toDoubleArray() {
+    return Arrays.copyOf(this.values, this.size);
+  }
 }
@@ -101,6 +101,20 @@ public interface PointCloud<P extends Point>
     return elevationModel;
   }
 
+  /**
+   * Construct a new elevation model by gridding the points that match the
+   * {@link #getDefaultFilter()} in parallel using the method.
+   */
+  default GriddedElevationModel newGriddedElevationModel(final double gridCellSize,
+    final PointCloudGridMethod method) {
+    final GeometryFactory geometryFactory = getGeometryFactory();
+    try (
+      PointCloudGriddedElevationModelBuilder builder = new PointCloudGriddedElevationModelBuilder(
+        geometryFactory, gridCellSize, method)) {
+      return builder.setFilter(getDefaultFilter()).addPoints(this).newGriddedElevationModel();
+    }
+  }
+
   default GriddedElevationModel newGriddedElevationModel(final int gridCellSize) {
     final TriangulatedIrregularNetwork tin = newTriangulatedIrregularNetwork();
     final BoundingBox boundingBox = getBoundingBox();
@@ -0,0 +1,22 @@
+package com.revolsys.elevation.cloud;
+
+/**
+ * The method used to calculate the value of a grid cell from the points that
+ * fall within the cell.
+ */
+public enum PointCloudGridMethod {
+  /** Inverse distance weighted mean using the distance to the cell centre. */
+  IDW,
+
+  /** The maximum z value. */
+  MAX,
+
+  /** The mean z value. */
+  MEAN,
+
+  /** The minimum z value. */
+  MIN,
+
+  /** The z value of the point nearest to the cell centre. */
+  NEAREST
+}
@@ -0,0 +1,878 @@
+package com.revolsys.elevation.cloud;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import org.jeometry.common.exception.Exceptions;
+
+import com.revolsys.elevation.cloud.las.pointformat.LasPoint;
+import com.revolsys.elevation.gridded.GriddedElevationModel;
+import com.revolsys.elevation.gridded.IntArrayScaleGriddedElevationModel;
+import com.revolsys.elevation.gridded.TiledMappedFileGriddedElevationModel;
+import com.revolsys.elevation.gridded.scaledint.ScaledIntegerGriddedDigitalElevation;
+import com.revolsys.geometry.io.PointReader;
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geometry.model.Point;
+import com.revolsys.gis.grid.RectangularMapGrid;
+import com.revolsys.grid.IntArrayScaleGrid;
+import com.revolsys.io.BaseCloseable;
+import com.revolsys.io.file.Paths;
+
+/**
+ * <p>
+ * Build a {@link GriddedElevationModel} from point cloud points by accumulating
+ * the points that fall in each grid cell using a {@link PointCloudGridMethod}.
+ * The points can be read from a {@link PointCloud} (e.g. LAS/LAZ) or any
+ * {@link PointReader} (e.g. scaled integer point cloud files).
+ * </p>
+ * <p>
+ * The points are added on the calling thread into batches which are processed
+ * in parallel. Each batch is split by tile and the points for each tile are
+ * added to that tile's queue. The thread that added the points drains the
+ * queue into the tile's cell accumulators unless another thread is already
+ * draining it, so the results for a tile are merged without locks.
+ * </p>
+ * <p>
+ * The tiles are aligned to multiples of tileSize * gridCellSize so that
+ * {@link #writeTiles(Path)} can write each tile to a separate file (e.g.
+ * tiled SIGDEM).
+ * </p>
+ * <p>
+ * The cell accumulators for at most {@link #setMaxLoadedTileCount(int)} tiles
+ * are kept in memory. The least recently used tiles are spilled to a temporary
+ * file and read back if more points are added to them or when the model is
+ * created. The temporary file is deleted by {@link #close()}.
+ * </p>
+ * <p>
+ * The add methods must only be called from a single thread. The points must
+ * be in the coordinate system of the geometry factory.
+ * </p>
+ */
+public class PointCloudGriddedElevationModelBuilder implements BaseCloseable {
+
+  private static class PointBuffer {
+    private double[] coordinates = new double[3 * 64];
+
+    private int size;
+
+    private void add(final double x, final double y, final double z) {
+      if (this.size == this.coordinates.length) {
+        this.coordinates = Arrays.copyOf(this.coordinates, this.size * 2);
+      }
+      this.coordinates[this.size++] = x;
+      this.coordinates[this.size++] = y;
+      this.coordinates[this.size++] = z;
+    }
+  }
+
+  private class Tile {
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private int maxCellX = -1;
+
+    private int maxCellY = -1;
+
+    private int minCellX = Integer.MAX_VALUE;
+
+    private int minCellY = Integer.MAX_VALUE;
+
+    private final double minX;
+
+    private final double minY;
+
+    /** The offset of the tile in the spill file, -1 if it hasn't been spilled. */
+    private long spillOffset = -1;
+
+    private final ConcurrentLinkedQueue<double[]> queue = new ConcurrentLinkedQueue<>();
+
+    private final int tileX;
+
+    private final int tileY;
+
+    private double[] values;
+
+    private double[] weights;
+
+    private Tile(final long key) {
+      this.tileX = (int)(key >> 32);
+      this.tileY = (int)key;
+      final double tileWidth = getTileWidth();
+      this.minX = this.tileX * tileWidth;
+      this.minY = this.tileY * tileWidth;
+    }
+
+    /**
+     * Add the coordinates to the accumulators. Only called by the thread that
+     * is draining the queue.
+     */
+    private void accumulate(final double[] coordinates) {
+      final int tileSize = PointCloudGriddedElevationModelBuilder.this.tileSize;
+      final double gridCellSize = PointCloudGriddedElevationModelBuilder.this.gridCellSize;
+      final PointCloudGridMethod method = PointCloudGriddedElevationModelBuilder.this.method;
+      final double idwExponent = PointCloudGriddedElevationModelBuilder.this.idwPower / 2;
+      final double idwMinDistanceSquared = gridCellSize * gridCellSize * 1e-6;
+      load();
+      final double[] values = this.values;
+      final double[] weights = this.weights;
+      final int maxCell = tileSize - 1;
+      for (int i = 0; i < coordinates.length;) {
+        final double x = coordinates[i++];
+        final double y = coordinates[i++];
+        final double z = coordinates[i++];
+        final int cellX = Math.min(maxCell, Math.max(0, (int)((x - this.minX) / gridCellSize)));
+        final int cellY = Math.min(maxCell, Math.max(0, (int)((y - this.minY) / gridCellSize)));
+        if (cellX < this.minCellX) {
+          this.minCellX = cellX;
+        }
+        if (cellX > this.maxCellX) {
+          this.maxCellX = cellX;
+        }
+        if (cellY < this.minCellY) {
+          this.minCellY = cellY;
+        }
+        if (cellY > this.maxCellY) {
+          this.maxCellY = cellY;
+        }
+        final int index = cellY * tileSize + cellX;
+        switch (method) {
+          case MIN:
+            if (z < values[index]) {
+              values[index] = z;
+            }
+          break;
+          case MAX:
+            if (z > values[index]) {
+              values[index] = z;
+            }
+          break;
+          case MEAN:
+            values[index] += z;
+            weights[index]++;
+          break;
+          case IDW: {
+            final double dx = x - (this.minX + (cellX + 0.5) * gridCellSize);
+            final double dy = y - (this.minY + (cellY + 0.5) * gridCellSize);
+            final double distanceSquared = Math.max(idwMinDistanceSquared, dx * dx + dy * dy);
+            final double weight = 1 / Math.pow(distanceSquared, idwExponent);
+            values[index] += weight * z;
+            weights[index] += weight;
+          }
+          break;
+          case NEAREST: {
+            final double dx = x - (this.minX + (cellX + 0.5) * gridCellSize);
+            final double dy = y - (this.minY + (cellY + 0.5) * gridCellSize);
+            final double distanceSquared = dx * dx + dy * dy;
+            if (distanceSquared < weights[index]) {
+              weights[index] = distanceSquared;
+              values[index] = z;
+            }
+          }
+          break;
+        }
+      }
+    }
+
+    private void addPoints(final double[] coordinates) {
+      this.queue.add(coordinates);
+      drain();
+    }
+
+    private void drain() {
+      do {
+        if (!this.draining.compareAndSet(false, true)) {
+          // The thread draining the queue will process the coordinates
+          return;
+        }
+        try {
+          for (double[] queuedCoordinates = this.queue
+            .poll(); queuedCoordinates != null; queuedCoordinates = this.queue.poll()) {
+            accumulate(queuedCoordinates);
+          }
+        } finally {
+          this.draining.set(false);
+        }
+        // Coordinates may have been added after the last poll but before the
+        // draining flag was cleared
+      } while (!this.queue.isEmpty());
+    }
+
+    private double getValue(final int cellX, final int cellY) {
+      final int index = cellY * PointCloudGriddedElevationModelBuilder.this.tileSize + cellX;
+      final double value = this.values[index];
+      switch (PointCloudGriddedElevationModelBuilder.this.method) {
+        case MEAN:
+        case IDW:
+          final double weight = this.weights[index];
+          if (weight > 0) {
+            return value / weight;
+          } else {
+            return Double.NaN;
+          }
+        case NEAREST:
+          // The weight is the distance to the nearest point, infinite if none
+          if (Double.isFinite(this.weights[index])) {
+            return value;
+          } else {
+            return Double.NaN;
+          }
+        default:
+          if (Double.isFinite(value)) {
+            return value;
+          } else {
+            return Double.NaN;
+          }
+      }
+    }
+
+    private boolean isEmpty() {
+      return this.maxCellX < 0;
+    }
+
+    /**
+     * Allocate the accumulators, reading them from the spill file if the tile
+     * was spilled, and mark the tile as the most recently used. Only called by
+     * the thread that is draining the queue.
+     */
+    private void load() {
+      if (this.values == null) {
+        final int cellCount = PointCloudGriddedElevationModelBuilder.this.tileSize
+          * PointCloudGriddedElevationModelBuilder.this.tileSize;
+        final PointCloudGridMethod method = PointCloudGriddedElevationModelBuilder.this.method;
+        this.values = new double[cellCount];
+        if (hasWeights(method)) {
+          this.weights = new double[cellCount];
+        }
+        if (this.spillOffset >= 0) {
+          readSpill(this);
+        } else if (method == PointCloudGridMethod.MIN) {
+          Arrays.fill(this.values, Double.POSITIVE_INFINITY);
+        } else if (method == PointCloudGridMethod.MAX) {
+          Arrays.fill(this.values, Double.NEGATIVE_INFINITY);
+        } else if (method == PointCloudGridMethod.NEAREST) {
+          Arrays.fill(this.weights, Double.POSITIVE_INFINITY);
+        }
+      }
+      touchTile(this);
+    }
+
+    /**
+     * Write the accumulators to the spill file and release them. Only called by
+     * the thread that is draining the queue.
+     */
+    private void spill() {
+      if (this.values != null) {
+        writeSpill(this);
+        this.values = null;
+        this.weights = null;
+        removeLoadedTile(this);
+      }
+    }
+
+    /**
+     * Run the action with the accumulators loaded, waiting for any other
+     * thread using them.
+     */
+    private void withValues(final Runnable action) {
+      while (!this.draining.compareAndSet(false, true)) {
+        Thread.onSpinWait();
+      }
+      try {
+        load();
+        action.run();
+      } finally {
+        this.draining.set(false);
+      }
+      spillTiles();
+    }
+
+    /**
+     * Copy the values to the cells of the integer grid with the origin
+     * (minGridX, minGridY) and width gridWidth.
+     */
+    private void setCells(final int[] cells, final int minGridX, final int minGridY,
+      final int gridWidth) {
+      final GeometryFactory geometryFactory = PointCloudGriddedElevationModelBuilder.this.geometryFactory;
+      final int tileSize = PointCloudGriddedElevationModelBuilder.this.tileSize;
+      final int offsetX = this.tileX * tileSize - minGridX;
+      final int offsetY = this.tileY * tileSize - minGridY;
+      for (int cellY = this.minCellY; cellY <= this.maxCellY; cellY++) {
+        int index = (cellY + offsetY) * gridWidth + this.minCellX + offsetX;
+        for (int cellX = this.minCellX; cellX <= this.maxCellX; cellX++) {
+          final double value = getValue(cellX, cellY);
+          if (Double.isFinite(value)) {
+            cells[index] = geometryFactory.toIntZ(value);
+          }
+          index++;
+        }
+      }
+    }
+
+    private void setValues(final GriddedElevationModel elevationModel, final int minGridX,
+      final int minGridY) {
+      final int tileSize = PointCloudGriddedElevationModelBuilder.this.tileSize;
+      final int offsetX = this.tileX * tileSize - minGridX;
+      final int offsetY = this.tileY * tileSize - minGridY;
+      for (int cellY = this.minCellY; cellY <= this.maxCellY; cellY++) {
+        for (int cellX = this.minCellX; cellX <= this.maxCellX; cellX++) {
+          final double value = getValue(cellX, cellY);
+          if (Double.isFinite(value)) {
+            elevationModel.setValue(cellX + offsetX, cellY + offsetY, value);
+          }
+        }
+      }
+    }
+  }
+
+  private static final int BATCH_SIZE = 65536;
+
+  /** Grids with more cells are backed by a memory mapped file. */
+  private static final long MAX_MEMORY_CELL_COUNT = 256 * 1024 * 1024;
+
+  private static long getTileKey(final int tileX, final int tileY) {
+    return (long)tileX << 32 | tileY & 0xFFFFFFFFL;
+  }
+
+  /**
+   * The methods that need a second accumulator per cell, the sum of the
+   * weights or the distance to the nearest point.
+   */
+  private static boolean hasWeights(final PointCloudGridMethod method) {
+    return method == PointCloudGridMethod.MEAN || method == PointCloudGridMethod.IDW
+      || method == PointCloudGridMethod.NEAREST;
+  }
+
+  private double[] batch = new double[BATCH_SIZE * 3];
+
+  private int batchSize;
+
+  private boolean[] classifications;
+
+  private Predicate<? super Point> filter;
+
+  private final GeometryFactory geometryFactory;
+
+  private final double gridCellSize;
+
+  private double idwPower = 2;
+
+  /** The tiles with accumulators in memory, least recently used first. */
+  private final Set<Tile> loadedTiles = new LinkedHashSet<>();
+
+  private int maxLoadedTileCount = 16;
+
+  private final int maxPendingBatchCount = ForkJoinPool.getCommonPoolParallelism() * 2 + 1;
+
+  private final PointCloudGridMethod method;
+
+  private final ArrayDeque<ForkJoinTask<?>> pendingBatches = new ArrayDeque<>();
+
+  private long pointCount;
+
+  private FileChannel spillChannel;
+
+  private Path spillFile;
+
+  private long spillFileSize;
+
+  private final Map<Long, Tile> tiles = new ConcurrentHashMap<>();
+
+  private int tileSize = 1000;
+
+  public PointCloudGriddedElevationModelBuilder(final GeometryFactory geometryFactory,
+    final double gridCellSize, final PointCloudGridMethod method) {
+    if (!(gridCellSize > 0)) {
+      throw new IllegalArgumentException("gridCellSize must be > 0: " + gridCellSize);
+    }
+    final double scaleXy = 1 / gridCellSize;
+    this.geometryFactory = geometryFactory.convertAxisCountAndScales(3, scaleXy, scaleXy,
+      1000.0);
+    this.gridCellSize = gridCellSize;
+    this.method = method;
+  }
+
+  /**
+   * Process the points from a batch in a fork join task.
+   */
+  private void addBatch(final double[] batch, final int batchSize) {
+    final double tileWidth = getTileWidth();
+    final Map<Long, PointBuffer> pointsByTile = new HashMap<>();
+    long lastKey = Long.MIN_VALUE;
+    PointBuffer lastPoints = null;
+    for (int i = 0; i < batchSize;) {
+      final double x = batch[i++];
+      final double y = batch[i++];
+      final double z = batch[i++];
+      final int tileX = (int)Math.floor(x / tileWidth);
+      final int tileY = (int)Math.floor(y / tileWidth);
+      final long key = getTileKey(tileX, tileY);
+      if (key != lastKey) {
+        lastKey = key;
+        lastPoints = pointsByTile.computeIfAbsent(key, k -> new PointBuffer());
+      }
+      lastPoints.add(x, y, z);
+    }
+    for (final Map.Entry<Long, PointBuffer> entry : pointsByTile.entrySet()) {
+      final Long key = entry.getKey();
+      final PointBuffer points = entry.getValue();
+      final Tile tile = this.tiles.computeIfAbsent(key, Tile::new);
+      tile.addPoints(Arrays.copyOf(points.coordinates, points.size));
+    }
+    spillTiles();
+  }
+
+  public void addPoint(final double x, final double y, final double z) {
+    if (Double.isFinite(x) && Double.isFinite(y) && Double.isFinite(z)) {
+      this.batch[this.batchSize++] = x;
+      this.batch[this.batchSize++] = y;
+      this.batch[this.batchSize++] = z;
+      this.pointCount++;
+      if (this.batchSize == this.batch.length) {
+        submitBatch();
+      }
+    }
+  }
+
+  public void addPoint(final Point point) {
+    if (isIncluded(point)) {
+      final double x = point.getX();
+      final double y = point.getY();
+      final double z = point.getZ();
+      addPoint(x, y, z);
+    }
+  }
+
+  /**
+   * Add the points from a {@link PointCloud} or {@link PointReader} source.
+   */
+  public PointCloudGriddedElevationModelBuilder addPoints(final Object source) {
+    try (
+      PointCloud<Point> pointCloud = PointCloud.newPointCloud(source)) {
+      if (pointCloud != null) {
+        return addPoints(pointCloud);
+      }
+    }
+    try (
+      PointReader reader = PointReader.newPointReader(source)) {
+      if (reader == null) {
+        throw new IllegalArgumentException("Cannot read points from: " + source);
+      } else {
+        reader.forEach(this::addPoint);
+      }
+    }
+    return this;
+  }
+
+  public PointCloudGriddedElevationModelBuilder addPoints(
+    final PointCloud<? extends Point> pointCloud) {
+    pointCloud.forEachPoint(this::addPoint);
+    return this;
+  }
+
+  /**
+   * Delete the temporary file the tiles were spilled to.
+   */
+  @Override
+  public synchronized void close() {
+    final FileChannel channel = this.spillChannel;
+    if (channel != null) {
+      this.spillChannel = null;
+      try {
+        channel.close();
+      } catch (final IOException e) {
+        throw Exceptions.wrap("Unable to close: " + this.spillFile, e);
+      }
+    }
+  }
+
+  /**
+   * Wait for all the points that have been added to be processed.
+   */
+  public void flush() {
+    submitBatch();
+    while (!this.pendingBatches.isEmpty()) {
+      this.pendingBatches.removeFirst().join();
+    }
+  }
+
+  public GeometryFactory getGeometryFactory() {
+    return this.geometryFactory;
+  }
+
+  public double getGridCellSize() {
+    return this.gridCellSize;
+  }
+
+  public PointCloudGridMethod getMethod() {
+    return this.method;
+  }
+
+  public int getMaxLoadedTileCount() {
+    return this.maxLoadedTileCount;
+  }
+
+  public long getPointCount() {
+    return this.pointCount;
+  }
+
+  private List<Tile> getTiles() {
+    flush();
+    final List<Tile> tiles = new ArrayList<>();
+    for (final Tile tile : this.tiles.values()) {
+      if (!tile.isEmpty()) {
+        tiles.add(tile);
+      }
+    }
+    return tiles;
+  }
+
+  public int getTileSize() {
+    return this.tileSize;
+  }
+
+  private double getTileWidth() {
+    return this.tileSize * this.gridCellSize;
+  }
+
+  private boolean isIncluded(final Point point) {
+    final boolean[] classifications = this.classifications;
+    if (classifications != null && point instanceof LasPoint) {
+      final short classification = ((LasPoint)point).getClassification();
+      if (classification < 0 || classification >= classifications.length
+        || !classifications[classification]) {
+        return false;
+      }
+    }
+    final Predicate<? super Point> filter = this.filter;
+    return filter == null || filter.test(point);
+  }
+
+  /**
+   * Construct a new elevation model containing the cells that had points. The
+   * model is backed by a memory mapped file if it is too large to store in
+   * memory.
+   *
+   * @return The elevation model or null if there were no points.
+   */
+  public GriddedElevationModel newGriddedElevationModel() {
+    final List<Tile> tiles = getTiles();
+    if (tiles.isEmpty()) {
+      return null;
+    }
+    final int tileSize = this.tileSize;
+    int minGridX = Integer.MAX_VALUE;
+    int minGridY = Integer.MAX_VALUE;
+    int maxGridX = Integer.MIN_VALUE;
+    int maxGridY = Integer.MIN_VALUE;
+    for (final Tile tile : tiles) {
+      minGridX = Math.min(minGridX, tile.tileX * tileSize + tile.minCellX);
+      minGridY = Math.min(minGridY, tile.tileY * tileSize + tile.minCellY);
+      maxGridX = Math.max(maxGridX, tile.tileX * tileSize + tile.maxCellX);
+      maxGridY = Math.max(maxGridY, tile.tileY * tileSize + tile.maxCellY);
+    }
+    final int gridWidth = maxGridX - minGridX + 1;
+    final int gridHeight = maxGridY - minGridY + 1;
+    final double gridCellSize = this.gridCellSize;
+    final double minX = minGridX * gridCellSize;
+    final double minY = minGridY * gridCellSize;
+    final GeometryFactory geometryFactory = this.geometryFactory;
+    if ((long)gridWidth * gridHeight <= MAX_MEMORY_CELL_COUNT) {
+      final int[] cells = new int[gridWidth * gridHeight];
+      Arrays.fill(cells, IntArrayScaleGrid.NULL_VALUE);
+      final int originX = minGridX;
+      final int originY = minGridY;
+      tiles.parallelStream()
+        .forEach(tile -> tile.withValues(() -> tile.setCells(cells, originX, originY, gridWidth)));
+      final BoundingBox boundingBox = geometryFactory.newBoundingBox(minX, minY,
+        minX + gridWidth * gridCellSize, minY + gridHeight * gridCellSize);
+      return new IntArrayScaleGriddedElevationModel(geometryFactory, boundingBox, gridWidth,
+        gridHeight, gridCellSize, cells);
+    } else {
+      final TiledMappedFileGriddedElevationModel elevationModel = new TiledMappedFileGriddedElevationModel(
+        geometryFactory, minX, minY, gridWidth, gridHeight, gridCellSize, gridCellSize);
+      final int originX = minGridX;
+      final int originY = minGridY;
+      tiles.parallelStream()
+        .forEach(tile -> tile.withValues(() -> tile.setValues(elevationModel, originX, originY)));
+      return elevationModel;
+    }
+  }
+
+  private ByteBuffer newSpillBuffer(final Tile tile) {
+    final int cellCount = this.tileSize * this.tileSize;
+    final int arrayCount = hasWeights(this.method) ? 2 : 1;
+    return ByteBuffer.allocate(cellCount * arrayCount * 8);
+  }
+
+  private void readSpill(final Tile tile) {
+    final ByteBuffer buffer = newSpillBuffer(tile);
+    final FileChannel channel;
+    synchronized (this) {
+      channel = this.spillChannel;
+    }
+    if (channel == null) {
+      throw new IllegalStateException("Cannot read spilled tiles after close");
+    }
+    try {
+      long position = tile.spillOffset;
+      while (buffer.hasRemaining()) {
+        final int count = channel.read(buffer, position);
+        if (count < 0) {
+          throw new IllegalStateException("Unexpected end of file: " + this.spillFile);
+        }
+        position += count;
+      }
+    } catch (final IOException e) {
+      throw Exceptions.wrap("Unable to read tile from: " + this.spillFile, e);
+    }
+    buffer.flip();
+    final DoubleBuffer doubles = buffer.asDoubleBuffer();
+    doubles.get(tile.values);
+    if (tile.weights != null) {
+      doubles.get(tile.weights);
+    }
+  }
+
+  private void removeLoadedTile(final Tile tile) {
+    synchronized (this.loadedTiles) {
+      this.loadedTiles.remove(tile);
+    }
+  }
+
+  /**
+   * Only include {@link LasPoint}s with one of the classifications (e.g.
+   * {@link com.revolsys.elevation.cloud.las.LasClassification#GROUND}). Other
+   * types of point aren't filtered by classification.
+   *
+   * @param classifications The classifications or null for all
+   *          classifications.
+   */
+  public PointCloudGriddedElevationModelBuilder setClassifications(
+    final short... classifications) {
+    if (classifications == null) {
+      this.classifications = null;
+    } else {
+      final boolean[] included = new boolean[256];
+      for (final short classification : classifications) {
+        if (classification < 0 || classification > 255) {
+          throw new IllegalArgumentException(
+            "classification must be in range 0-255: " + classification);
+        }
+        included[classification] = true;
+      }
+      this.classifications = included;
+    }
+    return this;
+  }
+
+  public PointCloudGriddedElevationModelBuilder setFilter(final Predicate<? super Point> filter) {
+    this.filter = filter;
+    return this;
+  }
+
+  /**
+   * Set the power the distance is raised to for the {@link PointCloudGridMethod#IDW}
+   * weights (default 2).
+   */
+  public PointCloudGriddedElevationModelBuilder setIdwPower(final double idwPower) {
+    if (!(idwPower > 0)) {
+      throw new IllegalArgumentException("idwPower must be > 0: " + idwPower);
+    }
+    setStarted();
+    this.idwPower = idwPower;
+    return this;
+  }
+
+  /**
+   * Set the maximum number of tiles to keep the cell accumulators for in
+   * memory (default 16). Each tile uses tileSize * tileSize * 8 bytes, or
+   * twice that for the MEAN, IDW and NEAREST methods.
+   */
+  public PointCloudGriddedElevationModelBuilder setMaxLoadedTileCount(
+    final int maxLoadedTileCount) {
+    if (maxLoadedTileCount < 1) {
+      throw new IllegalArgumentException("maxLoadedTileCount must be >= 1: " + maxLoadedTileCount);
+    }
+    this.maxLoadedTileCount = maxLoadedTileCount;
+    return this;
+  }
+
+  private void setStarted() {
+    if (this.pointCount > 0) {
+      throw new IllegalStateException("Cannot change the grid after points have been added");
+    }
+  }
+
+  /**
+   * Set the width and height of the tiles in grid cells (default 1000).
+   */
+  public PointCloudGriddedElevationModelBuilder setTileSize(final int tileSize) {
+    if (tileSize < 16 || tileSize > 16384) {
+      throw new IllegalArgumentException("Tile size must be in range 16-16384: " + tileSize);
+    }
+    setStarted();
+    this.tileSize = tileSize;
+    return this;
+  }
+
+  /**
+   * Spill the least recently used tiles until there are at most
+   * maxLoadedTileCount tiles in memory. Tiles being used by another thread are
+   * skipped.
+   */
+  private void spillTiles() {
+    final List<Tile> spillTiles;
+    synchronized (this.loadedTiles) {
+      int spillCount = this.loadedTiles.size() - this.maxLoadedTileCount;
+      if (spillCount <= 0) {
+        return;
+      }
+      spillTiles = new ArrayList<>(spillCount);
+      for (final Iterator<Tile> iterator = this.loadedTiles.iterator(); spillCount > 0
+        && iterator.hasNext(); spillCount--) {
+        spillTiles.add(iterator.next());
+      }
+    }
+    for (final Tile tile : spillTiles) {
+      if (tile.draining.compareAndSet(false, true)) {
+        try {
+          tile.spill();
+        } finally {
+          tile.draining.set(false);
+        }
+        // Points queued while spilling must be drained by this thread
+        if (!tile.queue.isEmpty()) {
+          tile.drain();
+        }
+      }
+    }
+  }
+
+  private void submitBatch() {
+    final int batchSize = this.batchSize;
+    if (batchSize > 0) {
+      final double[] batch = this.batch;
+      this.batch = new double[BATCH_SIZE * 3];
+      this.batchSize = 0;
+      // Limit the number of batches waiting to be processed
+      while (this.pendingBatches.size() >= this.maxPendingBatchCount) {
+        this.pendingBatches.removeFirst().join();
+      }
+      final ForkJoinTask<?> task = ForkJoinPool.commonPool()
+        .submit(() -> addBatch(batch, batchSize));
+      this.pendingBatches.addLast(task);
+    }
+  }
+
+  private void touchTile(final Tile tile) {
+    synchronized (this.loadedTiles) {
+      this.loadedTiles.remove(tile);
+      this.loadedTiles.add(tile);
+    }
+  }
+
+  private void writeSpill(final Tile tile) {
+    final ByteBuffer buffer = newSpillBuffer(tile);
+    final DoubleBuffer doubles = buffer.asDoubleBuffer();
+    doubles.put(tile.values);
+    if (tile.weights != null) {
+      doubles.put(tile.weights);
+    }
+    try {
+      final FileChannel channel;
+      synchronized (this) {
+        if (this.spillChannel == null) {
+          this.spillFile = Files.createTempFile("pointcloud", ".tiles");
+          this.spillChannel = FileChannel.open(this.spillFile, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+          this.spillFileSize = 0;
+        }
+        channel = this.spillChannel;
+        if (tile.spillOffset < 0) {
+          tile.spillOffset = this.spillFileSize;
+          this.spillFileSize += buffer.capacity();
+        }
+      }
+      long position = tile.spillOffset;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+    } catch (final IOException e) {
+      throw Exceptions.wrap("Unable to write tile to: " + this.spillFile, e);
+    }
+  }
+
+  /**
+   * Write each tile that has points to a separate
+   * {@link ScaledIntegerGriddedDigitalElevation} (sigdem) file using the
+   * {@link RectangularMapGrid} tile path.
+   *
+   * @return The number of tiles written.
+   */
+  public int writeTiles(final Path baseDirectory) {
+    return writeTiles(baseDirectory, ScaledIntegerGriddedDigitalElevation.FILE_EXTENSION);
+  }
+
+  /**
+   * Write each tile that has points to a separate file using the
+   * {@link RectangularMapGrid} tile path. The file extension can be any
+   * extension supported by
+   * {@link com.revolsys.elevation.gridded.GriddedElevationModelWriter}.
+   *
+   * @return The number of tiles written.
+   */
+  public int writeTiles(final Path baseDirectory, final String fileExtension) {
+    final List<Tile> tiles = getTiles();
+    final GeometryFactory geometryFactory = this.geometryFactory;
+    final int coordinateSystemId = geometryFactory.getCoordinateSystemId();
+    final int tileSize = this.tileSize;
+    final double gridCellSize = this.gridCellSize;
+    final double tileWidth = getTileWidth();
+    final String tileWidthString;
+    if (tileWidth == Math.rint(tileWidth)) {
+      tileWidthString = Long.toString((long)tileWidth);
+    } else {
+      tileWidthString = Double.toString(tileWidth);
+    }
+    final AtomicInteger count = new AtomicInteger();
+    IntStream.range(0, tiles.size()).parallel().forEach(i -> {
+      final Tile tile = tiles.get(i);
+      final int[] cells = new int[tileSize * tileSize];
+      Arrays.fill(cells, IntArrayScaleGrid.NULL_VALUE);
+      tile.withValues(
+        () -> tile.setCells(cells, tile.tileX * tileSize, tile.tileY * tileSize, tileSize));
+      final BoundingBox boundingBox = geometryFactory.newBoundingBox(tile.minX, tile.minY,
+        tile.minX + tileWidth, tile.minY + tileWidth);
+      final IntArrayScaleGriddedElevationModel elevationModel = new IntArrayScaleGriddedElevationModel(
+        geometryFactory, boundingBox, tileSize, tileSize, gridCellSize, cells);
+      final Path path = RectangularMapGrid.getTilePath(baseDirectory, "dem", coordinateSystemId,
+        tileWidthString, (int)Math.round(tile.minX), (int)Math.round(tile.minY), fileExtension);
+      Paths.createParentDirectories(path);
+      elevationModel.writeGriddedElevationModel(path);
+      count.incrementAndGet();
+    });
+    return count.get();
+  }
+}
@@ -0,0 +1,421 @@
+package com.revolsys.elevation.gridded;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jeometry.common.exception.Exceptions;
+
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.grid.AbstractGrid;
+import com.revolsys.io.BaseCloseable;
+
+/**
+ * <p>
+ * A {@link GriddedElevationModel} stored as 32-bit float values in fixed size
+ * square tiles in a file. Each tile is memory mapped when it is first used and
+ * the model keeps references to at most {@link #getMaxResidentTiles()} tiles.
+ * The values are not stored on the Java heap, so the size of the grid is
+ * limited by the disk space, not the heap (up to {@link Integer#MAX_VALUE}
+ * cells in each direction).
+ * </p>
+ * <p>
+ * The resident tile budget is advisory. Java has no supported way to unmap a
+ * buffer, and another thread may still be reading an evicted tile, so an
+ * evicted tile stays mapped until its buffer is garbage collected. Evicted
+ * tiles of a file that is kept are forced to the file when they are evicted.
+ * </p>
+ * <p>
+ * The file is either a temporary file that is deleted when the model is
+ * closed, or a file that is kept so the model can be opened again with the
+ * same grid dimensions and tile size. The values are stored with the bits of
+ * NaN XORed in so the parts of the file that were never written (e.g. the
+ * holes in sparse files) are read as null values.
+ * </p>
+ * <p>
+ * Values can be read and written from multiple threads, although each thread
+ * should work on a different set of tiles to minimize the tiles being mapped
+ * again.
+ * </p>
+ */
+public class TiledMappedFileGriddedElevationModel extends AbstractGrid
+  implements GriddedElevationModel, BaseCloseable {
+
+  private static final class Tile {
+    private final MappedByteBuffer buffer;
+
+    private final int index;
+
+    private final IntBuffer values;
+
+    private Tile(final int index, final MappedByteBuffer buffer) {
+      this.index = index;
+      this.buffer = buffer;
+      this.values = buffer.asIntBuffer();
+    }
+  }
+
+  public static final int DEFAULT_TILE_SIZE = 512;
+
+  private static final int NULL_BITS = Float.floatToRawIntBits(Float.NaN);
+
+  private FileChannel channel;
+
+  private final Path file;
+
+  private volatile Tile lastTile;
+
+  private int maxResidentTiles = 256;
+
+  private final boolean temporary;
+
+  private final long tileByteCount;
+
+  private final int tileCountX;
+
+  private final int tileCountY;
+
+  private final Map<Integer, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true);
+
+  private final int tileSize;
+
+  /**
+   * Construct a new model backed by a temporary file.
+   */
+  public TiledMappedFileGriddedElevationModel(final GeometryFactory geometryFactory,
+    final double x, final double y, final int gridWidth, final int gridHeight,
+    final double gridCellWidth, final double gridCellHeight) {
+    this(geometryFactory, x, y, gridWidth, gridHeight, gridCellWidth, gridCellHeight, null,
+      DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Construct a new model backed by the file. If the file exists the values
+   * are read from the file, so the same grid dimensions and tile size must be
+   * used as when the file was written.
+   *
+   * @param file The file or null to use a temporary file.
+   * @param tileSize The width and height of the tiles in cells.
+   */
+  public TiledMappedFileGriddedElevationModel(final GeometryFactory geometryFactory,
+    final double x, final double y, final int gridWidth, final int gridHeight,
+    final double gridCellWidth, final double gridCellHeight, final Path file,
+    final int tileSize) {
+    super(geometryFactory, x, y, gridWidth, gridHeight, gridCellWidth, gridCellHeight);
+    if (tileSize < 16 || tileSize > 16384) {
+      throw new IllegalArgumentException("Tile size must be in range 16-16384: " + tileSize);
+    }
+    this.tileSize = tileSize;
+    this.tileByteCount = (long)tileSize * tileSize * 4;
+    this.tileCountX = (gridWidth + tileSize - 1) / tileSize;
+    this.tileCountY = (gridHeight + tileSize - 1) / tileSize;
+    if ((long)this.tileCountX * this.tileCountY > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many tiles " + this.tileCountX + "x"
+        + this.tileCountY + ", increase the tile size: " + tileSize);
+    }
+    try {
+      if (file == null) {
+        this.temporary = true;
+        this.file = Files.createTempFile("dem", ".tiles");
+        this.channel = FileChannel.open(this.file, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+      } else {
+        this.temporary = false;
+        this.file = file;
+        this.channel = FileChannel.open(this.file, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+      }
+    } catch (final IOException e) {
+      throw Exceptions.wrap("Unable to open: " + file, e);
+    }
+  }
+
+  /**
+   * Set all the cells to null. The file is filled with zeros instead of being
+   * truncated as other threads may still be using the mapped tiles, and
+   * accessing a mapped buffer past the end of a truncated file crashes the JVM.
+   * The mapped tiles are cleared through their buffers, the rest of the file
+   * is written using the channel.
+   */
+  @Override
+  public void clear() {
+    super.clear();
+    synchronized (this.tiles) {
+      if (this.channel == null) {
+        throw new IllegalStateException("Elevation model is closed: " + this.file);
+      }
+      try {
+        final long tileByteCount = this.tileByteCount;
+        final int[] zeroValues = new int[this.tileSize];
+        final ByteBuffer zeroBytes = ByteBuffer.allocate((int)Math.min(tileByteCount, 1 << 20));
+        final long size = this.channel.size();
+        for (int tileIndex = 0; tileIndex * tileByteCount < size; tileIndex++) {
+          final Tile tile = this.tiles.get(tileIndex);
+          if (tile == null) {
+            final long offset = tileIndex * tileByteCount;
+            final long end = Math.min(size, offset + tileByteCount);
+            for (long position = offset; position < end;) {
+              zeroBytes.clear();
+              zeroBytes.limit((int)Math.min(zeroBytes.capacity(), end - position));
+              position += this.channel.write(zeroBytes, position);
+            }
+          } else {
+            final IntBuffer values = tile.values;
+            for (int index = 0; index < values.limit(); index += zeroValues.length) {
+              values.put(index, zeroValues);
+            }
+          }
+        }
+      } catch (final IOException e) {
+        throw Exceptions.wrap("Unable to clear: " + this.file, e);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (this.tiles) {
+      if (this.channel != null) {
+        try {
+          if (!this.temporary) {
+            for (final Tile tile : this.tiles.values()) {
+              tile.buffer.force();
+            }
+          }
+          this.lastTile = null;
+          this.tiles.clear();
+          this.channel.close();
+        } catch (final IOException e) {
+          throw Exceptions.wrap("Unable to close: " + this.file, e);
+        } finally {
+          this.channel = null;
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void expandRange() {
+    this.bounds[2] = Double.NaN;
+    this.bounds[5] = Double.NaN;
+    final int tileSize = this.tileSize;
+    for (int tileY = 0; tileY < this.tileCountY; tileY++) {
+      final int rowCount = Math.min(tileSize, this.gridHeight - tileY * tileSize);
+      for (int tileX = 0; tileX < this.tileCountX; tileX++) {
+        final Tile tile = getTile(tileY * this.tileCountX + tileX, false);
+        if (tile != null) {
+          final IntBuffer values = tile.values;
+          final int columnCount = Math.min(tileSize, this.gridWidth - tileX * tileSize);
+          for (int row = 0; row < rowCount; row++) {
+            int index = row * tileSize;
+            for (int column = 0; column < columnCount; column++) {
+              final float value = Float.intBitsToFloat(values.get(index++) ^ NULL_BITS);
+              if (Float.isFinite(value)) {
+                expandRange(value);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  public Path getFile() {
+    return this.file;
+  }
+
+  public int getMaxResidentTiles() {
+    synchronized (this.tiles) {
+      return this.maxResidentTiles;
+    }
+  }
+
+  /**
+   * Get the tile, mapping it into memory if required.
+   *
+   * @param tileIndex The tile index.
+   * @param create True if the tile is to be written to, false to return null
+   *          if the tile was never written.
+   * @return The tile.
+   */
+  private Tile getTile(final int tileIndex, final boolean create) {
+    Tile tile = this.lastTile;
+    if (tile != null && tile.index == tileIndex) {
+      return tile;
+    }
+    synchronized (this.tiles) {
+      tile = this.tiles.get(tileIndex);
+      if (tile == null) {
+        if (this.channel == null) {
+          throw new IllegalStateException("Elevation model is closed: " + this.file);
+        }
+        final long offset = tileIndex * this.tileByteCount;
+        try {
+          if (!create && offset + this.tileByteCount > this.channel.size()) {
+            return null;
+          }
+          final MappedByteBuffer buffer = this.channel.map(MapMode.READ_WRITE, offset,
+            this.tileByteCount);
+          tile = new Tile(tileIndex, buffer);
+          this.tiles.put(tileIndex, tile);
+          removeEldestTiles();
+        } catch (final IOException e) {
+          throw Exceptions.wrap("Unable to map tile " + tileIndex + " from: " + this.file, e);
+        }
+      }
+    }
+    this.lastTile = tile;
+    return tile;
+  }
+
+  public int getTileSize() {
+    return this.tileSize;
+  }
+
+  @Override
+  public double getValueFast(final int gridX, final int gridY) {
+    final int tileSize = this.tileSize;
+    final int tileX = gridX / tileSize;
+    final int tileY = gridY / tileSize;
+    final Tile tile = getTile(tileY * this.tileCountX + tileX, false);
+    if (tile == null) {
+      return Double.NaN;
+    } else {
+      final int index = (gridY - tileY * tileSize) * tileSize + gridX - tileX * tileSize;
+      return Float.intBitsToFloat(tile.values.get(index) ^ NULL_BITS);
+    }
+  }
+
+  @Override
+  public boolean hasValueFast(final int gridX, final int gridY) {
+    final double value = getValueFast(gridX, gridY);
+    return Double.isFinite(value);
+  }
+
+  @Override
+  public TiledMappedFileGriddedElevationModel newGrid(final GeometryFactory geometryFactory,
+    final double x, final double y, final int width, final int height,
+    final double gridCellSize) {
+    return newGrid(geometryFactory, x, y, width, height, gridCellSize, gridCellSize);
+  }
+
+  @Override
+  public TiledMappedFileGriddedElevationModel newGrid(final GeometryFactory geometryFactory,
+    final double x, final double y, final int width, final int height, final double gridCellWidth,
+    final double gridCellHeight) {
+    return new TiledMappedFileGriddedElevationModel(geometryFactory, x, y, width, height,
+      gridCellWidth, gridCellHeight, null, this.tileSize);
+  }
+
+  /**
+   * Remove the least recently used tiles from the map, forcing the changes to a
+   * file that is kept. The tiles aren't unmapped as other threads may still be
+   * using them, the mapped memory is released when the buffers are garbage
+   * collected.
+   */
+  private void removeEldestTiles() {
+    for (final Iterator<Tile> iterator = this.tiles.values().iterator(); this.tiles
+      .size() > this.maxResidentTiles && iterator.hasNext();) {
+      final Tile tile = iterator.next();
+      if (!this.temporary) {
+        tile.buffer.force();
+      }
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Resample to a new model backed by a temporary file. Each new cell is the
+   * average of the finite values in the cells it covers.
+   */
+  @Override
+  public TiledMappedFileGriddedElevationModel resample(final int newGridCellSize) {
+    final double gridCellWidth = getGridCellWidth();
+    final double gridCellHeight = getGridCellHeight();
+    final double cellRatioX = gridCellWidth / newGridCellSize;
+    final double cellRatioY = gridCellHeight / newGridCellSize;
+    final int stepX = (int)Math.round(1 / cellRatioX);
+    final int stepY = (int)Math.round(1 / cellRatioY);
+    final int gridWidth = getGridWidth();
+    final int gridHeight = getGridHeight();
+
+    final int newGridWidth = (int)Math.round(gridWidth * cellRatioX);
+    final int newGridHeight = (int)Math.round(gridHeight * cellRatioY);
+
+    final TiledMappedFileGriddedElevationModel newModel = newGrid(getGeometryFactory(),
+      getGridMinX(), getGridMinY(), newGridWidth, newGridHeight, newGridCellSize);
+
+    for (int newGridY = 0; newGridY < newGridHeight; newGridY++) {
+      final int gridYMin = newGridY * stepY;
+      final int gridYMax = Math.min(gridHeight, gridYMin + stepY);
+      for (int newGridX = 0; newGridX < newGridWidth; newGridX++) {
+        final int gridXMin = newGridX * stepX;
+        final int gridXMax = Math.min(gridWidth, gridXMin + stepX);
+        int count = 0;
+        double sum = 0;
+        for (int gridY = gridYMin; gridY < gridYMax; gridY++) {
+          for (int gridX = gridXMin; gridX < gridXMax; gridX++) {
+            final double value = getValueFast(gridX, gridY);
+            if (Double.isFinite(value)) {
+              count++;
+              sum += value;
+            }
+          }
+        }
+        if (count > 0) {
+          newModel.setValue(newGridX, newGridY, sum / count);
+        }
+      }
+    }
+    return newModel;
+  }
+
+  /**
+   * Set the maximum number of mapped tiles the model keeps references to. This
+   * is an advisory limit, evicted tiles are only unmapped when they are garbage
+   * collected.
+   *
+   * @param maxResidentTiles The maximum number of tiles.
+   */
+  public void setMaxResidentTiles(final int maxResidentTiles) {
+    synchronized (this.tiles) {
+      this.maxResidentTiles = Math.max(1, maxResidentTiles);
+      removeEldestTiles();
+    }
+  }
+
+  @Override
+  public void setValue(final int gridX, final int gridY, final double value) {
+    final int width = getGridWidth();
+    final int height = getGridHeight();
+    if (gridX >= 0 && gridX < width && gridY >= 0 && gridY < height) {
+      final int tileSize = this.tileSize;
+      final int tileX = gridX / tileSize;
+      final int tileY = gridY / tileSize;
+      final Tile tile = getTile(tileY * this.tileCountX + tileX, true);
+      final int index = (gridY - tileY * tileSize) * tileSize + gridX - tileX * tileSize;
+      final int bits = Float.floatToRawIntBits((float)value);
+      tile.values.put(index, bits ^ NULL_BITS);
+      clearCachedObjects();
+    }
+  }
+
+  @Override
+  public void setValueNull(final int gridX, final int gridY) {
+    setValue(gridX, gridY, Double.NaN);
+  }
+
+  @Override
+  public String toString() {
+    return this.file + " " + super.toString();
+  }
+}
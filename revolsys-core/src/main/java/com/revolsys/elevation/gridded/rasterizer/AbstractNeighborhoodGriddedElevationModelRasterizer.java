@@ -0,0 +1,229 @@
+package com.revolsys.elevation.gridded.rasterizer;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.revolsys.elevation.gridded.GriddedElevationModel;
+import com.revolsys.grid.Grid;
+
+/**
+ * <p>
+ * Base class for rasterizers that calculate the colour of a cell from the 3x3
+ * neighborhood of elevations around the cell.
+ * </p>
+ *
+ * <pre>
+ * a b c   (gridY + 1)
+ * d e f   (gridY)
+ * g h i   (gridY - 1)
+ * </pre>
+ * <p>
+ * {@link #rasterize(DataBuffer)} processes blocks of image rows in parallel.
+ * Each block reads the elevations one row at a time (including a halo row
+ * above and below the block) into primitive row buffers and writes the
+ * colours directly into the data buffer.
+ * </p>
+ */
+public abstract class AbstractNeighborhoodGriddedElevationModelRasterizer
+  extends AbstractGriddedElevationModelRasterizer {
+
+  private static final int ROWS_PER_BLOCK = 64;
+
+  public AbstractNeighborhoodGriddedElevationModelRasterizer(final String type,
+    final String iconName) {
+    super(type, iconName);
+  }
+
+  /**
+   * Get the colour for a cell where all the neighborhood values are finite.
+   */
+  protected abstract int getNeighborhoodValue(double a, double b, double c, double d, double f,
+    double g, double h, double i);
+
+  /**
+   * Get the value from the row buffers. The row buffers have a NaN value
+   * before the first and after the last column.
+   */
+  private int getValue(final double[] rowAbove, final double[] row, final double[] rowBelow,
+    final int column) {
+    final double e = row[column];
+    if (Double.isFinite(e)) {
+      final int column0 = column - 1;
+      final int column2 = column + 1;
+      return getValue(rowAbove[column0], rowAbove[column], rowAbove[column2], row[column0], e,
+        row[column2], rowBelow[column0], rowBelow[column], rowBelow[column2]);
+    } else {
+      return Grid.NULL_COLOUR;
+    }
+  }
+
+  /**
+   * Get the value for a cell with a finite elevation e, replacing missing
+   * neighborhood values by extrapolating from the other values.
+   */
+  private int getValue(double a, double b, double c, double d, final double e, double f,
+    double g, double h, double i) {
+    if (!Double.isFinite(d)) {
+      if (Double.isFinite(f)) {
+        d = e - (f - e);
+      } else {
+        d = e;
+        f = e;
+      }
+    } else if (!Double.isFinite(f)) {
+      f = e;
+    }
+    if (!Double.isFinite(a)) {
+      if (Double.isFinite(g)) {
+        a = d - (g - d);
+      } else {
+        a = d;
+      }
+    }
+    if (!Double.isFinite(b)) {
+      if (Double.isFinite(h)) {
+        b = e - (h - e);
+      } else {
+        b = e;
+      }
+    }
+    if (!Double.isFinite(c)) {
+      if (Double.isFinite(i)) {
+        c = f - (i - f);
+      } else {
+        c = f;
+      }
+    }
+    if (!Double.isFinite(g)) {
+      g = d - (a - d);
+    }
+    if (!Double.isFinite(h)) {
+      h = e - (b - e);
+    }
+    if (!Double.isFinite(i)) {
+      i = f - (c - f);
+    }
+    return getNeighborhoodValue(a, b, c, d, f, g, h, i);
+  }
+
+  @Override
+  public int getValue(final int gridX, final int gridY) {
+    final GriddedElevationModel elevationModel = this.elevationModel;
+    final int width = this.width;
+    final int height = this.height;
+
+    double a = Double.NaN;
+    double b = Double.NaN;
+    double c = Double.NaN;
+    double d = Double.NaN;
+    final double e = elevationModel.getValueFast(gridX, gridY);
+    if (Double.isFinite(e)) {
+      double f = Double.NaN;
+      double g = Double.NaN;
+      double h = Double.NaN;
+      double i = Double.NaN;
+
+      final boolean firstX = gridX == 0;
+      final boolean firstY = gridY == 0;
+      final boolean lastX = gridX == width - 1;
+      final boolean lastY = gridY == height - 1;
+      final int gridX0 = gridX - 1;
+      final int gridX2 = gridX + 1;
+      if (!lastY) {
+        final int gridY2 = gridY + 1;
+        if (!firstX) {
+          a = elevationModel.getValueFast(gridX0, gridY2);
+        }
+        b = elevationModel.getValueFast(gridX, gridY2);
+        if (!lastX) {
+          c = elevationModel.getValueFast(gridX2, gridY2);
+        }
+      }
+      if (!firstX) {
+        d = elevationModel.getValueFast(gridX0, gridY);
+      }
+      if (!lastX) {
+        f = elevationModel.getValueFast(gridX2, gridY);
+      }
+      if (!firstY) {
+        final int gridY0 = gridY - 1;
+        if (!firstX) {
+          g = elevationModel.getValueFast(gridX0, gridY0);
+        }
+        h = elevationModel.getValueFast(gridX, gridY0);
+        if (!lastX) {
+          i = elevationModel.getValueFast(gridX2, gridY0);
+        }
+      }
+      return getValue(a, b, c, d, e, f, g, h, i);
+    } else {
+      return Grid.NULL_COLOUR;
+    }
+  }
+
+  @Override
+  public void rasterize(final DataBuffer imageBuffer) {
+    final GriddedElevationModel elevationModel = this.elevationModel;
+    if (elevationModel == null) {
+      return;
+    }
+    final int width = this.width;
+    final int height = this.height;
+    final int[] data;
+    if (imageBuffer instanceof DataBufferInt && imageBuffer.getNumBanks() == 1) {
+      data = ((DataBufferInt)imageBuffer).getData();
+    } else {
+      data = null;
+    }
+    final int blockCount = (height + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+    IntStream.range(0, blockCount).parallel().forEach(blockIndex -> {
+      // Image rows start at the top (maximum gridY)
+      final int startImageRow = blockIndex * ROWS_PER_BLOCK;
+      final int endImageRow = Math.min(height, startImageRow + ROWS_PER_BLOCK);
+      double[] rowAbove = new double[width + 2];
+      double[] row = new double[width + 2];
+      double[] rowBelow = new double[width + 2];
+      final int startGridY = height - 1 - startImageRow;
+      readRow(elevationModel, startGridY + 1, rowAbove);
+      readRow(elevationModel, startGridY, row);
+      for (int imageRow = startImageRow; imageRow < endImageRow; imageRow++) {
+        final int gridY = height - 1 - imageRow;
+        readRow(elevationModel, gridY - 1, rowBelow);
+        int index = imageRow * width;
+        for (int column = 1; column <= width; column++) {
+          final int value = getValue(rowAbove, row, rowBelow, column);
+          if (data == null) {
+            imageBuffer.setElem(index, value);
+          } else {
+            data[index] = value;
+          }
+          index++;
+        }
+        final double[] previousRowAbove = rowAbove;
+        rowAbove = row;
+        row = rowBelow;
+        rowBelow = previousRowAbove;
+      }
+    });
+  }
+
+  /**
+   * Read the elevations for a row into the buffer, starting at index 1. The
+   * first and last values in the buffer and rows outside the grid are NaN.
+   */
+  private void readRow(final GriddedElevationModel elevationModel, final int gridY,
+    final double[] row) {
+    if (gridY < 0 || gridY >= this.height) {
+      Arrays.fill(row, Double.NaN);
+    } else {
+      final int width = this.width;
+      row[0] = Double.NaN;
+      for (int gridX = 0; gridX < width; gridX++) {
+        row[gridX + 1] = elevationModel.getValueFast(gridX, gridY);
+      }
+      row[width + 1] = Double.NaN;
+    }
+  }
+}
@@ -288,7 +288,7 @@ public interface TriangulatedIrregularNetwork extends GeometryFactoryProxy {
     final IntArrayScaleGriddedElevationModel elevationModel = new IntArrayScaleGriddedElevationModel(
       geometryFactory, minXInt, minYInt, gridWidth, gridHeight, gridCellSize);
 
-    forEachTriangle(elevationModel::setElevationsForTriangle);
+    new TriangulatedIrregularNetworkRasterizer(elevationModel).rasterize(this);
     return elevationModel;
   }
 
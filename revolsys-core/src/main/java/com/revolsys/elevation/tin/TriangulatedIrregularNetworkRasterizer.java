@@ -0,0 +1,387 @@
+package com.revolsys.elevation.tin;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.revolsys.elevation.gridded.GriddedElevationModel;
+import com.revolsys.elevation.gridded.TiledMappedFileGriddedElevationModel;
+
+/**
+ * <p>
+ * Set the values of a {@link GriddedElevationModel} from the triangles of a
+ * {@link TriangulatedIrregularNetwork}, using all the processors.
+ * </p>
+ * <p>
+ * The triangles are streamed into buckets for each tile of the grid they
+ * overlap. Full buckets are scan converted in parallel on the common fork join
+ * pool. The buckets for a tile are queued on the tile and only one thread
+ * drains a tile's queue at a time, so each cell is only written by one thread
+ * without any locks. For a {@link TiledMappedFileGriddedElevationModel} the
+ * tiles match the model's tiles.
+ * </p>
+ * <p>
+ * Each cell value is interpolated at the cell's minimum x, y coordinate, the
+ * same as {@link GriddedElevationModel#setElevationsForTriangle}. A cell on
+ * the maximum x or y of a triangle's bounding box is left to the next
+ * triangle, so each triangle covers [min, max) in x and y. Each row of a
+ * triangle is scan converted by solving for the range of columns where all
+ * the barycentric coordinates are positive, then stepping the elevation by a
+ * constant increment per column.
+ * </p>
+ * <p>
+ * The number of buffered triangles is limited to keep the memory bounded for
+ * large TINs. The accept method must only be called from a single thread.
+ * </p>
+ */
+public class TriangulatedIrregularNetworkRasterizer implements TriangleConsumer {
+
+  private class Tile {
+    private double[] coordinates = new double[9 * 64];
+
+    private int coordinateCount;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final int maxGridX;
+
+    private final int maxGridY;
+
+    private final int minGridX;
+
+    private final int minGridY;
+
+    private final ConcurrentLinkedQueue<double[]> queue = new ConcurrentLinkedQueue<>();
+
+    private Tile(final int tileX, final int tileY) {
+      final int tileSize = TriangulatedIrregularNetworkRasterizer.this.tileSize;
+      final int gridWidth = TriangulatedIrregularNetworkRasterizer.this.gridWidth;
+      final int gridHeight = TriangulatedIrregularNetworkRasterizer.this.gridHeight;
+      this.minGridX = tileX * tileSize;
+      this.minGridY = tileY * tileSize;
+      this.maxGridX = Math.min(this.minGridX + tileSize, gridWidth) - 1;
+      this.maxGridY = Math.min(this.minGridY + tileSize, gridHeight) - 1;
+    }
+
+    private void add(final double x1, final double y1, final double z1, final double x2,
+      final double y2, final double z2, final double x3, final double y3, final double z3) {
+      if (this.coordinateCount == this.coordinates.length) {
+        this.coordinates = Arrays.copyOf(this.coordinates, this.coordinateCount * 2);
+      }
+      final double[] coordinates = this.coordinates;
+      int i = this.coordinateCount;
+      coordinates[i++] = x1;
+      coordinates[i++] = y1;
+      coordinates[i++] = z1;
+      coordinates[i++] = x2;
+      coordinates[i++] = y2;
+      coordinates[i++] = z2;
+      coordinates[i++] = x3;
+      coordinates[i++] = y3;
+      coordinates[i++] = z3;
+      this.coordinateCount = i;
+    }
+
+    private void drain() {
+      do {
+        if (!this.draining.compareAndSet(false, true)) {
+          // The thread draining the queue will rasterize the triangles
+          return;
+        }
+        try {
+          for (double[] coordinates = this.queue
+            .poll(); coordinates != null; coordinates = this.queue.poll()) {
+            for (int i = 0; i < coordinates.length; i += 9) {
+              rasterizeTriangle(coordinates, i);
+            }
+          }
+        } finally {
+          this.draining.set(false);
+        }
+      } while (!this.queue.isEmpty());
+    }
+
+    /**
+     * Move the buffered triangles to the queue and start a new small buffer,
+     * so idle tiles don't keep large buffers.
+     *
+     * @return The coordinates moved to the queue.
+     */
+    private double[] queueTriangles() {
+      final double[] coordinates;
+      if (this.coordinateCount == this.coordinates.length) {
+        coordinates = this.coordinates;
+      } else {
+        coordinates = Arrays.copyOf(this.coordinates, this.coordinateCount);
+      }
+      this.coordinates = new double[9 * 64];
+      this.coordinateCount = 0;
+      this.queue.add(coordinates);
+      return coordinates;
+    }
+
+    private void rasterizeTriangle(final double[] coordinates, final int offset) {
+      final double x1 = coordinates[offset];
+      final double y1 = coordinates[offset + 1];
+      final double z1 = coordinates[offset + 2];
+      final double x2 = coordinates[offset + 3];
+      final double y2 = coordinates[offset + 4];
+      final double z2 = coordinates[offset + 5];
+      final double x3 = coordinates[offset + 6];
+      final double y3 = coordinates[offset + 7];
+      final double z3 = coordinates[offset + 8];
+
+      final double x1x3 = x1 - x3;
+      final double x3x2 = x3 - x2;
+      final double y1y3 = y1 - y3;
+      final double y2y3 = y2 - y3;
+      final double y3y1 = y3 - y1;
+      final double det = y2y3 * x1x3 + x3x2 * y1y3;
+      if (det == 0 || !Double.isFinite(det)) {
+        return;
+      }
+      final double gridMinX = TriangulatedIrregularNetworkRasterizer.this.gridMinX;
+      final double gridMinY = TriangulatedIrregularNetworkRasterizer.this.gridMinY;
+      final double gridCellWidth = TriangulatedIrregularNetworkRasterizer.this.gridCellWidth;
+      final double gridCellHeight = TriangulatedIrregularNetworkRasterizer.this.gridCellHeight;
+      final GriddedElevationModel elevationModel = TriangulatedIrregularNetworkRasterizer.this.elevationModel;
+
+      final int startGridX = Math.max(this.minGridX,
+        (int)Math.ceil((Math.min(x1, Math.min(x2, x3)) - gridMinX) / gridCellWidth));
+      final int endGridX = Math.min(this.maxGridX,
+        (int)Math.ceil((Math.max(x1, Math.max(x2, x3)) - gridMinX) / gridCellWidth) - 1);
+      final int startGridY = Math.max(this.minGridY,
+        (int)Math.ceil((Math.min(y1, Math.min(y2, y3)) - gridMinY) / gridCellHeight));
+      final int endGridY = Math.min(this.maxGridY,
+        (int)Math.ceil((Math.max(y1, Math.max(y2, y3)) - gridMinY) / gridCellHeight) - 1);
+      if (startGridX > endGridX || startGridY > endGridY) {
+        return;
+      }
+
+      // Change in the barycentric coordinates and elevation per column
+      final double lambda1StepX = y2y3 / det * gridCellWidth;
+      final double lambda2StepX = y3y1 / det * gridCellWidth;
+      final double lambda3StepX = -lambda1StepX - lambda2StepX;
+      final double zStepX = lambda1StepX * z1 + lambda2StepX * z2 + lambda3StepX * z3;
+
+      final double startX = gridMinX + startGridX * gridCellWidth;
+      final double xx3 = startX - x3;
+      for (int gridY = startGridY; gridY <= endGridY; gridY++) {
+        final double y = gridMinY + gridY * gridCellHeight;
+        final double yy3 = y - y3;
+        // Barycentric coordinates at startGridX
+        final double lambda1 = (y2y3 * xx3 + x3x2 * yy3) / det;
+        final double lambda2 = (y3y1 * xx3 + x1x3 * yy3) / det;
+        final double lambda3 = 1.0 - lambda1 - lambda2;
+
+        double minColumn = 0;
+        double maxColumn = endGridX - startGridX;
+        minColumn = getMinColumn(minColumn, lambda1, lambda1StepX);
+        minColumn = getMinColumn(minColumn, lambda2, lambda2StepX);
+        minColumn = getMinColumn(minColumn, lambda3, lambda3StepX);
+        maxColumn = getMaxColumn(maxColumn, lambda1, lambda1StepX);
+        maxColumn = getMaxColumn(maxColumn, lambda2, lambda2StepX);
+        maxColumn = getMaxColumn(maxColumn, lambda3, lambda3StepX);
+        final int firstColumn = (int)Math.ceil(minColumn);
+        final int lastColumn = (int)Math.floor(maxColumn);
+        if (firstColumn <= lastColumn) {
+          double z = lambda1 * z1 + lambda2 * z2 + lambda3 * z3 + zStepX * firstColumn;
+          for (int column = firstColumn; column <= lastColumn; column++) {
+            elevationModel.setValue(startGridX + column, gridY, z);
+            z += zStepX;
+          }
+        }
+      }
+    }
+  }
+
+  /** Tolerance for barycentric coordinates on the edge of a triangle. */
+  private static final double EPSILON = 1e-12;
+
+  /**
+   * Get the maximum column where lambda + step * column >= 0.
+   */
+  private static double getMaxColumn(final double maxColumn, final double lambda,
+    final double step) {
+    if (step < 0) {
+      return Math.min(maxColumn, (lambda + EPSILON) / -step);
+    } else if (step == 0 && lambda < -EPSILON) {
+      return -1;
+    } else {
+      return maxColumn;
+    }
+  }
+
+  /**
+   * Get the minimum column where lambda + step * column >= 0.
+   */
+  private static double getMinColumn(final double minColumn, final double lambda,
+    final double step) {
+    if (step > 0) {
+      return Math.max(minColumn, (-lambda - EPSILON) / step);
+    } else {
+      return minColumn;
+    }
+  }
+
+  private int bufferedTriangleCount;
+
+  private final GriddedElevationModel elevationModel;
+
+  private final double gridCellHeight;
+
+  private final double gridCellWidth;
+
+  private final int gridHeight;
+
+  private final double gridMinX;
+
+  private final double gridMinY;
+
+  private final int gridWidth;
+
+  private int maxBufferedTriangleCount = 1024 * 1024;
+
+  private final int maxPendingTaskCount = ForkJoinPool.getCommonPoolParallelism() * 2 + 1;
+
+  private final ArrayDeque<ForkJoinTask<?>> pendingTasks = new ArrayDeque<>();
+
+  private int tileCountX;
+
+  private Tile[] tiles;
+
+  private int tileSize;
+
+  private int tileTriangleCount = 16384;
+
+  public TriangulatedIrregularNetworkRasterizer(final GriddedElevationModel elevationModel) {
+    this.elevationModel = elevationModel;
+    this.gridMinX = elevationModel.getGridMinX();
+    this.gridMinY = elevationModel.getGridMinY();
+    this.gridCellWidth = elevationModel.getGridCellWidth();
+    this.gridCellHeight = elevationModel.getGridCellHeight();
+    this.gridWidth = elevationModel.getGridWidth();
+    this.gridHeight = elevationModel.getGridHeight();
+    if (elevationModel instanceof TiledMappedFileGriddedElevationModel) {
+      setTileSize(((TiledMappedFileGriddedElevationModel)elevationModel).getTileSize());
+    } else {
+      setTileSize(512);
+    }
+  }
+
+  /**
+   * Add the triangle to the buckets for the tiles it overlaps.
+   */
+  @Override
+  public void accept(final double x1, final double y1, final double z1, final double x2,
+    final double y2, final double z2, final double x3, final double y3, final double z3) {
+    if (Double.isFinite(z1) && Double.isFinite(z2) && Double.isFinite(z3)) {
+      final double gridMinX = this.gridMinX;
+      final double gridMinY = this.gridMinY;
+      final int startGridX = Math.max(0, (int)Math
+        .ceil((Math.min(x1, Math.min(x2, x3)) - gridMinX) / this.gridCellWidth));
+      final int endGridX = Math.min(this.gridWidth - 1, (int)Math
+        .ceil((Math.max(x1, Math.max(x2, x3)) - gridMinX) / this.gridCellWidth) - 1);
+      final int startGridY = Math.max(0, (int)Math
+        .ceil((Math.min(y1, Math.min(y2, y3)) - gridMinY) / this.gridCellHeight));
+      final int endGridY = Math.min(this.gridHeight - 1, (int)Math
+        .ceil((Math.max(y1, Math.max(y2, y3)) - gridMinY) / this.gridCellHeight) - 1);
+      if (startGridX <= endGridX && startGridY <= endGridY) {
+        final int tileSize = this.tileSize;
+        final int tileCountX = this.tileCountX;
+        final Tile[] tiles = this.tiles;
+        for (int tileY = startGridY / tileSize; tileY <= endGridY / tileSize; tileY++) {
+          for (int tileX = startGridX / tileSize; tileX <= endGridX / tileSize; tileX++) {
+            final int tileIndex = tileY * tileCountX + tileX;
+            Tile tile = tiles[tileIndex];
+            if (tile == null) {
+              tile = new Tile(tileX, tileY);
+              tiles[tileIndex] = tile;
+            }
+            tile.add(x1, y1, z1, x2, y2, z2, x3, y3, z3);
+            this.bufferedTriangleCount++;
+            if (tile.coordinateCount == this.tileTriangleCount * 9) {
+              submitTile(tile);
+            }
+          }
+        }
+        if (this.bufferedTriangleCount >= this.maxBufferedTriangleCount) {
+          submitTiles();
+        }
+      }
+    }
+  }
+
+  /**
+   * Rasterize all the buffered triangles and wait for them to be written to
+   * the elevation model.
+   */
+  public void flush() {
+    submitTiles();
+    while (!this.pendingTasks.isEmpty()) {
+      this.pendingTasks.removeFirst().join();
+    }
+    this.elevationModel.updateValues();
+  }
+
+  public GriddedElevationModel getElevationModel() {
+    return this.elevationModel;
+  }
+
+  public int getTileSize() {
+    return this.tileSize;
+  }
+
+  /**
+   * Rasterize all the triangles from the TIN.
+   */
+  public void rasterize(final TriangulatedIrregularNetwork tin) {
+    tin.forEachTriangle(this);
+    flush();
+  }
+
+  /**
+   * Set the maximum number of triangles buffered in the tile buckets before
+   * they are all submitted to be rasterized (default 1048576).
+   */
+  public void setMaxBufferedTriangleCount(final int maxBufferedTriangleCount) {
+    this.maxBufferedTriangleCount = Math.max(1, maxBufferedTriangleCount);
+  }
+
+  /**
+   * Set the number of triangles in a tile's bucket before it is submitted to
+   * be rasterized (default 16384).
+   */
+  public void setTileTriangleCount(final int tileTriangleCount) {
+    this.tileTriangleCount = Math.max(1, tileTriangleCount);
+  }
+
+  private void setTileSize(final int tileSize) {
+    this.tileSize = tileSize;
+    this.tileCountX = (this.gridWidth + tileSize - 1) / tileSize;
+    final int tileCountY = (this.gridHeight + tileSize - 1) / tileSize;
+    this.tiles = new Tile[this.tileCountX * tileCountY];
+  }
+
+  private void submitTile(final Tile tile) {
+    final double[] coordinates = tile.queueTriangles();
+    this.bufferedTriangleCount -= coordinates.length / 9;
+    // Limit the number of batches waiting to be rasterized
+    while (this.pendingTasks.size() >= this.maxPendingTaskCount) {
+      this.pendingTasks.removeFirst().join();
+    }
+    final ForkJoinTask<?> task = ForkJoinPool.commonPool().submit(tile::drain);
+    this.pendingTasks.addLast(task);
+  }
+
+  private void submitTiles() {
+    for (final Tile tile : this.tiles) {
+      if (tile != null && tile.coordinateCount > 0) {
+        submitTile(tile);
+      }
+    }
+  }
+}
@@ -0,0 +1,525 @@
+package com.revolsys.elevation.tin.quadedge.intscale;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import com.revolsys.elevation.tin.IntArrayScaleTriangulatedIrregularNetwork;
+import com.revolsys.elevation.tin.TinBuilder;
+import com.revolsys.elevation.tin.TriangleConsumer;
+import com.revolsys.elevation.tin.TriangulatedIrregularNetwork;
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geometry.model.Point;
+import com.revolsys.geometry.model.Triangle;
+import com.revolsys.geometry.model.impl.TriangleDoubleXYZ;
+
+/**
+ * <p>
+ * A {@link TinBuilder} that creates the Delaunay triangulation using the
+ * Guibas-Stolfi divide and conquer algorithm instead of inserting the vertices
+ * one at a time.
+ * </p>
+ * <p>
+ * The vertices are sorted by x then y and duplicate x, y locations are
+ * removed. The sorted vertices are split in half recursively and the halves
+ * are triangulated in parallel on the common fork join pool, then merged along
+ * their lower common tangent. Below {@link #getSequentialVertexCount()}
+ * vertices the recursion continues on the current thread.
+ * </p>
+ * <p>
+ * The triangulation is stored in a {@link IntArrayQuadEdgeSubdivision}. A
+ * triangulation of n vertices never has more than 3n live edges, so each
+ * sub range of vertices [start, end) owns the edge records [3 * start, 3 *
+ * end) and the parallel tasks never allocate the same record.
+ * </p>
+ */
+public class DivideAndConquerDelaunayTinBuilder implements TinBuilder {
+
+  /**
+   * Allocate edge records from one or more ranges of records and reuse the
+   * records of deleted edges. Each allocator is only used by one thread at a
+   * time.
+   */
+  private static class EdgeAllocator {
+    private int[] freeRecords = new int[16];
+
+    private int freeRecordCount;
+
+    private int rangeCount;
+
+    private int rangeIndex;
+
+    private int[] ranges = new int[2];
+
+    private EdgeAllocator(final int startRecord, final int endRecord) {
+      this.ranges[0] = startRecord;
+      this.ranges[1] = endRecord;
+      this.rangeCount = 1;
+    }
+
+    private int allocate() {
+      if (this.freeRecordCount > 0) {
+        return this.freeRecords[--this.freeRecordCount];
+      }
+      while (this.rangeIndex < this.rangeCount) {
+        final int offset = this.rangeIndex * 2;
+        final int record = this.ranges[offset];
+        if (record < this.ranges[offset + 1]) {
+          this.ranges[offset] = record + 1;
+          return record;
+        } else {
+          this.rangeIndex++;
+        }
+      }
+      throw new IllegalStateException("No free edge records");
+    }
+
+    /**
+     * Add the free records from the other allocator to this allocator.
+     */
+    private void append(final EdgeAllocator allocator) {
+      for (int i = allocator.rangeIndex; i < allocator.rangeCount; i++) {
+        final int offset = i * 2;
+        final int startRecord = allocator.ranges[offset];
+        final int endRecord = allocator.ranges[offset + 1];
+        if (startRecord < endRecord) {
+          if (this.rangeCount * 2 == this.ranges.length) {
+            this.ranges = Arrays.copyOf(this.ranges, this.ranges.length * 2);
+          }
+          this.ranges[this.rangeCount * 2] = startRecord;
+          this.ranges[this.rangeCount * 2 + 1] = endRecord;
+          this.rangeCount++;
+        }
+      }
+      for (int i = 0; i < allocator.freeRecordCount; i++) {
+        free(allocator.freeRecords[i]);
+      }
+    }
+
+    private void free(final int record) {
+      if (this.freeRecordCount == this.freeRecords.length) {
+        this.freeRecords = Arrays.copyOf(this.freeRecords, this.freeRecords.length * 2);
+      }
+      this.freeRecords[this.freeRecordCount++] = record;
+    }
+  }
+
+  /**
+   * Triangulate the vertices in the range [start, end) and set the
+   * {@link #leftEdge} and {@link #rightEdge}.
+   */
+  private class TriangulateTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private EdgeAllocator allocator;
+
+    private final int end;
+
+    private int leftEdge;
+
+    private int rightEdge;
+
+    private final int start;
+
+    private TriangulateTask(final int start, final int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      final int start = this.start;
+      final int end = this.end;
+      if (end - start <= DivideAndConquerDelaunayTinBuilder.this.sequentialVertexCount) {
+        this.allocator = new EdgeAllocator(start * 3, end * 3);
+        final long edges = triangulate(this.allocator, start, end);
+        this.leftEdge = (int)(edges >> 32);
+        this.rightEdge = (int)edges;
+      } else {
+        final int middle = start + (end - start) / 2;
+        final TriangulateTask left = new TriangulateTask(start, middle);
+        final TriangulateTask right = new TriangulateTask(middle, end);
+        invokeAll(left, right);
+        this.allocator = left.allocator;
+        this.allocator.append(right.allocator);
+        final long edges = merge(this.allocator, left.leftEdge, left.rightEdge, right.leftEdge,
+          right.rightEdge);
+        this.leftEdge = (int)(edges >> 32);
+        this.rightEdge = (int)edges;
+      }
+    }
+  }
+
+  private static long edges(final int leftEdge, final int rightEdge) {
+    return (long)leftEdge << 32 | rightEdge & 0xFFFFFFFFL;
+  }
+
+  private static long getSortKey(final int x, final int y) {
+    return (long)x << 32 | (y ^ 0x80000000) & 0xFFFFFFFFL;
+  }
+
+  private final int[] bounds = new int[] {
+    Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE
+  };
+
+  private final GeometryFactory geometryFactory;
+
+  private int sequentialVertexCount = 65536;
+
+  private IntArrayQuadEdgeSubdivision subdivision;
+
+  private int vertexCount;
+
+  private int[] vertexX = new int[1024];
+
+  private int[] vertexY = new int[1024];
+
+  private int[] vertexZ = new int[1024];
+
+  public DivideAndConquerDelaunayTinBuilder(final GeometryFactory geometryFactory) {
+    if (geometryFactory == null) {
+      throw new NullPointerException("A geometryFactory must be specified");
+    } else {
+      this.geometryFactory = geometryFactory.convertAxisCount(3);
+      if (this.geometryFactory.getScaleX() == 0) {
+        throw new IllegalArgumentException("scaleX must not be 0");
+      }
+      if (this.geometryFactory.getScaleY() == 0) {
+        throw new IllegalArgumentException("scaleY must not be 0");
+      }
+      if (this.geometryFactory.getScaleZ() == 0) {
+        throw new IllegalArgumentException("scaleZ must not be 0");
+      }
+    }
+  }
+
+  public void buildTin() {
+    if (this.subdivision == null) {
+      final IntArrayQuadEdgeSubdivision subdivision = new IntArrayQuadEdgeSubdivision(
+        this.geometryFactory);
+      final int vertexCount = setSortedVertices(subdivision);
+      this.subdivision = subdivision;
+      if (vertexCount >= 2) {
+        subdivision.ensureEdgeRecordCapacity(vertexCount * 3);
+        ForkJoinPool.commonPool().invoke(new TriangulateTask(0, vertexCount));
+      }
+    }
+  }
+
+  @Override
+  public void forEachTriangle(final Consumer<? super Triangle> action) {
+    forEachTriangle((x1, y1, z1, x2, y2, z2, x3, y3, z3) -> {
+      final Triangle triangle = new TriangleDoubleXYZ(x1, y1, z1, x2, y2, z2, x3, y3, z3);
+      action.accept(triangle);
+    });
+  }
+
+  @Override
+  public void forEachTriangle(final TriangleConsumer action) {
+    buildTin();
+    this.subdivision.forEachTriangle(action);
+  }
+
+  public void forEachTriangleInt(final TriangleConsumerInt action) {
+    buildTin();
+    this.subdivision.forEachTriangleInt(action);
+  }
+
+  @Override
+  public void forEachVertex(final Consumer<Point> action) {
+    final GeometryFactory geometryFactory = this.geometryFactory;
+    for (int i = 0; i < this.vertexCount; i++) {
+      final double x = geometryFactory.toDoubleX(this.vertexX[i]);
+      final double y = geometryFactory.toDoubleY(this.vertexY[i]);
+      final double z = geometryFactory.toDoubleZ(this.vertexZ[i]);
+      final Point point = geometryFactory.point(x, y, z);
+      action.accept(point);
+    }
+  }
+
+  @Override
+  public BoundingBox getBoundingBox() {
+    if (this.vertexCount == 0) {
+      return this.geometryFactory.bboxEmpty();
+    } else {
+      final double minX = this.geometryFactory.toDoubleX(this.bounds[0]);
+      final double minY = this.geometryFactory.toDoubleY(this.bounds[1]);
+      final double maxX = this.geometryFactory.toDoubleX(this.bounds[2]);
+      final double maxY = this.geometryFactory.toDoubleY(this.bounds[3]);
+      return this.geometryFactory.newBoundingBox(2, minX, minY, maxX, maxY);
+    }
+  }
+
+  @Override
+  public GeometryFactory getGeometryFactory() {
+    return this.geometryFactory;
+  }
+
+  public int getSequentialVertexCount() {
+    return this.sequentialVertexCount;
+  }
+
+  public IntArrayQuadEdgeSubdivision getSubdivision() {
+    buildTin();
+    return this.subdivision;
+  }
+
+  @Override
+  public int getTriangleCount() {
+    buildTin();
+    return this.subdivision.getTriangleCount();
+  }
+
+  @Override
+  public int getVertexCount() {
+    return this.vertexCount;
+  }
+
+  @Override
+  public Point insertVertex(final double x, final double y, final double z) {
+    final GeometryFactory geometryFactory = this.geometryFactory;
+    final int xInt = geometryFactory.toIntX(x);
+    final int yInt = geometryFactory.toIntY(y);
+    final int zInt = geometryFactory.toIntZ(z);
+    insertVertex(xInt, yInt, zInt);
+    return geometryFactory.point(geometryFactory.toDoubleX(xInt), geometryFactory.toDoubleY(yInt),
+      geometryFactory.toDoubleZ(zInt));
+  }
+
+  public void insertVertex(final int x, final int y, final int z) {
+    if (x < this.bounds[0]) {
+      this.bounds[0] = x;
+    }
+    if (x > this.bounds[2]) {
+      this.bounds[2] = x;
+    }
+    if (y < this.bounds[1]) {
+      this.bounds[1] = y;
+    }
+    if (y > this.bounds[3]) {
+      this.bounds[3] = y;
+    }
+    final int vertexIndex = this.vertexCount;
+    if (vertexIndex == this.vertexX.length) {
+      final int newLength = vertexIndex + (vertexIndex >> 1);
+      this.vertexX = Arrays.copyOf(this.vertexX, newLength);
+      this.vertexY = Arrays.copyOf(this.vertexY, newLength);
+      this.vertexZ = Arrays.copyOf(this.vertexZ, newLength);
+    }
+    this.vertexX[vertexIndex] = x;
+    this.vertexY[vertexIndex] = y;
+    this.vertexZ[vertexIndex] = z;
+    this.vertexCount++;
+    this.subdivision = null;
+  }
+
+  @Override
+  public void insertVertex(final Point point) {
+    final Point convertedPoint = point.convertPoint2d(this.geometryFactory);
+    final double x = convertedPoint.getX();
+    final double y = convertedPoint.getY();
+    final double z = point.getZ();
+    insertVertex(x, y, z);
+  }
+
+  /**
+   * Merge the triangulations to the left and right of each other along the
+   * lower common tangent, then zip up the edges between them.
+   *
+   * @return The counter-clockwise convex hull edge from the leftmost vertex
+   *         and the clockwise convex hull edge from the rightmost vertex.
+   */
+  private long merge(final EdgeAllocator allocator, int leftOutside, int leftInside,
+    int rightInside, int rightOutside) {
+    final IntArrayQuadEdgeSubdivision subdivision = this.subdivision;
+    // Find the lower common tangent
+    while (true) {
+      if (isLeftOf(subdivision, subdivision.getOrigin(rightInside), leftInside)) {
+        leftInside = subdivision.lNext(leftInside);
+      } else if (isRightOf(subdivision, subdivision.getOrigin(leftInside), rightInside)) {
+        rightInside = subdivision.rPrev(rightInside);
+      } else {
+        break;
+      }
+    }
+    int base = subdivision.connect(allocator.allocate(),
+      IntArrayQuadEdgeSubdivision.sym(rightInside), leftInside);
+    if (subdivision.getOrigin(leftInside) == subdivision.getOrigin(leftOutside)) {
+      leftOutside = IntArrayQuadEdgeSubdivision.sym(base);
+    }
+    if (subdivision.getOrigin(rightInside) == subdivision.getOrigin(rightOutside)) {
+      rightOutside = base;
+    }
+
+    while (true) {
+      final int baseOrigin = subdivision.getOrigin(base);
+      final int baseDestination = subdivision.getDestination(base);
+
+      int leftCandidate = subdivision.oNext(IntArrayQuadEdgeSubdivision.sym(base));
+      boolean leftValid = isRightOf(subdivision, subdivision.getDestination(leftCandidate), base);
+      if (leftValid) {
+        while (subdivision.isInCircle(baseDestination, baseOrigin,
+          subdivision.getDestination(leftCandidate),
+          subdivision.getDestination(subdivision.oNext(leftCandidate)))) {
+          final int nextCandidate = subdivision.oNext(leftCandidate);
+          allocator.free(subdivision.deleteEdge(leftCandidate));
+          leftCandidate = nextCandidate;
+        }
+      }
+
+      int rightCandidate = subdivision.oPrev(base);
+      boolean rightValid = isRightOf(subdivision, subdivision.getDestination(rightCandidate), base);
+      if (rightValid) {
+        while (subdivision.isInCircle(baseDestination, baseOrigin,
+          subdivision.getDestination(rightCandidate),
+          subdivision.getDestination(subdivision.oPrev(rightCandidate)))) {
+          final int nextCandidate = subdivision.oPrev(rightCandidate);
+          allocator.free(subdivision.deleteEdge(rightCandidate));
+          rightCandidate = nextCandidate;
+        }
+      }
+      leftValid = isRightOf(subdivision, subdivision.getDestination(leftCandidate), base);
+      rightValid = isRightOf(subdivision, subdivision.getDestination(rightCandidate), base);
+      if (!leftValid && !rightValid) {
+        return edges(leftOutside, rightOutside);
+      } else if (!leftValid || rightValid && subdivision.isInCircle(
+        subdivision.getDestination(leftCandidate), subdivision.getOrigin(leftCandidate),
+        subdivision.getOrigin(rightCandidate), subdivision.getDestination(rightCandidate))) {
+        base = subdivision.connect(allocator.allocate(), rightCandidate,
+          IntArrayQuadEdgeSubdivision.sym(base));
+      } else {
+        base = subdivision.connect(allocator.allocate(), IntArrayQuadEdgeSubdivision.sym(base),
+          IntArrayQuadEdgeSubdivision.sym(leftCandidate));
+      }
+    }
+  }
+
+  private boolean isLeftOf(final IntArrayQuadEdgeSubdivision subdivision, final int vertex,
+    final int edge) {
+    return subdivision.isCcw(vertex, subdivision.getOrigin(edge),
+      subdivision.getDestination(edge));
+  }
+
+  private boolean isRightOf(final IntArrayQuadEdgeSubdivision subdivision, final int vertex,
+    final int edge) {
+    return subdivision.isCcw(vertex, subdivision.getDestination(edge),
+      subdivision.getOrigin(edge));
+  }
+
+  @Override
+  public TriangulatedIrregularNetwork newTriangulatedIrregularNetwork() {
+    buildTin();
+    final BoundingBox boundingBox = getBoundingBox();
+    final int triangleCount = this.subdivision.getTriangleCount();
+    final int[] triangleXCoordinates = new int[triangleCount * 3];
+    final int[] triangleYCoordinates = new int[triangleCount * 3];
+    final int[] triangleZCoordinates = new int[triangleCount * 3];
+    forEachTriangleInt(new TriangleConsumerInt() {
+
+      private int coordinateIndex = 0;
+
+      @Override
+      public void accept(final int x1, final int y1, final int z1, final int x2, final int y2,
+        final int z2, final int x3, final int y3, final int z3) {
+        triangleXCoordinates[this.coordinateIndex] = x1;
+        triangleYCoordinates[this.coordinateIndex] = y1;
+        triangleZCoordinates[this.coordinateIndex++] = z1;
+        triangleXCoordinates[this.coordinateIndex] = x2;
+        triangleYCoordinates[this.coordinateIndex] = y2;
+        triangleZCoordinates[this.coordinateIndex++] = z2;
+        triangleXCoordinates[this.coordinateIndex] = x3;
+        triangleYCoordinates[this.coordinateIndex] = y3;
+        triangleZCoordinates[this.coordinateIndex++] = z3;
+      }
+    });
+    return new IntArrayScaleTriangulatedIrregularNetwork(this.geometryFactory, boundingBox,
+      triangleCount, triangleXCoordinates, triangleYCoordinates, triangleZCoordinates);
+  }
+
+  /**
+   * Set the number of vertices below which the triangulation isn't split into
+   * parallel tasks.
+   */
+  public void setSequentialVertexCount(final int sequentialVertexCount) {
+    this.sequentialVertexCount = Math.max(3, sequentialVertexCount);
+  }
+
+  /**
+   * Sort the vertices by x then y, remove duplicate x, y locations (keeping
+   * the first) and set the vertices on the subdivision.
+   *
+   * @return The number of unique vertices.
+   */
+  private int setSortedVertices(final IntArrayQuadEdgeSubdivision subdivision) {
+    final int vertexCount = this.vertexCount;
+    final int[] vertexX = this.vertexX;
+    final int[] vertexY = this.vertexY;
+    final long[] keys = new long[vertexCount];
+    for (int i = 0; i < vertexCount; i++) {
+      keys[i] = getSortKey(vertexX[i], vertexY[i]);
+    }
+    final long[] sortedKeys = keys.clone();
+    Arrays.parallelSort(sortedKeys);
+    int uniqueCount = 0;
+    for (int i = 0; i < vertexCount; i++) {
+      if (uniqueCount == 0 || sortedKeys[i] != sortedKeys[uniqueCount - 1]) {
+        sortedKeys[uniqueCount++] = sortedKeys[i];
+      }
+    }
+    final int[] sortedX = new int[uniqueCount];
+    final int[] sortedY = new int[uniqueCount];
+    final int[] sortedZ = new int[uniqueCount];
+    final boolean[] found = new boolean[uniqueCount];
+    for (int i = 0; i < vertexCount; i++) {
+      final int index = Arrays.binarySearch(sortedKeys, 0, uniqueCount, keys[i]);
+      if (!found[index]) {
+        found[index] = true;
+        sortedX[index] = vertexX[i];
+        sortedY[index] = vertexY[i];
+        sortedZ[index] = this.vertexZ[i];
+      }
+    }
+    subdivision.setVertices(uniqueCount, sortedX, sortedY, sortedZ);
+    return uniqueCount;
+  }
+
+  /**
+   * Triangulate the sorted vertices [start, end) on the current thread.
+   *
+   * @return The counter-clockwise convex hull edge from the leftmost vertex
+   *         and the clockwise convex hull edge from the rightmost vertex.
+   */
+  private long triangulate(final EdgeAllocator allocator, final int start, final int end) {
+    final IntArrayQuadEdgeSubdivision subdivision = this.subdivision;
+    final int count = end - start;
+    if (count == 2) {
+      final int edge = subdivision.initEdge(allocator.allocate(), start, start + 1);
+      return edges(edge, IntArrayQuadEdgeSubdivision.sym(edge));
+    } else if (count == 3) {
+      final int vertex1 = start;
+      final int vertex2 = start + 1;
+      final int vertex3 = start + 2;
+      final int edge1 = subdivision.initEdge(allocator.allocate(), vertex1, vertex2);
+      final int edge2 = subdivision.initEdge(allocator.allocate(), vertex2, vertex3);
+      subdivision.splice(IntArrayQuadEdgeSubdivision.sym(edge1), edge2);
+      if (subdivision.isCcw(vertex1, vertex2, vertex3)) {
+        subdivision.connect(allocator.allocate(), edge2, edge1);
+        return edges(edge1, IntArrayQuadEdgeSubdivision.sym(edge2));
+      } else if (subdivision.isCcw(vertex1, vertex3, vertex2)) {
+        final int edge3 = subdivision.connect(allocator.allocate(), edge2, edge1);
+        return edges(IntArrayQuadEdgeSubdivision.sym(edge3), edge3);
+      } else {
+        // Collinear
+        return edges(edge1, IntArrayQuadEdgeSubdivision.sym(edge2));
+      }
+    } else {
+      final int middle = start + count / 2;
+      final long leftEdges = triangulate(allocator, start, middle);
+      final long rightEdges = triangulate(allocator, middle, end);
+      return merge(allocator, (int)(leftEdges >> 32), (int)leftEdges, (int)(rightEdges >> 32),
+        (int)rightEdges);
+    }
+  }
+}
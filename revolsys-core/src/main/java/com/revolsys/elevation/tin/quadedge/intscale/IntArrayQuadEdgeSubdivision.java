@@ -0,0 +1,632 @@
+package com.revolsys.elevation.tin.quadedge.intscale;
+
+import java.util.Arrays;
+
+import com.revolsys.elevation.tin.TriangleConsumer;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geometry.model.Side;
+
+/**
+ * <p>
+ * A quad-edge subdivision that stores the edges and vertices in primitive
+ * arrays instead of {@link QuadEdge} and {@link PointIntXYZ} objects.
+ * </p>
+ * <p>
+ * Each edge record has four quarter edges. The quarter edge id is
+ * <code>record * 4 + rotation</code>, where rotation 0 and 2 are the primal
+ * edge and its reverse (sym) and 1 and 3 are the dual edges. The onext of each
+ * quarter edge is stored in an int[] with 4 values per record. The origin
+ * vertex index of the primal edges is stored in an int[] with 2 values per
+ * record, the origin is -1 if the record is not in use.
+ * </p>
+ * <p>
+ * The vertices are stored in int[] x, y, z arrays using the scaled integer
+ * coordinates from the geometry factory.
+ * </p>
+ * <p>
+ * A subdivision constructed with bounds has a frame triangle around the bounds
+ * and supports incremental insertion of vertices using
+ * {@link #insertVertex(int, int, int)}, in the same way as
+ * {@link QuadEdgeSubdivision}. The frame triangles are not included in
+ * {@link #forEachTriangleInt(TriangleConsumerInt)}. For a 50 million vertex TIN
+ * this uses about 4GB instead of the tens of GB used by the object based
+ * subdivision.
+ * </p>
+ */
+public class IntArrayQuadEdgeSubdivision {
+  public static final int NULL_EDGE = -1;
+
+  /**
+   * Get the dual edge pointing from left to right of this edge.
+   */
+  static int invRot(final int edge) {
+    return edge & ~3 | edge + 3 & 3;
+  }
+
+  /**
+   * Get the dual edge pointing from right to left of this edge.
+   */
+  static int rot(final int edge) {
+    return edge & ~3 | edge + 1 & 3;
+  }
+
+  /**
+   * Get the edge in the opposite direction.
+   */
+  static int sym(final int edge) {
+    return edge ^ 2;
+  }
+
+  private static int toInt(final long value) {
+    return (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+  }
+
+  private int[] edgeNext = new int[0];
+
+  private int[] edgeOrigin = new int[0];
+
+  private int edgeRecordCapacity;
+
+  private int edgeRecordCount;
+
+  private int frameVertexCount;
+
+  private int[] freeRecords = new int[16];
+
+  private int freeRecordCount;
+
+  private final GeometryFactory geometryFactory;
+
+  private int lastEdge = NULL_EDGE;
+
+  private int startingEdge = NULL_EDGE;
+
+  private int vertexCount;
+
+  private int[] vertexX = new int[0];
+
+  private int[] vertexY = new int[0];
+
+  private int[] vertexZ = new int[0];
+
+  public IntArrayQuadEdgeSubdivision(final GeometryFactory geometryFactory) {
+    this.geometryFactory = geometryFactory;
+  }
+
+  /**
+   * Creates a new subdivision based on a frame triangle that encloses the
+   * bounds.
+   *
+   * @param bounds The bounds (minX, minY, maxX, maxY) to surround.
+   * @param geometryFactory The geometry factory including precision model.
+   */
+  public IntArrayQuadEdgeSubdivision(final int[] bounds, final GeometryFactory geometryFactory) {
+    this(geometryFactory);
+    final long minX = bounds[0];
+    final long minY = bounds[1];
+    final long maxX = bounds[2];
+    final long maxY = bounds[3];
+    final long width = maxX - minX;
+    final long height = maxY - minY;
+    final long offset = Math.max(1, Math.max(width, height)) * 10;
+
+    final int x1 = toInt(minX + width / 2);
+    final int y1 = toInt(maxY + offset);
+    final int x2 = toInt(minX - offset);
+    final int y2 = toInt(minY - offset);
+    final int x3 = toInt(maxX + offset);
+
+    this.vertexX = new int[1024];
+    this.vertexY = new int[1024];
+    this.vertexZ = new int[1024];
+    final int frameVertex1 = addVertex(x1, y1, 0);
+    final int frameVertex2 = addVertex(x2, y2, 0);
+    final int frameVertex3 = addVertex(x3, y2, 0);
+    this.frameVertexCount = 3;
+
+    final int edge1 = initEdge(allocateEdgeRecord(), frameVertex1, frameVertex2);
+    final int edge2 = initEdge(allocateEdgeRecord(), frameVertex2, frameVertex3);
+    splice(sym(edge1), edge2);
+    final int edge3 = initEdge(allocateEdgeRecord(), frameVertex3, frameVertex1);
+    splice(sym(edge2), edge3);
+    splice(sym(edge3), edge1);
+    this.startingEdge = edge1;
+    this.lastEdge = edge1;
+  }
+
+  private int addVertex(final int x, final int y, final int z) {
+    final int vertexIndex = this.vertexCount;
+    if (vertexIndex == this.vertexX.length) {
+      final int newLength = Math.max(1024, vertexIndex + (vertexIndex >> 1));
+      this.vertexX = Arrays.copyOf(this.vertexX, newLength);
+      this.vertexY = Arrays.copyOf(this.vertexY, newLength);
+      this.vertexZ = Arrays.copyOf(this.vertexZ, newLength);
+    }
+    this.vertexX[vertexIndex] = x;
+    this.vertexY[vertexIndex] = y;
+    this.vertexZ[vertexIndex] = z;
+    this.vertexCount++;
+    return vertexIndex;
+  }
+
+  /**
+   * Allocate an edge record for incremental insertion, reusing the records of
+   * deleted edges.
+   */
+  private int allocateEdgeRecord() {
+    if (this.freeRecordCount > 0) {
+      return this.freeRecords[--this.freeRecordCount];
+    } else {
+      final int record = this.edgeRecordCount;
+      if (record == this.edgeRecordCapacity) {
+        ensureEdgeRecordCapacity(Math.max(1024, record + (record >> 1)));
+      }
+      this.edgeRecordCount++;
+      return record;
+    }
+  }
+
+  /**
+   * Add a new edge from the destination of edge a to the origin of edge b so
+   * that the left faces of a, the new edge and b are the same.
+   */
+  int connect(final int record, final int a, final int b) {
+    final int edge = initEdge(record, getDestination(a), getOrigin(b));
+    splice(edge, lNext(a));
+    splice(sym(edge), b);
+    return edge;
+  }
+
+  /**
+   * Connect the destination of edge to the new vertex at the origin of
+   * startEdge and continue around the enclosing polygon.
+   *
+   * @return The last edge connected.
+   */
+  private int connectEdges(int edge, final int startEdge) {
+    int base = startEdge;
+    int leftNext = lNext(edge);
+    do {
+      final int edge2 = sym(base);
+      base = initEdge(allocateEdgeRecord(), getDestination(edge), getOrigin(edge2));
+      splice(base, leftNext);
+      splice(sym(base), edge2);
+      edge = oPrev(base);
+      leftNext = lNext(edge);
+    } while (leftNext != startEdge);
+    return edge;
+  }
+
+  /**
+   * Delete an edge created by incremental insertion.
+   */
+  private void delete(final int edge) {
+    final int record = deleteEdge(edge);
+    if (this.freeRecordCount == this.freeRecords.length) {
+      this.freeRecords = Arrays.copyOf(this.freeRecords, this.freeRecordCount * 2);
+    }
+    this.freeRecords[this.freeRecordCount++] = record;
+    if (!isLive(this.lastEdge >> 2)) {
+      this.lastEdge = this.startingEdge;
+    }
+  }
+
+  /**
+   * Disconnect the edge from the rest of the subdivision and mark the record
+   * as not in use.
+   *
+   * @return The edge record that can be reused.
+   */
+  int deleteEdge(final int edge) {
+    final int symEdge = sym(edge);
+    splice(edge, oPrev(edge));
+    splice(symEdge, oPrev(symEdge));
+    final int record = edge >> 2;
+    this.edgeOrigin[record * 2] = -1;
+    this.edgeOrigin[record * 2 + 1] = -1;
+    return record;
+  }
+
+  /**
+   * Ensure there is space for the number of edge records. Must not be called
+   * while other threads are modifying the edges.
+   */
+  void ensureEdgeRecordCapacity(final int recordCount) {
+    if (recordCount > this.edgeRecordCapacity) {
+      final int oldCapacity = this.edgeRecordCapacity;
+      this.edgeNext = Arrays.copyOf(this.edgeNext, recordCount * 4);
+      this.edgeOrigin = Arrays.copyOf(this.edgeOrigin, recordCount * 2);
+      Arrays.fill(this.edgeOrigin, oldCapacity * 2, recordCount * 2, -1);
+      this.edgeRecordCapacity = recordCount;
+    }
+  }
+
+  /**
+   * Locates an edge of a triangle which contains the location. The point is
+   * either on the edge or it is contained in a triangle that the edge is part
+   * of. A point on one of the other edges of the triangle moves to that edge.
+   *
+   * @throws LocateFailureException if the location algorithm fails to converge
+   *           in a reasonable number of iterations
+   */
+  private int findEdge(final int x, final int y) {
+    final int[] vertexX = this.vertexX;
+    final int[] vertexY = this.vertexY;
+    int currentEdge = this.lastEdge;
+
+    final int maxIterations = this.edgeRecordCount;
+    for (int interationCount = 1; interationCount < maxIterations; interationCount++) {
+      final int fromVertex = getOrigin(currentEdge);
+      final int x1 = vertexX[fromVertex];
+      final int y1 = vertexY[fromVertex];
+      if (x == x1 && y == y1) {
+        this.lastEdge = currentEdge;
+        return currentEdge;
+      } else {
+        final int toVertex = getDestination(currentEdge);
+        final int x2 = vertexX[toVertex];
+        final int y2 = vertexY[toVertex];
+        if (x == x2 && y == y2) {
+          this.lastEdge = currentEdge;
+          return currentEdge;
+        } else if (Side.getSide((double)x1, y1, x2, y2, x, y) == Side.RIGHT) {
+          currentEdge = sym(currentEdge);
+        } else {
+          final int fromNextEdge = oNext(currentEdge);
+          final int fromNextVertex = getDestination(fromNextEdge);
+          if (Side.getSide((double)x1, y1, vertexX[fromNextVertex], vertexY[fromNextVertex], x,
+            y) != Side.RIGHT) {
+            currentEdge = fromNextEdge;
+          } else {
+            final int toNextEdge = dNext(currentEdge);
+            final int toNextVertex = getOrigin(toNextEdge);
+            if (Side.getSide((double)vertexX[toNextVertex], vertexY[toNextVertex], x2, y2, x,
+              y) != Side.RIGHT) {
+              currentEdge = toNextEdge;
+            } else {
+              this.lastEdge = currentEdge; // contained in triangle for edge
+              return currentEdge;
+            }
+          }
+        }
+      }
+    }
+    throw new LocateFailureException("Locate failed to converge (at edge: " + currentEdge
+      + ").  Possible causes include invalid Subdivision topology or very close sites");
+  }
+
+  /**
+   * Visit each triangle where the three edges form a counter-clockwise face.
+   * Each triangle is visited once, from the lowest of its quarter edge ids.
+   */
+  public void forEachTriangle(final TriangleConsumer action) {
+    final GeometryFactory geometryFactory = this.geometryFactory;
+    final TriangleConsumerInt intAction = (x1, y1, z1, x2, y2, z2, x3, y3, z3) -> {
+      action.accept(geometryFactory.toDoubleX(x1), geometryFactory.toDoubleY(y1),
+        geometryFactory.toDoubleZ(z1), geometryFactory.toDoubleX(x2),
+        geometryFactory.toDoubleY(y2), geometryFactory.toDoubleZ(z2),
+        geometryFactory.toDoubleX(x3), geometryFactory.toDoubleY(y3),
+        geometryFactory.toDoubleZ(z3));
+    };
+    forEachTriangleInt(intAction);
+  }
+
+  public void forEachTriangleInt(final TriangleConsumerInt action) {
+    final int[] vertexX = this.vertexX;
+    final int[] vertexY = this.vertexY;
+    final int[] vertexZ = this.vertexZ;
+    final int recordCount = this.edgeRecordCapacity;
+    for (int record = 0; record < recordCount; record++) {
+      if (isLive(record)) {
+        for (int edge = record * 4; edge < record * 4 + 4; edge += 2) {
+          final int vertex1 = getTriangleVertex(edge);
+          if (vertex1 != -1) {
+            final int edge2 = lNext(edge);
+            final int vertex2 = getOrigin(edge2);
+            final int vertex3 = getOrigin(lNext(edge2));
+            action.accept(vertexX[vertex1], vertexY[vertex1], vertexZ[vertex1], vertexX[vertex2],
+              vertexY[vertex2], vertexZ[vertex2], vertexX[vertex3], vertexY[vertex3],
+              vertexZ[vertex3]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the next counter-clockwise edge around the destination.
+   */
+  int dNext(final int edge) {
+    return invRot(this.edgeNext[invRot(edge)]);
+  }
+
+  int getDestination(final int edge) {
+    return this.edgeOrigin[sym(edge) >> 1];
+  }
+
+  int getEdgeRecordCapacity() {
+    return this.edgeRecordCapacity;
+  }
+
+  public GeometryFactory getGeometryFactory() {
+    return this.geometryFactory;
+  }
+
+  int getOrigin(final int edge) {
+    return this.edgeOrigin[edge >> 1];
+  }
+
+  public int getTriangleCount() {
+    int triangleCount = 0;
+    final int recordCount = this.edgeRecordCapacity;
+    for (int record = 0; record < recordCount; record++) {
+      if (isLive(record)) {
+        if (getTriangleVertex(record * 4) != -1) {
+          triangleCount++;
+        }
+        if (getTriangleVertex(record * 4 + 2) != -1) {
+          triangleCount++;
+        }
+      }
+    }
+    return triangleCount;
+  }
+
+  /**
+   * Get the origin of the edge if the edge is the lowest quarter edge id of a
+   * counter-clockwise triangle on its left, otherwise -1.
+   */
+  private int getTriangleVertex(final int edge) {
+    final int edge2 = lNext(edge);
+    if (edge2 > edge) {
+      final int edge3 = lNext(edge2);
+      if (edge3 > edge && lNext(edge3) == edge) {
+        final int vertex1 = getOrigin(edge);
+        final int vertex2 = getOrigin(edge2);
+        final int vertex3 = getOrigin(edge3);
+        final int frameVertexCount = this.frameVertexCount;
+        if (vertex1 >= frameVertexCount && vertex2 >= frameVertexCount
+          && vertex3 >= frameVertexCount && isCcw(vertex1, vertex2, vertex3)) {
+          return vertex1;
+        }
+      }
+    }
+    return -1;
+  }
+
+  public int getVertexCount() {
+    return this.vertexCount;
+  }
+
+  public int getVertexX(final int vertexIndex) {
+    return this.vertexX[vertexIndex];
+  }
+
+  public int getVertexY(final int vertexIndex) {
+    return this.vertexY[vertexIndex];
+  }
+
+  public int getVertexZ(final int vertexIndex) {
+    return this.vertexZ[vertexIndex];
+  }
+
+  /**
+   * Initialize the edge record as an isolated edge from the origin to the
+   * destination vertex.
+   *
+   * @return The primal quarter edge from the origin.
+   */
+  int initEdge(final int record, final int origin, final int destination) {
+    final int edge = record * 4;
+    final int[] edgeNext = this.edgeNext;
+    edgeNext[edge] = edge;
+    edgeNext[edge + 1] = edge + 3;
+    edgeNext[edge + 2] = edge + 2;
+    edgeNext[edge + 3] = edge + 1;
+    this.edgeOrigin[record * 2] = origin;
+    this.edgeOrigin[record * 2 + 1] = destination;
+    return edge;
+  }
+
+  /**
+   * Inserts a new vertex into the subdivision, and fixes the affected edges so
+   * that the result is still a Delaunay triangulation. Vertices at the same
+   * location as an existing vertex are ignored.
+   *
+   * @throws LocateFailureException if the location algorithm fails to converge
+   *           in a reasonable number of iterations
+   */
+  public void insertVertex(final int x, final int y, final int z) {
+    if (this.startingEdge == NULL_EDGE) {
+      throw new IllegalStateException("Subdivision must be constructed with bounds");
+    }
+    int edge = findEdge(x, y);
+    {
+      final int fromVertex = getOrigin(edge);
+      final int x1 = this.vertexX[fromVertex];
+      final int y1 = this.vertexY[fromVertex];
+      if (x1 == x && y1 == y) {
+        return;
+      } else {
+        final int toVertex = getDestination(edge);
+        final int x2 = this.vertexX[toVertex];
+        final int y2 = this.vertexY[toVertex];
+        if (x2 == x && y2 == y) {
+          return;
+        } else if (Side.getSide((double)x1, y1, x2, y2, x, y) == Side.ON) {
+          // The vertex lies on the edge, so delete the edge (it will be
+          // replaced by a pair of edges which have the vertex as a vertex). The
+          // coordinates are exact so there is no tolerance, a vertex near the
+          // edge may not see all of the quadrilateral.
+          edge = oPrev(edge);
+          delete(oNext(edge));
+        }
+      }
+    }
+    // Connect the new vertex to the vertices of the containing triangle (or
+    // quadrilateral, if the new vertex fell on an existing edge)
+    final int vertex = addVertex(x, y, z);
+    final int base = initEdge(allocateEdgeRecord(), getOrigin(edge), vertex);
+    splice(base, edge);
+    edge = connectEdges(edge, base);
+    swapEdges(base, edge, vertex);
+  }
+
+  public void insertVertex(final PointIntXYZ vertex) {
+    insertVertex(vertex.getX(), vertex.getY(), vertex.getZ());
+  }
+
+  /**
+   * Test if the vertices are in counter-clockwise order.
+   */
+  boolean isCcw(final int vertex1, final int vertex2, final int vertex3) {
+    final int[] vertexX = this.vertexX;
+    final int[] vertexY = this.vertexY;
+    final long x1 = vertexX[vertex1];
+    final long y1 = vertexY[vertex1];
+    final double deltaX2 = vertexX[vertex2] - x1;
+    final double deltaY2 = vertexY[vertex2] - y1;
+    final double deltaX3 = vertexX[vertex3] - x1;
+    final double deltaY3 = vertexY[vertex3] - y1;
+    return deltaX2 * deltaY3 - deltaY2 * deltaX3 > 0;
+  }
+
+  /**
+   * Test if vertex4 is inside the circumcircle of the counter-clockwise
+   * triangle vertex1, vertex2, vertex3.
+   */
+  boolean isInCircle(final int vertex1, final int vertex2, final int vertex3,
+    final int vertex4) {
+    final int[] vertexX = this.vertexX;
+    final int[] vertexY = this.vertexY;
+    final long x = vertexX[vertex4];
+    final long y = vertexY[vertex4];
+    final long deltaX1 = vertexX[vertex1] - x;
+    final long deltaY1 = vertexY[vertex1] - y;
+    final long deltaX2 = vertexX[vertex2] - x;
+    final long deltaY2 = vertexY[vertex2] - y;
+    final long deltaX3 = vertexX[vertex3] - x;
+    final long deltaY3 = vertexY[vertex3] - y;
+
+    final double abdet = (double)deltaX1 * deltaY2 - (double)deltaX2 * deltaY1;
+    final double bcdet = (double)deltaX2 * deltaY3 - (double)deltaX3 * deltaY2;
+    final double cadet = (double)deltaX3 * deltaY1 - (double)deltaX1 * deltaY3;
+    final double alift = (double)deltaX1 * deltaX1 + (double)deltaY1 * deltaY1;
+    final double blift = (double)deltaX2 * deltaX2 + (double)deltaY2 * deltaY2;
+    final double clift = (double)deltaX3 * deltaX3 + (double)deltaY3 * deltaY3;
+
+    final double disc = alift * bcdet + blift * cadet + clift * abdet;
+    return disc > 0;
+  }
+
+  private boolean isSwapRequired(final int edge, final int vertex) {
+    final int fromVertex = getOrigin(edge);
+    final int toVertex = getDestination(edge);
+    final int previousToVertex = getDestination(oPrev(edge));
+    return isCcw(fromVertex, previousToVertex, toVertex)
+      && isInCircle(fromVertex, previousToVertex, toVertex, vertex);
+  }
+
+  boolean isLive(final int record) {
+    return this.edgeOrigin[record * 2] != -1;
+  }
+
+  /**
+   * Get the next counter-clockwise edge around the left face.
+   */
+  int lNext(final int edge) {
+    return rot(this.edgeNext[invRot(edge)]);
+  }
+
+  /**
+   * Get the next counter-clockwise edge around the origin.
+   */
+  int oNext(final int edge) {
+    return this.edgeNext[edge];
+  }
+
+  /**
+   * Get the previous edge around the left face.
+   */
+  int lPrev(final int edge) {
+    return sym(this.edgeNext[edge]);
+  }
+
+  /**
+   * Get the next clockwise edge around the origin.
+   */
+  int oPrev(final int edge) {
+    return rot(this.edgeNext[rot(edge)]);
+  }
+
+  /**
+   * Get the previous edge around the right face.
+   */
+  int rPrev(final int edge) {
+    return this.edgeNext[sym(edge)];
+  }
+
+  /**
+   * Set the vertices. The arrays are used directly and not copied.
+   */
+  void setVertices(final int vertexCount, final int[] vertexX, final int[] vertexY,
+    final int[] vertexZ) {
+    this.vertexCount = vertexCount;
+    this.vertexX = vertexX;
+    this.vertexY = vertexY;
+    this.vertexZ = vertexZ;
+  }
+
+  /**
+   * Turn the edge counter-clockwise inside its enclosing quadrilateral.
+   */
+  private void swap(final int edge) {
+    final int symEdge = sym(edge);
+    final int a = oPrev(edge);
+    final int b = oPrev(symEdge);
+    splice(edge, a);
+    splice(symEdge, b);
+    splice(edge, lNext(a));
+    splice(symEdge, lNext(b));
+    this.edgeOrigin[edge >> 1] = getDestination(a);
+    this.edgeOrigin[symEdge >> 1] = getDestination(b);
+  }
+
+  /**
+   * Swap the edges around the new vertex until the Delaunay condition is
+   * satisfied.
+   */
+  private void swapEdges(final int startEdge, int edge, final int vertex) {
+    do {
+      if (isSwapRequired(edge, vertex)) {
+        swap(edge);
+        edge = oPrev(edge);
+      } else {
+        final int fromNextEdge = oNext(edge);
+        if (fromNextEdge == startEdge) {
+          return;
+        } else {
+          edge = lPrev(fromNextEdge);
+        }
+      }
+    } while (true);
+  }
+
+  /**
+   * Combine the origin rings of a and b if they are different, or split them
+   * if they are the same.
+   */
+  void splice(final int a, final int b) {
+    final int[] edgeNext = this.edgeNext;
+    final int alpha = rot(edgeNext[a]);
+    final int beta = rot(edgeNext[b]);
+    final int aNext = edgeNext[a];
+    final int bNext = edgeNext[b];
+    final int alphaNext = edgeNext[alpha];
+    final int betaNext = edgeNext[beta];
+    edgeNext[a] = bNext;
+    edgeNext[b] = aNext;
+    edgeNext[alpha] = betaNext;
+    edgeNext[beta] = alphaNext;
+  }
+}
@@ -33,10 +33,12 @@
 package com.revolsys.geometry.wkb;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Allows reading a stream of Java primitive datatypes from an underlying
- * {@link InStream},
+ * {@link InStream} or {@link ByteBuffer},
  * with the representation being in either common byte ordering.
  */
 public class ByteOrderDataInStream {
@@ -47,6 +49,8 @@ public class ByteOrderDataInStream {
 
   private final byte[] buf8 = new byte[8];
 
+  private ByteBuffer buffer;
+
   private int byteOrder = ByteOrderValues.BIG_ENDIAN;
 
   private InStream stream;
@@ -65,23 +69,80 @@ public class ByteOrderDataInStream {
    * @return the byte read
    */
   public byte readByte() throws IOException {
-    this.stream.read(this.buf1);
-    return this.buf1[0];
+    final ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      this.stream.read(this.buf1);
+      return this.buf1[0];
+    } else {
+      return buffer.get();
+    }
   }
 
   public double readDouble() throws IOException {
-    this.stream.read(this.buf8);
-    return ByteOrderValues.getDouble(this.buf8, this.byteOrder);
+    final ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      this.stream.read(this.buf8);
+      return ByteOrderValues.getDouble(this.buf8, this.byteOrder);
+    } else {
+      return buffer.getDouble();
+    }
+  }
+
+  /**
+   * Read count doubles into the values array. If reading from a
+   * {@link ByteBuffer} the values are copied in bulk using a
+   * {@link java.nio.DoubleBuffer} view of the buffer.
+   *
+   * @param values The array to read into.
+   * @param offset The offset in the array to start at.
+   * @param count The number of values to read.
+   */
+  public void readDoubles(final double[] values, final int offset, final int count)
+    throws IOException {
+    final ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      for (int i = 0; i < count; i++) {
+        this.stream.read(this.buf8);
+        values[offset + i] = ByteOrderValues.getDouble(this.buf8, this.byteOrder);
+      }
+    } else {
+      buffer.asDoubleBuffer().get(values, offset, count);
+      buffer.position(buffer.position() + count * 8);
+    }
   }
 
   public int readInt() throws IOException {
-    this.stream.read(this.buf4);
-    return ByteOrderValues.getInt(this.buf4, this.byteOrder);
+    final ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      this.stream.read(this.buf4);
+      return ByteOrderValues.getInt(this.buf4, this.byteOrder);
+    } else {
+      return buffer.getInt();
+    }
   }
 
   public long readLong() throws IOException {
-    this.stream.read(this.buf8);
-    return ByteOrderValues.getLong(this.buf8, this.byteOrder);
+    final ByteBuffer buffer = this.buffer;
+    if (buffer == null) {
+      this.stream.read(this.buf8);
+      return ByteOrderValues.getLong(this.buf8, this.byteOrder);
+    } else {
+      return buffer.getLong();
+    }
+  }
+
+  /**
+   * Read from the buffer instead of an {@link InStream}. The byte order of the
+   * buffer is changed by {@link #setOrder(int)}.
+   *
+   * @param buffer The buffer to read from.
+   */
+  public void setByteBuffer(final ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.stream = null;
+    if (buffer != null) {
+      setOrder(this.byteOrder);
+    }
   }
 
   /**
@@ -92,10 +153,19 @@ public class ByteOrderDataInStream {
    */
   public void setInStream(final InStream stream) {
     this.stream = stream;
+    this.buffer = null;
   }
 
   public void setOrder(final int byteOrder) {
     this.byteOrder = byteOrder;
+    final ByteBuffer buffer = this.buffer;
+    if (buffer != null) {
+      if (byteOrder == ByteOrderValues.LITTLE_ENDIAN) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+      } else {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+      }
+    }
   }
 
 }
@@ -33,6 +33,8 @@
 package com.revolsys.geometry.wkb;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -122,12 +124,30 @@ public class WKBReader {
    * @throws ParseException if the WKB is ill-formed
    */
   public Geometry read(final byte[] bytes) throws ParseException {
-    // possibly reuse the ByteArrayInStream?
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    return read(buffer);
+  }
+
+  /**
+   * Reads a single {@link Geometry} in WKB format from the current position of
+   * the buffer. Coordinates are copied from the buffer in bulk. The buffer's
+   * position is left after the end of the geometry.
+   *
+   * @param buffer the buffer to read from
+   * @return the geometry read
+   * @throws ParseException if the WKB is ill-formed
+   */
+  public Geometry read(final ByteBuffer buffer) throws ParseException {
     // don't throw IOExceptions, since we are not doing any I/O
     try {
-      return read(new ByteArrayInStream(bytes));
+      this.dis.setByteBuffer(buffer);
+      return readGeometry(this.geometryFactory);
+    } catch (final BufferUnderflowException e) {
+      throw new ParseException("Unexpected end of WKB data");
     } catch (final IOException ex) {
       throw new RuntimeException("Unexpected IOException caught: " + ex.getMessage());
+    } finally {
+      this.dis.setByteBuffer(null);
     }
   }
 
@@ -146,14 +166,14 @@ public class WKBReader {
   }
 
   private double[] readCoordinates(final int axisCount, final int vertexCount) throws IOException {
-    final double[] coordinates = new double[vertexCount * axisCount];
-
-    int coordinateIndex = 0;
-    for (int vertexIndex = 0; vertexIndex < vertexCount; vertexIndex++) {
-      for (int axisIndex = 0; axisIndex < axisCount; axisIndex++) {
-        final double coordinate = this.dis.readDouble();
-        final double coordinatePrecise = this.geometryFactory.makePrecise(axisIndex, coordinate);
-        coordinates[coordinateIndex++] = coordinatePrecise;
+    final int coordinateCount = vertexCount * axisCount;
+    final double[] coordinates = new double[coordinateCount];
+    this.dis.readDoubles(coordinates, 0, coordinateCount);
+    final GeometryFactory geometryFactory = this.geometryFactory;
+    if (!geometryFactory.isFloating()) {
+      for (int i = 0; i < coordinateCount; i++) {
+        final int axisIndex = i % axisCount;
+        coordinates[i] = geometryFactory.makePrecise(axisIndex, coordinates[i]);
       }
     }
     return coordinates;
@@ -2,7 +2,9 @@ package com.revolsys.geometry.wkb;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.List;
 import java.util.function.BiFunction;
+import java.util.stream.IntStream;
 
 import com.revolsys.collection.map.IntHashMap;
 import com.revolsys.geometry.model.Geometry;
@@ -15,7 +17,30 @@ import com.revolsys.geometry.model.Polygon;
 import com.revolsys.geometry.model.Polygonal;
 import com.revolsys.geometry.model.Punctual;
 
+/**
+ * <p>
+ * Read WKB geometries directly from a {@link ByteBuffer}. Both ISO (e.g. 1003
+ * for a Polygon Z) and PostGIS extended WKB (Z, M and SRID flags) geometry
+ * types are supported. Coordinates are copied in bulk using a
+ * {@link java.nio.DoubleBuffer} view of the buffer in the geometry's byte
+ * order.
+ * </p>
+ * <p>
+ * The {@link #readGeometries(GeometryFactory, List)} methods decode a batch of
+ * WKB values (e.g. the rows of a JDBC result set or a page of GeoPackage
+ * features) in parallel.
+ * </p>
+ */
 public class WkbByteBufferReader {
+  private static final int EWKB_M = 0x40000000;
+
+  private static final int EWKB_SRID = 0x20000000;
+
+  private static final int EWKB_Z = 0x80000000;
+
+  /** The minimum number of values in a batch before it is decoded in parallel. */
+  private static final int PARALLEL_THRESHOLD = 64;
+
   private static final IntHashMap<BiFunction<GeometryFactory, ByteBuffer, Geometry>> READERS = new IntHashMap<>();
 
   static {
@@ -59,11 +84,7 @@ public class WkbByteBufferReader {
     final int vertexCount = data.getInt();
     final int coordinateCount = axisCount * vertexCount;
     final double[] coordinates = new double[coordinateCount];
-
-    for (int i = 0; i < coordinateCount; i++) {
-      final double coordinate = data.getDouble();
-      coordinates[i] = coordinate;
-    }
+    readDoubles(data, coordinates, 0, coordinateCount);
     return coordinates;
   }
 
@@ -71,23 +92,76 @@ public class WkbByteBufferReader {
     final int vertexCount = data.getInt();
     final int coordinateCount = 4 * vertexCount;
     final double[] coordinates = new double[coordinateCount];
+    // Read the x,y,m values into the end of the array and spread them out
+    // inserting a NaN z value
+    final int xymCount = 3 * vertexCount;
+    final int xymOffset = coordinateCount - xymCount;
+    readDoubles(data, coordinates, xymOffset, xymCount);
 
+    int xymIndex = xymOffset;
     for (int coordinateIndex = 0; coordinateIndex < coordinateCount;) {
-      final double x = data.getDouble();
+      final double x = coordinates[xymIndex++];
+      final double y = coordinates[xymIndex++];
+      final double m = coordinates[xymIndex++];
       coordinates[coordinateIndex++] = x;
-
-      final double y = data.getDouble();
       coordinates[coordinateIndex++] = y;
-
-      final double z = Double.NaN;
-      coordinates[coordinateIndex++] = z;
-
-      final double m = data.getDouble();
+      coordinates[coordinateIndex++] = Double.NaN;
       coordinates[coordinateIndex++] = m;
     }
     return coordinates;
   }
 
+  private static void readDoubles(final ByteBuffer data, final double[] values, final int offset,
+    final int count) {
+    data.asDoubleBuffer().get(values, offset, count);
+    data.position(data.position() + count * 8);
+  }
+
+  /**
+   * Read the geometries from the WKB values. If there are enough values they
+   * are decoded in parallel using the common fork join pool. Null values
+   * return a null geometry.
+   *
+   * @param geometryFactory The geometry factory to create the geometries with.
+   * @param values The WKB values.
+   * @return The geometries in the same order as the values.
+   */
+  public static Geometry[] readGeometries(final GeometryFactory geometryFactory,
+    final byte[]... values) {
+    final Geometry[] geometries = new Geometry[values.length];
+    IntStream indexes = IntStream.range(0, values.length);
+    if (values.length >= PARALLEL_THRESHOLD) {
+      indexes = indexes.parallel();
+    }
+    indexes.forEach(i -> {
+      final byte[] value = values[i];
+      if (value != null) {
+        geometries[i] = readGeometry(geometryFactory, value);
+      }
+    });
+    return geometries;
+  }
+
+  /**
+   * Read the geometries from the list of WKB values.
+   *
+   * @param geometryFactory The geometry factory to create the geometries with.
+   * @param values The WKB values.
+   * @return The geometries in the same order as the values.
+   * @see #readGeometries(GeometryFactory, byte[]...)
+   */
+  public static Geometry[] readGeometries(final GeometryFactory geometryFactory,
+    final List<byte[]> values) {
+    final byte[][] valueArray = values.toArray(new byte[values.size()][]);
+    return readGeometries(geometryFactory, valueArray);
+  }
+
+  public static <G extends Geometry> G readGeometry(final GeometryFactory geometryFactory,
+    final byte[] data) {
+    final ByteBuffer buffer = ByteBuffer.wrap(data);
+    return readGeometry(geometryFactory, buffer);
+  }
+
   @SuppressWarnings("unchecked")
   public static <G extends Geometry> G readGeometry(final GeometryFactory geometryFactory,
     final ByteBuffer data) {
@@ -99,12 +173,32 @@ public class WkbByteBufferReader {
     }
     data.order(byteOrder);
 
-    final int geometryType = data.getInt();
+    int geometryType = data.getInt();
+    GeometryFactory factory = geometryFactory;
+    if ((geometryType & (EWKB_Z | EWKB_M | EWKB_SRID)) != 0) {
+      // PostGIS extended WKB, convert to the ISO type code
+      final boolean hasZ = (geometryType & EWKB_Z) != 0;
+      final boolean hasM = (geometryType & EWKB_M) != 0;
+      if ((geometryType & EWKB_SRID) != 0) {
+        final int coordinateSystemId = data.getInt();
+        if (coordinateSystemId > 0
+          && coordinateSystemId != factory.getHorizontalCoordinateSystemId()) {
+          factory = factory.convertSrid(coordinateSystemId);
+        }
+      }
+      geometryType = geometryType & 0xffff;
+      if (hasZ) {
+        geometryType += 1000;
+      }
+      if (hasM) {
+        geometryType += 2000;
+      }
+    }
     final BiFunction<GeometryFactory, ByteBuffer, Geometry> reader = READERS.get(geometryType);
     if (reader == null) {
       throw new IllegalArgumentException("Unsupported WKB geometryType=" + geometryType);
     } else {
-      return (G)reader.apply(geometryFactory, data);
+      return (G)reader.apply(factory, data);
     }
   }
 
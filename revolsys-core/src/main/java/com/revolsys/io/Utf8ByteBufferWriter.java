@@ -0,0 +1,251 @@
+package com.revolsys.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * A {@link Writer} that encodes characters directly to UTF-8 into a byte
+ * buffer and writes the buffer to the {@link OutputStream} in bulk. This avoids
+ * the per call overhead of the {@link java.nio.charset.CharsetEncoder} used by
+ * {@link java.io.OutputStreamWriter} and the extra copy of a
+ * {@link java.io.BufferedWriter}.
+ * </p>
+ * <p>
+ * The byte buffers are taken from a small shared pool and returned to it when
+ * the writer is closed, so that request handlers that create a writer per
+ * response don't allocate a new buffer each time.
+ * </p>
+ */
+public class Utf8ByteBufferWriter extends Writer {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int MAX_POOL_SIZE = 32;
+
+  private static final ConcurrentLinkedDeque<byte[]> POOL = new ConcurrentLinkedDeque<>();
+
+  private static final AtomicInteger POOL_SIZE = new AtomicInteger();
+
+  private static byte[] allocateBuffer() {
+    final byte[] buffer = POOL.pollFirst();
+    if (buffer == null) {
+      return new byte[BUFFER_SIZE];
+    } else {
+      POOL_SIZE.decrementAndGet();
+      return buffer;
+    }
+  }
+
+  private static void releaseBuffer(final byte[] buffer) {
+    if (POOL_SIZE.incrementAndGet() <= MAX_POOL_SIZE) {
+      POOL.offerFirst(buffer);
+    } else {
+      POOL_SIZE.decrementAndGet();
+    }
+  }
+
+  private byte[] buffer;
+
+  private boolean closeTarget = true;
+
+  private int highSurrogate = -1;
+
+  private OutputStream out;
+
+  private int position;
+
+  public Utf8ByteBufferWriter(final OutputStream out) {
+    this.out = out;
+    this.buffer = allocateBuffer();
+  }
+
+  @Override
+  public Writer append(final CharSequence string) throws IOException {
+    if (string == null) {
+      write("null");
+    } else if (string instanceof String) {
+      write((String)string, 0, string.length());
+    } else {
+      final int length = string.length();
+      for (int i = 0; i < length; i++) {
+        writeChar(string.charAt(i));
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public void close() throws IOException {
+    final OutputStream out = this.out;
+    if (out != null) {
+      try {
+        if (this.highSurrogate != -1) {
+          this.highSurrogate = -1;
+          writeByte('?');
+        }
+        flushBuffer();
+        if (this.closeTarget) {
+          out.close();
+        } else {
+          out.flush();
+        }
+      } finally {
+        this.out = null;
+        releaseBuffer(this.buffer);
+        this.buffer = null;
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (this.out != null) {
+      flushBuffer();
+      this.out.flush();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    if (this.position > 0) {
+      if (this.out == null) {
+        throw new IOException("Writer closed");
+      }
+      this.out.write(this.buffer, 0, this.position);
+      this.position = 0;
+    }
+  }
+
+  public boolean isCloseTarget() {
+    return this.closeTarget;
+  }
+
+  public Utf8ByteBufferWriter setCloseTarget(final boolean closeTarget) {
+    this.closeTarget = closeTarget;
+    return this;
+  }
+
+  @Override
+  public void write(final char[] characters, final int offset, final int length)
+    throws IOException {
+    final int end = offset + length;
+    int i = offset;
+    while (i < end) {
+      if (this.highSurrogate == -1) {
+        // Fast path for runs of ASCII characters
+        final byte[] buffer = this.buffer;
+        int position = this.position;
+        final int limit = Math.min(end, i + buffer.length - position);
+        while (i < limit) {
+          final char c = characters[i];
+          if (c < 0x80) {
+            buffer[position++] = (byte)c;
+            i++;
+          } else {
+            break;
+          }
+        }
+        this.position = position;
+        if (position == buffer.length) {
+          flushBuffer();
+        }
+      }
+      if (i < end) {
+        final char c = characters[i];
+        if (c >= 0x80 || this.highSurrogate != -1) {
+          writeChar(c);
+          i++;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void write(final int c) throws IOException {
+    writeChar((char)c);
+  }
+
+  @Override
+  public void write(final String string, final int offset, final int length) throws IOException {
+    final int end = offset + length;
+    int i = offset;
+    while (i < end) {
+      if (this.highSurrogate == -1) {
+        // Fast path for runs of ASCII characters
+        final byte[] buffer = this.buffer;
+        int position = this.position;
+        final int limit = Math.min(end, i + buffer.length - position);
+        while (i < limit) {
+          final char c = string.charAt(i);
+          if (c < 0x80) {
+            buffer[position++] = (byte)c;
+            i++;
+          } else {
+            break;
+          }
+        }
+        this.position = position;
+        if (position == buffer.length) {
+          flushBuffer();
+        }
+      }
+      if (i < end) {
+        final char c = string.charAt(i);
+        if (c >= 0x80 || this.highSurrogate != -1) {
+          writeChar(c);
+          i++;
+        }
+      }
+    }
+  }
+
+  private void writeByte(final int b) throws IOException {
+    if (this.position == this.buffer.length) {
+      flushBuffer();
+    }
+    this.buffer[this.position++] = (byte)b;
+  }
+
+  private void writeChar(final char c) throws IOException {
+    if (this.highSurrogate != -1) {
+      final int high = this.highSurrogate;
+      this.highSurrogate = -1;
+      if (Character.isLowSurrogate(c)) {
+        final int codePoint = Character.toCodePoint((char)high, c);
+        if (this.position + 4 > this.buffer.length) {
+          flushBuffer();
+        }
+        final byte[] buffer = this.buffer;
+        buffer[this.position++] = (byte)(0xF0 | codePoint >> 18);
+        buffer[this.position++] = (byte)(0x80 | codePoint >> 12 & 0x3F);
+        buffer[this.position++] = (byte)(0x80 | codePoint >> 6 & 0x3F);
+        buffer[this.position++] = (byte)(0x80 | codePoint & 0x3F);
+        return;
+      } else {
+        writeByte('?');
+      }
+    }
+    if (c < 0x80) {
+      writeByte(c);
+    } else {
+      if (this.position + 3 > this.buffer.length) {
+        flushBuffer();
+      }
+      final byte[] buffer = this.buffer;
+      if (c < 0x800) {
+        buffer[this.position++] = (byte)(0xC0 | c >> 6);
+        buffer[this.position++] = (byte)(0x80 | c & 0x3F);
+      } else if (Character.isHighSurrogate(c)) {
+        this.highSurrogate = c;
+      } else if (Character.isLowSurrogate(c)) {
+        buffer[this.position++] = '?';
+      } else {
+        buffer[this.position++] = (byte)(0xE0 | c >> 12);
+        buffer[this.position++] = (byte)(0x80 | c >> 6 & 0x3F);
+        buffer[this.position++] = (byte)(0x80 | c & 0x3F);
+      }
+    }
+  }
+}
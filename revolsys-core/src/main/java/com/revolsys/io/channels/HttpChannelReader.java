@@ -1,11 +1,10 @@
 package com.revolsys.io.channels;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.ByteBuffer;
 
-import org.jeometry.common.exception.Exceptions;
+import com.revolsys.io.SeekableByteChannelInputStream;
 
 public class HttpChannelReader extends ChannelReader {
 
@@ -16,15 +15,19 @@ public class HttpChannelReader extends ChannelReader {
     this.url = url;
   }
 
+  public HttpChannelReader(final URL url, final ByteBuffer byteBuffer) {
+    super(new HttpSeekableByteChannel(url), byteBuffer);
+    this.url = url;
+  }
+
+  /**
+   * Get an input stream for part of the resource. The stream uses its own
+   * channel so it doesn't change the position of this reader, but shares the
+   * cached blocks.
+   */
   @Override
   public InputStream getInputStream(final long offset, final int size) {
-    try {
-      final URLConnection connection = this.url.openConnection();
-      final String range = "bytes=" + offset + "-" + (offset + size);
-      connection.addRequestProperty("Range", range);
-      return connection.getInputStream();
-    } catch (final IOException e) {
-      throw Exceptions.wrap(e);
-    }
+    final HttpSeekableByteChannel channel = new HttpSeekableByteChannel(this.url);
+    return new SeekableByteChannelInputStream(channel, offset, size);
   }
 }
@@ -0,0 +1,636 @@
+package com.revolsys.io.channels;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jeometry.common.exception.Exceptions;
+import org.jeometry.common.logging.Logs;
+
+import com.revolsys.io.BaseCloseable;
+
+/**
+ * <p>
+ * A cache of fixed size, aligned blocks of remote HTTP resources. Blocks are
+ * fetched using HTTP range requests, with runs of adjacent missing blocks
+ * fetched in a single request. Sequential reads prefetch the following blocks.
+ * </p>
+ * <p>
+ * The blocks are cached for a version of the resource, identified by the URL
+ * and the ETag (or Last-Modified if there is no ETag) header. If a response
+ * has a different ETag the blocks for the previous version are discarded and
+ * the read is retried. After the max age a cached version is revalidated with
+ * a HEAD request before it is used. If the server returns neither header the
+ * blocks are discarded after the max age.
+ * </p>
+ * <p>
+ * The most recently used blocks are kept in memory. If a disk cache directory
+ * is set the blocks removed from memory are written to a temporary file per
+ * version, which is deleted when the version is discarded or the cache is
+ * cleared or closed.
+ * </p>
+ * <p>
+ * The cache can be used by multiple threads. The HTTP requests and the disk
+ * cache reads and writes are made without holding the lock, so different
+ * threads can fetch blocks at the same time.
+ * </p>
+ */
+public class HttpRangeBlockCache implements BaseCloseable {
+
+  private static final class BlockKey {
+    private final RemoteFile file;
+
+    private final long index;
+
+    private BlockKey(final RemoteFile file, final long index) {
+      this.file = file;
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj instanceof BlockKey) {
+        final BlockKey key = (BlockKey)obj;
+        return key.index == this.index && key.file == this.file;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.file) * 31 + Long.hashCode(this.index);
+    }
+  }
+
+  private static final class DiskFile {
+    private final BitSet blocks = new BitSet();
+
+    private final FileChannel channel;
+
+    private DiskFile(final FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private void close() {
+      try {
+        this.channel.close();
+      } catch (final IOException e) {
+        Logs.debug(this, "Unable to close disk cache file", e);
+      }
+    }
+  }
+
+  /**
+   * A version of a remote resource.
+   */
+  private static final class RemoteFile {
+    private final String url;
+
+    private final long length;
+
+    private final String validator;
+
+    private long validatedTime;
+
+    private DiskFile diskFile;
+
+    private RemoteFile(final String url, final long length, final String validator) {
+      this.url = url;
+      this.length = length;
+      this.validator = validator;
+      this.validatedTime = System.currentTimeMillis();
+    }
+
+    private boolean isSameVersion(final long length, final String validator) {
+      return this.length == length && Objects.equals(this.validator, validator);
+    }
+  }
+
+  private static final HttpRangeBlockCache DEFAULT = new HttpRangeBlockCache(64 * 1024, 256);
+
+  public static HttpRangeBlockCache getDefault() {
+    return DEFAULT;
+  }
+
+  private static String getValidator(final URLConnection connection) {
+    final String etag = connection.getHeaderField("ETag");
+    if (etag == null) {
+      return connection.getHeaderField("Last-Modified");
+    } else {
+      return etag;
+    }
+  }
+
+  private final int blockSize;
+
+  private final Map<BlockKey, byte[]> blocks = new LinkedHashMap<>(256, 0.75f, true);
+
+  private Path diskCacheDirectory;
+
+  private final Map<String, RemoteFile> files = new HashMap<>();
+
+  private long maxAge = 60000;
+
+  private int maxMemoryBlocks;
+
+  private int prefetchBlockCount = 4;
+
+  private long requestCount;
+
+  /**
+   * Construct a new cache.
+   *
+   * @param blockSize The size of the blocks in bytes.
+   * @param maxMemoryBlocks The maximum number of blocks to keep in memory.
+   */
+  public HttpRangeBlockCache(final int blockSize, final int maxMemoryBlocks) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be > 0: " + blockSize);
+    }
+    this.blockSize = blockSize;
+    this.maxMemoryBlocks = Math.max(1, maxMemoryBlocks);
+  }
+
+  /**
+   * Remove all the blocks from memory and delete the disk cache files.
+   */
+  public synchronized void clear() {
+    this.blocks.clear();
+    for (final RemoteFile file : this.files.values()) {
+      final DiskFile diskFile = file.diskFile;
+      if (diskFile != null) {
+        file.diskFile = null;
+        diskFile.close();
+      }
+    }
+    this.files.clear();
+  }
+
+  @Override
+  public void close() {
+    clear();
+  }
+
+  /**
+   * Fetch the blocks from firstIndex to lastIndex (inclusive) using one range
+   * request and add them to the cache.
+   *
+   * @return The blocks or null if the resource is no longer the version of the
+   *         file.
+   */
+  private List<byte[]> fetchBlocks(final URL url, final RemoteFile file, final long firstIndex,
+    final long lastIndex) throws IOException {
+    final String urlString = url.toString();
+    final long start = firstIndex * this.blockSize;
+    final long end = (lastIndex + 1) * this.blockSize - 1;
+    final URLConnection connection = url.openConnection();
+    connection.addRequestProperty("Range", "bytes=" + start + "-" + end);
+    try (
+      InputStream in = connection.getInputStream()) {
+      long length;
+      long skip = 0;
+      final String contentRange = connection.getHeaderField("Content-Range");
+      if (contentRange == null) {
+        // Server doesn't support range requests, skip to the start
+        length = connection.getContentLengthLong();
+        skip = start;
+      } else {
+        length = Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1).trim());
+      }
+      if (length < 0) {
+        throw new IllegalStateException("Unable to get the length of " + url);
+      }
+      final String validator = getValidator(connection);
+      final RemoteFile responseFile;
+      synchronized (this) {
+        this.requestCount++;
+        if (file != null && file.isSameVersion(length, validator)) {
+          responseFile = file;
+        } else {
+          final RemoteFile currentFile = this.files.get(urlString);
+          if (currentFile != null && currentFile != file
+            && currentFile.isSameVersion(length, validator)) {
+            responseFile = currentFile;
+          } else {
+            responseFile = new RemoteFile(urlString, length, validator);
+            replaceFile(currentFile, responseFile);
+          }
+        }
+      }
+      while (skip > 0) {
+        final long skipped = in.skip(skip);
+        if (skipped <= 0) {
+          return Collections.emptyList();
+        }
+        skip -= skipped;
+      }
+      final List<byte[]> blocks = new ArrayList<>();
+      for (long index = firstIndex; index <= lastIndex; index++) {
+        final long blockStart = index * this.blockSize;
+        if (blockStart >= length) {
+          break;
+        }
+        final int size = (int)Math.min(this.blockSize, length - blockStart);
+        final byte[] block = in.readNBytes(size);
+        if (block.length < size) {
+          break;
+        }
+        blocks.add(block);
+        putBlock(responseFile, index, block);
+      }
+      if (responseFile == file) {
+        return blocks;
+      } else {
+        return null;
+      }
+    } finally {
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection)connection).disconnect();
+      }
+    }
+  }
+
+  private byte[] getBlock(final RemoteFile file, final long index) {
+    final BlockKey key = new BlockKey(file, index);
+    final FileChannel channel;
+    synchronized (this) {
+      final byte[] block = this.blocks.get(key);
+      if (block != null) {
+        return block;
+      }
+      final DiskFile diskFile = file.diskFile;
+      if (diskFile == null || index >= Integer.MAX_VALUE || !diskFile.blocks.get((int)index)) {
+        return null;
+      }
+      channel = diskFile.channel;
+    }
+
+    final long blockStart = index * this.blockSize;
+    final int size = (int)Math.min(this.blockSize, file.length - blockStart);
+    final ByteBuffer buffer = ByteBuffer.allocate(size);
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, blockStart + buffer.position()) == -1) {
+          return null;
+        }
+      }
+    } catch (final IOException e) {
+      Logs.debug(this, "Unable to read disk cache file", e);
+      return null;
+    }
+    final byte[] diskBlock = buffer.array();
+    putBlock(file, index, diskBlock);
+    return diskBlock;
+  }
+
+  public int getBlockSize() {
+    return this.blockSize;
+  }
+
+  public synchronized Path getDiskCacheDirectory() {
+    return this.diskCacheDirectory;
+  }
+
+  /**
+   * Get the current version of the file, revalidating it if it is older than
+   * the max age.
+   *
+   * @return The file or null if the length isn't known.
+   */
+  private RemoteFile getFile(final URL url) throws IOException {
+    final String urlString = url.toString();
+    final RemoteFile file;
+    synchronized (this) {
+      file = this.files.get(urlString);
+      if (file == null) {
+        return null;
+      } else if (System.currentTimeMillis() - file.validatedTime <= this.maxAge) {
+        return file;
+      } else if (file.validator == null) {
+        replaceFile(file, null);
+        return null;
+      }
+    }
+
+    final URLConnection connection = url.openConnection();
+    try {
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection)connection).setRequestMethod("HEAD");
+      }
+      final long length = connection.getContentLengthLong();
+      final String validator = getValidator(connection);
+      synchronized (this) {
+        this.requestCount++;
+        if (file.isSameVersion(length, validator)) {
+          file.validatedTime = System.currentTimeMillis();
+          return file;
+        } else {
+          replaceFile(this.files.get(urlString), null);
+          return null;
+        }
+      }
+    } finally {
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection)connection).disconnect();
+      }
+    }
+  }
+
+  /**
+   * Get the length of the resource, fetching the first block if the length
+   * isn't known.
+   *
+   * @param url The URL.
+   * @return The length in bytes.
+   */
+  public long getLength(final URL url) {
+    try {
+      RemoteFile file = getFile(url);
+      while (file == null) {
+        fetchBlocks(url, null, 0, 0);
+        file = getFile(url);
+      }
+      return file.length;
+    } catch (final IOException e) {
+      throw Exceptions.wrap("Unable to read " + url, e);
+    }
+  }
+
+  /**
+   * Get the time in milliseconds after which a cached version of a resource is
+   * revalidated.
+   *
+   * @return The max age in milliseconds.
+   */
+  public synchronized long getMaxAge() {
+    return this.maxAge;
+  }
+
+  public synchronized int getMaxMemoryBlocks() {
+    return this.maxMemoryBlocks;
+  }
+
+  public synchronized int getPrefetchBlockCount() {
+    return this.prefetchBlockCount;
+  }
+
+  /**
+   * Get the number of HTTP requests made by this cache.
+   *
+   * @return The number of requests.
+   */
+  public synchronized long getRequestCount() {
+    return this.requestCount;
+  }
+
+  private void putBlock(final RemoteFile file, final long index, final byte[] block) {
+    final List<Map.Entry<BlockKey, byte[]>> removedBlocks;
+    synchronized (this) {
+      if (this.files.get(file.url) != file) {
+        return;
+      }
+      this.blocks.put(new BlockKey(file, index), block);
+      removedBlocks = removeEldest();
+    }
+    writeDiskBlocks(removedBlocks);
+  }
+
+  /**
+   * Read bytes from the resource at the position into the buffer.
+   *
+   * @param url The URL.
+   * @param position The position in the resource.
+   * @param buffer The buffer to read into.
+   * @param sequential True if the read follows on from the previous read and
+   *          the following blocks should be prefetched.
+   * @return The number of bytes read or -1 if the position is at the end of
+   *         the resource.
+   * @throws IOException If the blocks could not be fetched.
+   */
+  public int read(final URL url, final long position, final ByteBuffer buffer,
+    final boolean sequential) throws IOException {
+    if (!buffer.hasRemaining()) {
+      return 0;
+    }
+    while (true) {
+      final RemoteFile file = getFile(url);
+      if (file == null) {
+        // Get the length and version from the request for the blocks
+        final long firstIndex = position / this.blockSize;
+        long lastIndex = (position + buffer.remaining() - 1) / this.blockSize;
+        if (sequential) {
+          lastIndex += getPrefetchBlockCount();
+        }
+        fetchBlocks(url, null, firstIndex, lastIndex);
+      } else {
+        final int readCount = read(url, file, position, buffer, sequential);
+        if (readCount != Integer.MIN_VALUE) {
+          return readCount;
+        }
+      }
+    }
+  }
+
+  /**
+   * Read from the version of the file.
+   *
+   * @return The number of bytes read, -1 for the end of the file or
+   *         {@link Integer#MIN_VALUE} if the resource has changed.
+   */
+  private int read(final URL url, final RemoteFile file, final long position,
+    final ByteBuffer buffer, final boolean sequential) throws IOException {
+    final long length = file.length;
+    if (position >= length) {
+      return -1;
+    }
+    final int prefetchBlockCount = getPrefetchBlockCount();
+    final long firstIndex = position / this.blockSize;
+    final long endIndex = (length - 1) / this.blockSize;
+    final long lastIndex = Math.min((position + buffer.remaining() - 1) / this.blockSize,
+      endIndex);
+    final int blockCount = (int)(lastIndex - firstIndex + 1);
+    final byte[][] blocks = new byte[blockCount][];
+    for (int i = 0; i < blockCount; i++) {
+      blocks[i] = getBlock(file, firstIndex + i);
+    }
+
+    // Fetch each run of missing blocks with one request
+    for (int i = 0; i < blockCount;) {
+      if (blocks[i] == null) {
+        int runEnd = i;
+        while (runEnd + 1 < blockCount && blocks[runEnd + 1] == null) {
+          runEnd++;
+        }
+        long fetchLastIndex = firstIndex + runEnd;
+        if (sequential && runEnd == blockCount - 1) {
+          fetchLastIndex = Math.min(fetchLastIndex + prefetchBlockCount, endIndex);
+        }
+        final List<byte[]> fetchedBlocks = fetchBlocks(url, file, firstIndex + i, fetchLastIndex);
+        if (fetchedBlocks == null) {
+          return Integer.MIN_VALUE;
+        }
+        for (int j = 0; j < fetchedBlocks.size() && i + j <= runEnd; j++) {
+          blocks[i + j] = fetchedBlocks.get(j);
+        }
+        i = runEnd + 1;
+      } else {
+        i++;
+      }
+    }
+
+    int readCount = 0;
+    int offset = (int)(position - firstIndex * this.blockSize);
+    for (final byte[] block : blocks) {
+      if (block == null || offset >= block.length) {
+        break;
+      }
+      final int count = Math.min(block.length - offset, buffer.remaining());
+      buffer.put(block, offset, count);
+      readCount += count;
+      offset = 0;
+    }
+    if (readCount == 0) {
+      return -1;
+    } else {
+      return readCount;
+    }
+  }
+
+  /**
+   * Remove the least recently used blocks from memory.
+   *
+   * @return The removed blocks to write to the disk cache.
+   */
+  private List<Map.Entry<BlockKey, byte[]>> removeEldest() {
+    List<Map.Entry<BlockKey, byte[]>> removedBlocks = Collections.emptyList();
+    for (final Iterator<Map.Entry<BlockKey, byte[]>> iterator = this.blocks.entrySet()
+      .iterator(); this.blocks.size() > this.maxMemoryBlocks && iterator.hasNext();) {
+      final Map.Entry<BlockKey, byte[]> entry = iterator.next();
+      iterator.remove();
+      if (this.diskCacheDirectory != null) {
+        if (removedBlocks.isEmpty()) {
+          removedBlocks = new ArrayList<>();
+        }
+        removedBlocks.add(entry);
+      }
+    }
+    return removedBlocks;
+  }
+
+  /**
+   * Discard the old version of the file and its blocks and use the new
+   * version (if not null).
+   */
+  private void replaceFile(final RemoteFile oldFile, final RemoteFile newFile) {
+    if (oldFile != null) {
+      this.blocks.keySet().removeIf(key -> key.file == oldFile);
+      final DiskFile diskFile = oldFile.diskFile;
+      if (diskFile != null) {
+        oldFile.diskFile = null;
+        diskFile.close();
+      }
+    }
+    if (newFile == null) {
+      if (oldFile != null) {
+        this.files.remove(oldFile.url);
+      }
+    } else {
+      this.files.put(newFile.url, newFile);
+    }
+  }
+
+  /**
+   * Set the directory used to store the blocks removed from memory, or null
+   * to disable the disk cache.
+   *
+   * @param diskCacheDirectory The directory.
+   */
+  public synchronized void setDiskCacheDirectory(final Path diskCacheDirectory) {
+    this.diskCacheDirectory = diskCacheDirectory;
+  }
+
+  /**
+   * Set the time in milliseconds after which a cached version of a resource is
+   * revalidated with a HEAD request.
+   *
+   * @param maxAge The max age in milliseconds.
+   */
+  public synchronized void setMaxAge(final long maxAge) {
+    this.maxAge = Math.max(0, maxAge);
+  }
+
+  public void setMaxMemoryBlocks(final int maxMemoryBlocks) {
+    final List<Map.Entry<BlockKey, byte[]>> removedBlocks;
+    synchronized (this) {
+      this.maxMemoryBlocks = Math.max(1, maxMemoryBlocks);
+      removedBlocks = removeEldest();
+    }
+    writeDiskBlocks(removedBlocks);
+  }
+
+  /**
+   * Set the number of blocks after the requested blocks fetched when reading
+   * sequentially.
+   *
+   * @param prefetchBlockCount The number of blocks.
+   */
+  public synchronized void setPrefetchBlockCount(final int prefetchBlockCount) {
+    this.prefetchBlockCount = Math.max(0, prefetchBlockCount);
+  }
+
+  private void writeDiskBlocks(final List<Map.Entry<BlockKey, byte[]>> removedBlocks) {
+    for (final Map.Entry<BlockKey, byte[]> entry : removedBlocks) {
+      final BlockKey key = entry.getKey();
+      final RemoteFile file = key.file;
+      if (key.index < Integer.MAX_VALUE) {
+        try {
+          final DiskFile diskFile;
+          synchronized (this) {
+            if (this.files.get(file.url) != file || this.diskCacheDirectory == null) {
+              continue;
+            }
+            if (file.diskFile == null) {
+              Files.createDirectories(this.diskCacheDirectory);
+              final Path path = Files.createTempFile(this.diskCacheDirectory, "http", ".blocks");
+              final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+              file.diskFile = new DiskFile(channel);
+            }
+            diskFile = file.diskFile;
+            if (diskFile.blocks.get((int)key.index)) {
+              continue;
+            }
+          }
+          final ByteBuffer buffer = ByteBuffer.wrap(entry.getValue());
+          final long blockStart = key.index * this.blockSize;
+          while (buffer.hasRemaining()) {
+            diskFile.channel.write(buffer, blockStart + buffer.position());
+          }
+          synchronized (this) {
+            if (file.diskFile == diskFile) {
+              diskFile.blocks.set((int)key.index);
+            }
+          }
+        } catch (final IOException e) {
+          Logs.debug(this, "Unable to write disk cache file", e);
+        }
+      }
+    }
+  }
+}
@@ -2,54 +2,46 @@ package com.revolsys.io.channels;
 
 import java.io.IOException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SeekableByteChannel;
 
+/**
+ * A read only {@link SeekableByteChannel} for a HTTP resource. The data is
+ * read in blocks using HTTP range requests, which are cached in a
+ * {@link HttpRangeBlockCache} shared by all the channels for the same cache.
+ * Changing the position doesn't make a new request, so scattered reads only
+ * fetch the blocks that aren't already cached.
+ */
 public class HttpSeekableByteChannel implements SeekableByteChannel {
 
-  private final URL url;
+  private final HttpRangeBlockCache cache;
 
-  private ReadableByteChannel channel;
+  private boolean open = true;
 
   private long position;
 
-  private long length;
+  private long readEnd = -1;
+
+  private final URL url;
 
   public HttpSeekableByteChannel(final URL url) {
+    this(url, HttpRangeBlockCache.getDefault());
+  }
+
+  public HttpSeekableByteChannel(final URL url, final HttpRangeBlockCache cache) {
     this.url = url;
+    this.cache = cache;
   }
 
   @Override
   public void close() throws IOException {
-    this.channel.close();
-    this.channel = null;
-  }
-
-  private ReadableByteChannel getChannel() throws IOException {
-    if (this.channel == null) {
-      final URLConnection connection = this.url.openConnection();
-      if (this.position > 0) {
-        final String range = "bytes=" + this.position + "-";
-        connection.addRequestProperty("Range", range);
-      }
-      this.channel = Channels.newChannel(connection.getInputStream());
-      final String contentRange = connection.getHeaderField("Content-Range");
-      if (contentRange == null) {
-        final String contentLength = connection.getHeaderField("Content-Length");
-        this.length = Long.parseLong(contentLength);
-      } else {
-        this.length = Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1));
-      }
-    }
-    return this.channel;
+    this.open = false;
   }
 
   @Override
   public boolean isOpen() {
-    return this.channel != null && this.channel.isOpen();
+    return this.open;
   }
 
   @Override
@@ -59,11 +51,8 @@ public class HttpSeekableByteChannel implements SeekableByteChannel {
 
   @Override
   public SeekableByteChannel position(final long position) throws IOException {
-    if (position != this.position) {
-      if (this.channel != null) {
-        this.channel.close();
-        this.channel = null;
-      }
+    if (position < 0) {
+      throw new IllegalArgumentException("position must be >= 0: " + position);
     }
     this.position = position;
     return this;
@@ -71,17 +60,21 @@ public class HttpSeekableByteChannel implements SeekableByteChannel {
 
   @Override
   public int read(final ByteBuffer buffer) throws IOException {
-    final ReadableByteChannel channel = getChannel();
-    final int value = channel.read(buffer);
-    if (value != -1) {
-      this.position += value;
+    if (!this.open) {
+      throw new ClosedChannelException();
+    }
+    final boolean sequential = this.position == this.readEnd;
+    final int count = this.cache.read(this.url, this.position, buffer, sequential);
+    if (count > 0) {
+      this.position += count;
+      this.readEnd = this.position;
     }
-    return value;
+    return count;
   }
 
   @Override
   public long size() throws IOException {
-    return this.length;
+    return this.cache.getLength(this.url);
   }
 
   @Override
@@ -63,8 +63,10 @@ import com.revolsys.record.schema.RecordDefinition;
 import com.revolsys.record.schema.RecordDefinitionImpl;
 import com.revolsys.record.schema.RecordDefinitionProxy;
 import com.revolsys.record.schema.RecordStore;
+import com.revolsys.record.schema.RecordStoreRecordCache;
 import com.revolsys.record.schema.RecordStoreSchema;
 import com.revolsys.record.schema.RecordStoreSchemaElement;
+import com.revolsys.record.schema.TableRecordStoreWriteBehind;
 import com.revolsys.transaction.Transaction;
 import com.revolsys.transaction.TransactionOptions;
 import com.revolsys.util.Booleans;
@@ -256,6 +258,7 @@ public abstract class AbstractJdbcRecordStore extends AbstractRecordStore
   @Override
   public int deleteRecords(final Query query) {
     final PathName tablePath = query.getTablePath();
+    TableRecordStoreWriteBehind.flush(this, tablePath);
     RecordDefinition recordDefinition = query.getRecordDefinition();
     if (recordDefinition == null) {
       if (tablePath != null) {
@@ -274,7 +277,12 @@ public abstract class AbstractJdbcRecordStore extends AbstractRecordStore
         final PreparedStatement statement = connection.prepareStatement(sql)) {
 
         setPreparedStatementParameters(statement, query);
-        return statement.executeUpdate();
+        final int count = statement.executeUpdate();
+        final RecordStoreRecordCache recordCache = getRecordCache();
+        if (recordCache != null && recordDefinition != null) {
+          recordCache.invalidate(recordDefinition.getPathName());
+        }
+        return count;
       } catch (final SQLException e) {
         transaction.setRollbackOnly();
         throw new RuntimeException("Unable to delete : " + sql, e);
@@ -388,6 +396,7 @@ public abstract class AbstractJdbcRecordStore extends AbstractRecordStore
     if (query == null) {
       return 0;
     } else {
+      TableRecordStoreWriteBehind.flush(this, query.getTablePath());
       final TableReference table = query.getTable();
       query = query.clone(table, table);
       query.setSql(null);
@@ -718,6 +727,7 @@ public abstract class AbstractJdbcRecordStore extends AbstractRecordStore
 
   @Override
   public RecordIterator newIterator(final Query query, final Map<String, Object> properties) {
+    TableRecordStoreWriteBehind.flush(this, query.getTablePath());
     return new JdbcQueryIterator(this, query, properties);
   }
 
@@ -754,6 +764,22 @@ public abstract class AbstractJdbcRecordStore extends AbstractRecordStore
     return reader;
   }
 
+  /**
+   * Create a writer that writes the records on a separate thread. Must be
+   * called within a transaction.
+   *
+   * @param recordDefinition The record definition.
+   * @param throwExceptions True if the first error stops the writer.
+   * @param queueSize The maximum number of batches waiting to be written.
+   * @return The writer.
+   */
+  public JdbcAsyncRecordWriter newAsyncRecordWriter(final RecordDefinitionProxy recordDefinition,
+    final boolean throwExceptions, final int queueSize) {
+    final JdbcRecordWriter writer = newRecordWriter(recordDefinition, this.batchSize);
+    writer.setThrowExceptions(throwExceptions);
+    return new JdbcAsyncRecordWriter(writer, queueSize);
+  }
+
   @Override
   public RecordWriter newRecordWriter(final boolean throwExceptions) {
     if (TransactionSynchronizationManager.isSynchronizationActive()) {
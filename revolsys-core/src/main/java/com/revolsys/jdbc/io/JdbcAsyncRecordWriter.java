@@ -0,0 +1,206 @@
+package com.revolsys.jdbc.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jeometry.common.exception.Exceptions;
+import org.jeometry.common.logging.Logs;
+
+import com.revolsys.io.AbstractRecordWriter;
+import com.revolsys.parallel.NamedThreadFactory;
+import com.revolsys.parallel.ThreadInterruptedException;
+import com.revolsys.parallel.channel.Channel;
+import com.revolsys.parallel.channel.ClosedException;
+import com.revolsys.parallel.channel.store.Buffer;
+import com.revolsys.record.Record;
+
+/**
+ * <p>
+ * A record writer that writes the records using a {@link JdbcRecordWriter} on
+ * a separate thread so that reading and converting the records overlaps with
+ * executing the JDBC batches.
+ * </p>
+ * <p>
+ * The records are collected into batches of the writer's batch size and
+ * passed to the writer thread using a bounded queue. If the queue is full
+ * {@link #write(Record)} blocks until the writer thread catches up. The
+ * records are written in the order they were written to this writer. The
+ * records must not be modified after they are written.
+ * </p>
+ * <p>
+ * If {@link JdbcRecordWriter#isThrowExceptions()} is true the first error
+ * stops the writer and is thrown from the next call to write, flush or close.
+ * Otherwise errors are logged and the remaining records are written.
+ * </p>
+ */
+public class JdbcAsyncRecordWriter extends AbstractRecordWriter {
+  private static final NamedThreadFactory THREAD_FACTORY = new NamedThreadFactory(
+    Thread.NORM_PRIORITY, "jdbc-writer");
+
+  private List<Record> batch;
+
+  private final int batchSize;
+
+  private final Channel<List<Record>> channel;
+
+  private boolean closed = false;
+
+  private long completedCount = 0;
+
+  private volatile Throwable error;
+
+  private final Object monitor = new Object();
+
+  private long submittedCount = 0;
+
+  private Thread thread;
+
+  private final JdbcRecordWriter writer;
+
+  /**
+   * Construct a new writer. Must be called in the transaction the records are
+   * written in.
+   *
+   * @param writer The writer to write the records to.
+   * @param queueSize The maximum number of batches waiting to be written.
+   */
+  public JdbcAsyncRecordWriter(final JdbcRecordWriter writer, final int queueSize) {
+    super(writer.getRecordDefinition());
+    this.writer = writer;
+    final int batchSize = writer.getBatchSize();
+    if (batchSize > 0) {
+      this.batchSize = batchSize;
+    } else {
+      this.batchSize = 100;
+    }
+    this.batch = new ArrayList<>(this.batchSize);
+    this.channel = new Channel<>(new Buffer<>(Math.max(1, queueSize)));
+    this.channel.writeConnect();
+    this.thread = THREAD_FACTORY.newThread(this::run);
+    this.thread.start();
+  }
+
+  private void checkError() {
+    final Throwable error = this.error;
+    if (error != null) {
+      throw Exceptions.wrap("Unable to write", error);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (!this.closed) {
+      try {
+        flush();
+      } finally {
+        this.closed = true;
+        this.channel.writeDisconnect();
+        try {
+          this.thread.join();
+        } catch (final InterruptedException e) {
+          throw new ThreadInterruptedException(e);
+        } finally {
+          this.thread = null;
+          this.writer.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Wait for the writer thread to write all the records and flush the
+   * {@link JdbcRecordWriter}.
+   */
+  @Override
+  public void flush() {
+    if (!this.closed) {
+      submitBatch();
+      synchronized (this.monitor) {
+        while (this.completedCount < this.submittedCount && this.thread.isAlive()) {
+          try {
+            this.monitor.wait();
+          } catch (final InterruptedException e) {
+            throw new ThreadInterruptedException(e);
+          }
+        }
+      }
+      checkError();
+      this.writer.flush();
+    }
+  }
+
+  public JdbcRecordWriter getWriter() {
+    return this.writer;
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        final List<Record> records = this.channel.read();
+        if (records != null) {
+          writeBatch(records);
+        }
+      }
+    } catch (final ClosedException e) {
+    } finally {
+      synchronized (this.monitor) {
+        this.monitor.notifyAll();
+      }
+    }
+  }
+
+  private void submitBatch() {
+    final List<Record> records = this.batch;
+    if (!records.isEmpty()) {
+      this.batch = new ArrayList<>(this.batchSize);
+      synchronized (this.monitor) {
+        this.submittedCount++;
+      }
+      this.channel.write(records);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return this.writer.toString();
+  }
+
+  @Override
+  public void write(final Record record) {
+    if (this.closed) {
+      throw new IllegalStateException("Writer is closed");
+    }
+    checkError();
+    this.batch.add(record);
+    if (this.batch.size() >= this.batchSize) {
+      submitBatch();
+    }
+  }
+
+  private void writeBatch(final List<Record> records) {
+    try {
+      if (this.error == null) {
+        final JdbcRecordWriter writer = this.writer;
+        final boolean throwExceptions = writer.isThrowExceptions();
+        for (final Record record : records) {
+          try {
+            writer.write(record);
+          } catch (final RuntimeException e) {
+            if (throwExceptions) {
+              throw e;
+            } else {
+              Logs.error(this, "Unable to write\n" + record, e);
+            }
+          }
+        }
+      }
+    } catch (final Throwable e) {
+      this.error = e;
+    } finally {
+      synchronized (this.monitor) {
+        this.completedCount++;
+        this.monitor.notifyAll();
+      }
+    }
+  }
+}
@@ -138,6 +138,20 @@ public interface JdbcDatabaseFactory extends RecordStoreFactory {
     return true;
   }
 
+  /**
+   * Construct a new pooled data source. The config must contain the url and can
+   * contain the user, password, minPoolSize, maxPoolSize (default 10),
+   * waitTimeout, validateConnection, inactivityTimeout and
+   * statementCacheSize. Statement pooling is off unless statementCacheSize
+   * is set, it is the maximum number of prepared statements open at the same
+   * time for each connection. As the pooled statements hold cursors on the
+   * server, it must be more than the statements a connection has open at
+   * once (e.g. a JdbcRecordWriter keeps 3 per table). Other values are set as
+   * properties on the data source.
+   *
+   * @param config The data source config.
+   * @return The data source.
+   */
   default DataSource newDataSource(final Map<String, ? extends Object> config) {
     try {
       final MapEx newConfig = JsonObject.hash(config);
@@ -178,6 +192,15 @@ public interface JdbcDatabaseFactory extends RecordStoreFactory {
       dataSource.setMinEvictableIdleTimeMillis(inactivityTimeout * 1000);
       dataSource.setTimeBetweenEvictionRunsMillis(inactivityTimeout * 1000);
 
+      // Opt-in cache of prepared statements for each connection, the least
+      // recently used idle statement is closed if the cache is full
+      final int statementCacheSize = newConfig.getInteger("statementCacheSize", 0);
+      newConfig.remove("statementCacheSize");
+      if (statementCacheSize > 0) {
+        dataSource.setPoolPreparedStatements(true);
+        dataSource.setMaxOpenPreparedStatements(statementCacheSize);
+      }
+
       for (final Entry<String, Object> property : newConfig.entrySet()) {
         final String name = property.getKey();
         final Object value = property.getValue();
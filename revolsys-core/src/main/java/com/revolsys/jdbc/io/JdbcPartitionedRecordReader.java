@@ -0,0 +1,433 @@
+package com.revolsys.jdbc.io;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import org.jeometry.common.exception.Exceptions;
+
+import com.revolsys.collection.iterator.AbstractIterator;
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.jdbc.JdbcConnection;
+import com.revolsys.parallel.NamedThreadFactory;
+import com.revolsys.parallel.channel.Channel;
+import com.revolsys.parallel.channel.ChannelOutput;
+import com.revolsys.parallel.channel.ClosedException;
+import com.revolsys.parallel.channel.store.Buffer;
+import com.revolsys.record.Record;
+import com.revolsys.record.io.RecordReader;
+import com.revolsys.record.query.Condition;
+import com.revolsys.record.query.Q;
+import com.revolsys.record.query.Query;
+import com.revolsys.record.query.SqlCondition;
+import com.revolsys.record.query.Value;
+import com.revolsys.record.query.functions.EnvelopeIntersects;
+import com.revolsys.record.schema.FieldDefinition;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.transaction.Transaction;
+import com.revolsys.transaction.TransactionOptions;
+
+/**
+ * <p>
+ * Read the records for a query by splitting it into partitions which are read
+ * concurrently, each over its own connection, and merged into a single
+ * reader. The records are returned in the order they are read, not the order
+ * of the query.
+ * </p>
+ * <p>
+ * The partitions are defined by adding conditions using
+ * {@link #addPartition(Condition)}, or one of the helper methods
+ * {@link #addIdRangePartitions(int)} (ranges of a single numeric primary key)
+ * or {@link #addGridPartitions(BoundingBox, int, int)} (a grid over the
+ * geometry field). If no partitions are added then the id range partitions are
+ * used, or a single partition for the whole query if the table doesn't have a
+ * single numeric id field. Each partition is combined with the query's where
+ * condition.
+ * </p>
+ * <p>
+ * The query's offset and limit are applied to the merged records, not to each
+ * partition. As the records are merged in the order they are read, the records
+ * skipped by the offset are not in any defined order unless there is a single
+ * partition without a filter, in which case the partition query uses the offset
+ * and limit directly.
+ * </p>
+ * <p>
+ * At most {@link #getThreadCount()} partitions are read at once so the number
+ * of connections used from the pool is bounded.
+ * </p>
+ */
+public class JdbcPartitionedRecordReader extends AbstractIterator<Record> implements RecordReader {
+
+  private static class Partition {
+    private final Condition condition;
+
+    private final Predicate<Record> filter;
+
+    private Partition(final Condition condition, final Predicate<Record> filter) {
+      this.condition = condition;
+      this.filter = filter;
+    }
+  }
+
+  private Channel<Record> channel;
+
+  private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+  private ExecutorService executor;
+
+  /** The number of records still to return from the merged records. */
+  private int limit = Integer.MAX_VALUE;
+
+  /** The number of merged records still to skip. */
+  private int offset;
+
+  private final List<Partition> partitions = new ArrayList<>();
+
+  private Query query;
+
+  private RecordDefinition recordDefinition;
+
+  private JdbcRecordStore recordStore;
+
+  private int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+  public JdbcPartitionedRecordReader(final JdbcRecordStore recordStore, final Query query) {
+    this.recordStore = recordStore;
+    this.query = query;
+    RecordDefinition recordDefinition = query.getRecordDefinition();
+    if (recordDefinition == null) {
+      recordDefinition = recordStore.getRecordDefinition(query.getTablePath());
+    }
+    this.recordDefinition = recordDefinition;
+  }
+
+  /**
+   * Add partitions for the cells of a grid over the bounding box using an
+   * envelope intersects condition on the geometry field. A record is only
+   * returned by the cell that contains the minimum x,y of the geometry's
+   * bounding box (clamped to the grid) so records that intersect more than one
+   * cell are not duplicated. Records with a null geometry or outside the
+   * bounding box are not returned.
+   *
+   * @param boundingBox The extent of the grid.
+   * @param columnCount The number of grid columns.
+   * @param rowCount The number of grid rows.
+   * @return this
+   */
+  public JdbcPartitionedRecordReader addGridPartitions(final BoundingBox boundingBox,
+    final int columnCount, final int rowCount) {
+    final FieldDefinition geometryField = this.recordDefinition.getGeometryField();
+    if (geometryField == null) {
+      throw new IllegalArgumentException(
+        "Grid partitions require a geometry field: " + this.query.getTablePath());
+    }
+    final String geometryFieldName = geometryField.getName();
+    final GeometryFactory geometryFactory = boundingBox.getGeometryFactory();
+    final double minX = boundingBox.getMinX();
+    final double minY = boundingBox.getMinY();
+    final double width = boundingBox.getWidth() / columnCount;
+    final double height = boundingBox.getHeight() / rowCount;
+    for (int row = 0; row < rowCount; row++) {
+      for (int column = 0; column < columnCount; column++) {
+        final double cellMinX = minX + column * width;
+        final double cellMinY = minY + row * height;
+        final double cellMaxX = minX + (column + 1) * width;
+        final double cellMaxY = minY + (row + 1) * height;
+        final BoundingBox cell = geometryFactory.newBoundingBox(cellMinX, cellMinY, cellMaxX,
+          cellMaxY);
+        final Value value = Value.newValue(geometryField, cell, true);
+        final Condition condition = new EnvelopeIntersects(geometryField, value);
+        final int cellColumn = column;
+        final int cellRow = row;
+        addPartition(condition, record -> {
+          final Geometry geometry = record.getValue(geometryFieldName);
+          if (geometry == null) {
+            return false;
+          } else {
+            final BoundingBox geometryBoundingBox = geometry.getBoundingBox()
+              .bboxToCs(geometryFactory);
+            final int geometryColumn = getGridIndex(geometryBoundingBox.getMinX(), minX, width,
+              columnCount);
+            final int geometryRow = getGridIndex(geometryBoundingBox.getMinY(), minY, height,
+              rowCount);
+            return geometryColumn == cellColumn && geometryRow == cellRow;
+          }
+        });
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Add partitions for equal ranges of the single numeric id field between
+   * the minimum and maximum id values matching the query. If the table has a
+   * composite or non-numeric id a single partition for the whole query is
+   * added instead, so the records are read sequentially.
+   *
+   * @param partitionCount The number of partitions.
+   * @return this
+   */
+  public JdbcPartitionedRecordReader addIdRangePartitions(final int partitionCount) {
+    final List<FieldDefinition> idFields = this.recordDefinition.getIdFields();
+    if (idFields.size() != 1
+      || !Number.class.isAssignableFrom(idFields.get(0).getTypeClass())) {
+      return addPartition(null);
+    }
+    final FieldDefinition idField = idFields.get(0);
+    final StringBuilder columnName = new StringBuilder();
+    idField.appendColumnName(columnName);
+
+    final Query rangeQuery = newPartitionQuery();
+    rangeQuery.clearOrderBy();
+    rangeQuery.setSelect(Q.sql("min(" + columnName + "), max(" + columnName + ")"));
+    final String sql = rangeQuery.getSelectSql();
+    long minId;
+    long maxId;
+    try (
+      Transaction transaction = this.recordStore
+        .newTransaction(TransactionOptions.REQUIRED_READONLY);
+      JdbcConnection connection = this.recordStore.getJdbcConnection()) {
+      try (
+        final PreparedStatement statement = connection.prepareStatement(sql)) {
+        this.recordStore.setPreparedStatementParameters(statement, rangeQuery);
+        try (
+          final ResultSet resultSet = statement.executeQuery()) {
+          if (resultSet.next()) {
+            minId = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+              return this;
+            }
+            maxId = resultSet.getLong(2);
+          } else {
+            return this;
+          }
+        }
+      } catch (final SQLException e) {
+        throw connection.getException("addIdRangePartitions", sql, e);
+      }
+    }
+
+    final long range = maxId - minId + 1;
+    final long step = Math.max(1, (range + partitionCount - 1) / partitionCount);
+    for (long start = minId; start <= maxId; start += step) {
+      final long end = start + step;
+      final SqlCondition condition = new SqlCondition(
+        columnName + " >= ? AND " + columnName + " < ?", start, end);
+      addPartition(condition);
+      if (end < start) {
+        // overflow
+        break;
+      }
+    }
+    return this;
+  }
+
+  public JdbcPartitionedRecordReader addPartition(final Condition condition) {
+    return addPartition(condition, null);
+  }
+
+  /**
+   * Add a partition. Only records matching the filter will be returned. This
+   * can be used to remove duplicates if the partitions overlap.
+   *
+   * @param condition The condition added to the query's where condition, or
+   *          null for all the records matching the query.
+   * @param filter The filter to apply to the records, or null for all records.
+   * @return this
+   */
+  public JdbcPartitionedRecordReader addPartition(final Condition condition,
+    final Predicate<Record> filter) {
+    this.partitions.add(new Partition(condition, filter));
+    return this;
+  }
+
+  @Override
+  protected void closeDo() {
+    final ExecutorService executor = this.executor;
+    if (executor != null) {
+      this.executor = null;
+      final Channel<Record> channel = this.channel;
+      if (channel != null) {
+        channel.close();
+      }
+      executor.shutdownNow();
+    }
+    this.channel = null;
+    this.partitions.clear();
+    this.recordStore = null;
+    this.query = null;
+  }
+
+  private int getGridIndex(final double value, final double min, final double size,
+    final int count) {
+    final int index = (int)Math.floor((value - min) / size);
+    if (index < 0) {
+      return 0;
+    } else if (index >= count) {
+      return count - 1;
+    } else {
+      return index;
+    }
+  }
+
+  @Override
+  protected Record getNext() throws NoSuchElementException {
+    try {
+      while (this.limit > 0) {
+        final Record record = this.channel.read();
+        if (record != null) {
+          if (this.offset > 0) {
+            this.offset--;
+          } else {
+            this.limit--;
+            return record;
+          }
+        }
+      }
+    } catch (final ClosedException e) {
+    }
+    final Throwable error = this.error.get();
+    if (error != null) {
+      throw Exceptions.wrap("Error reading " + this.query, error);
+    }
+    throw new NoSuchElementException();
+  }
+
+  public int getPartitionCount() {
+    return this.partitions.size();
+  }
+
+  @Override
+  public RecordDefinition getRecordDefinition() {
+    return this.recordDefinition;
+  }
+
+  @Override
+  public JdbcRecordStore getRecordStore() {
+    return this.recordStore;
+  }
+
+  public int getThreadCount() {
+    return this.threadCount;
+  }
+
+  @Override
+  protected void initDo() {
+    if (this.partitions.isEmpty()) {
+      addIdRangePartitions(this.threadCount * 4);
+    }
+    this.channel = new Channel<>(new Buffer<>(1000));
+    final NamedThreadFactory threadFactory = new NamedThreadFactory(Thread.NORM_PRIORITY,
+      "jdbc-partition");
+    final int threadCount = Math.min(this.threadCount, Math.max(1, this.partitions.size()));
+    this.executor = Executors.newFixedThreadPool(threadCount, threadFactory);
+    for (int i = 0; i < this.partitions.size(); i++) {
+      this.channel.writeConnect();
+    }
+    if (this.partitions.isEmpty()) {
+      this.channel.writeConnect();
+      this.channel.writeDisconnect();
+    }
+    final int queryOffset = this.query.getOffset();
+    final int queryLimit = this.query.getLimit();
+    final boolean pushDown = this.partitions.size() == 1 && this.partitions.get(0).filter == null;
+    if (!pushDown) {
+      this.offset = queryOffset;
+      this.limit = queryLimit;
+    }
+    for (final Partition partition : this.partitions) {
+      final Query partitionQuery;
+      if (pushDown) {
+        partitionQuery = this.query.clone();
+      } else {
+        partitionQuery = newPartitionQuery();
+        if (partition.filter == null && queryLimit != Integer.MAX_VALUE) {
+          // A partition can't contribute more than this to the merged records
+          partitionQuery.setLimit((int)Math.min(Integer.MAX_VALUE, (long)queryOffset + queryLimit));
+        }
+      }
+      final Condition condition = partition.condition;
+      if (condition != null) {
+        partitionQuery.and(condition.clone());
+      }
+      this.executor.execute(() -> readPartition(partitionQuery, partition.filter));
+    }
+    this.executor.shutdown();
+  }
+
+  /**
+   * Clone the query without the offset and limit, which are applied to the
+   * merged records.
+   */
+  private Query newPartitionQuery() {
+    final Query query = this.query.clone();
+    query.setOffset(0);
+    query.setLimit(-1);
+    return query;
+  }
+
+  private void readPartition(final Query query, final Predicate<Record> filter) {
+    final Channel<Record> channel = this.channel;
+    try {
+      if (channel != null && this.error.get() == null) {
+        try (
+          Transaction transaction = this.recordStore
+            .newTransaction(TransactionOptions.REQUIRED_READONLY);
+          RecordReader reader = this.recordStore.getRecords(query)) {
+          for (final Record record : reader) {
+            if (filter == null || filter.test(record)) {
+              channel.write(record);
+            }
+          }
+        }
+      }
+    } catch (final ClosedException e) {
+    } catch (final Throwable e) {
+      if (this.error.compareAndSet(null, e) && channel != null) {
+        // Stop the other partitions and the reader
+        channel.close();
+      }
+    } finally {
+      if (channel != null) {
+        channel.writeDisconnect();
+      }
+    }
+  }
+
+  public JdbcPartitionedRecordReader setThreadCount(final int threadCount) {
+    this.threadCount = Math.max(1, threadCount);
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(this.query);
+  }
+
+  /**
+   * Write all the records to the channel, disconnecting from the channel once
+   * all the records have been written.
+   *
+   * @param out The channel to write to.
+   */
+  public void writeTo(final ChannelOutput<Record> out) {
+    out.writeConnect();
+    try {
+      for (final Record record : this) {
+        out.write(record);
+      }
+    } finally {
+      out.writeDisconnect();
+      close();
+    }
+  }
+}
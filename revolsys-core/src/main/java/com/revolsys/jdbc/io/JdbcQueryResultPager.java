@@ -96,8 +96,21 @@ public class JdbcQueryResultPager implements ResultPager<Record> {
   }
 
   protected ResultSet createResultSet(final PreparedStatement statement) throws SQLException {
+    return createResultSet(statement, this.query);
+  }
+
+  /**
+   * Execute the statement setting the parameters from the query, which may be
+   * a modified copy of this pager's query (e.g. with extra conditions for a
+   * page).
+   *
+   * @param statement The statement to execute.
+   * @param query The query to get the parameters from.
+   * @return The result set.
+   */
+  protected ResultSet createResultSet(final PreparedStatement statement, final Query query)
+    throws SQLException {
     final JdbcRecordStore recordStore = this.recordStore;
-    final Query query = this.query;
     final ResultSet resultSet = recordStore.getResultSet(statement, query);
     final PathName tableName = query.getTablePath();
     this.recordDefinition = query.getRecordDefinition();
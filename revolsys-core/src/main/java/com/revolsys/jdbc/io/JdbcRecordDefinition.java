@@ -1,17 +1,33 @@
 package com.revolsys.jdbc.io;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.jeometry.common.exception.Exceptions;
 import org.jeometry.common.io.PathName;
 
+import com.revolsys.record.query.Query;
 import com.revolsys.record.schema.RecordDefinitionImpl;
+import com.revolsys.record.schema.RecordStore;
 
 public class JdbcRecordDefinition extends RecordDefinitionImpl {
 
+  /** Limit on the SQL cached, as query shapes (e.g. OR lists) can vary. */
+  private static final int MAX_SQL_CACHE_SIZE = 256;
+
   private final String dbTableName;
 
   private final String dbTableQualifiedName;
 
   private boolean hasGeneratedFields;
 
+  /** SQL generated for this table, cleared if the fields change. */
+  private final Map<String, String> sqlCache = new ConcurrentHashMap<>();
+
+  private int sqlCacheFieldCount = -1;
+
   public JdbcRecordDefinition(final JdbcRecordStoreSchema schema, final PathName pathName,
     final String dbTableName) {
     super(schema, pathName);
@@ -25,6 +41,24 @@ public class JdbcRecordDefinition extends RecordDefinitionImpl {
     }
   }
 
+  /**
+   * Append the cached select list of all the fields. The select list doesn't
+   * depend on the query so it is only generated once.
+   */
+  @Override
+  public void appendSelectAll(final Query query, final Appendable sql) {
+    final String selectAll = getSql("selectAll", () -> {
+      final StringBuilder selectSql = new StringBuilder();
+      super.appendSelectAll(query, selectSql);
+      return selectSql.toString();
+    });
+    try {
+      sql.append(selectAll);
+    } catch (final IOException e) {
+      throw Exceptions.wrap(e);
+    }
+  }
+
   public String getDbSchemaName() {
     final JdbcRecordStoreSchema schema = getSchema();
     return schema.getDbName();
@@ -49,6 +83,37 @@ public class JdbcRecordDefinition extends RecordDefinitionImpl {
     return schema.getQuotedDbName();
   }
 
+  /**
+   * Get the SQL with the key from the cache, generating it using the factory
+   * if it isn't cached. The hits and misses are recorded in the record store's
+   * statistics.
+   *
+   * @param key The key, which must include any settings the SQL depends on.
+   * @param factory The factory to generate the SQL.
+   * @return The SQL.
+   */
+  public String getSql(final String key, final Supplier<String> factory) {
+    final int fieldCount = getFieldCount();
+    if (this.sqlCacheFieldCount != fieldCount) {
+      this.sqlCache.clear();
+      this.sqlCacheFieldCount = fieldCount;
+    }
+    String sql = this.sqlCache.get(key);
+    final RecordStore recordStore = getRecordStore();
+    if (sql == null) {
+      sql = factory.get();
+      if (this.sqlCache.size() < MAX_SQL_CACHE_SIZE) {
+        this.sqlCache.put(key, sql);
+      }
+      if (recordStore != null) {
+        recordStore.addStatistic("SQL Cache Miss", getPath(), 1);
+      }
+    } else if (recordStore != null) {
+      recordStore.addStatistic("SQL Cache Hit", getPath(), 1);
+    }
+    return sql;
+  }
+
   @Override
   public String getTableAlias() {
     final String tableAlias = super.getTableAlias();
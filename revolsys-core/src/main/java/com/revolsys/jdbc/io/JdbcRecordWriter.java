@@ -37,6 +37,8 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
 
   private boolean flushBetweenTypes = false;
 
+  private String insertHint;
+
   private String label;
 
   private JdbcRecordDefinition lastRecordDefinition;
@@ -198,6 +200,7 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
     setIdEqualsValues(statement, 1, recordDefinition, record);
     data.executeUpdate();
     this.recordStore.addStatistic("Delete", record);
+    this.recordStore.invalidateRecordCache(record);
   }
 
   @Override
@@ -240,6 +243,10 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
     return this.batchSize;
   }
 
+  public JdbcConnection getConnection() {
+    return this.connection;
+  }
+
   protected synchronized LongCounter getCounter(final JdbcRecordDefinition recordDefinition) {
     LongCounter counter = this.typeCountMap.get(recordDefinition);
     if (counter == null) {
@@ -250,83 +257,18 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
   }
 
   private String getDeleteSql(final JdbcRecordDefinition recordDefinition) {
-    final List<FieldDefinition> idFields = recordDefinition.getIdFields();
-    if (idFields.isEmpty()) {
-      throw new RuntimeException("No primary key found for: " + recordDefinition);
-    } else {
-      final String tableName = recordDefinition.getDbTableQualifiedName();
-      final StringBuilder sqlBuffer = new StringBuilder();
-      if (this.sqlPrefix != null) {
-        sqlBuffer.append(this.sqlPrefix);
-      }
-      sqlBuffer.append("delete ");
-      sqlBuffer.append(" from ");
-      sqlBuffer.append(tableName);
-      sqlBuffer.append(" where ");
-      appendIdEquals(sqlBuffer, idFields);
-      sqlBuffer.append(" ");
-      if (this.sqlSuffix != null) {
-        sqlBuffer.append(this.sqlSuffix);
-      }
-      return sqlBuffer.toString();
-    }
+    final String key = getSqlCacheKey("delete");
+    return recordDefinition.getSql(key, () -> newDeleteSql(recordDefinition));
   }
 
   private String getInsertSql(final JdbcRecordDefinition recordDefinition,
     final boolean generatePrimaryKey) {
-    final JdbcRecordStore recordStore = this.recordStore;
-    final String tableName = recordDefinition.getDbTableQualifiedName();
-    final boolean hasRowIdField = recordStore.isIdFieldRowid(recordDefinition);
-    final StringBuilder sqlBuffer = new StringBuilder();
-    if (this.sqlPrefix != null) {
-      sqlBuffer.append(this.sqlPrefix);
-    }
-    sqlBuffer.append("insert ");
-
-    sqlBuffer.append(" into ");
-    sqlBuffer.append(tableName);
-    sqlBuffer.append(" (");
-    boolean first = true;
-    for (final FieldDefinition fieldDefinition : recordDefinition.getFields()) {
-      final JdbcFieldDefinition jdbcField = (JdbcFieldDefinition)fieldDefinition;
-      if (!jdbcField.isGenerated()) {
-        if (!(hasRowIdField && fieldDefinition.isIdField())) {
-          if (first) {
-            first = false;
-          } else {
-            sqlBuffer.append(',');
-          }
-          fieldDefinition.appendColumnName(sqlBuffer, this.quoteColumnNames);
-        }
-      }
-    }
+    final String key = getSqlCacheKey("insert " + generatePrimaryKey);
+    return recordDefinition.getSql(key, () -> newInsertSql(recordDefinition, generatePrimaryKey));
+  }
 
-    sqlBuffer.append(") VALUES (");
-    first = true;
-    for (final FieldDefinition fieldDefinition : recordDefinition.getFields()) {
-      final JdbcFieldDefinition jdbcField = (JdbcFieldDefinition)fieldDefinition;
-      if (!jdbcField.isGenerated()) {
-        final boolean idField = fieldDefinition.isIdField();
-        if (!(hasRowIdField && idField)) {
-          if (first) {
-            first = false;
-          } else {
-            sqlBuffer.append(',');
-          }
-          if (idField && generatePrimaryKey) {
-            final String primaryKeySql = recordStore.getGeneratePrimaryKeySql(recordDefinition);
-            sqlBuffer.append(primaryKeySql);
-          } else {
-            jdbcField.addInsertStatementPlaceHolder(sqlBuffer, generatePrimaryKey);
-          }
-        }
-      }
-    }
-    sqlBuffer.append(")");
-    if (this.sqlSuffix != null) {
-      sqlBuffer.append(this.sqlSuffix);
-    }
-    return sqlBuffer.toString();
+  public String getInsertHint() {
+    return this.insertHint;
   }
 
   public String getLabel() {
@@ -352,6 +294,15 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
     return (R)this.recordStore;
   }
 
+  /**
+   * Get the key for the SQL cache in {@link JdbcRecordDefinition}, including
+   * the settings of this writer that change the generated SQL.
+   */
+  private String getSqlCacheKey(final String type) {
+    return type + '\n' + this.sqlPrefix + '\n' + this.sqlSuffix + '\n' + this.insertHint + '\n'
+      + this.quoteColumnNames;
+  }
+
   public String getSqlPrefix() {
     return this.sqlPrefix;
   }
@@ -361,45 +312,8 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
   }
 
   private String getUpdateSql(final JdbcRecordDefinition recordDefinition) {
-    final List<FieldDefinition> idFields = recordDefinition.getIdFields();
-    if (idFields.isEmpty()) {
-      throw new RuntimeException("No primary key found for: " + recordDefinition);
-    } else {
-      final String tableName = recordDefinition.getDbTableQualifiedName();
-      final StringBuilder sqlBuffer = new StringBuilder();
-      if (this.sqlPrefix != null) {
-        sqlBuffer.append(this.sqlPrefix);
-      }
-      sqlBuffer.append("update ");
-
-      sqlBuffer.append(tableName);
-      sqlBuffer.append(" set ");
-      boolean first = true;
-      for (final FieldDefinition fieldDefinition : recordDefinition.getFields()) {
-        if (!idFields.contains(fieldDefinition)) {
-          final JdbcFieldDefinition jdbcFieldDefinition = (JdbcFieldDefinition)fieldDefinition;
-          if (!jdbcFieldDefinition.isGenerated()) {
-            if (first) {
-              first = false;
-            } else {
-              sqlBuffer.append(", ");
-            }
-            jdbcFieldDefinition.appendColumnName(sqlBuffer, this.quoteColumnNames);
-            sqlBuffer.append(" = ");
-            jdbcFieldDefinition.addInsertStatementPlaceHolder(sqlBuffer, false);
-          }
-        }
-      }
-      sqlBuffer.append(" where ");
-      appendIdEquals(sqlBuffer, idFields);
-
-      sqlBuffer.append(" ");
-      if (this.sqlSuffix != null) {
-        sqlBuffer.append(this.sqlSuffix);
-      }
-      return sqlBuffer.toString();
-
-    }
+    final String key = getSqlCacheKey("update");
+    return recordDefinition.getSql(key, () -> newUpdateSql(recordDefinition));
   }
 
   protected void insert(final JdbcRecordDefinition recordDefinition, final Record record)
@@ -519,6 +433,131 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
     return this.throwExceptions;
   }
 
+  private String newDeleteSql(final JdbcRecordDefinition recordDefinition) {
+    final List<FieldDefinition> idFields = recordDefinition.getIdFields();
+    if (idFields.isEmpty()) {
+      throw new RuntimeException("No primary key found for: " + recordDefinition);
+    } else {
+      final String tableName = recordDefinition.getDbTableQualifiedName();
+      final StringBuilder sqlBuffer = new StringBuilder();
+      if (this.sqlPrefix != null) {
+        sqlBuffer.append(this.sqlPrefix);
+      }
+      sqlBuffer.append("delete ");
+      sqlBuffer.append(" from ");
+      sqlBuffer.append(tableName);
+      sqlBuffer.append(" where ");
+      appendIdEquals(sqlBuffer, idFields);
+      sqlBuffer.append(" ");
+      if (this.sqlSuffix != null) {
+        sqlBuffer.append(this.sqlSuffix);
+      }
+      return sqlBuffer.toString();
+    }
+  }
+
+  private String newInsertSql(final JdbcRecordDefinition recordDefinition,
+    final boolean generatePrimaryKey) {
+    final JdbcRecordStore recordStore = this.recordStore;
+    final String tableName = recordDefinition.getDbTableQualifiedName();
+    final boolean hasRowIdField = recordStore.isIdFieldRowid(recordDefinition);
+    final StringBuilder sqlBuffer = new StringBuilder();
+    if (this.sqlPrefix != null) {
+      sqlBuffer.append(this.sqlPrefix);
+    }
+    sqlBuffer.append("insert ");
+    if (this.insertHint != null) {
+      sqlBuffer.append(this.insertHint);
+    }
+
+    sqlBuffer.append(" into ");
+    sqlBuffer.append(tableName);
+    sqlBuffer.append(" (");
+    boolean first = true;
+    for (final FieldDefinition fieldDefinition : recordDefinition.getFields()) {
+      final JdbcFieldDefinition jdbcField = (JdbcFieldDefinition)fieldDefinition;
+      if (!jdbcField.isGenerated()) {
+        if (!(hasRowIdField && fieldDefinition.isIdField())) {
+          if (first) {
+            first = false;
+          } else {
+            sqlBuffer.append(',');
+          }
+          fieldDefinition.appendColumnName(sqlBuffer, this.quoteColumnNames);
+        }
+      }
+    }
+
+    sqlBuffer.append(") VALUES (");
+    first = true;
+    for (final FieldDefinition fieldDefinition : recordDefinition.getFields()) {
+      final JdbcFieldDefinition jdbcField = (JdbcFieldDefinition)fieldDefinition;
+      if (!jdbcField.isGenerated()) {
+        final boolean idField = fieldDefinition.isIdField();
+        if (!(hasRowIdField && idField)) {
+          if (first) {
+            first = false;
+          } else {
+            sqlBuffer.append(',');
+          }
+          if (idField && generatePrimaryKey) {
+            final String primaryKeySql = recordStore.getGeneratePrimaryKeySql(recordDefinition);
+            sqlBuffer.append(primaryKeySql);
+          } else {
+            jdbcField.addInsertStatementPlaceHolder(sqlBuffer, generatePrimaryKey);
+          }
+        }
+      }
+    }
+    sqlBuffer.append(")");
+    if (this.sqlSuffix != null) {
+      sqlBuffer.append(this.sqlSuffix);
+    }
+    return sqlBuffer.toString();
+  }
+
+  private String newUpdateSql(final JdbcRecordDefinition recordDefinition) {
+    final List<FieldDefinition> idFields = recordDefinition.getIdFields();
+    if (idFields.isEmpty()) {
+      throw new RuntimeException("No primary key found for: " + recordDefinition);
+    } else {
+      final String tableName = recordDefinition.getDbTableQualifiedName();
+      final StringBuilder sqlBuffer = new StringBuilder();
+      if (this.sqlPrefix != null) {
+        sqlBuffer.append(this.sqlPrefix);
+      }
+      sqlBuffer.append("update ");
+
+      sqlBuffer.append(tableName);
+      sqlBuffer.append(" set ");
+      boolean first = true;
+      for (final FieldDefinition fieldDefinition : recordDefinition.getFields()) {
+        if (!idFields.contains(fieldDefinition)) {
+          final JdbcFieldDefinition jdbcFieldDefinition = (JdbcFieldDefinition)fieldDefinition;
+          if (!jdbcFieldDefinition.isGenerated()) {
+            if (first) {
+              first = false;
+            } else {
+              sqlBuffer.append(", ");
+            }
+            jdbcFieldDefinition.appendColumnName(sqlBuffer, this.quoteColumnNames);
+            sqlBuffer.append(" = ");
+            jdbcFieldDefinition.addInsertStatementPlaceHolder(sqlBuffer, false);
+          }
+        }
+      }
+      sqlBuffer.append(" where ");
+      appendIdEquals(sqlBuffer, idFields);
+
+      sqlBuffer.append(" ");
+      if (this.sqlSuffix != null) {
+        sqlBuffer.append(this.sqlSuffix);
+      }
+      return sqlBuffer.toString();
+
+    }
+  }
+
   public void setFlushBetweenTypes(final boolean flushBetweenTypes) {
     this.flushBetweenTypes = flushBetweenTypes;
   }
@@ -533,6 +572,17 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
     return parameterIndex;
   }
 
+  /**
+   * Set the optimizer hint (e.g. <code>/*+ APPEND_VALUES *&#47;</code>) to
+   * include after the insert keyword. Must be set before the first record is
+   * written.
+   *
+   * @param insertHint The hint.
+   */
+  public void setInsertHint(final String insertHint) {
+    this.insertHint = insertHint;
+  }
+
   public void setLabel(final String label) {
     this.label = label;
   }
@@ -590,6 +640,7 @@ public class JdbcRecordWriter extends AbstractRecordWriter {
     parameterIndex = setIdEqualsValues(statement, parameterIndex, recordDefinition, record);
     data.executeUpdate();
     this.recordStore.addStatistic("Update", record);
+    this.recordStore.invalidateRecordCache(record);
   }
 
   @Override
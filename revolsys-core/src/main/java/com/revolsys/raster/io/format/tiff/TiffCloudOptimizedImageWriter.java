@@ -0,0 +1,378 @@
+package com.revolsys.raster.io.format.tiff;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.jeometry.common.exception.Exceptions;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.io.AbstractWriter;
+import com.revolsys.raster.GeoreferencedImage;
+import com.revolsys.raster.GeoreferencedImageWriter;
+import com.revolsys.raster.io.format.tiff.builder.TiffImageBuilderRgb;
+import com.revolsys.raster.io.format.tiff.code.TiffBaselineTag;
+import com.revolsys.raster.io.format.tiff.code.TiffCompression;
+import com.revolsys.raster.io.format.tiff.code.TiffExtensionTag;
+import com.revolsys.raster.io.format.tiff.code.TiffPrivateTag;
+import com.revolsys.raster.io.format.tiff.compression.TiffLzwOutputStream;
+import com.revolsys.spring.resource.Resource;
+
+/**
+ * <p>
+ * Write a {@link GeoreferencedImage} as a Cloud Optimized GeoTIFF. The image
+ * is written as 8-bit RGB (or RGBA if the image has alpha) tiles compressed
+ * using DEFLATE or LZW with the optional horizontal differencing predictor.
+ * </p>
+ * <p>
+ * Overviews are created by halving the image until it fits in a single tile.
+ * All the image file directories are written at the start of the file (full
+ * resolution first), followed by the tile data for the smallest overview
+ * through to the full resolution image. This allows clients to read the
+ * directories and then any tile using HTTP range requests.
+ * </p>
+ * <p>
+ * The overviews are created and the tiles are compressed in parallel.
+ * </p>
+ */
+public class TiffCloudOptimizedImageWriter extends AbstractWriter<GeoreferencedImage>
+  implements GeoreferencedImageWriter {
+
+  private static class ImageLevel {
+    private final BufferedImage image;
+
+    private final int[] pixels;
+
+    private final int width;
+
+    private final int height;
+
+    private ImageLevel(final BufferedImage image) {
+      this.image = image;
+      this.pixels = null;
+      this.width = image.getWidth();
+      this.height = image.getHeight();
+    }
+
+    private ImageLevel(final int[] pixels, final int width, final int height) {
+      this.image = null;
+      this.pixels = pixels;
+      this.width = width;
+      this.height = height;
+    }
+
+    private void getRgb(final int x, final int y, final int width, final int height,
+      final int[] rgb) {
+      if (this.image == null) {
+        for (int row = 0; row < height; row++) {
+          System.arraycopy(this.pixels, (y + row) * this.width + x, rgb, row * width, width);
+        }
+      } else {
+        this.image.getRGB(x, y, width, height, rgb, 0, width);
+      }
+    }
+
+    /**
+     * Create an overview half the size of this level by averaging each 2x2
+     * block of pixels.
+     */
+    private ImageLevel newOverview() {
+      final int overviewWidth = (this.width + 1) / 2;
+      final int overviewHeight = (this.height + 1) / 2;
+      final int[] overview = new int[overviewWidth * overviewHeight];
+      IntStream.range(0, overviewHeight).parallel().forEach(overviewY -> {
+        final int y = overviewY * 2;
+        final int rowCount = Math.min(2, this.height - y);
+        final int[] rows = new int[this.width * rowCount];
+        getRgb(0, y, this.width, rowCount, rows);
+        for (int overviewX = 0; overviewX < overviewWidth; overviewX++) {
+          final int x = overviewX * 2;
+          final int columnCount = Math.min(2, this.width - x);
+          int alpha = 0;
+          int red = 0;
+          int green = 0;
+          int blue = 0;
+          for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+              final int argb = rows[row * this.width + x + column];
+              alpha += argb >>> 24;
+              red += argb >> 16 & 0xff;
+              green += argb >> 8 & 0xff;
+              blue += argb & 0xff;
+            }
+          }
+          final int count = rowCount * columnCount;
+          final int half = count / 2;
+          alpha = (alpha + half) / count;
+          red = (red + half) / count;
+          green = (green + half) / count;
+          blue = (blue + half) / count;
+          overview[overviewY * overviewWidth + overviewX] = alpha << 24 | red << 16 | green << 8
+            | blue;
+        }
+      });
+      return new ImageLevel(overview, overviewWidth, overviewHeight);
+    }
+  }
+
+  /** Use BigTIFF if the uncompressed image and overviews may exceed 4GB. */
+  private static final long BIG_TIFF_SIZE = 0xF0000000L;
+
+  private TiffCompression compression = TiffCompression.ADOBE_DEFLATE;
+
+  private int deflateLevel = Deflater.DEFAULT_COMPRESSION;
+
+  private boolean predictor = true;
+
+  private final Resource resource;
+
+  private int tileSize = 512;
+
+  public TiffCloudOptimizedImageWriter(final Resource resource) {
+    this.resource = resource;
+  }
+
+  private byte[] compress(final byte[] bytes) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+    switch (this.compression) {
+      case NONE:
+        return bytes;
+      case LZW:
+        try (
+          OutputStream lzwOut = new TiffLzwOutputStream(out)) {
+          lzwOut.write(bytes);
+        }
+      break;
+      case ADOBE_DEFLATE:
+      case DEFLATE:
+        final Deflater deflater = new Deflater(this.deflateLevel);
+        try (
+          OutputStream deflateOut = new DeflaterOutputStream(out, deflater)) {
+          deflateOut.write(bytes);
+        } finally {
+          deflater.end();
+        }
+      break;
+      default:
+        throw new IllegalArgumentException(
+          "Compression " + this.compression + " not supported for writing");
+    }
+    return out.toByteArray();
+  }
+
+  public TiffCompression getCompression() {
+    return this.compression;
+  }
+
+  public int getDeflateLevel() {
+    return this.deflateLevel;
+  }
+
+  public int getTileSize() {
+    return this.tileSize;
+  }
+
+  private void initDirectory(final TiffDirectoryBuilder directory, final GeoreferencedImage image,
+    final boolean alpha, final boolean overview) {
+    directory.setTileSize(this.tileSize);
+    directory.setCompression(this.compression);
+    if (this.predictor && this.compression != TiffCompression.NONE) {
+      directory.setUnsignedShort(TiffExtensionTag.Predictor, 2);
+    }
+    if (alpha) {
+      directory.setBitsPerSample(8, 8, 8, 8);
+      // Unassociated alpha
+      directory.setUnsignedShort(TiffBaselineTag.ExtraSamples, 2);
+    }
+    if (overview) {
+      directory.setUnsignedInt(TiffBaselineTag.NewSubfileType, 1);
+    } else {
+      final BoundingBox boundingBox = image.getBoundingBox();
+      directory.setDouble(TiffPrivateTag.ModelPixelScaleTag, image.getResolutionX(),
+        image.getResolutionY(), 0);
+      directory.setDouble(TiffPrivateTag.ModelTiepointTag, 0, 0, 0, boundingBox.getMinX(),
+        boundingBox.getMaxY(), 0);
+
+      final GeometryFactory geometryFactory = image.getGeometryFactory();
+      final GeoTiffKeyDirectoryBuilder geoKeys = new GeoTiffKeyDirectoryBuilder()
+        .addCoordinateSystem(geometryFactory);
+      if (!geoKeys.isEmpty()) {
+        final short[] geoKeyDirectory = geoKeys.getGeoKeyDirectory();
+        final int[] geoKeyValues = new int[geoKeyDirectory.length];
+        for (int i = 0; i < geoKeyDirectory.length; i++) {
+          geoKeyValues[i] = geoKeyDirectory[i] & 0xffff;
+        }
+        directory.setUnsignedShort(TiffPrivateTag.GeoKeyDirectoryTag, geoKeyValues);
+
+        final double[] geoDoubleParams = geoKeys.getGeoDoubleParams();
+        if (geoDoubleParams.length > 0) {
+          directory.setDouble(TiffPrivateTag.GeoDoubleParamsTag, geoDoubleParams);
+        }
+        final String geoAsciiParams = geoKeys.getGeoAsciiParams();
+        if (geoAsciiParams.length() > 0) {
+          directory.setAscii(TiffPrivateTag.GeoAsciiParamsTag, geoAsciiParams);
+        }
+      }
+    }
+  }
+
+  public boolean isPredictor() {
+    return this.predictor;
+  }
+
+  private byte[] newTile(final ImageLevel level, final int tileIndex, final int samplesPerPixel) {
+    final int tileSize = this.tileSize;
+    final int tileCountX = (level.width + tileSize - 1) / tileSize;
+    final int x = tileIndex % tileCountX * tileSize;
+    final int y = tileIndex / tileCountX * tileSize;
+    final int width = Math.min(tileSize, level.width - x);
+    final int height = Math.min(tileSize, level.height - y);
+    final int[] rgb = new int[width * height];
+    level.getRgb(x, y, width, height, rgb);
+
+    // Partial tiles are padded to the full tile size
+    final int rowBytes = tileSize * samplesPerPixel;
+    final byte[] bytes = new byte[rowBytes * tileSize];
+    for (int row = 0; row < height; row++) {
+      int byteIndex = row * rowBytes;
+      for (int column = 0; column < width; column++) {
+        final int argb = rgb[row * width + column];
+        bytes[byteIndex++] = (byte)(argb >> 16);
+        bytes[byteIndex++] = (byte)(argb >> 8);
+        bytes[byteIndex++] = (byte)argb;
+        if (samplesPerPixel == 4) {
+          bytes[byteIndex++] = (byte)(argb >>> 24);
+        }
+      }
+    }
+    if (this.predictor && this.compression != TiffCompression.NONE) {
+      for (int row = 0; row < tileSize; row++) {
+        final int rowStart = row * rowBytes;
+        for (int i = rowStart + rowBytes - 1; i >= rowStart + samplesPerPixel; i--) {
+          bytes[i] -= bytes[i - samplesPerPixel];
+        }
+      }
+    }
+    try {
+      return compress(bytes);
+    } catch (final IOException e) {
+      throw Exceptions.wrap("Unable to compress tile " + tileIndex + " for " + this.resource, e);
+    }
+  }
+
+  public void setCompression(final TiffCompression compression) {
+    switch (compression) {
+      case NONE:
+      case LZW:
+      case ADOBE_DEFLATE:
+      case DEFLATE:
+        this.compression = compression;
+      break;
+      default:
+        throw new IllegalArgumentException(
+          "Compression " + compression + " not supported for writing");
+    }
+  }
+
+  /**
+   * Set the DEFLATE compression level 0-9 or -1 for the default level.
+   *
+   * @param deflateLevel The compression level.
+   */
+  public void setDeflateLevel(final int deflateLevel) {
+    this.deflateLevel = deflateLevel;
+  }
+
+  /**
+   * Set if the horizontal differencing predictor is used to improve the
+   * compression.
+   *
+   * @param predictor True if the predictor is used.
+   */
+  public void setPredictor(final boolean predictor) {
+    this.predictor = predictor;
+  }
+
+  /**
+   * Set the width and height of the tiles. Must be a multiple of 16.
+   *
+   * @param tileSize The tile size in pixels.
+   */
+  public void setTileSize(final int tileSize) {
+    if (tileSize <= 0 || tileSize % 16 != 0) {
+      throw new IllegalArgumentException("Tile size must be a multiple of 16: " + tileSize);
+    }
+    this.tileSize = tileSize;
+  }
+
+  @Override
+  public void write(final GeoreferencedImage image) {
+    final BufferedImage bufferedImage = image.getBufferedImage();
+    if (bufferedImage != null) {
+      final boolean alpha = bufferedImage.getColorModel().hasAlpha();
+      final int samplesPerPixel = alpha ? 4 : 3;
+      final int width = bufferedImage.getWidth();
+      final int height = bufferedImage.getHeight();
+      // Overviews add at most 1/3 to the size
+      final long rawSize = (long)width * height * samplesPerPixel * 4 / 3;
+
+      try (
+        TiffFileBuilder fileBuilder = new TiffFileBuilder(this.resource)) {
+        fileBuilder.setBigTiff(rawSize > BIG_TIFF_SIZE);
+        final List<TiffDirectoryBuilder> directories = new ArrayList<>();
+        int levelWidth = width;
+        int levelHeight = height;
+        while (true) {
+          final TiffDirectoryBuilder directory = fileBuilder
+            .newImage(TiffImageBuilderRgb.newBits(8), levelWidth, levelHeight);
+          initDirectory(directory, image, alpha, !directories.isEmpty());
+          directories.add(directory);
+          if (levelWidth <= this.tileSize && levelHeight <= this.tileSize) {
+            break;
+          } else {
+            levelWidth = (levelWidth + 1) / 2;
+            levelHeight = (levelHeight + 1) / 2;
+          }
+        }
+        fileBuilder.reserveDirectories();
+
+        final List<ImageLevel> levels = new ArrayList<>();
+        ImageLevel level = new ImageLevel(bufferedImage);
+        levels.add(level);
+        for (int i = 1; i < directories.size(); i++) {
+          level = level.newOverview();
+          levels.add(level);
+        }
+
+        // Smallest overview first so the full resolution tiles are last
+        final int batchSize = Runtime.getRuntime().availableProcessors() * 4;
+        for (int levelIndex = levels.size() - 1; levelIndex >= 0; levelIndex--) {
+          final ImageLevel tileLevel = levels.get(levelIndex);
+          final TiffDirectoryBuilder directory = directories.get(levelIndex);
+          final int tileCountX = (tileLevel.width + this.tileSize - 1) / this.tileSize;
+          final int tileCountY = (tileLevel.height + this.tileSize - 1) / this.tileSize;
+          final int tileCount = tileCountX * tileCountY;
+          for (int batchStart = 0; batchStart < tileCount; batchStart += batchSize) {
+            final int batchEnd = Math.min(tileCount, batchStart + batchSize);
+            final byte[][] tiles = IntStream.range(batchStart, batchEnd)
+              .parallel()
+              .mapToObj(tileIndex -> newTile(tileLevel, tileIndex, samplesPerPixel))
+              .toArray(byte[][]::new);
+            for (int i = 0; i < tiles.length; i++) {
+              final byte[] tile = tiles[i];
+              final long offset = fileBuilder.writeData(tile);
+              directory.setTile(batchStart + i, offset, tile.length);
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -9,12 +9,16 @@ import com.revolsys.raster.io.format.tiff.code.TiffExtensionTag;
 import com.revolsys.raster.io.format.tiff.code.TiffPhotogrametricInterpretation;
 import com.revolsys.raster.io.format.tiff.code.TiffTag;
 import com.revolsys.raster.io.format.tiff.directory.entry.AbstractTiffDirectoryEntry;
+import com.revolsys.raster.io.format.tiff.directory.entry.TiffDirectoryEntryAscii;
+import com.revolsys.raster.io.format.tiff.directory.entry.TiffDirectoryEntryDoubleArray;
 import com.revolsys.raster.io.format.tiff.directory.entry.TiffDirectoryEntryUnsignedIntArray;
 import com.revolsys.raster.io.format.tiff.directory.entry.TiffDirectoryEntryUnsignedLongArray;
 import com.revolsys.raster.io.format.tiff.directory.entry.TiffDirectoryEntryUnsignedShortArray;
 
 public class TiffDirectoryBuilder extends TiffDirectory {
 
+  private long directoryOffset = -1;
+
   private final TiffFileBuilder fileBuilder;
 
   private int writtenSize = 0;
@@ -45,6 +49,11 @@ public class TiffDirectoryBuilder extends TiffDirectory {
     return this.fileBuilder;
   }
 
+  @Override
+  public long getOffset() {
+    return this.directoryOffset;
+  }
+
   public int getSize() {
     final int recordCount = getEntryCount();
     if (isBigTiff()) {
@@ -73,6 +82,29 @@ public class TiffDirectoryBuilder extends TiffDirectory {
     return entry;
   }
 
+  /**
+   * Reserve the space in the file for this directory and the values of the
+   * entries that are not stored inline. All the entries must be set before
+   * the space is reserved.
+   */
+  void reserveSpace() {
+    this.writtenSize = getSize();
+    this.directoryOffset = this.fileBuilder.reserveSpace(this.writtenSize);
+    for (final TiffDirectoryEntry entry : getEntries()) {
+      if (!entry.isInline() && entry.getOffset() == -1) {
+        final int entrySize = entry.getSizeBytes();
+        // Values must start on a word boundary
+        final long offset = this.fileBuilder.reserveSpace(entrySize + entrySize % 2);
+        ((AbstractTiffDirectoryEntry<?>)entry).setOffset(offset);
+      }
+    }
+  }
+
+  public TiffDirectoryBuilder setAscii(final TiffTag tag, final String value) {
+    newEntryValue(tag, TiffDirectoryEntryAscii::new, value);
+    return this;
+  }
+
   public TiffDirectoryBuilder setBitsPerSample(final int... value) {
     setUnsignedShort(TiffBaselineTag.SamplesPerPixel, value.length);
     setUnsignedShort(TiffBaselineTag.BitsPerSample, value);
@@ -84,6 +116,11 @@ public class TiffDirectoryBuilder extends TiffDirectory {
     return this;
   }
 
+  public TiffDirectoryBuilder setDouble(final TiffTag tag, final double... value) {
+    newEntryValue(tag, TiffDirectoryEntryDoubleArray::new, value);
+    return this;
+  }
+
   public TiffDirectoryBuilder setImageHeight(final int height) {
     this.imageHeight = height;
     if (height < 1 << 16) {
@@ -111,6 +148,20 @@ public class TiffDirectoryBuilder extends TiffDirectory {
       photogrametricInterpretation.getId());
   }
 
+  /**
+   * Set the file offset and compressed size of a tile.
+   *
+   * @param tileIndex The index of the tile (row major order).
+   * @param offset The offset of the tile data in the file.
+   * @param byteCount The number of bytes in the tile data.
+   */
+  public void setTile(final int tileIndex, final long offset, final long byteCount) {
+    final long[] offsets = getEntry(TiffExtensionTag.TileOffsets).getValue();
+    offsets[tileIndex] = offset;
+    final long[] byteCounts = getEntry(TiffExtensionTag.TileByteCounts).getValue();
+    byteCounts[tileIndex] = byteCount;
+  }
+
   public TiffDirectoryBuilder setTileHeight(final int tileHeight) {
     this.tileHeight = tileHeight;
     setUnsignedShort(TiffExtensionTag.TileLength, tileHeight);
@@ -165,6 +216,10 @@ public class TiffDirectoryBuilder extends TiffDirectory {
     }
   }
 
+  void setOffset(final long offset) {
+    this.directoryOffset = offset;
+  }
+
   void writeDirectory(final ChannelWriter out) {
     this.writtenSize = getSize();
     final int recordCount = getEntryCount();
@@ -177,7 +232,7 @@ public class TiffDirectoryBuilder extends TiffDirectory {
       if (!entry.isInline()) {
         if (entry.getOffset() == -1) {
           final int entrySize = entry.getSizeBytes();
-          final long offset = this.fileBuilder.reserveSpace(entrySize);
+          final long offset = this.fileBuilder.reserveSpace(entrySize + entrySize % 2);
           ((AbstractTiffDirectoryEntry<?>)entry).setOffset(offset);
         }
       }
@@ -27,7 +27,11 @@ public class TiffFileBuilder implements BaseCloseable {
   private final ChannelWriter out;
 
   public TiffFileBuilder(final Path file) {
-    this.resource = Resource.getResource(file);
+    this(Resource.getResource(file));
+  }
+
+  public TiffFileBuilder(final Resource resource) {
+    this.resource = resource;
     this.out = this.resource.newChannelWriter();
   }
 
@@ -102,6 +106,25 @@ public class TiffFileBuilder implements BaseCloseable {
     return directories;
   }
 
+  /**
+   * Reserve the space for the header, all the directories and their entry
+   * values at the start of the file. Any data written after this using
+   * {@link #writeData(byte[])} will be after the directories. All the
+   * directories and their entries must be created before this is called.
+   */
+  public void reserveDirectories() {
+    if (this.size == 0) {
+      if (isBigTiff()) {
+        this.size = 16;
+      } else {
+        this.size = 8;
+      }
+    }
+    for (final TiffDirectoryBuilder directory : this.directories) {
+      directory.reserveSpace();
+    }
+  }
+
   long reserveSpace(final int size) {
     final long offset = this.size;
     this.size += size;
@@ -114,16 +137,22 @@ public class TiffFileBuilder implements BaseCloseable {
 
   public void setByteOrder(final ByteOrder byteOrder) {
     this.byteOrder = byteOrder;
+    this.out.setByteOrder(byteOrder);
   }
 
   private void writeDirectories(final ChannelWriter out) {
     for (final TiffDirectoryBuilder directory : this.directories) {
       long offset = directory.getOffset();
       if (offset == -1 && directory.getIndex() == 0) {
-        reserveSpace(4);
+        if (isBigTiff()) {
+          reserveSpace(8);
+        } else {
+          reserveSpace(4);
+        }
       }
       if (offset == -1 || directory.isSizeIncreased()) {
         offset = reserveSpace(directory.getSize());
+        directory.setOffset(offset);
       }
       writeOffsetOrCount(out, offset);
       out.seek(offset);
@@ -132,6 +161,19 @@ public class TiffFileBuilder implements BaseCloseable {
     writeOffsetOrCount(out, 0);
   }
 
+  /**
+   * Write the data (e.g. a compressed tile) at the end of the file.
+   *
+   * @param data The data to write.
+   * @return The offset the data was written at.
+   */
+  public long writeData(final byte[] data) {
+    final long offset = reserveSpace(data.length);
+    this.out.seek(offset);
+    this.out.putBytes(data);
+    return offset;
+  }
+
   private void writeDirectoryEntries(final ChannelWriter out) {
     for (final TiffDirectoryBuilder directory : this.directories) {
       directory.writeEntries(out);
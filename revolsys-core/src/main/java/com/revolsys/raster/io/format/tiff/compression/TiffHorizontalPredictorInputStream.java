@@ -0,0 +1,54 @@
+package com.revolsys.raster.io.format.tiff.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Undo the TIFF horizontal differencing predictor (Predictor=2) for 8-bit
+ * samples. Each sample after the first pixel in a row is stored as the
+ * difference from the same sample in the previous pixel.
+ */
+public class TiffHorizontalPredictorInputStream extends InputStream {
+
+  private int column = 0;
+
+  private final int[] history;
+
+  private final InputStream in;
+
+  private final int rowBytes;
+
+  public TiffHorizontalPredictorInputStream(final InputStream in, final int rowPixels,
+    final int samplesPerPixel) {
+    this.in = in;
+    this.rowBytes = rowPixels * samplesPerPixel;
+    this.history = new int[samplesPerPixel];
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.in.close();
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int raw = this.in.read();
+    if (raw == -1) {
+      return -1;
+    } else {
+      final int sampleIndex = this.column % this.history.length;
+      final int value;
+      if (this.column < this.history.length) {
+        value = raw;
+      } else {
+        value = raw + this.history[sampleIndex] & 0xff;
+      }
+      this.history[sampleIndex] = value;
+      this.column++;
+      if (this.column == this.rowBytes) {
+        this.column = 0;
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.revolsys.raster.io.format.tiff.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compress data using the TIFF variant of LZW compression. Codes are written
+ * most significant bit first and the code width is increased one code early,
+ * so the output can be read by {@link TiffLzwInputStream}.
+ */
+public class TiffLzwOutputStream extends OutputStream {
+
+  private static final int CODE_CLEAR = 256;
+
+  private static final int CODE_EOI = 257;
+
+  private static final int CODE_FIRST = 258;
+
+  private static final int CODE_MAX = 4094;
+
+  private static final int TABLE_SIZE = 5003;
+
+  private int bitCount = 0;
+
+  private int bits = 0;
+
+  private boolean closed = false;
+
+  private int codeWidth = 9;
+
+  private boolean firstCode = true;
+
+  private final OutputStream out;
+
+  private int nextCode = CODE_FIRST;
+
+  private int prefix = -1;
+
+  private final short[] tableCodes = new short[TABLE_SIZE];
+
+  /** Open addressing hash table of (prefix << 8 | byte) + 1 to code. */
+  private final int[] tableKeys = new int[TABLE_SIZE];
+
+  public TiffLzwOutputStream(final OutputStream out) throws IOException {
+    this.out = out;
+    writeCode(CODE_CLEAR);
+  }
+
+  private void clearTable() {
+    Arrays.fill(this.tableKeys, 0);
+    this.nextCode = CODE_FIRST;
+    this.codeWidth = 9;
+    this.firstCode = true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!this.closed) {
+      this.closed = true;
+      if (this.prefix != -1) {
+        writeCode(this.prefix);
+        if (!this.firstCode) {
+          // The reader adds a table entry after reading the last code
+          this.nextCode++;
+          updateCodeWidth();
+        }
+      }
+      writeCode(CODE_EOI);
+      if (this.bitCount > 0) {
+        this.out.write(this.bits << 8 - this.bitCount & 0xff);
+      }
+      this.out.close();
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.out.flush();
+  }
+
+  private void updateCodeWidth() {
+    if (this.nextCode == 512) {
+      this.codeWidth = 10;
+    } else if (this.nextCode == 1024) {
+      this.codeWidth = 11;
+    } else if (this.nextCode == 2048) {
+      this.codeWidth = 12;
+    }
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    final int value = b & 0xff;
+    if (this.prefix == -1) {
+      this.prefix = value;
+    } else {
+      final int key = (this.prefix << 8 | value) + 1;
+      int index = (key * 0x9E3779B1 >>> 1) % TABLE_SIZE;
+      while (true) {
+        final int tableKey = this.tableKeys[index];
+        if (tableKey == key) {
+          this.prefix = this.tableCodes[index];
+          return;
+        } else if (tableKey == 0) {
+          break;
+        } else {
+          index++;
+          if (index == TABLE_SIZE) {
+            index = 0;
+          }
+        }
+      }
+      writeCode(this.prefix);
+      if (this.firstCode) {
+        // The reader doesn't add a table entry for the first code after a clear
+        this.firstCode = false;
+      }
+      this.tableKeys[index] = key;
+      this.tableCodes[index] = (short)this.nextCode;
+      this.nextCode++;
+      if (this.nextCode == CODE_MAX) {
+        writeCode(CODE_CLEAR);
+        clearTable();
+      } else {
+        updateCodeWidth();
+      }
+      this.prefix = value;
+    }
+  }
+
+  @Override
+  public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+    for (int i = 0; i < length; i++) {
+      write(bytes[offset + i]);
+    }
+  }
+
+  private void writeCode(final int code) throws IOException {
+    this.bits = this.bits << this.codeWidth | code;
+    this.bitCount += this.codeWidth;
+    while (this.bitCount >= 8) {
+      this.bitCount -= 8;
+      this.out.write(this.bits >>> this.bitCount & 0xff);
+    }
+    this.bits &= (1 << this.bitCount) - 1;
+  }
+}
@@ -2,6 +2,7 @@ package com.revolsys.raster.io.format.tiff.directory.entry;
 
 import com.revolsys.io.channels.ChannelWriter;
 import com.revolsys.io.channels.DataReader;
+import com.revolsys.raster.io.format.tiff.TiffDirectory;
 import com.revolsys.raster.io.format.tiff.code.TiffFieldType;
 
 public class TiffDirectoryEntryAscii extends AbstractTiffDirectoryEntry<String> {
@@ -9,6 +10,11 @@ public class TiffDirectoryEntryAscii extends AbstractTiffDirectoryEntry<String>
   public TiffDirectoryEntryAscii() {
   }
 
+  public TiffDirectoryEntryAscii(final TiffDirectory directory, final String value) {
+    // The count includes the NUL terminator
+    super(directory, value, value.length() + 1);
+  }
+
   @Override
   public String getString() {
     return this.value;
@@ -26,6 +32,6 @@ public class TiffDirectoryEntryAscii extends AbstractTiffDirectoryEntry<String>
 
   @Override
   public void writeValueDo(final ChannelWriter out) {
-    out.putString(this.value, this.value.length());
+    out.putString(this.value, (int)this.count);
   }
 }
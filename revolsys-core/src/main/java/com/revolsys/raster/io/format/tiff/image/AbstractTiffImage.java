@@ -10,10 +10,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
 import java.util.zip.InflaterInputStream;
 
 import org.jeometry.common.exception.Exceptions;
@@ -24,6 +28,7 @@ import org.jeometry.common.number.Longs;
 
 import com.revolsys.geometry.model.BoundingBox;
 import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.io.BaseCloseable;
 import com.revolsys.io.channels.DataReader;
 import com.revolsys.raster.AbstractGeoreferencedImage;
 import com.revolsys.raster.GeoreferencedImageMapTile;
@@ -40,11 +45,13 @@ import com.revolsys.raster.io.format.tiff.compression.TiffCCITTFaxDecoderStream;
 import com.revolsys.raster.io.format.tiff.compression.TiffDecompressor;
 import com.revolsys.raster.io.format.tiff.compression.TiffDecompressorInputStreamBE;
 import com.revolsys.raster.io.format.tiff.compression.TiffDecompressorInputStreamLE;
+import com.revolsys.raster.io.format.tiff.compression.TiffHorizontalPredictorInputStream;
 import com.revolsys.raster.io.format.tiff.compression.TiffLzwInputStream;
 import com.revolsys.raster.io.format.tiff.compression.TiffPackbitsInputStream;
 import com.revolsys.raster.io.format.tiff.compression.TiffThunderscanInputStream;
 
-public abstract class AbstractTiffImage extends AbstractGeoreferencedImage implements TiffImage {
+public abstract class AbstractTiffImage extends AbstractGeoreferencedImage
+  implements BaseCloseable, TiffImage {
 
   private class TiffImageTiledMapTile extends GeoreferencedImageMapTile {
     private final int tileX;
@@ -87,23 +94,15 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
 
     @Override
     protected BufferedImage loadBuffferedImage() {
-      try (
-        DataReader in = AbstractTiffImage.this.directory.newChannelReader()) {
-        final int tileIndex = this.tileY * AbstractTiffImage.this.tileCountX + this.tileX;
-        final int actualTileWidth = getWidthPixels();
-        final int actualTileHeight = getHeightPixels();
-        final BufferedImage bufferedImage = newBufferedImage(actualTileWidth, actualTileHeight);
-
-        readImagePart(in, bufferedImage, AbstractTiffImage.this.tileOffsets,
-          AbstractTiffImage.this.tileByteCounts, tileIndex, 0, 0,
-          AbstractTiffImage.this.tileWidthPixels, actualTileHeight, actualTileWidth);
-
-        return bufferedImage;
-      }
+      final int tileIndex = this.tileY * AbstractTiffImage.this.tileCountX + this.tileX;
+      return getStripOrTileImage(tileIndex);
     }
 
   }
 
+  /** The number of batches of strips or tiles per thread for parallel reads. */
+  private static final int PARALLEL_BATCHES_PER_THREAD = 4;
+
   private static Map<GeoTiffKey, Object> getGeoKeys(final TiffDirectory directory) {
     final Map<GeoTiffKey, Object> geoKeys = new LinkedHashMap<>();
 
@@ -268,6 +267,15 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
     }
   }
 
+  /**
+   * Remove this image's strips and tiles from the {@link TiffTileCache}. The
+   * image can still be read after it is closed.
+   */
+  @Override
+  public void close() {
+    TiffTileCache.clear(this);
+  }
+
   private InputStream getInputStream(final DataReader in, final long[] offsets, final long[] counts,
     final int index) {
     final long offset = offsets[index];
@@ -334,6 +342,46 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
     }
   }
 
+  private int getPartCount() {
+    if (isTiled()) {
+      return this.tileCountX * this.tileCountY;
+    } else {
+      return this.stripCount;
+    }
+  }
+
+  private int getPartHeight(final int partY) {
+    if (isTiled()) {
+      return Math.min(this.tileHeightPixels, getImageHeight() - partY);
+    } else {
+      return Math.min(this.rowsPerStrip, getImageHeight() - partY);
+    }
+  }
+
+  private int getPartWidth(final int partX) {
+    if (isTiled()) {
+      return Math.min(this.tileWidthPixels, getImageWidth() - partX);
+    } else {
+      return getImageWidth();
+    }
+  }
+
+  private int getPartX(final int partIndex) {
+    if (isTiled()) {
+      return partIndex % this.tileCountX * this.tileWidthPixels;
+    } else {
+      return 0;
+    }
+  }
+
+  private int getPartY(final int partIndex) {
+    if (isTiled()) {
+      return partIndex / this.tileCountX * this.tileHeightPixels;
+    } else {
+      return partIndex * this.rowsPerStrip;
+    }
+  }
+
   public TiffPhotogrametricInterpretation getPhotometricInterpretation() {
     return this.photometricInterpretation;
   }
@@ -342,17 +390,13 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
   public synchronized RenderedImage getRenderedImage() {
     RenderedImage image = super.getRenderedImage();
     if (image == null) {
-      BufferedImage bufferedImage;
-      try (
-        DataReader in = this.directory.newChannelReader()) {
-        if (isTiled()) {
-          bufferedImage = newBufferedImageTiles(in);
-        } else if (this.stripOffsets.length > 0) {
-          bufferedImage = newBufferedImageStrips(in);
-        } else {
-          throw new IllegalArgumentException("Data must be in strips or tiles: " + this.directory);
-        }
+      if (!isTiled() && this.stripOffsets.length == 0) {
+        throw new IllegalArgumentException("Data must be in strips or tiles: " + this.directory);
       }
+      final BufferedImage bufferedImage = newBufferedImage();
+      final int partCount = getPartCount();
+      final int[] partIndexes = IntStream.range(0, partCount).toArray();
+      readParts(partIndexes, (in, partIndex) -> readPart(in, bufferedImage, partIndex, 0, 0));
       image = bufferedImage;
       setRenderedImage(image);
     }
@@ -367,6 +411,24 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
     return this.stripOrTileCount;
   }
 
+  /**
+   * Get the decoded image for a strip or tile. The images are cached in the
+   * shared {@link TiffTileCache}. The returned image must not be modified.
+   *
+   * @param index The index of the strip or tile.
+   * @return The image.
+   */
+  public BufferedImage getStripOrTileImage(final int index) {
+    BufferedImage image = TiffTileCache.get(this, index);
+    if (image == null) {
+      try (
+        DataReader in = this.directory.newChannelReader()) {
+        image = newPartImage(in, index);
+      }
+    }
+    return image;
+  }
+
   @Override
   public TiffDirectory getTiffDirectory() {
     return this.directory;
@@ -392,57 +454,19 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
 
   protected abstract BufferedImage newBufferedImage(int imageWidth, int imageHeight);
 
-  private BufferedImage newBufferedImageStrips(final DataReader in) {
-    final BufferedImage bufferedImage = newBufferedImage();
-    final int imageWidth = getImageWidth();
-    final int imageHeight = getImageHeight();
-    for (int stripIndex = 0; stripIndex < this.stripCount; stripIndex++) {
-      final int imageY = stripIndex * this.rowsPerStrip;
-      final int index = stripIndex;
-      int stripHeight = this.rowsPerStrip;
-      if (stripIndex == this.stripCount - 1) {
-        stripHeight = imageHeight - imageY;
-      }
-      readImagePart(in, bufferedImage, this.stripOffsets, this.stripByteCounts, index, 0, imageY,
-        imageWidth, stripHeight, imageWidth);
-    }
-    return bufferedImage;
-  }
-
-  private BufferedImage newBufferedImageTiles(final DataReader in) {
-    final BufferedImage bufferedImage = newBufferedImage();
-    final int imageWidth = getImageWidth();
-    final int imageHeight = getImageHeight();
-
-    int lastTileWidth = imageWidth % this.tileWidthPixels;
-    if (lastTileWidth == 0) {
-      lastTileWidth = this.tileWidthPixels;
-    }
-    int lastTileHeight = imageHeight % this.tileHeightPixels;
-    if (lastTileHeight == 0) {
-      lastTileHeight = this.tileHeightPixels;
-    }
-    int tileIndex = 0;
-    for (int tileY = 0; tileY < this.tileCountY; tileY++) {
-      final int imageY = tileY * this.tileHeightPixels;
-      int actualTileHeight = this.tileHeightPixels;
-      if (tileY == this.tileCountY - 1) {
-        actualTileHeight = lastTileHeight;
-      }
-      for (int tileX = 0; tileX < this.tileCountX; tileX++) {
-        final int imageX = tileX * this.tileWidthPixels;
-        int actualTileWidth = this.tileWidthPixels;
-        if (tileX == this.tileCountX - 1) {
-          actualTileWidth = lastTileWidth;
-        }
-
-        readImagePart(in, bufferedImage, this.tileOffsets, this.tileByteCounts, tileIndex, imageX,
-          imageY, this.tileWidthPixels, actualTileHeight, actualTileWidth);
-
-        tileIndex++;
-      }
-    }
-    return bufferedImage;
+  /**
+   * Decode a strip or tile into a new image and add it to the
+   * {@link TiffTileCache}.
+   */
+  private BufferedImage newPartImage(final DataReader in, final int partIndex) {
+    final int partX = getPartX(partIndex);
+    final int partY = getPartY(partIndex);
+    final int partWidth = getPartWidth(partX);
+    final int partHeight = getPartHeight(partY);
+    final BufferedImage image = newBufferedImage(partWidth, partHeight);
+    readPart(in, image, partIndex, partX, partY);
+    TiffTileCache.put(this, partIndex, image);
+    return image;
   }
 
   protected TiffDecompressor newPlanarDecompressor(final DataReader in, final long[] offsets,
@@ -538,6 +562,29 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
         throw new IllegalArgumentException(
           "Compression " + this.compression + " not yet supported");
     }
+    final int predictor = this.directory.getInt(TiffExtensionTag.Predictor, 1);
+    if (predictor == 2) {
+      for (final int bitsPerSample : this.directory.getIntArray(TiffBaselineTag.BitsPerSample,
+        new int[] {
+          1
+        })) {
+        if (bitsPerSample != 8) {
+          throw new IllegalStateException(
+            "Predictor=2 is only supported for 8-bit samples not " + bitsPerSample);
+        }
+      }
+      final int rowPixels = isTiled() ? this.tileWidthPixels : getImageWidth();
+      final int samplesPerPixel;
+      if (this.planarConfiguration == 2) {
+        samplesPerPixel = 1;
+      } else {
+        samplesPerPixel = this.directory.getInt(TiffBaselineTag.SamplesPerPixel, 1);
+      }
+      decompressedIn = new TiffHorizontalPredictorInputStream(decompressedIn, rowPixels,
+        samplesPerPixel);
+    } else if (predictor != 1) {
+      throw new IllegalArgumentException("Predictor " + predictor + " not yet supported");
+    }
     if (this.directory.getByteOrder() == ByteOrder.BIG_ENDIAN) {
       return new TiffDecompressorInputStreamBE(decompressedIn);
     } else {
@@ -558,6 +605,57 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
     return geometryFactory.newBoundingBox(minX, maxY, maxX, minY);
   }
 
+  /**
+   * Decode a strip or tile into the image. The image's top left pixel is at
+   * offsetX, offsetY in the TIFF image.
+   */
+  private void readPart(final DataReader in, final BufferedImage image, final int partIndex,
+    final int offsetX, final int offsetY) {
+    final int partX = getPartX(partIndex);
+    final int partY = getPartY(partIndex);
+    final int partWidth = getPartWidth(partX);
+    final int partHeight = getPartHeight(partY);
+    if (isTiled()) {
+      readImagePart(in, image, this.tileOffsets, this.tileByteCounts, partIndex, partX - offsetX,
+        partY - offsetY, this.tileWidthPixels, partHeight, partWidth);
+    } else {
+      readImagePart(in, image, this.stripOffsets, this.stripByteCounts, partIndex,
+        partX - offsetX, partY - offsetY, partWidth, partHeight, partWidth);
+    }
+  }
+
+  /**
+   * Decode the strips or tiles. If there is more than one they are split into
+   * batches that are decoded in parallel using the common fork join pool. Each
+   * batch uses its own {@link DataReader} so the reads don't share a channel
+   * position.
+   *
+   * @param partIndexes The indexes of the strips or tiles.
+   * @param action The action to decode a strip or tile.
+   */
+  private void readParts(final int[] partIndexes, final ObjIntConsumer<DataReader> action) {
+    final int partCount = partIndexes.length;
+    if (partCount == 1) {
+      try (
+        DataReader in = this.directory.newChannelReader()) {
+        action.accept(in, partIndexes[0]);
+      }
+    } else if (partCount > 1) {
+      final int batchCount = Math.min(partCount,
+        ForkJoinPool.getCommonPoolParallelism() * PARALLEL_BATCHES_PER_THREAD);
+      IntStream.range(0, batchCount).parallel().forEach(batchIndex -> {
+        final int start = (int)((long)partCount * batchIndex / batchCount);
+        final int end = (int)((long)partCount * (batchIndex + 1) / batchCount);
+        try (
+          DataReader in = this.directory.newChannelReader()) {
+          for (int i = start; i < end; i++) {
+            action.accept(in, partIndexes[i]);
+          }
+        }
+      });
+    }
+  }
+
   protected void readImagePart(final DataReader in, final BufferedImage bufferedImage,
     final long[] offsets, final long[] counts, final int partIndex, final int imageX,
     final int imageY, final int dataWidth, final int dataHeight, final int cropWidth) {
@@ -628,6 +726,98 @@ public abstract class AbstractTiffImage extends AbstractGeoreferencedImage imple
     }
   }
 
+  /**
+   * Read the part of the image that intersects the bounding box. Only the
+   * strips or tiles that intersect the bounding box are decoded.
+   *
+   * @param boundingBox The bounding box.
+   * @return The image or null if the bounding box doesn't intersect the image.
+   */
+  @Override
+  public BufferedImage readWindow(BoundingBox boundingBox) {
+    final BoundingBox imageBoundingBox = getBoundingBox();
+    boundingBox = boundingBox.bboxToCs(this);
+    final double resolutionX = getResolutionX();
+    final double resolutionY = getResolutionY();
+    final double imageMinX = imageBoundingBox.getMinX();
+    final double imageMaxY = imageBoundingBox.getMaxY();
+    final int minX = (int)Math.floor((boundingBox.getMinX() - imageMinX) / resolutionX);
+    final int minY = (int)Math.floor((imageMaxY - boundingBox.getMaxY()) / resolutionY);
+    final int maxX = (int)Math.ceil((boundingBox.getMaxX() - imageMinX) / resolutionX);
+    final int maxY = (int)Math.ceil((imageMaxY - boundingBox.getMinY()) / resolutionY);
+    return readWindow(minX, minY, maxX - minX, maxY - minY);
+  }
+
+  /**
+   * Read a window of pixels from the image. Only the strips or tiles that
+   * intersect the window are decoded. The window is clipped to the image.
+   *
+   * @param x The x pixel of the left of the window.
+   * @param y The y pixel of the top of the window.
+   * @param width The width of the window in pixels.
+   * @param height The height of the window in pixels.
+   * @return The image or null if the window doesn't intersect the image.
+   */
+  public BufferedImage readWindow(int x, int y, int width, int height) {
+    final int imageWidth = getImageWidth();
+    final int imageHeight = getImageHeight();
+    if (x < 0) {
+      width += x;
+      x = 0;
+    }
+    if (y < 0) {
+      height += y;
+      y = 0;
+    }
+    width = Math.min(width, imageWidth - x);
+    height = Math.min(height, imageHeight - y);
+    if (width <= 0 || height <= 0) {
+      return null;
+    }
+    final BufferedImage window = newBufferedImage(width, height);
+    final WritableRaster windowRaster = window.getRaster();
+    final int[] partIndexes;
+    if (isTiled()) {
+      final int minTileX = x / this.tileWidthPixels;
+      final int minTileY = y / this.tileHeightPixels;
+      final int maxTileX = (x + width - 1) / this.tileWidthPixels;
+      final int maxTileY = (y + height - 1) / this.tileHeightPixels;
+      final int tileCountX = maxTileX - minTileX + 1;
+      partIndexes = new int[tileCountX * (maxTileY - minTileY + 1)];
+      int i = 0;
+      for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+        for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+          partIndexes[i++] = tileY * this.tileCountX + tileX;
+        }
+      }
+    } else {
+      final int minStrip = y / this.rowsPerStrip;
+      final int maxStrip = (y + height - 1) / this.rowsPerStrip;
+      partIndexes = IntStream.rangeClosed(minStrip, maxStrip).toArray();
+    }
+    final BufferedImage[] partImages = new BufferedImage[partIndexes.length];
+    int[] missingIndexes = new int[partIndexes.length];
+    int missingCount = 0;
+    for (int i = 0; i < partIndexes.length; i++) {
+      final BufferedImage partImage = TiffTileCache.get(this, partIndexes[i]);
+      if (partImage == null) {
+        missingIndexes[missingCount++] = i;
+      } else {
+        partImages[i] = partImage;
+      }
+    }
+    missingIndexes = Arrays.copyOf(missingIndexes, missingCount);
+    readParts(missingIndexes, (in, i) -> {
+      partImages[i] = newPartImage(in, partIndexes[i]);
+    });
+    for (int i = 0; i < partIndexes.length; i++) {
+      final int partIndex = partIndexes[i];
+      windowRaster.setRect(getPartX(partIndex) - x, getPartY(partIndex) - y,
+        partImages[i].getRaster());
+    }
+    return window;
+  }
+
   @Override
   public void setBoundingBox(final BoundingBox boundingBox) {
     super.setBoundingBox(boundingBox);
@@ -1,5 +1,6 @@
 package com.revolsys.raster.io.format.tiff.image;
 
+import java.awt.image.BufferedImage;
 import java.util.List;
 
 import com.revolsys.geometry.model.BoundingBox;
@@ -11,4 +12,6 @@ public interface TiffImage extends GeoreferencedImage {
   List<GeoreferencedImageMapTile> getOverlappingMapTiles(BoundingBox boundingBox);
 
   TiffDirectory getTiffDirectory();
+
+  BufferedImage readWindow(BoundingBox boundingBox);
 }
@@ -4,12 +4,8 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
-import java.util.Iterator;
 
 import javax.imageio.ImageIO;
-import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.MemoryCacheImageInputStream;
@@ -29,21 +25,11 @@ public class TiffJpegImage extends AbstractTiffImage {
 
   private final byte[] jpegTables;
 
-  private ImageReader JPEGReader;
-
-  private ImageReadParam JPEGParam;
-
-  private Reference<BufferedImage> partImageReference = new WeakReference<>(null);
-
   private int jpegTablesLength;
 
   public TiffJpegImage(final TiffDirectory directory) {
     super(directory);
-    final Iterator<ImageReader> iter = ImageIO.getImageReadersByFormatName("jpeg");
-    if (iter.hasNext()) {
-      this.JPEGReader = iter.next();
-      this.JPEGParam = this.JPEGReader.getDefaultReadParam();
-    } else {
+    if (!ImageIO.getImageReadersByFormatName("jpeg").hasNext()) {
       throw new IllegalStateException("Cannot find a jpeg reader");
     }
     this.jpegTables = directory.getByteArray(TiffExtensionTag.JPEGTables, null);
@@ -59,23 +45,6 @@ public class TiffJpegImage extends AbstractTiffImage {
     }
   }
 
-  private synchronized BufferedImage getPartImage() {
-    BufferedImage partImage = this.partImageReference.get();
-    if (partImage == null) {
-      final int tileWidth = getTileWidth();
-      if (tileWidth > 0) {
-        final int tileHeight = getTileHeight();
-        partImage = newBufferedImage(tileWidth, tileHeight);
-      } else {
-        final int imageWidth = getImageWidth();
-        final int rowsPerStrip = getRowsPerStrip();
-        partImage = newBufferedImage(imageWidth, rowsPerStrip);
-      }
-      this.partImageReference = new WeakReference<>(partImage);
-    }
-    return partImage;
-  }
-
   @Override
   protected BufferedImage newBufferedImage(final int imageWidth, final int imageHeight) {
     return new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_3BYTE_BGR);
@@ -102,11 +71,15 @@ public class TiffJpegImage extends AbstractTiffImage {
         is = new MemoryCacheImageInputStream(mergedIn);
       }
 
-      this.JPEGReader.setInput(is, false, true);
-      final BufferedImage partImage = getPartImage();
-      this.JPEGParam.setDestination(partImage);
-
-      this.JPEGReader.read(0, this.JPEGParam);
+      // ImageReaders aren't thread safe so use a new reader for each strip or tile
+      final ImageReader jpegReader = ImageIO.getImageReadersByFormatName("jpeg").next();
+      final BufferedImage partImage;
+      try {
+        jpegReader.setInput(is, false, true);
+        partImage = jpegReader.read(0, jpegReader.getDefaultReadParam());
+      } finally {
+        jpegReader.dispose();
+      }
       int y = imageY;
       for (int yIndex = 0; yIndex < dataHeight; yIndex++) {
         int x = imageX;
@@ -6,12 +6,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.io.BaseCloseable;
 import com.revolsys.raster.AbstractGeoreferencedImage;
 import com.revolsys.raster.GeoreferencedImageMapTile;
 import com.revolsys.raster.TiledGeoreferencedImage;
 
 public class TiffMultiResolutionImage extends AbstractGeoreferencedImage
-  implements TiledGeoreferencedImage {
+  implements BaseCloseable, TiledGeoreferencedImage {
 
   private List<TiffImage> images = new ArrayList<>();
 
@@ -34,6 +35,19 @@ public class TiffMultiResolutionImage extends AbstractGeoreferencedImage
     setBoundingBox(firstImage.getBoundingBox());
   }
 
+  /**
+   * Close each of the resolution images, removing their strips and tiles from
+   * the {@link TiffTileCache}.
+   */
+  @Override
+  public void close() {
+    for (final TiffImage image : this.images) {
+      if (image instanceof BaseCloseable) {
+        ((BaseCloseable)image).close();
+      }
+    }
+  }
+
   @Override
   public BufferedImage getBufferedImage() {
     return this.firstImage.getBufferedImage();
@@ -77,4 +91,18 @@ public class TiffMultiResolutionImage extends AbstractGeoreferencedImage
     final TiffImage image = getImage(boundingBox, resolution);
     return image.getResolutionX();
   }
+
+  /**
+   * Read the part of the image that intersects the bounding box from the
+   * overview closest to the resolution. Only the strips or tiles that
+   * intersect the bounding box are decoded.
+   *
+   * @param boundingBox The bounding box.
+   * @param resolution The resolution in model units per pixel.
+   * @return The image or null if the bounding box doesn't intersect the image.
+   */
+  public BufferedImage readWindow(final BoundingBox boundingBox, final double resolution) {
+    final TiffImage image = getImage(boundingBox, resolution);
+    return image.readWindow(boundingBox);
+  }
 }
@@ -0,0 +1,118 @@
+package com.revolsys.raster.io.format.tiff.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of decoded TIFF strips and tiles shared by all the open
+ * {@link AbstractTiffImage}s. The cache is limited by the estimated memory
+ * used by the images and the least recently used strips and tiles are removed
+ * when the limit is exceeded.
+ */
+public final class TiffTileCache {
+
+  private static final class TileKey {
+    private final AbstractTiffImage image;
+
+    private final int index;
+
+    private TileKey(final AbstractTiffImage image, final int index) {
+      this.image = image;
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj instanceof TileKey) {
+        final TileKey key = (TileKey)obj;
+        return key.image == this.image && key.index == this.index;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.image) * 31 + this.index;
+    }
+  }
+
+  private static final Map<TileKey, BufferedImage> CACHE = new LinkedHashMap<>(256, 0.75f, true);
+
+  private static long maxSize = 256L * 1024 * 1024;
+
+  private static long size = 0;
+
+  public static synchronized void clear() {
+    CACHE.clear();
+    size = 0;
+  }
+
+  /**
+   * Remove all the cached strips and tiles for the image.
+   *
+   * @param image The image.
+   */
+  public static synchronized void clear(final AbstractTiffImage image) {
+    for (final Iterator<Map.Entry<TileKey, BufferedImage>> iterator = CACHE.entrySet()
+      .iterator(); iterator.hasNext();) {
+      final Map.Entry<TileKey, BufferedImage> entry = iterator.next();
+      if (entry.getKey().image == image) {
+        size -= getSize(entry.getValue());
+        iterator.remove();
+      }
+    }
+  }
+
+  static synchronized BufferedImage get(final AbstractTiffImage image, final int index) {
+    return CACHE.get(new TileKey(image, index));
+  }
+
+  public static synchronized long getMaxSize() {
+    return maxSize;
+  }
+
+  public static synchronized long getSize() {
+    return size;
+  }
+
+  private static long getSize(final BufferedImage image) {
+    final DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+    final int bitsPerElement = DataBuffer.getDataTypeSize(dataBuffer.getDataType());
+    return (long)dataBuffer.getSize() * dataBuffer.getNumBanks() * bitsPerElement / 8;
+  }
+
+  static synchronized void put(final AbstractTiffImage image, final int index,
+    final BufferedImage tileImage) {
+    final BufferedImage oldImage = CACHE.put(new TileKey(image, index), tileImage);
+    if (oldImage != null) {
+      size -= getSize(oldImage);
+    }
+    size += getSize(tileImage);
+    removeEldest();
+  }
+
+  private static void removeEldest() {
+    for (final Iterator<BufferedImage> iterator = CACHE.values().iterator(); size > maxSize
+      && iterator.hasNext();) {
+      final BufferedImage image = iterator.next();
+      size -= getSize(image);
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Set the maximum memory in bytes used by the cached strips and tiles.
+   *
+   * @param maxSize The maximum size in bytes.
+   */
+  public static synchronized void setMaxSize(final long maxSize) {
+    TiffTileCache.maxSize = maxSize;
+    removeEldest();
+  }
+
+  private TiffTileCache() {
+  }
+}
@@ -22,8 +22,12 @@ public abstract class AbstractLoadingCodeTable extends AbstractCodeTable
 
   private final boolean loadingAll = false;
 
+  private boolean preload = false;
+
   private Future<CodeTableData> refreshSubscription;
 
+  private volatile CodeTableSnapshot snapshot;
+
   public AbstractLoadingCodeTable() {
   }
 
@@ -54,8 +58,27 @@ public abstract class AbstractLoadingCodeTable extends AbstractCodeTable
     return super.getData();
   }
 
+  @Override
+  public void close() {
+    this.snapshot = null;
+    super.close();
+  }
+
   @Override
   public CodeTableEntry getEntry(final Object idOrValue) {
+    if (this.preload) {
+      CodeTableSnapshot snapshot = this.snapshot;
+      if (snapshot == null) {
+        refresh();
+        snapshot = this.snapshot;
+      }
+      if (snapshot != null) {
+        final CodeTableEntry entry = snapshot.getEntry(idOrValue);
+        if (!entry.isEmpty()) {
+          return entry;
+        }
+      }
+    }
     final CodeTableEntry entry = super.getEntry(idOrValue);
     if (entry.isEmpty()) {
       return loadValue(idOrValue);
@@ -87,6 +110,10 @@ public abstract class AbstractLoadingCodeTable extends AbstractCodeTable
     return this.loadMissingCodes;
   }
 
+  public boolean isPreload() {
+    return this.preload;
+  }
+
   protected abstract CodeTableData loadAll();
 
   private CodeTableEntry loadValue(final Object value) {
@@ -119,6 +146,16 @@ public abstract class AbstractLoadingCodeTable extends AbstractCodeTable
 
   protected abstract boolean loadValueDo(Object idOrValue);
 
+  /**
+   * Load all the entries now instead of on first use. Has no effect unless
+   * {@link #setPreload(boolean)} is true.
+   */
+  public void preload() {
+    if (this.preload && this.snapshot == null) {
+      refresh();
+    }
+  }
+
   @Override
   public void refresh() {
     Future<CodeTableData> subscription;
@@ -150,6 +187,10 @@ public abstract class AbstractLoadingCodeTable extends AbstractCodeTable
   protected CodeTableData refreshDo() {
     final var data = loadAll();
     if (data != null) {
+      CodeTableSnapshot snapshot = null;
+      if (this.preload) {
+        snapshot = data.newSnapshot();
+      }
       this.lock.lock();
       final var loadingByValue = new LinkedHashMap<>(this.loadingByValue);
       this.loadingByValue.clear();
@@ -157,6 +198,9 @@ public abstract class AbstractLoadingCodeTable extends AbstractCodeTable
         if (data.isAfter(this.data)) {
           data.setAllLoaded(true);
           this.data = data;
+          if (snapshot != null) {
+            this.snapshot = snapshot;
+          }
         }
       } finally {
         this.lock.unlock();
@@ -170,6 +214,10 @@ public abstract class AbstractLoadingCodeTable extends AbstractCodeTable
         });
       }
     }
+    if (this.preload && this.snapshot == null) {
+      // Avoid reloading on every lookup if the entries couldn't be loaded
+      this.snapshot = this.data.newSnapshot();
+    }
     return this.data;
   }
 
@@ -193,4 +241,21 @@ public abstract class AbstractLoadingCodeTable extends AbstractCodeTable
     this.loadMissingCodes = loadMissingCodes;
     return this;
   }
+
+  /**
+   * Load all the entries in one query on first use (or {@link #preload()}) into
+   * an immutable snapshot that is used for lookups without locking. The
+   * snapshot is replaced when the code table is refreshed. Entries not in the
+   * snapshot are looked up using the normal loading rules.
+   *
+   * @param preload True if the entries are preloaded.
+   * @return This code table.
+   */
+  public AbstractLoadingCodeTable setPreload(final boolean preload) {
+    this.preload = preload;
+    if (!preload) {
+      this.snapshot = null;
+    }
+    return this;
+  }
 }
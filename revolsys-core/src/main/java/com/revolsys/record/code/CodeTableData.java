@@ -17,6 +17,26 @@ import com.revolsys.io.BaseCloseable;
 
 public class CodeTableData implements BaseCloseable, Cloneable {
 
+  static Object getNormalizedValue(final Object value, final boolean caseSensitive) {
+    if (value == null) {
+      return null;
+    } else if (value instanceof Number) {
+      final Number number = (Number)value;
+      return Numbers.toString(number);
+    } else if (caseSensitive) {
+      return value;
+    } else if (value instanceof Collection) {
+      final List<Object> normalizedValues = new ArrayList<>();
+      for (final Object childValue : (Collection<?>)value) {
+        final Object normalizedValue = getNormalizedValue(childValue, caseSensitive);
+        normalizedValues.add(normalizedValue);
+      }
+      return normalizedValues;
+    } else {
+      return value.toString().toLowerCase();
+    }
+  }
+
   private final Instant startTime = Instant.now();
 
   private final List<Identifier> identifiers = new ArrayList<>();
@@ -131,23 +151,7 @@ public class CodeTableData implements BaseCloseable, Cloneable {
   }
 
   private Object getNormalizedValue(final Object value) {
-    if (value == null) {
-      return null;
-    } else if (value instanceof Number) {
-      final Number number = (Number)value;
-      return Numbers.toString(number);
-    } else if (isCaseSensitive()) {
-      return value;
-    } else if (value instanceof Collection) {
-      final List<Object> normalizedValues = new ArrayList<>();
-      for (final Object childValue : (Collection<?>)value) {
-        final Object normalizedValue = getNormalizedValue(childValue);
-        normalizedValues.add(normalizedValue);
-      }
-      return normalizedValues;
-    } else {
-      return value.toString().toLowerCase();
-    }
+    return getNormalizedValue(value, isCaseSensitive());
   }
 
   public Instant getStartTime() {
@@ -181,6 +185,15 @@ public class CodeTableData implements BaseCloseable, Cloneable {
     return this.entryCache.isEmpty();
   }
 
+  CodeTableSnapshot newSnapshot() {
+    this.lock.lock();
+    try {
+      return new CodeTableSnapshot(this.identifiers, this.entryCache, isCaseSensitive());
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
   public void setAllLoaded(final boolean allLoaded) {
     this.allLoaded = allLoaded;
   }
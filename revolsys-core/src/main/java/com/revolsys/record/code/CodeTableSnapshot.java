@@ -0,0 +1,123 @@
+package com.revolsys.record.code;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeometry.common.data.identifier.Identifier;
+
+/**
+ * An immutable copy of the entries in a {@link CodeTableData} used for
+ * lookups without locking. Integer identifiers are stored in an open
+ * addressing hash table of primitive long keys, so looking up an entry by a
+ * numeric id or single value numeric {@link Identifier} doesn't allocate any
+ * objects. Other keys use a copy of the data's entry map.
+ */
+final class CodeTableSnapshot {
+  private static int hash(final long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 32;
+    return (int)h;
+  }
+
+  private static boolean isIntegral(final Object value) {
+    return value instanceof Long || value instanceof Integer || value instanceof Short
+      || value instanceof Byte;
+  }
+
+  private final boolean caseSensitive;
+
+  private final Map<Object, CodeTableEntry> entryByKey;
+
+  private final CodeTableEntry[] entryByLong;
+
+  private final long[] longKeys;
+
+  private final int mask;
+
+  CodeTableSnapshot(final List<Identifier> identifiers, final Map<Object, CodeTableEntry> entries,
+    final boolean caseSensitive) {
+    this.caseSensitive = caseSensitive;
+    this.entryByKey = new HashMap<>(entries);
+    int capacity = 16;
+    while (capacity < identifiers.size() * 2) {
+      capacity <<= 1;
+    }
+    this.mask = capacity - 1;
+    this.longKeys = new long[capacity];
+    this.entryByLong = new CodeTableEntry[capacity];
+    for (final Identifier identifier : identifiers) {
+      if (identifier.isSingle()) {
+        final Object value = identifier.getValue(0);
+        if (isIntegral(value)) {
+          final CodeTableEntry entry = entries.get(identifier);
+          if (entry != null) {
+            putLong(((Number)value).longValue(), entry);
+          }
+        }
+      }
+    }
+  }
+
+  CodeTableEntry getEntry(final Object idOrValue) {
+    if (idOrValue == null) {
+      return CodeTableEntry.EMPTY;
+    }
+    CodeTableEntry entry = null;
+    if (isIntegral(idOrValue)) {
+      entry = getLong(((Number)idOrValue).longValue());
+    } else if (idOrValue instanceof final Identifier identifier && identifier.isSingle()) {
+      final Object value = identifier.getValue(0);
+      if (isIntegral(value)) {
+        entry = getLong(((Number)value).longValue());
+      }
+    }
+    if (entry == null) {
+      entry = this.entryByKey.get(idOrValue);
+    }
+    if (entry == null) {
+      final Object normalizedValue = CodeTableData.getNormalizedValue(idOrValue,
+        this.caseSensitive);
+      entry = this.entryByKey.get(normalizedValue);
+    }
+    if (entry == null) {
+      final String idString = idOrValue.toString();
+      entry = this.entryByKey.get(idString);
+      if (entry == null && !this.caseSensitive) {
+        final String lowerId = idString.toLowerCase();
+        entry = this.entryByKey.get(lowerId);
+      }
+    }
+    if (entry == null) {
+      return CodeTableEntry.EMPTY;
+    } else {
+      return entry;
+    }
+  }
+
+  private CodeTableEntry getLong(final long key) {
+    int index = hash(key) & this.mask;
+    while (true) {
+      final CodeTableEntry entry = this.entryByLong[index];
+      if (entry == null) {
+        return null;
+      } else if (this.longKeys[index] == key) {
+        return entry;
+      }
+      index = index + 1 & this.mask;
+    }
+  }
+
+  private void putLong(final long key, final CodeTableEntry entry) {
+    int index = hash(key) & this.mask;
+    while (this.entryByLong[index] != null && this.longKeys[index] != key) {
+      index = index + 1 & this.mask;
+    }
+    this.longKeys[index] = key;
+    this.entryByLong[index] = entry;
+  }
+
+  int size() {
+    return this.entryByKey.size();
+  }
+}
@@ -107,9 +107,16 @@ public class Csv extends AbstractRecordIoFactory implements RecordWriterFactory,
   @Override
   public RecordReader newRecordReader(final Resource resource,
     final RecordFactory<? extends Record> recordFactory, final MapEx properties) {
-    final CsvRecordReader reader = new CsvRecordReader(resource, recordFactory);
-    reader.setProperties(properties);
-    return reader;
+    if (properties != null && properties.getBoolean("parallel", false)) {
+      final CsvParallelRecordReader reader = new CsvParallelRecordReader(resource, recordFactory,
+        FIELD_SEPARATOR);
+      reader.setProperties(properties);
+      return reader;
+    } else {
+      final CsvRecordReader reader = new CsvRecordReader(resource, recordFactory);
+      reader.setProperties(properties);
+      return reader;
+    }
   }
 
   @Override
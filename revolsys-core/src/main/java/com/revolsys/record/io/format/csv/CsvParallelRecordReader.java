@@ -0,0 +1,466 @@
+package com.revolsys.record.io.format.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jeometry.common.exception.Exceptions;
+import org.jeometry.common.logging.Logs;
+
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.parallel.NamedThreadFactory;
+import com.revolsys.parallel.ThreadInterruptedException;
+import com.revolsys.parallel.channel.ChannelOutput;
+import com.revolsys.record.ArrayRecord;
+import com.revolsys.record.Record;
+import com.revolsys.record.RecordFactory;
+import com.revolsys.record.io.AbstractRecordReader;
+import com.revolsys.spring.resource.Resource;
+
+/**
+ * <p>
+ * A CSV/TSV record reader that splits the file into byte ranges at record
+ * boundaries and parses the ranges concurrently.
+ * </p>
+ * <p>
+ * By default quoted values can contain new lines. Each range is scanned
+ * concurrently using the {@link CsvRowParser} quote rules for every quote
+ * state it could start in, then the state at the start of each range is
+ * resolved in file order and the range ends at the last new line outside
+ * quotes. If the file is known not to contain new lines in quoted values
+ * {@link #setQuotedNewlines(boolean)} can be set to false to seek directly to
+ * the next new line after each range.
+ * </p>
+ * <p>
+ * Records are returned in the original file order unless
+ * {@link #setOrdered(boolean)} is set to false, in which case each range's
+ * records are returned as soon as that range has been parsed.
+ * </p>
+ */
+public class CsvParallelRecordReader extends AbstractRecordReader {
+  /**
+   * The quote state at the end of a range and the offset after the last new
+   * line outside quotes in the range (-1 if none), for each
+   * {@link CsvRowParser} state the range could start in.
+   */
+  private static class RangeScan {
+    private final int[] endStates = new int[CsvRowParser.STATE_COUNT];
+
+    private final long[] recordEnds = new long[CsvRowParser.STATE_COUNT];
+  }
+
+  private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  private FileChannel channel;
+
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  private CompletionService<List<Record>> completionService;
+
+  private ExecutorService executor;
+
+  private List<String> fieldNames;
+
+  private final char fieldSeparator;
+
+  private boolean ordered = true;
+
+  private final Deque<Future<List<Record>>> pending = new ArrayDeque<>();
+
+  private long position;
+
+  private final Deque<Future<RangeScan>> scans = new ArrayDeque<>();
+
+  private long scanPosition;
+
+  private int scanState = CsvRowParser.FIELD_START;
+
+  private boolean quotedNewlines = true;
+
+  private Iterator<Record> records = Collections.emptyIterator();
+
+  private Resource resource;
+
+  private final ByteBuffer scanBuffer = ByteBuffer.allocate(64 * 1024);
+
+  private long size;
+
+  private int threadCount = Runtime.getRuntime().availableProcessors();
+
+  public CsvParallelRecordReader(final Resource resource) {
+    this(resource, ArrayRecord.FACTORY, Csv.FIELD_SEPARATOR);
+  }
+
+  public CsvParallelRecordReader(final Resource resource, final char fieldSeparator) {
+    this(resource, ArrayRecord.FACTORY, fieldSeparator);
+  }
+
+  public CsvParallelRecordReader(final Resource resource,
+    final RecordFactory<? extends Record> recordFactory, final char fieldSeparator) {
+    super(recordFactory);
+    this.resource = resource;
+    this.fieldSeparator = fieldSeparator;
+  }
+
+  @Override
+  protected void closeDo() {
+    final ExecutorService executor = this.executor;
+    if (executor != null) {
+      for (final Future<List<Record>> future : this.pending) {
+        future.cancel(true);
+      }
+      this.pending.clear();
+      for (final Future<RangeScan> future : this.scans) {
+        future.cancel(true);
+      }
+      this.scans.clear();
+      executor.shutdownNow();
+      this.executor = null;
+    }
+    final FileChannel channel = this.channel;
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (final IOException e) {
+      }
+      this.channel = null;
+    }
+    this.records = Collections.emptyIterator();
+    this.resource = null;
+    super.closeDo();
+  }
+
+  /**
+   * Find the offset after the first new line at or after minimum that is not
+   * inside a quoted value.
+   *
+   * @param start The offset of the start of a record.
+   * @param minimum The minimum offset of the end of the record.
+   * @param quoteAware If true scan from start using the {@link CsvRowParser}
+   *          quote rules, otherwise scan from minimum ignoring quotes.
+   * @return The offset.
+   */
+  private long findRecordEnd(final long start, final long minimum, final boolean quoteAware)
+    throws IOException {
+    final ByteBuffer buffer = this.scanBuffer;
+    final char fieldSeparator = this.fieldSeparator;
+    long offset = quoteAware ? start : minimum;
+    int state = CsvRowParser.FIELD_START;
+    while (offset < this.size) {
+      buffer.clear();
+      final int count = this.channel.read(buffer, offset);
+      if (count <= 0) {
+        return this.size;
+      }
+      final byte[] bytes = buffer.array();
+      for (int i = 0; i < count; i++) {
+        final char character = (char)(bytes[i] & 0xff);
+        if (quoteAware) {
+          state = CsvRowParser.nextState(state, character, fieldSeparator);
+        }
+        if (character == '\n' && state == CsvRowParser.FIELD_START && offset + i >= minimum) {
+          return offset + i + 1;
+        }
+      }
+      offset += count;
+    }
+    return this.size;
+  }
+
+  public int getChunkSize() {
+    return this.chunkSize;
+  }
+
+  @Override
+  protected Record getNext() {
+    while (!this.records.hasNext()) {
+      submitChunks();
+      final List<Record> chunk = takeChunk();
+      if (chunk == null) {
+        throw new NoSuchElementException();
+      } else {
+        this.records = chunk.iterator();
+      }
+    }
+    return this.records.next();
+  }
+
+  public int getThreadCount() {
+    return this.threadCount;
+  }
+
+  @Override
+  protected void initDo() {
+    super.initDo();
+    try {
+      final Path path = this.resource.getOrDownloadPath();
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      this.size = this.channel.size();
+      skipByteOrderMark();
+      List<String> header = null;
+      while (header == null && this.position < this.size) {
+        final long end = findRecordEnd(this.position, this.position, true);
+        final CsvRowParser parser = newParser(this.position, end);
+        header = parser.readNextRow();
+        this.position = end;
+      }
+      this.scanPosition = this.position;
+      if (header == null) {
+        throw new NoSuchElementException();
+      }
+      this.fieldNames = new ArrayList<>(header);
+      final String baseName = this.resource.getBaseName();
+      if (getRecordDefinition() == null) {
+        newRecordDefinition(baseName, header);
+      }
+      final NamedThreadFactory threadFactory = new NamedThreadFactory(Thread.NORM_PRIORITY,
+        "csv-" + baseName);
+      this.executor = Executors.newFixedThreadPool(this.threadCount, threadFactory);
+      this.completionService = new ExecutorCompletionService<>(this.executor);
+    } catch (final IOException e) {
+      Logs.error(this, "Unable to open " + this.resource, e);
+    } catch (final NoSuchElementException e) {
+    }
+  }
+
+  public boolean isOrdered() {
+    return this.ordered;
+  }
+
+  public boolean isQuotedNewlines() {
+    return this.quotedNewlines;
+  }
+
+  @Override
+  protected GeometryFactory loadGeometryFactory() {
+    return GeometryFactory.floating2d(this.resource);
+  }
+
+  private CsvRowParser newParser(final long start, final long end) throws IOException {
+    final ByteBuffer bytes = readBytes(start, end);
+    final CharBuffer characters = StandardCharsets.UTF_8.decode(bytes);
+    return new CsvRowParser(characters.array(), characters.position(), characters.limit(),
+      this.fieldSeparator);
+  }
+
+  private List<Record> parseChunk(final long start, final long end) throws IOException {
+    final CsvRowParser parser = newParser(start, end);
+    final List<Record> records = new ArrayList<>();
+    for (List<String> row = parser.readNextRow(); row != null; row = parser.readNextRow()) {
+      if (row.size() > 0) {
+        final Record record = parseRecord(this.fieldNames, row);
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  private ByteBuffer readBytes(final long start, final long end) throws IOException {
+    final int length = (int)(end - start);
+    final ByteBuffer bytes = ByteBuffer.allocate(length);
+    while (bytes.hasRemaining()) {
+      final int count = this.channel.read(bytes, start + bytes.position());
+      if (count < 0) {
+        break;
+      }
+    }
+    bytes.flip();
+    return bytes;
+  }
+
+  /**
+   * Resolve the first range scan using the quote state at the start of the
+   * range and submit the records from the last range end to the last record
+   * end in the range.
+   */
+  private void resolveScan() throws InterruptedException, ExecutionException {
+    final RangeScan scan = this.scans.removeFirst().get();
+    final int state = this.scanState;
+    final long recordEnd = scan.recordEnds[state];
+    if (recordEnd > this.position) {
+      submitChunk(this.position, recordEnd);
+      this.position = recordEnd;
+    }
+    this.scanState = scan.endStates[state];
+  }
+
+  /**
+   * Scan the range for each quote state it could start in. The states are
+   * tracked together so the range is only read once.
+   */
+  private RangeScan scanRange(final long start, final long end) throws IOException {
+    final ByteBuffer buffer = readBytes(start, end);
+    final byte[] bytes = buffer.array();
+    final int count = buffer.limit();
+    final char fieldSeparator = this.fieldSeparator;
+    final RangeScan scan = new RangeScan();
+    final int[] states = scan.endStates;
+    final long[] recordEnds = scan.recordEnds;
+    for (int i = 0; i < CsvRowParser.STATE_COUNT; i++) {
+      states[i] = i;
+      recordEnds[i] = -1;
+    }
+    for (int i = 0; i < count; i++) {
+      final char character = (char)(bytes[i] & 0xff);
+      for (int j = 0; j < CsvRowParser.STATE_COUNT; j++) {
+        final int state = CsvRowParser.nextState(states[j], character, fieldSeparator);
+        states[j] = state;
+        if (character == '\n' && state == CsvRowParser.FIELD_START) {
+          recordEnds[j] = start + i + 1;
+        }
+      }
+    }
+    return scan;
+  }
+
+  public void setChunkSize(final int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  public void setOrdered(final boolean ordered) {
+    this.ordered = ordered;
+  }
+
+  public void setQuotedNewlines(final boolean quotedNewlines) {
+    this.quotedNewlines = quotedNewlines;
+  }
+
+  public void setThreadCount(final int threadCount) {
+    this.threadCount = Math.max(1, threadCount);
+  }
+
+  /**
+   * Skip the UTF-8 byte order mark at the start of the file. The ranges are
+   * scanned one byte at a time, so the bytes of the mark would otherwise start
+   * an unquoted value and a quoted first header would be scanned as unquoted.
+   */
+  private void skipByteOrderMark() throws IOException {
+    if (this.size >= 3) {
+      final ByteBuffer bytes = readBytes(0, 3);
+      if ((bytes.get(0) & 0xff) == 0xEF && (bytes.get(1) & 0xff) == 0xBB
+        && (bytes.get(2) & 0xff) == 0xBF) {
+        this.position = 3;
+      }
+    }
+  }
+
+  private void submitChunk(final long start, final long end) {
+    final Future<List<Record>> future;
+    if (this.ordered) {
+      future = this.executor.submit(() -> parseChunk(start, end));
+    } else {
+      future = this.completionService.submit(() -> parseChunk(start, end));
+    }
+    this.pending.add(future);
+  }
+
+  /**
+   * Submit chunks to the executor until there are two chunks per thread being
+   * scanned, parsed or waiting to be read.
+   */
+  private void submitChunks() {
+    if (this.executor != null) {
+      final int maxPending = this.threadCount * 2;
+      try {
+        if (this.quotedNewlines) {
+          while (true) {
+            while (this.scans.size() + this.pending.size() < maxPending
+              && this.scanPosition < this.size) {
+              final long start = this.scanPosition;
+              final long end = Math.min(start + this.chunkSize, this.size);
+              this.scanPosition = end;
+              this.scans.add(this.executor.submit(() -> scanRange(start, end)));
+            }
+            if (this.scans.isEmpty()) {
+              if (this.position < this.size) {
+                submitChunk(this.position, this.size);
+                this.position = this.size;
+              }
+              return;
+            } else if (this.pending.isEmpty() || this.scans.getFirst().isDone()) {
+              resolveScan();
+            } else {
+              return;
+            }
+          }
+        } else {
+          while (this.pending.size() < maxPending && this.position < this.size) {
+            final long start = this.position;
+            final long end = findRecordEnd(start, start + this.chunkSize, false);
+            this.position = end;
+            submitChunk(start, end);
+          }
+        }
+      } catch (final InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      } catch (final ExecutionException e) {
+        throw Exceptions.wrap("Error reading " + this.resource, e.getCause());
+      } catch (final IOException e) {
+        throw Exceptions.wrap("Error reading " + this.resource, e);
+      }
+    }
+  }
+
+  private List<Record> takeChunk() {
+    try {
+      if (this.pending.isEmpty()) {
+        return null;
+      } else if (this.ordered) {
+        final Future<List<Record>> future = this.pending.removeFirst();
+        return future.get();
+      } else {
+        final Future<List<Record>> future = this.completionService.take();
+        this.pending.remove(future);
+        return future.get();
+      }
+    } catch (final InterruptedException e) {
+      throw new ThreadInterruptedException(e);
+    } catch (final ExecutionException e) {
+      throw Exceptions.wrap("Error reading " + this.resource, e.getCause());
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (this.resource == null) {
+      return super.toString();
+    } else {
+      return this.resource.toString();
+    }
+  }
+
+  /**
+   * Write all the records to the channel, disconnecting from the channel once
+   * all the records have been written.
+   *
+   * @param out The channel to write to.
+   */
+  public void writeTo(final ChannelOutput<Record> out) {
+    out.writeConnect();
+    try {
+      for (final Record record : this) {
+        out.write(record);
+      }
+    } finally {
+      out.writeDisconnect();
+      close();
+    }
+  }
+}
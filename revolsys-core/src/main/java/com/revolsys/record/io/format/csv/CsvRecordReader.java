@@ -168,6 +168,7 @@ public class CsvRecordReader extends AbstractRecordReader {
                   return values;
                 } else {
                   // skip empty lines
+                  hadQuotes = false;
                 }
               } else {
                 addValue(values, hadQuotes);
@@ -190,6 +191,7 @@ public class CsvRecordReader extends AbstractRecordReader {
                     return values;
                   } else {
                     // skip empty lines
+                    hadQuotes = false;
                   }
                 } else {
                   addValue(values, hadQuotes);
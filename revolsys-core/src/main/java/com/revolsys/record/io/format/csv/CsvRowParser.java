@@ -0,0 +1,159 @@
+package com.revolsys.record.io.format.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parse CSV rows from an in memory character range using the same rules as
+ * {@link CsvRecordReader}.
+ */
+class CsvRowParser {
+  /** After a field separator or new line, a quote starts a quoted value. */
+  static final int FIELD_START = 0;
+
+  /** In an unquoted value, quotes are part of the value. */
+  static final int UNQUOTED = 1;
+
+  /** In a quoted value. */
+  static final int QUOTED = 2;
+
+  /**
+   * After a quote in a quoted value, the next character decides if it was an
+   * escaped quote or the end of the quotes.
+   */
+  static final int QUOTED_QUOTE = 3;
+
+  /** After a quoted value, a quote starts another quoted section. */
+  static final int AFTER_QUOTED = 4;
+
+  static final int STATE_COUNT = 5;
+
+  private static final char BYTE_ORDER_MARK = 65279;
+
+  /**
+   * Get the quote state after the character. This is the state machine used by
+   * {@link #readNextRow()} so it can also be used to find record boundaries
+   * without parsing the values. A new line or carriage return outside quotes
+   * returns {@link #FIELD_START}.
+   *
+   * @param state The state before the character.
+   * @param character The character.
+   * @param fieldSeparator The field separator.
+   * @return The state after the character.
+   */
+  static int nextState(final int state, final char character, final char fieldSeparator) {
+    if (state == QUOTED) {
+      if (character == '"') {
+        return QUOTED_QUOTE;
+      } else {
+        return QUOTED;
+      }
+    } else if (state == QUOTED_QUOTE && character == '"') {
+      return QUOTED;
+    } else if (character == '"') {
+      if (state == UNQUOTED) {
+        return UNQUOTED;
+      } else {
+        return QUOTED;
+      }
+    } else if (character == fieldSeparator || character == '\n' || character == '\r') {
+      return FIELD_START;
+    } else if (state == QUOTED_QUOTE) {
+      return AFTER_QUOTED;
+    } else if (state == FIELD_START && character != BYTE_ORDER_MARK) {
+      return UNQUOTED;
+    } else {
+      return state;
+    }
+  }
+
+  private final char[] characters;
+
+  private final int end;
+
+  private final char fieldSeparator;
+
+  private int offset;
+
+  private final StringBuilder sb = new StringBuilder(1024);
+
+  public CsvRowParser(final char[] characters, final int offset, final int end,
+    final char fieldSeparator) {
+    this.characters = characters;
+    this.offset = offset;
+    this.end = end;
+    this.fieldSeparator = fieldSeparator;
+  }
+
+  private void addValue(final List<String> values, final boolean hadQuotes) {
+    final StringBuilder sb = this.sb;
+    if (hadQuotes || sb.length() > 0) {
+      values.add(sb.toString());
+      sb.setLength(0);
+    } else {
+      values.add(null);
+    }
+  }
+
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Read the next row from the characters.
+   *
+   * @return The values or null if there are no more rows.
+   */
+  public List<String> readNextRow() {
+    final char fieldSeparator = this.fieldSeparator;
+    final char[] characters = this.characters;
+    final int end = this.end;
+    final StringBuilder sb = this.sb;
+    sb.setLength(0);
+    final List<String> values = new ArrayList<>();
+    int state = FIELD_START;
+    while (true) {
+      if (this.offset >= end) {
+        if (values.isEmpty()) {
+          if (sb.length() > 0) {
+            values.add(sb.toString());
+          } else {
+            return null;
+          }
+        } else {
+          addValue(values, state >= QUOTED);
+        }
+        return values;
+      }
+      final char character = characters[this.offset++];
+      if (character == '\r' && state != QUOTED && this.offset < end
+        && characters[this.offset] == '\n') {
+        // The new line ends the row
+        continue;
+      }
+      final boolean hadQuotes = state >= QUOTED;
+      final int previousState = state;
+      state = nextState(state, character, fieldSeparator);
+      if (character == BYTE_ORDER_MARK || state == QUOTED_QUOTE) {
+      } else if (state == QUOTED) {
+        if (previousState == QUOTED || previousState == QUOTED_QUOTE) {
+          sb.append(character);
+        }
+      } else if (state != FIELD_START) {
+        sb.append(character);
+      } else if (character == fieldSeparator) {
+        addValue(values, hadQuotes);
+      } else if (values.isEmpty()) {
+        if (sb.length() > 0) {
+          values.add(sb.toString());
+          return values;
+        } else {
+          // skip empty lines
+        }
+      } else {
+        addValue(values, hadQuotes);
+        return values;
+      }
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package com.revolsys.record.io.format.geojson;
 
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
@@ -13,8 +12,11 @@ import org.jeometry.coordinatesystem.model.systems.EpsgCoordinateSystems;
 
 import com.revolsys.collection.map.MapEx;
 import com.revolsys.geometry.io.GeometryReader;
-import com.revolsys.io.FileUtil;
+import com.revolsys.io.Utf8ByteBufferWriter;
+import com.revolsys.record.Record;
+import com.revolsys.record.RecordFactory;
 import com.revolsys.record.io.GeometryRecordReaderFactory;
+import com.revolsys.record.io.RecordReader;
 import com.revolsys.record.io.RecordWriter;
 import com.revolsys.record.io.RecordWriterFactory;
 import com.revolsys.record.schema.RecordDefinitionProxy;
@@ -90,11 +92,23 @@ public class GeoJson extends GeometryRecordReaderFactory implements RecordWriter
     return new GeoJsonGeometryReader(resource, properties);
   }
 
+  @Override
+  public RecordReader newRecordReader(final Resource resource,
+    final RecordFactory<? extends Record> recordFactory, final MapEx properties) {
+    if (properties != null && properties.getBoolean("streaming", false)) {
+      final GeoJsonRecordReader reader = new GeoJsonRecordReader(resource, recordFactory);
+      reader.setProperties(properties);
+      return reader;
+    } else {
+      return super.newRecordReader(resource, recordFactory, properties);
+    }
+  }
+
   @Override
   public RecordWriter newRecordWriter(final String baseName,
     final RecordDefinitionProxy recordDefinition, final OutputStream outputStream,
     final Charset charset) {
-    final OutputStreamWriter writer = FileUtil.newUtf8Writer(outputStream);
+    final Utf8ByteBufferWriter writer = new Utf8ByteBufferWriter(outputStream);
     return new GeoJsonRecordWriter(writer, recordDefinition);
   }
 }
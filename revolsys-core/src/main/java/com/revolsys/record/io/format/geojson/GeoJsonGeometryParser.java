@@ -0,0 +1,359 @@
+package com.revolsys.record.io.format.geojson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.revolsys.collection.list.DoubleList;
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geometry.model.LineString;
+import com.revolsys.geometry.model.LinearRing;
+import com.revolsys.geometry.model.Point;
+import com.revolsys.geometry.model.Polygon;
+import com.revolsys.record.io.format.json.JsonParser;
+import com.revolsys.record.io.format.json.JsonParser.EventType;
+
+/**
+ * <p>
+ * Read a GeoJSON geometry object from a {@link JsonParser} token by token.
+ * </p>
+ * <p>
+ * The coordinates are read straight into a reusable double buffer with the
+ * number of children of each nested array recorded per nesting level. The
+ * geometry is created from those buffers once the end of the geometry object
+ * is reached, so no intermediate {@link java.util.List} of boxed values is
+ * created and the "type" can appear before or after the "coordinates".
+ * </p>
+ */
+public class GeoJsonGeometryParser {
+  private static final int MAX_DEPTH = 4;
+
+  /**
+   * Get the geometry factory for a GeoJSON "crs" object.
+   *
+   * @param crs The crs object.
+   * @param geometryFactory The geometry factory to use if the crs is not an EPSG name.
+   * @return The geometry factory.
+   */
+  public static GeometryFactory getGeometryFactory(final Map<String, Object> crs,
+    final GeometryFactory geometryFactory) {
+    if (crs != null) {
+      final Object properties = crs.get(GeoJson.PROPERTIES);
+      if (properties instanceof Map) {
+        final Object name = ((Map<?, ?>)properties).get(GeoJson.NAME);
+        if (name instanceof String) {
+          final String crsName = (String)name;
+          if (crsName.startsWith(GeoJson.URN_OGC_DEF_CRS_EPSG)) {
+            final int srid = Integer
+              .parseInt(crsName.substring(GeoJson.URN_OGC_DEF_CRS_EPSG.length()));
+            return GeometryFactory.floating3d(srid);
+          } else if (crsName.startsWith(GeoJson.EPSG)) {
+            final int srid = Integer.parseInt(crsName.substring(GeoJson.EPSG.length()));
+            return GeometryFactory.floating3d(srid);
+          }
+        }
+      }
+    }
+    return geometryFactory;
+  }
+
+  private int axisCount;
+
+  /** The number of children of each array, indexed by nesting level. */
+  private final int[][] counts = new int[MAX_DEPTH + 1][];
+
+  private final int[] countIndex = new int[MAX_DEPTH + 1];
+
+  private final int[] countSize = new int[MAX_DEPTH + 1];
+
+  private GeometryFactory geometryFactory;
+
+  private final JsonParser in;
+
+  private int ordinateIndex;
+
+  private final DoubleList ordinates = new DoubleList();
+
+  /** The nesting level of the arrays containing the position ordinates. */
+  private int positionDepth;
+
+  public GeoJsonGeometryParser(final JsonParser in, final GeometryFactory geometryFactory) {
+    this.in = in;
+    this.geometryFactory = geometryFactory;
+    for (int i = 0; i <= MAX_DEPTH; i++) {
+      this.counts[i] = new int[16];
+    }
+  }
+
+  private void addCount(final int depth, final int count) {
+    final int size = this.countSize[depth];
+    int[] counts = this.counts[depth];
+    if (size == counts.length) {
+      counts = Arrays.copyOf(counts, size + (size >> 1));
+      this.counts[depth] = counts;
+    }
+    counts[size] = count;
+    this.countSize[depth] = size + 1;
+  }
+
+  private void clear() {
+    this.ordinates.clear();
+    this.ordinateIndex = 0;
+    this.positionDepth = 0;
+    this.axisCount = 0;
+    Arrays.fill(this.countIndex, 0);
+    Arrays.fill(this.countSize, 0);
+  }
+
+  private void expectPositionDepth(final String geometryType, final int depth) {
+    if (this.positionDepth != depth) {
+      throw new IllegalStateException(
+        geometryType + " coordinates must be nested " + depth + " deep not " + this.positionDepth);
+    }
+  }
+
+  public GeometryFactory getGeometryFactory() {
+    return this.geometryFactory;
+  }
+
+  private Geometry newEmptyGeometry(final GeometryFactory factory, final String geometryType) {
+    if (GeoJson.POINT.equals(geometryType)) {
+      return factory.point();
+    } else if (GeoJson.LINE_STRING.equals(geometryType)) {
+      return factory.lineString();
+    } else if (GeoJson.POLYGON.equals(geometryType)) {
+      return factory.polygon();
+    } else if (GeoJson.MULTI_POINT.equals(geometryType)) {
+      return factory.punctual(new Point[0]);
+    } else if (GeoJson.MULTI_LINE_STRING.equals(geometryType)) {
+      return factory.lineal(new LineString[0]);
+    } else if (GeoJson.MULTI_POLYGON.equals(geometryType)) {
+      return factory.polygonal(new Polygon[0]);
+    } else {
+      return factory.geometry();
+    }
+  }
+
+  private Geometry newGeometry(GeometryFactory factory, final String geometryType,
+    final List<Geometry> geometries) {
+    if (GeoJson.GEOMETRY_COLLECTION.equals(geometryType)) {
+      if (geometries == null) {
+        return factory.geometry();
+      } else {
+        return factory.geometry(geometries);
+      }
+    } else if (this.positionDepth == 0) {
+      return newEmptyGeometry(factory, geometryType);
+    } else {
+      factory = factory.convertAxisCount(Math.max(2, this.axisCount));
+      if (GeoJson.POINT.equals(geometryType)) {
+        expectPositionDepth(geometryType, 1);
+        return factory.point(readCoordinates(1));
+      } else if (GeoJson.LINE_STRING.equals(geometryType)) {
+        expectPositionDepth(geometryType, 2);
+        return newLineString(factory, 1);
+      } else if (GeoJson.POLYGON.equals(geometryType)) {
+        expectPositionDepth(geometryType, 3);
+        return newPolygon(factory, 1);
+      } else if (GeoJson.MULTI_POINT.equals(geometryType)) {
+        expectPositionDepth(geometryType, 2);
+        final int pointCount = nextCount(1);
+        final Point[] points = new Point[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+          points[i] = factory.point(readCoordinates(1));
+        }
+        return factory.punctual(points);
+      } else if (GeoJson.MULTI_LINE_STRING.equals(geometryType)) {
+        expectPositionDepth(geometryType, 3);
+        final int lineCount = nextCount(1);
+        final LineString[] lines = new LineString[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+          lines[i] = newLineString(factory, 2);
+        }
+        return factory.lineal(lines);
+      } else if (GeoJson.MULTI_POLYGON.equals(geometryType)) {
+        expectPositionDepth(geometryType, 4);
+        final int polygonCount = nextCount(1);
+        final Polygon[] polygons = new Polygon[polygonCount];
+        for (int i = 0; i < polygonCount; i++) {
+          polygons[i] = newPolygon(factory, 2);
+        }
+        return factory.polygonal(polygons);
+      } else {
+        throw new IllegalArgumentException("Unknown geometry type: " + geometryType);
+      }
+    }
+  }
+
+  private LineString newLineString(final GeometryFactory factory, final int depth) {
+    final int vertexCount = nextCount(depth);
+    final double[] coordinates = readCoordinates(vertexCount);
+    return factory.lineString(this.axisCount, vertexCount, coordinates);
+  }
+
+  private Polygon newPolygon(final GeometryFactory factory, final int depth) {
+    final int ringCount = nextCount(depth);
+    final List<LinearRing> rings = new ArrayList<>(ringCount);
+    for (int i = 0; i < ringCount; i++) {
+      final int vertexCount = nextCount(depth + 1);
+      final double[] coordinates = readCoordinates(vertexCount);
+      rings.add(factory.linearRing(this.axisCount, vertexCount, coordinates));
+    }
+    return factory.polygon(rings);
+  }
+
+  private int nextCount(final int depth) {
+    return this.counts[depth][this.countIndex[depth]++];
+  }
+
+  /**
+   * Copy the next vertexCount positions from the ordinate buffer. Positions
+   * with fewer ordinates than the axis count are padded with NaN.
+   */
+  private double[] readCoordinates(final int vertexCount) {
+    final int axisCount = this.axisCount;
+    final double[] coordinates = new double[vertexCount * axisCount];
+    final DoubleList ordinates = this.ordinates;
+    int coordinateIndex = 0;
+    for (int vertexIndex = 0; vertexIndex < vertexCount; vertexIndex++) {
+      final int ordinateCount = nextCount(this.positionDepth);
+      for (int axisIndex = 0; axisIndex < axisCount; axisIndex++) {
+        if (axisIndex < ordinateCount) {
+          coordinates[coordinateIndex++] = ordinates.getDouble(this.ordinateIndex++);
+        } else {
+          coordinates[coordinateIndex++] = Double.NaN;
+        }
+      }
+    }
+    return coordinates;
+  }
+
+  /**
+   * Read the coordinates array, the current event must be the start array.
+   */
+  private void readCoordinatesArray() {
+    final JsonParser in = this.in;
+    final int[] childCounts = new int[MAX_DEPTH + 1];
+    int depth = 1;
+    while (depth > 0) {
+      final EventType event = in.next();
+      switch (event) {
+        case startArray:
+          if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("Coordinates cannot be nested more than " + MAX_DEPTH
+              + " deep: " + in);
+          }
+          childCounts[depth]++;
+          depth++;
+          childCounts[depth] = 0;
+        break;
+        case number:
+          this.ordinates.addDouble(in.getDoubleValue());
+          childCounts[depth]++;
+          if (this.positionDepth == 0) {
+            this.positionDepth = depth;
+          } else if (this.positionDepth != depth) {
+            throw new IllegalStateException("Coordinates must all be nested to the same depth");
+          }
+        break;
+        case endArray:
+          final int childCount = childCounts[depth];
+          addCount(depth, childCount);
+          if (depth == this.positionDepth) {
+            this.axisCount = Math.max(this.axisCount, childCount);
+          }
+          depth--;
+        break;
+        case comma:
+        break;
+        default:
+          throw new IllegalStateException("Unexpected " + event + " in coordinates: " + in);
+      }
+    }
+  }
+
+  /**
+   * Read the geometry object. The current event must be the start object or
+   * null value, or the next event must be one of those.
+   *
+   * @return The geometry or null if it was a null value.
+   */
+  public Geometry readGeometry() {
+    final JsonParser in = this.in;
+    EventType event = in.getEvent();
+    if (event != EventType.startObject && event != EventType.nullValue) {
+      event = in.next();
+    }
+    if (event == EventType.nullValue) {
+      return null;
+    } else if (event != EventType.startObject) {
+      throw new IllegalStateException("Expecting start object, not: " + in);
+    }
+    clear();
+    GeometryFactory factory = this.geometryFactory;
+    String geometryType = null;
+    List<Geometry> geometries = null;
+    do {
+      event = in.next();
+      if (event == EventType.label) {
+        final String fieldName = in.getLabel();
+        if (GeoJson.TYPE.equals(fieldName)) {
+          geometryType = in.getString();
+        } else if (GeoJson.COORDINATES.equals(fieldName)) {
+          if (in.next() == EventType.startArray) {
+            readCoordinatesArray();
+          }
+        } else if (GeoJson.GEOMETRIES.equals(fieldName)) {
+          geometries = readGeometries(factory);
+        } else if (GeoJson.CRS.equals(fieldName)) {
+          factory = readCoordinateSystem(factory);
+        } else {
+          in.getValue();
+        }
+        event = in.next();
+      }
+    } while (event == EventType.comma);
+    if (event != EventType.endObject) {
+      throw new IllegalStateException("Expecting end object, not: " + in);
+    }
+    return newGeometry(factory, geometryType, geometries);
+  }
+
+  public GeometryFactory readCoordinateSystem(final GeometryFactory geometryFactory) {
+    final Object crs = this.in.getValue();
+    if (crs instanceof Map) {
+      @SuppressWarnings("unchecked")
+      final Map<String, Object> crsMap = (Map<String, Object>)crs;
+      return getGeometryFactory(crsMap, geometryFactory);
+    } else {
+      return geometryFactory;
+    }
+  }
+
+  private List<Geometry> readGeometries(final GeometryFactory factory) {
+    final JsonParser in = this.in;
+    final List<Geometry> geometries = new ArrayList<>();
+    if (in.next() == EventType.startArray) {
+      EventType event;
+      do {
+        event = in.next();
+        if (event == EventType.startObject) {
+          final GeoJsonGeometryParser parser = new GeoJsonGeometryParser(in, factory);
+          final Geometry geometry = parser.readGeometry();
+          geometries.add(geometry);
+          event = in.next();
+        }
+      } while (event == EventType.comma);
+      if (event != EventType.endArray) {
+        throw new IllegalStateException("Expecting end array, not: " + in);
+      }
+    }
+    return geometries;
+  }
+
+  public void setGeometryFactory(final GeometryFactory geometryFactory) {
+    this.geometryFactory = geometryFactory;
+  }
+}
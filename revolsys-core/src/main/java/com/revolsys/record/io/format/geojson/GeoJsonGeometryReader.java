@@ -8,6 +8,7 @@ import java.util.NoSuchElementException;
 import org.jeometry.coordinatesystem.model.systems.EpsgId;
 
 import com.revolsys.collection.iterator.AbstractIterator;
+import com.revolsys.collection.list.DoubleList;
 import com.revolsys.collection.map.MapEx;
 import com.revolsys.geometry.io.GeometryReader;
 import com.revolsys.geometry.model.ClockDirection;
@@ -89,12 +90,12 @@ public class GeoJsonGeometryReader extends AbstractIterator<Geometry> implements
   }
 
   private LineString readCoordinatesList(final boolean ring) {
-    final List<Double> coordinates = new ArrayList<>();
+    final DoubleList coordinates = new DoubleList();
     final int axisCount = readCoordinatesList(coordinates);
-    return new LineStringDouble(axisCount, coordinates);
+    return new LineStringDouble(axisCount, coordinates.toDoubleArray());
   }
 
-  private int readCoordinatesList(final List<Double> coordinates) {
+  private int readCoordinatesList(final DoubleList coordinates) {
     int axisCount = 0;
     if (this.in.getEvent() == EventType.startArray
       || this.in.hasNext() && this.in.next() == EventType.startArray) {
@@ -120,7 +121,7 @@ public class GeoJsonGeometryReader extends AbstractIterator<Geometry> implements
    * @param values The list to add the points coordinates to.
    * @return The dimension of the coordinate read.
    */
-  private int readCoordinatesListCoordinates(final List<Double> values) {
+  private int readCoordinatesListCoordinates(final DoubleList values) {
     int numAxis = 0;
     if (this.in.getEvent() == EventType.startArray
       || this.in.hasNext() && this.in.next() == EventType.startArray) {
@@ -131,7 +132,7 @@ public class GeoJsonGeometryReader extends AbstractIterator<Geometry> implements
         if (value instanceof EventType) {
           event = (EventType)value;
         } else if (value instanceof Number) {
-          values.add(((Number)value).doubleValue());
+          values.addDouble(((Number)value).doubleValue());
           numAxis++;
           event = this.in.next();
         } else {
@@ -0,0 +1,306 @@
+package com.revolsys.record.io.format.geojson;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.jeometry.common.data.type.DataType;
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.coordinatesystem.model.systems.EpsgId;
+
+import com.revolsys.geometry.model.ClockDirection;
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryDataTypes;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.io.FileUtil;
+import com.revolsys.record.Record;
+import com.revolsys.record.RecordFactory;
+import com.revolsys.record.io.AbstractRecordReader;
+import com.revolsys.record.io.format.json.JsonObject;
+import com.revolsys.record.io.format.json.JsonParser;
+import com.revolsys.record.io.format.json.JsonParser.EventType;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.record.schema.RecordDefinitionBuilder;
+import com.revolsys.spring.resource.Resource;
+
+/**
+ * <p>
+ * Read the features of a GeoJSON FeatureCollection as records, walking the
+ * "features" array token by token so that memory use is bounded by the
+ * largest single feature.
+ * </p>
+ * <p>
+ * If a record definition is not set it is created from the "properties" of
+ * the first {@link #getSchemaSampleSize()} features plus a GEOMETRY field. Those
+ * features are buffered until they are read. A property that has values of
+ * different types in the sample is an {@link DataTypes#OBJECT} field. Properties
+ * that only appear after the sample are ignored.
+ * </p>
+ */
+public class GeoJsonRecordReader extends AbstractRecordReader {
+  private static final class Feature {
+    private final Geometry geometry;
+
+    private final Object id;
+
+    private final Map<String, Object> properties;
+
+    private Feature(final Object id, final Geometry geometry,
+      final Map<String, Object> properties) {
+      this.id = id;
+      this.geometry = geometry;
+      this.properties = properties;
+    }
+  }
+
+  private static void addFieldType(final Map<String, DataType> fieldTypes, final String name,
+    final Object value) {
+    final DataType dataType = fieldTypes.get(name);
+    if (value == null) {
+      if (!fieldTypes.containsKey(name)) {
+        fieldTypes.put(name, null);
+      }
+    } else {
+      final DataType valueType = DataTypes.getDataType(value);
+      if (dataType == null) {
+        fieldTypes.put(name, valueType);
+      } else if (dataType != valueType) {
+        fieldTypes.put(name, DataTypes.OBJECT);
+      }
+    }
+  }
+
+  private final ArrayDeque<Feature> bufferedFeatures = new ArrayDeque<>();
+
+  private GeoJsonGeometryParser geometryParser;
+
+  private boolean hasMoreFeatures;
+
+  private JsonParser in;
+
+  private Resource resource;
+
+  private int schemaSampleSize = 1000;
+
+  public GeoJsonRecordReader(final Resource resource,
+    final RecordFactory<? extends Record> recordFactory) {
+    super(recordFactory);
+    this.resource = resource;
+  }
+
+  @Override
+  protected void closeDo() {
+    FileUtil.closeSilent(this.in);
+    this.in = null;
+    this.geometryParser = null;
+    this.bufferedFeatures.clear();
+    this.hasMoreFeatures = false;
+    this.resource = null;
+    super.closeDo();
+  }
+
+  @Override
+  protected Record getNext() throws NoSuchElementException {
+    Feature feature = this.bufferedFeatures.poll();
+    if (feature == null) {
+      feature = readFeature();
+    }
+    if (feature == null) {
+      throw new NoSuchElementException();
+    } else {
+      final Record record = newRecord();
+      final Map<String, Object> properties = feature.properties;
+      if (properties != null) {
+        for (final Map.Entry<String, Object> entry : properties.entrySet()) {
+          final String name = entry.getKey();
+          if (record.hasField(name)) {
+            record.setValue(name, entry.getValue());
+          }
+        }
+      }
+      if (feature.id != null && record.hasField("id") && record.getValue("id") == null) {
+        record.setValue("id", feature.id);
+      }
+      record.setGeometryValue(feature.geometry);
+      return record;
+    }
+  }
+
+  @Override
+  public ClockDirection getPolygonRingDirection() {
+    return ClockDirection.COUNTER_CLOCKWISE;
+  }
+
+  public int getSchemaSampleSize() {
+    return this.schemaSampleSize;
+  }
+
+  @Override
+  protected void initDo() {
+    super.initDo();
+    this.in = new JsonParser(this.resource);
+    GeometryFactory geometryFactory = getGeometryFactory();
+    this.geometryParser = new GeoJsonGeometryParser(this.in, geometryFactory);
+    final boolean newRecordDefinition = getRecordDefinition() == null;
+    this.hasMoreFeatures = skipToFeatures();
+    if (this.hasMoreFeatures) {
+      int sampleSize = 1;
+      if (newRecordDefinition) {
+        sampleSize = Math.max(1,
+          getProperties().getInteger("schemaSampleSize", this.schemaSampleSize));
+      }
+      for (int i = 0; i < sampleSize; i++) {
+        final Feature feature = readFeature();
+        if (feature == null) {
+          break;
+        } else {
+          this.bufferedFeatures.add(feature);
+        }
+      }
+    }
+    geometryFactory = this.geometryParser.getGeometryFactory();
+    setGeometryFactory(geometryFactory);
+    if (newRecordDefinition) {
+      final RecordDefinition recordDefinition = newRecordDefinition(geometryFactory);
+      setRecordDefinition(recordDefinition);
+    }
+  }
+
+  @Override
+  protected GeometryFactory loadGeometryFactory() {
+    return GeometryFactory.floating3d(EpsgId.WGS84);
+  }
+
+  private RecordDefinition newRecordDefinition(final GeometryFactory geometryFactory) {
+    final String baseName = this.resource.getBaseName();
+    final RecordDefinitionBuilder builder = new RecordDefinitionBuilder("/" + baseName);
+    final Map<String, DataType> fieldTypes = new LinkedHashMap<>();
+    Object featureId = null;
+    for (final Feature feature : this.bufferedFeatures) {
+      if (featureId == null) {
+        featureId = feature.id;
+      }
+      final Map<String, Object> properties = feature.properties;
+      if (properties != null) {
+        for (final Map.Entry<String, Object> entry : properties.entrySet()) {
+          addFieldType(fieldTypes, entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    if (featureId != null && !fieldTypes.containsKey("id")) {
+      builder.addField("id", DataTypes.getDataType(featureId));
+    }
+    for (final Map.Entry<String, DataType> entry : fieldTypes.entrySet()) {
+      final String name = entry.getKey();
+      DataType dataType = entry.getValue();
+      if (dataType == null) {
+        dataType = DataTypes.STRING;
+      }
+      builder.addField(name, dataType);
+    }
+    builder.addField("GEOMETRY", GeometryDataTypes.GEOMETRY);
+    builder.setGeometryFactory(geometryFactory);
+    return builder.getRecordDefinition();
+  }
+
+  /**
+   * Read the next feature from the features array.
+   *
+   * @return The feature or null if the end of the array was reached.
+   */
+  private Feature readFeature() {
+    final JsonParser in = this.in;
+    if (!this.hasMoreFeatures || !in.hasNext()) {
+      this.hasMoreFeatures = false;
+      return null;
+    }
+    EventType event = in.next();
+    if (event == EventType.comma) {
+      event = in.next();
+    }
+    if (event == EventType.endArray) {
+      this.hasMoreFeatures = false;
+      return null;
+    } else if (event != EventType.startObject) {
+      throw new IllegalStateException("Expecting start of feature object, not: " + in);
+    }
+    Object id = null;
+    Geometry geometry = null;
+    Map<String, Object> properties = null;
+    do {
+      event = in.next();
+      if (event == EventType.label) {
+        final String fieldName = in.getLabel();
+        if (GeoJson.GEOMETRY.equals(fieldName)) {
+          in.next();
+          geometry = this.geometryParser.readGeometry();
+        } else if (GeoJson.PROPERTIES.equals(fieldName)) {
+          if (in.next() == EventType.startObject) {
+            final JsonObject map = in.getMap();
+            properties = map;
+          }
+        } else if ("id".equals(fieldName)) {
+          id = in.getValue();
+        } else {
+          in.getValue();
+        }
+        event = in.next();
+      }
+    } while (event == EventType.comma);
+    if (event != EventType.endObject) {
+      throw new IllegalStateException("Expecting end of feature object, not: " + in);
+    }
+    return new Feature(id, geometry, properties);
+  }
+
+  /**
+   * Set the number of features used to create the record definition if one
+   * isn't set. Can also be set using the schemaSampleSize property.
+   *
+   * @param schemaSampleSize The number of features.
+   */
+  public void setSchemaSampleSize(final int schemaSampleSize) {
+    this.schemaSampleSize = Math.max(1, schemaSampleSize);
+  }
+
+  /**
+   * Read the top level FeatureCollection object until the start of the
+   * "features" array.
+   *
+   * @return True if the features array was found.
+   */
+  private boolean skipToFeatures() {
+    final JsonParser in = this.in;
+    if (in.hasNext() && in.next() == EventType.startDocument && in.hasNext()
+      && in.next() == EventType.startObject) {
+      EventType event;
+      do {
+        event = in.next();
+        if (event == EventType.label) {
+          final String fieldName = in.getLabel();
+          if (GeoJson.FEATURES.equals(fieldName)) {
+            return in.next() == EventType.startArray;
+          } else if (GeoJson.CRS.equals(fieldName)) {
+            final GeometryFactory geometryFactory = this.geometryParser
+              .readCoordinateSystem(this.geometryParser.getGeometryFactory());
+            this.geometryParser.setGeometryFactory(geometryFactory);
+          } else {
+            in.getValue();
+          }
+          event = in.next();
+        }
+      } while (event == EventType.comma);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    if (this.resource == null) {
+      return super.toString();
+    } else {
+      return this.resource.toString();
+    }
+  }
+}
@@ -18,6 +18,7 @@ import com.revolsys.geometry.model.Polygonal;
 import com.revolsys.geometry.model.Punctual;
 import com.revolsys.io.AbstractRecordWriter;
 import com.revolsys.io.IoConstants;
+import com.revolsys.io.Utf8ByteBufferWriter;
 import com.revolsys.record.Record;
 import com.revolsys.record.io.format.json.JsonWriter;
 import com.revolsys.record.schema.FieldDefinition;
@@ -50,7 +51,11 @@ public class GeoJsonRecordWriter extends AbstractRecordWriter {
     if (recordDefinition != null) {
       this.geometryFactory = recordDefinition.getGeometryFactory();
     }
-    this.out = new JsonWriter(new BufferedWriter(out));
+    if (out instanceof Utf8ByteBufferWriter || out instanceof BufferedWriter) {
+      this.out = new JsonWriter(out);
+    } else {
+      this.out = new JsonWriter(new BufferedWriter(out));
+    }
     this.out.setIndent(true);
   }
 
@@ -73,18 +78,24 @@ public class GeoJsonRecordWriter extends AbstractRecordWriter {
   }
 
   private void coordinatePoint(final Point coordinates) {
+    final GeometryFactory geometryFactory = coordinates.getGeometryFactory();
     this.out.print('[');
     for (int axisIndex = 0; axisIndex < coordinates.getAxisCount(); axisIndex++) {
       if (axisIndex > 0) {
         this.out.print(',');
       }
       final double value = coordinates.getCoordinate(axisIndex);
-      this.out.value(value);
+      final double scale = geometryFactory.getScale(axisIndex);
+      this.out.number(value, scale);
     }
     this.out.print(']');
   }
 
   private void coordinatesLineString(final LineString line) {
+    final GeometryFactory geometryFactory = line.getGeometryFactory();
+    final double scaleX = geometryFactory.getScaleX();
+    final double scaleY = geometryFactory.getScaleY();
+    final int axisCount = line.getAxisCount();
     this.out.startList(false);
     this.out.indent();
     for (int i = 0; i < line.getVertexCount(); i++) {
@@ -96,14 +107,15 @@ public class GeoJsonRecordWriter extends AbstractRecordWriter {
       final double y = line.getY(i);
 
       this.out.print('[');
-      this.out.value(x);
+      this.out.number(x, scaleX);
       this.out.print(',');
-      this.out.value(y);
+      this.out.number(y, scaleY);
 
-      for (int axisIndex = 2; axisIndex < line.getAxisCount(); axisIndex++) {
+      for (int axisIndex = 2; axisIndex < axisCount; axisIndex++) {
         this.out.print(',');
         final double value = line.getCoordinate(i, axisIndex);
-        this.out.value(value);
+        final double scale = geometryFactory.getScale(axisIndex);
+        this.out.number(value, scale);
       }
       this.out.print(']');
     }
@@ -0,0 +1,127 @@
+package com.revolsys.record.io.format.json;
+
+import org.jeometry.common.number.Doubles;
+
+/**
+ * <p>
+ * Format doubles for JSON output without creating intermediate strings.
+ * </p>
+ * <p>
+ * Values that can be written exactly as a decimal with at most 17 fraction
+ * digits (which covers integers and coordinates of all practical magnitudes)
+ * are written using the fewest fraction digits that parse back to the same
+ * double. Other values fall back to {@link Doubles#toString(double)}.
+ * </p>
+ */
+public final class JsonDoubleFormatter {
+  private static final double MAX_EXACT = 9007199254740992.0;
+
+  private static final int MAX_FRACTION_DIGITS = 17;
+
+  private static final double[] POWERS_OF_TEN = new double[MAX_FRACTION_DIGITS + 1];
+
+  static {
+    double power = 1;
+    for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = power;
+      power *= 10;
+    }
+  }
+
+  /**
+   * Format the value into the characters array.
+   *
+   * @param value The value, must not be NaN or infinite.
+   * @param characters The character buffer, must be at least 32 characters
+   *          from the offset.
+   * @param offset The offset to start writing at.
+   * @return The offset after the last character written, or -1 if the value
+   *         must be formatted using {@link Doubles#toString(double)}.
+   */
+  public static int format(final double value, final char[] characters, final int offset) {
+    if (value == 0) {
+      characters[offset] = '0';
+      return offset + 1;
+    }
+    final double absValue = Math.abs(value);
+    if (absValue >= MAX_EXACT || absValue < 1e-7) {
+      return -1;
+    }
+    for (int fractionDigits = 0; fractionDigits <= MAX_FRACTION_DIGITS; fractionDigits++) {
+      final double scale = POWERS_OF_TEN[fractionDigits];
+      final double scaled = absValue * scale;
+      if (scaled >= MAX_EXACT) {
+        return -1;
+      }
+      final long digits = Math.round(scaled);
+      if (digits / scale == absValue) {
+        int position = offset;
+        if (value < 0) {
+          characters[position++] = '-';
+        }
+        return writeDigits(digits, fractionDigits, characters, position);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Round the value to the scale (e.g. 1000 for 3 decimal places) as used by
+   * {@link com.revolsys.geometry.model.GeometryFactory#getScale(int)}. A scale
+   * of 0 or less means floating and the value is returned unchanged.
+   *
+   * @param value The value.
+   * @param scale The scale.
+   * @return The rounded value.
+   */
+  public static double makePrecise(final double value, final double scale) {
+    if (scale > 0 && Double.isFinite(value)) {
+      final double scaled = value * scale;
+      if (Math.abs(scaled) < MAX_EXACT) {
+        return Math.round(scaled) / scale;
+      }
+    }
+    return value;
+  }
+
+  public static String toString(final double value) {
+    final char[] characters = new char[32];
+    final int end = format(value, characters, 0);
+    if (end == -1) {
+      return Doubles.toString(value);
+    } else {
+      return new String(characters, 0, end);
+    }
+  }
+
+  private static int writeDigits(long digits, final int fractionDigits, final char[] characters,
+    final int offset) {
+    int digitCount = 1;
+    for (long remaining = digits / 10; remaining > 0; remaining /= 10) {
+      digitCount++;
+    }
+    if (digitCount <= fractionDigits) {
+      digitCount = fractionDigits + 1;
+    }
+    int end = offset + digitCount;
+    if (fractionDigits > 0) {
+      end++;
+    }
+    int position = end;
+    for (int i = 0; i < fractionDigits; i++) {
+      characters[--position] = (char)('0' + digits % 10);
+      digits /= 10;
+    }
+    if (fractionDigits > 0) {
+      characters[--position] = '.';
+    }
+    do {
+      characters[--position] = (char)('0' + digits % 10);
+      digits /= 10;
+    } while (position > offset);
+    return end;
+  }
+
+  private JsonDoubleFormatter() {
+  }
+}
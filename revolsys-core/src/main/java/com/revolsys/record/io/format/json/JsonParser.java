@@ -1,15 +1,22 @@
 package com.revolsys.record.io.format.json;
 
-import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.sql.Clob;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -18,9 +25,9 @@ import java.util.NoSuchElementException;
 
 import org.jeometry.common.exception.WrappedException;
 import org.jeometry.common.logging.Logs;
-import org.jeometry.common.number.Doubles;
 import org.jeometry.common.number.Integers;
 
+import com.revolsys.collection.list.DoubleList;
 import com.revolsys.io.FileUtil;
 import com.revolsys.spring.resource.Resource;
 
@@ -150,47 +157,245 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
     }
   }
 
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int LABEL_CACHE_SIZE = 256;
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private final char[] buffer = new char[BUFFER_SIZE];
+
+  private int bufferIndex;
+
+  private int bufferLimit;
+
+  private ByteBuffer byteBuffer;
+
+  private ReadableByteChannel byteChannel;
+
+  private Runnable closeAction;
+
   private int currentCharacter;
 
   private EventType currentEvent = EventType.startDocument;
 
+  /** True if the current number has a minus sign, so that -0 keeps its sign. */
+  private boolean currentNumberNegative;
+
+  private long currentNumberUnscaled;
+
+  private int currentNumberScale;
+
   private Object currentValue;
 
+  private CharsetDecoder decoder;
+
   private int depth;
 
+  private boolean endOfInput;
+
+  private final String[] labelCache = new String[LABEL_CACHE_SIZE];
+
   private EventType nextEvent = EventType.startDocument;
 
+  private boolean nextNumberNegative;
+
+  private int nextNumberScale;
+
+  private long nextNumberUnscaled;
+
   private Object nextValue;
 
-  private final Reader reader;
+  private Reader reader;
 
-  private Runnable closeAction;
+  private char[] text = new char[256];
+
+  private int textLength;
+
+  /**
+   * Construct a new parser reading the UTF-8 encoded bytes from the buffer.
+   *
+   * @param bytes The bytes to read.
+   */
+  public JsonParser(final ByteBuffer bytes) {
+    this.byteBuffer = bytes;
+    this.decoder = newUtf8Decoder();
+    init();
+  }
 
+  /**
+   * Construct a new parser reading the UTF-8 encoded bytes from the input
+   * stream. The bytes are decoded in bulk so the stream does not need to be
+   * buffered.
+   *
+   * @param in The input stream.
+   */
   public JsonParser(final InputStream in) {
-    this(FileUtil.newUtf8Reader(in));
+    this.byteChannel = Channels.newChannel(in);
+    this.byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.byteBuffer.flip();
+    this.decoder = newUtf8Decoder();
+    init();
   }
 
   public JsonParser(final Reader reader) {
-    this.reader = new BufferedReader(reader, 10000);
-    try {
-      this.currentCharacter = this.reader.read();
-    } catch (final IOException e) {
-      throw new RuntimeException(e);
-    }
+    this.reader = reader;
+    init();
   }
 
   public JsonParser(final Resource resource) {
-    this(resource.newBufferedReader());
+    this(resource.newInputStream());
+  }
+
+  private void appendText(final char character) {
+    if (this.textLength == this.text.length) {
+      this.text = Arrays.copyOf(this.text, this.textLength * 2);
+    }
+    this.text[this.textLength++] = character;
+  }
+
+  private void appendText(final char[] characters, final int offset, final int length) {
+    final int newLength = this.textLength + length;
+    if (newLength > this.text.length) {
+      this.text = Arrays.copyOf(this.text, Math.max(newLength, this.textLength * 2));
+    }
+    System.arraycopy(characters, offset, this.text, this.textLength, length);
+    this.textLength = newLength;
   }
 
   @Override
   public void close() {
     FileUtil.closeSilent(this.reader);
+    FileUtil.closeSilent(this.byteChannel);
     if (this.closeAction != null) {
       this.closeAction.run();
     }
   }
 
+  private boolean fillBuffer() throws IOException {
+    if (this.endOfInput) {
+      return false;
+    } else if (this.reader != null) {
+      int count;
+      do {
+        count = this.reader.read(this.buffer, 0, this.buffer.length);
+      } while (count == 0);
+      if (count > 0) {
+        this.bufferIndex = 0;
+        this.bufferLimit = count;
+        return true;
+      }
+    } else {
+      final ByteBuffer bytes = this.byteBuffer;
+      final CharBuffer characters = CharBuffer.wrap(this.buffer);
+      while (true) {
+        this.decoder.decode(bytes, characters, false);
+        if (characters.position() > 0) {
+          this.bufferIndex = 0;
+          this.bufferLimit = characters.position();
+          return true;
+        } else if (!readBytes()) {
+          this.decoder.decode(bytes, characters, true);
+          this.decoder.flush(characters);
+          this.endOfInput = true;
+          this.bufferIndex = 0;
+          this.bufferLimit = characters.position();
+          return this.bufferLimit > 0;
+        }
+      }
+    }
+    this.endOfInput = true;
+    this.bufferIndex = 0;
+    this.bufferLimit = 0;
+    return false;
+  }
+
+  /**
+   * Get the string for the label in the text buffer. The strings are cached
+   * by hash so that repeated keys don't allocate new strings.
+   */
+  private String getLabelText() {
+    final char[] text = this.text;
+    final int length = this.textLength;
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + text[i];
+    }
+    final int index = hash & LABEL_CACHE_SIZE - 1;
+    final String cached = this.labelCache[index];
+    if (cached != null && cached.length() == length) {
+      boolean equal = true;
+      for (int i = 0; i < length; i++) {
+        if (cached.charAt(i) != text[i]) {
+          equal = false;
+          break;
+        }
+      }
+      if (equal) {
+        return cached;
+      }
+    }
+    final String label = new String(text, 0, length);
+    this.labelCache[index] = label;
+    return label;
+  }
+
+  /**
+   * Get the next characters from the input without consuming them.
+   */
+  private String getRemaining(final int count) {
+    final StringBuilder remaining = new StringBuilder();
+    if (this.currentCharacter != -1) {
+      remaining.append((char)this.currentCharacter);
+    }
+    final int length = Math.min(count, this.bufferLimit - this.bufferIndex);
+    remaining.append(this.buffer, this.bufferIndex, length);
+    return remaining.toString();
+  }
+
+  private void init() {
+    try {
+      this.currentCharacter = read();
+      if (this.currentCharacter == 0xFEFF) {
+        this.currentCharacter = read();
+      }
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private CharsetDecoder newUtf8Decoder() {
+    return StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  private int read() throws IOException {
+    if (this.bufferIndex < this.bufferLimit || fillBuffer()) {
+      return this.buffer[this.bufferIndex++];
+    } else {
+      return -1;
+    }
+  }
+
+  private boolean readBytes() throws IOException {
+    if (this.byteChannel == null) {
+      return false;
+    } else {
+      final ByteBuffer bytes = this.byteBuffer;
+      bytes.compact();
+      try {
+        final int count = this.byteChannel.read(bytes);
+        return count > 0;
+      } finally {
+        bytes.flip();
+      }
+    }
+  }
+
   public JsonList getArray() {
     if (getEvent() == EventType.startArray || hasNext() && next() == EventType.startArray) {
       EventType event = getEvent();
@@ -201,11 +406,11 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
           event = (EventType)value;
           if (event == EventType.comma) {
             throw new IllegalStateException(
-              "Missing value before ',' " + FileUtil.getString(this.reader, 80));
+              "Missing value before ',' " + getRemaining(80));
           } else if (event == EventType.endArray) {
             if (!list.isEmpty()) {
               throw new IllegalStateException(
-                "Missing value after ',' and before ']' " + FileUtil.getString(this.reader, 80));
+                "Missing value after ',' and before ']' " + getRemaining(80));
             }
           }
         } else {
@@ -225,6 +430,9 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
 
   @SuppressWarnings("unchecked")
   public <T> T getCurrentValue() {
+    if (this.currentValue == null && this.currentEvent == EventType.number) {
+      this.currentValue = BigDecimal.valueOf(this.currentNumberUnscaled, this.currentNumberScale);
+    }
     return (T)this.currentValue;
   }
 
@@ -234,24 +442,22 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
 
   public double[] getDoubleArray() {
     if (getEvent() == EventType.startArray || hasNext() && next() == EventType.startArray) {
-      EventType event = getEvent();
-      final List<Number> list = new ArrayList<>();
+      final DoubleList list = new DoubleList();
+      EventType event;
       do {
-        final Object value = getValue();
-        if (value instanceof EventType) {
-          event = (EventType)value;
-        } else if (value instanceof Number) {
-          list.add((Number)value);
+        event = next();
+        if (event == EventType.number) {
+          list.addDouble(getDoubleValue());
           event = next();
-        } else {
-          throw new IllegalArgumentException("Expecting number, not: " + value);
+        } else if (event != EventType.endArray) {
+          throw new IllegalArgumentException("Expecting number, not: " + this);
         }
       } while (event == EventType.comma);
       if (event != EventType.endArray) {
         throw new IllegalStateException("Exepecting end array, not: " + event);
       }
 
-      return Doubles.toDoubleArray(list);
+      return list.toDoubleArray();
     } else if (getEvent() == EventType.nullValue) {
       return null;
     } else {
@@ -259,6 +465,38 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
     }
   }
 
+  /**
+   * Get the current number value as a double without creating a
+   * {@link BigDecimal} for the value.
+   *
+   * @return The double value.
+   */
+  public double getDoubleValue() {
+    if (this.currentEvent == EventType.number) {
+      if (this.currentValue == null) {
+        final long unscaled = this.currentNumberUnscaled;
+        final int scale = this.currentNumberScale;
+        if (unscaled == 0) {
+          return this.currentNumberNegative ? -0.0 : 0.0;
+        } else if (scale == 0) {
+          return unscaled;
+        } else if (Math.abs(unscaled) < 1L << 53) {
+          // Both values are exact so the result is correctly rounded
+          if (scale > 0 && scale < POWERS_OF_TEN.length) {
+            return unscaled / POWERS_OF_TEN[scale];
+          } else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+            return unscaled * POWERS_OF_TEN[-scale];
+          }
+        }
+        return BigDecimal.valueOf(unscaled, scale).doubleValue();
+      } else {
+        return ((Number)this.currentValue).doubleValue();
+      }
+    } else {
+      throw new IllegalStateException("Expecting a number, not: " + this.currentEvent);
+    }
+  }
+
   public EventType getEvent() {
     return this.currentEvent;
   }
@@ -292,11 +530,7 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
 
   public String getLabel() {
     if (getEvent() == EventType.label || hasNext() && next() == EventType.label) {
-      if (this.currentValue == null) {
-        return null;
-      } else {
-        return ((String)this.currentValue).intern();
-      }
+      return (String)this.currentValue;
     } else {
       throw new IllegalStateException("Expecting a label");
     }
@@ -394,59 +628,61 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
       switch (this.currentCharacter) {
         case ',':
           this.nextEvent = EventType.comma;
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
         break;
         case '{':
           this.nextEvent = EventType.startObject;
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
           this.depth++;
         break;
         case '}':
           this.nextEvent = EventType.endObject;
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
           this.depth--;
         break;
         case '[':
           this.nextEvent = EventType.startArray;
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
         break;
         case ']':
           this.nextEvent = EventType.endArray;
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
         break;
         case 't':
           for (int i = 0; i < 3; i++) {
-            this.currentCharacter = this.reader.read();
+            this.currentCharacter = read();
           }
           this.nextEvent = EventType.booleanValue;
           this.nextValue = Boolean.TRUE;
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
         break;
         case 'f':
           for (int i = 0; i < 4; i++) {
-            this.currentCharacter = this.reader.read();
+            this.currentCharacter = read();
           }
           this.nextEvent = EventType.booleanValue;
           this.nextValue = Boolean.FALSE;
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
         break;
         case 'n':
           for (int i = 0; i < 3; i++) {
-            this.currentCharacter = this.reader.read();
+            this.currentCharacter = read();
           }
           this.nextEvent = EventType.nullValue;
           this.nextValue = null;
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
         break;
         case '"':
-          this.nextEvent = EventType.string;
-
           processString();
-          this.currentCharacter = this.reader.read();
+          this.currentCharacter = read();
           skipWhitespace();
           if (this.currentCharacter == ':') {
             this.nextEvent = EventType.label;
-            this.currentCharacter = this.reader.read();
+            this.nextValue = getLabelText();
+            this.currentCharacter = read();
+          } else {
+            this.nextEvent = EventType.string;
+            this.nextValue = new String(this.text, 0, this.textLength);
           }
         break;
         case '-':
@@ -476,6 +712,9 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
     if (hasNext()) {
       this.currentValue = this.nextValue;
       this.currentEvent = this.nextEvent;
+      this.currentNumberNegative = this.nextNumberNegative;
+      this.currentNumberUnscaled = this.nextNumberUnscaled;
+      this.currentNumberScale = this.nextNumberScale;
       moveNext();
       return this.currentEvent;
     } else {
@@ -483,99 +722,186 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
     }
   }
 
+  /**
+   * Read a number. If the number has at most 18 significant digits the
+   * unscaled value and scale are recorded and the {@link BigDecimal} is only
+   * created if {@link #getCurrentValue()} is called. Otherwise the number is
+   * parsed from the text.
+   */
   private void processNumber() throws IOException {
-    final StringBuilder text = new StringBuilder();
-    if (this.currentCharacter == '-') {
-      text.append((char)this.currentCharacter);
-      this.currentCharacter = this.reader.read();
+    this.textLength = 0;
+    boolean negative = false;
+    boolean hasDigits = false;
+    boolean overflow = false;
+    long unscaled = 0;
+    int digitCount = 0;
+    int scale = 0;
+    int character = this.currentCharacter;
+    if (character == '-') {
+      negative = true;
+      appendText((char)character);
+      character = read();
     }
-    while (this.currentCharacter >= '0' && this.currentCharacter <= '9') {
-      text.append((char)this.currentCharacter);
-      this.currentCharacter = this.reader.read();
+    while (character >= '0' && character <= '9') {
+      hasDigits = true;
+      appendText((char)character);
+      if (digitCount < 18) {
+        unscaled = unscaled * 10 + character - '0';
+        if (unscaled != 0) {
+          digitCount++;
+        }
+      } else {
+        overflow = true;
+      }
+      character = read();
     }
 
-    if (this.currentCharacter == '.') {
-      text.append((char)this.currentCharacter);
-      this.currentCharacter = this.reader.read();
-      while (this.currentCharacter >= '0' && this.currentCharacter <= '9') {
-        text.append((char)this.currentCharacter);
-        this.currentCharacter = this.reader.read();
+    if (character == '.') {
+      appendText((char)character);
+      character = read();
+      while (character >= '0' && character <= '9') {
+        hasDigits = true;
+        appendText((char)character);
+        if (digitCount < 18) {
+          unscaled = unscaled * 10 + character - '0';
+          if (unscaled != 0) {
+            digitCount++;
+          }
+          scale++;
+        } else {
+          overflow = true;
+        }
+        character = read();
       }
     }
 
-    if (this.currentCharacter == 'e' || this.currentCharacter == 'E') {
-      text.append((char)this.currentCharacter);
-      this.currentCharacter = this.reader.read();
-      if (this.currentCharacter == '-' || this.currentCharacter == '+') {
-        text.append((char)this.currentCharacter);
-        this.currentCharacter = this.reader.read();
+    if (character == 'e' || character == 'E') {
+      appendText((char)character);
+      character = read();
+      boolean negativeExponent = false;
+      if (character == '-' || character == '+') {
+        negativeExponent = character == '-';
+        appendText((char)character);
+        character = read();
       }
-      while (this.currentCharacter >= '0' && this.currentCharacter <= '9') {
-        text.append((char)this.currentCharacter);
-        this.currentCharacter = this.reader.read();
+      int exponent = 0;
+      while (character >= '0' && character <= '9') {
+        appendText((char)character);
+        if (exponent < 10000) {
+          exponent = exponent * 10 + character - '0';
+        } else {
+          overflow = true;
+        }
+        character = read();
+      }
+      if (negativeExponent) {
+        scale += exponent;
+      } else {
+        scale -= exponent;
       }
     }
-    this.nextValue = new BigDecimal(text.toString());
+    this.currentCharacter = character;
+    if (overflow || !hasDigits) {
+      this.nextValue = new BigDecimal(new String(this.text, 0, this.textLength));
+    } else {
+      if (negative) {
+        unscaled = -unscaled;
+      }
+      this.nextValue = null;
+      this.nextNumberNegative = negative;
+      this.nextNumberUnscaled = unscaled;
+      this.nextNumberScale = scale;
+    }
   }
 
+  /**
+   * Read the characters of a string into the text buffer. Runs of characters
+   * without escapes are copied from the input buffer in bulk.
+   */
   private void processString() throws IOException {
-    final StringBuilder text = new StringBuilder();
-    this.currentCharacter = this.reader.read();
-    while (this.currentCharacter != '"' && this.currentCharacter != -1) {
-      if (this.currentCharacter == '\\') {
-        this.currentCharacter = this.reader.read();
-        switch (this.currentCharacter) {
-          case -1:
-          break;
-          case 'b':
-            text.setLength(text.length() - 1);
-          break;
-          case '"':
-            text.append('"');
-          break;
-          case '/':
-            text.append('/');
+    this.textLength = 0;
+    while (true) {
+      final char[] buffer = this.buffer;
+      final int limit = this.bufferLimit;
+      final int start = this.bufferIndex;
+      int index = start;
+      while (index < limit) {
+        final char character = buffer[index];
+        if (character == '"' || character == '\\') {
           break;
-          case '\\':
-            text.append('\\');
-          break;
-          case 'f':
-            text.append('\f');
-          break;
-          case 'n':
-            text.append('\n');
-          break;
-          case 'r':
-            text.append('\r');
-          break;
-          case 't':
-            text.append('\t');
-          break;
-          case 'u':
-            final char[] buf = new char[4];
-            final int readCount = this.reader.read(buf);
-            final String unicodeText = String.valueOf(buf, 0, readCount);
-            if (readCount == 4) {
-              try {
+        }
+        index++;
+      }
+      if (index > start) {
+        appendText(buffer, start, index - start);
+      }
+      this.bufferIndex = index;
+      if (index == limit) {
+        if (!fillBuffer()) {
+          this.currentCharacter = -1;
+          return;
+        }
+      } else {
+        this.bufferIndex++;
+        if (buffer[index] == '"') {
+          this.currentCharacter = '"';
+          return;
+        } else {
+          final int character = read();
+          switch (character) {
+            case -1:
+              this.currentCharacter = -1;
+              return;
+            case 'b':
+              appendText('\b');
+            break;
+            case '"':
+              appendText('"');
+            break;
+            case '/':
+              appendText('/');
+            break;
+            case '\\':
+              appendText('\\');
+            break;
+            case 'f':
+              appendText('\f');
+            break;
+            case 'n':
+              appendText('\n');
+            break;
+            case 'r':
+              appendText('\r');
+            break;
+            case 't':
+              appendText('\t');
+            break;
+            case 'u':
+              final char[] unicodeCharacters = new char[4];
+              int readCount = 0;
+              while (readCount < 4) {
+                final int unicodeCharacter = read();
+                if (unicodeCharacter == -1) {
+                  break;
+                } else {
+                  unicodeCharacters[readCount++] = (char)unicodeCharacter;
+                }
+              }
+              final String unicodeText = String.valueOf(unicodeCharacters, 0, readCount);
+              if (readCount == 4) {
                 final int unicode = Integer.parseInt(unicodeText, 16);
-                text.append((char)unicode);
-              } catch (final NumberFormatException e) {
-                throw e;
+                appendText((char)unicode);
+              } else {
+                throw new IllegalStateException("Unicode escape not correct " + unicodeText);
               }
-            } else {
-              throw new IllegalStateException("Unicode escape not correct " + unicodeText);
-            }
-          break;
-          default:
-            throw new IllegalStateException(
-              "Invalid escape character: \\" + (char)this.currentCharacter);
+            break;
+            default:
+              throw new IllegalStateException(
+                "Invalid escape character: \\" + (char)character);
+          }
         }
-      } else {
-        text.append((char)this.currentCharacter);
       }
-      this.currentCharacter = this.reader.read();
     }
-    this.nextValue = text.toString();
   }
 
   @Override
@@ -658,13 +984,12 @@ public class JsonParser implements Iterator<JsonParser.EventType>, Closeable {
 
   private void skipWhitespace() throws IOException {
     while (Character.isWhitespace(this.currentCharacter)) {
-      this.currentCharacter = this.reader.read();
+      this.currentCharacter = read();
     }
   }
 
   @Override
   public String toString() {
-    return this.currentEvent + " : " + this.currentValue + " "
-      + Character.toString((char)this.currentCharacter) + FileUtil.getString(this.reader, 80);
+    return this.currentEvent + " : " + this.currentValue + " " + getRemaining(80);
   }
 }
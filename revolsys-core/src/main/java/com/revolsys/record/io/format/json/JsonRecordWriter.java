@@ -41,6 +41,8 @@ public class JsonRecordWriter extends AbstractRecordWriter {
 
   private JsonObject footer;
 
+  private final char[] numberBuffer = new char[32];
+
   public JsonRecordWriter(final RecordDefinitionProxy recordDefinition, final Writer out) {
     super(recordDefinition);
     this.out = out;
@@ -216,6 +218,14 @@ public class JsonRecordWriter extends AbstractRecordWriter {
       } else {
         out.write("false");
       }
+    } else if (value instanceof Double) {
+      final double doubleValue = (Double)value;
+      final int end = JsonDoubleFormatter.format(doubleValue, this.numberBuffer, 0);
+      if (end == -1) {
+        out.write(Numbers.toString((Number)value));
+      } else {
+        out.write(this.numberBuffer, 0, end);
+      }
     } else if (value instanceof Number) {
       out.write(Numbers.toString((Number)value));
     } else if (value instanceof List) {
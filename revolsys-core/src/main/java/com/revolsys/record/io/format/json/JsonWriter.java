@@ -2,7 +2,6 @@ package com.revolsys.record.io.format.json;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -19,6 +18,7 @@ import org.jeometry.common.number.Numbers;
 import com.revolsys.collection.list.Lists;
 import com.revolsys.io.BaseCloseable;
 import com.revolsys.io.FileUtil;
+import com.revolsys.io.Utf8ByteBufferWriter;
 import com.revolsys.io.map.MapSerializer;
 import com.revolsys.record.Record;
 import com.revolsys.record.schema.FieldDefinition;
@@ -78,8 +78,10 @@ public class JsonWriter implements BaseCloseable {
 
   private boolean indented = false;
 
+  private final char[] numberBuffer = new char[32];
+
   public JsonWriter(final OutputStream out, final boolean indent) {
-    this(new OutputStreamWriter(out), indent);
+    this(new Utf8ByteBufferWriter(out), indent);
   }
 
   public JsonWriter(final Writer out) {
@@ -250,6 +252,34 @@ public class JsonWriter implements BaseCloseable {
     }
   }
 
+  /**
+   * Write the number without any separators or indentation, for use when
+   * writing compact arrays such as coordinates using {@link #print(char)}. NaN
+   * and infinite values are written as null.
+   *
+   * @param value The value.
+   */
+  public void number(final double value) {
+    try {
+      writeNumber(value);
+    } catch (final Exception e) {
+      throw Exceptions.wrap(e);
+    }
+    setState(JsonState.VALUE);
+  }
+
+  /**
+   * Write the number rounded to the scale (e.g. from
+   * {@link com.revolsys.geometry.model.GeometryFactory#getScale(int)}) without
+   * any separators or indentation.
+   *
+   * @param value The value.
+   * @param scale The scale, 0 for floating.
+   */
+  public void number(final double value, final double scale) {
+    number(JsonDoubleFormatter.makePrecise(value, scale));
+  }
+
   public void print(final char value) {
     try {
       this.out.write(value);
@@ -377,14 +407,14 @@ public class JsonWriter implements BaseCloseable {
         } else {
           this.out.write("false");
         }
+      } else if (value instanceof Float) {
+        // The shortest digits for the float, not the digits of its double value
+        final float floatValue = (Float)value;
+        writeNumber(Double.parseDouble(Float.toString(floatValue)));
       } else if (value instanceof Number) {
         final Number number = (Number)value;
         final double doubleValue = number.doubleValue();
-        if (Double.isInfinite(doubleValue) || Double.isNaN(doubleValue)) {
-          this.out.write("null");
-        } else {
-          this.out.write(Doubles.toString(doubleValue));
-        }
+        writeNumber(doubleValue);
       } else if (value instanceof MapSerializer) {
         final JsonObject map = ((MapSerializer)value).toMap();
         write(map);
@@ -478,6 +508,21 @@ public class JsonWriter implements BaseCloseable {
     endObject();
   }
 
+  private void writeNumber(final double value) throws IOException {
+    final Writer out = this.out;
+    if (Double.isInfinite(value) || Double.isNaN(value)) {
+      out.write("null");
+    } else {
+      final char[] numberBuffer = this.numberBuffer;
+      final int end = JsonDoubleFormatter.format(value, numberBuffer, 0);
+      if (end == -1) {
+        out.write(Doubles.toString(value));
+      } else {
+        out.write(numberBuffer, 0, end);
+      }
+    }
+  }
+
   public void writeNull() throws IOException {
     valuePre();
     this.out.write("null");
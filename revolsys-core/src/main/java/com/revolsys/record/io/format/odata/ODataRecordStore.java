@@ -353,6 +353,7 @@ public class ODataRecordStore extends AbstractRecordStore {
     final ApacheHttpRequestBuilder request = this.requestBuilderFactory.delete(uri)
       .setParameter(ODataRecordStore.FORMAT_JSON);
     final JsonObject result = request.getJson();
+    invalidateRecordCache(typePath, identifier);
     return result.getBoolean("deleted", false);
   }
 
@@ -379,14 +380,17 @@ public class ODataRecordStore extends AbstractRecordStore {
     if (id == null) {
       return null;
     } else {
-      final Object idValue = id.getValue(0);
-      return getRecordDo(typePath, idValue);
+      return getRecordCached(typePath, id, () -> {
+        final Object idValue = id.getValue(0);
+        return getRecordDo(typePath, idValue);
+      });
     }
   }
 
   @Override
   public Record getRecord(final PathName typePath, final Object... id) {
-    return getRecordDo(typePath, id[0]);
+    final Identifier identifier = Identifier.newIdentifier(id[0]);
+    return getRecord(typePath, identifier);
   }
 
   @Override
@@ -454,6 +458,7 @@ public class ODataRecordStore extends AbstractRecordStore {
       .setJsonEntity(json);
     final JsonObject result = request.getJson();
     record.setValues(result);
+    invalidateRecordCache(record);
   }
 
   @Override
@@ -41,6 +41,10 @@ public class OrderBy implements Cloneable {
     }
   }
 
+  public String getCollate() {
+    return this.collate;
+  }
+
   public QueryValue getField() {
     return this.field;
   }
@@ -22,6 +22,8 @@ import org.springframework.transaction.PlatformTransactionManager;
 import com.revolsys.collection.map.MapEx;
 import com.revolsys.geometry.model.BoundingBox;
 import com.revolsys.jdbc.JdbcUtils;
+import com.revolsys.jdbc.field.JdbcFieldDefinition;
+import com.revolsys.jdbc.io.JdbcRecordDefinition;
 import com.revolsys.predicate.Predicates;
 import com.revolsys.properties.BaseObjectWithProperties;
 import com.revolsys.record.ArrayChangeTrackRecord;
@@ -33,6 +35,7 @@ import com.revolsys.record.io.RecordReader;
 import com.revolsys.record.io.RecordWriter;
 import com.revolsys.record.io.format.json.Json;
 import com.revolsys.record.query.functions.F;
+import com.revolsys.record.schema.AbstractRecordStore;
 import com.revolsys.record.schema.FieldDefinition;
 import com.revolsys.record.schema.LockMode;
 import com.revolsys.record.schema.RecordDefinition;
@@ -463,6 +466,72 @@ public class Query extends BaseObjectWithProperties
     return index;
   }
 
+  private boolean appendSqlCacheKey(final StringBuilder key, final RecordStore recordStore,
+    final RecordDefinition recordDefinition, final QueryValue queryValue) {
+    if (queryValue == null) {
+      key.append("NULL");
+      return true;
+    }
+    final Class<?> valueClass = queryValue.getClass();
+    if (recordStore instanceof AbstractRecordStore
+      && ((AbstractRecordStore)recordStore).hasSqlQueryAppender(valueClass)) {
+      return false;
+    } else if (queryValue instanceof FieldDefinition) {
+      final FieldDefinition field = (FieldDefinition)queryValue;
+      final String name = field.getName();
+      if (recordDefinition.getField(name) == field) {
+        key.append("F:");
+        key.append(name);
+        return true;
+      }
+    } else if (valueClass == Value.class) {
+      final JdbcFieldDefinition jdbcField = ((Value)queryValue).getJdbcField();
+      if (jdbcField == null) {
+        key.append('?');
+        return true;
+      } else {
+        final String name = jdbcField.getName();
+        if (recordDefinition.getField(name) == jdbcField) {
+          key.append("?:");
+          key.append(name);
+          return true;
+        }
+      }
+    } else if (valueClass == And.class || valueClass == Or.class) {
+      key.append(valueClass == And.class ? "AND(" : "OR(");
+      for (final QueryValue value : queryValue.getQueryValues()) {
+        if (!appendSqlCacheKey(key, recordStore, recordDefinition, value)) {
+          return false;
+        }
+        key.append(',');
+      }
+      key.append(')');
+      return true;
+    } else if (valueClass == Equal.class || valueClass == NotEqual.class
+      || valueClass == LessThan.class || valueClass == LessThanEqual.class
+      || valueClass == GreaterThan.class || valueClass == GreaterThanEqual.class) {
+      final BinaryCondition condition = (BinaryCondition)queryValue;
+      key.append(condition.getOperator());
+      key.append('(');
+      if (appendSqlCacheKey(key, recordStore, recordDefinition, condition.getLeft())) {
+        key.append(',');
+        if (appendSqlCacheKey(key, recordStore, recordDefinition, condition.getRight())) {
+          key.append(')');
+          return true;
+        }
+      }
+    } else if (valueClass == IsNull.class || valueClass == IsNotNull.class) {
+      final RightUnaryCondition condition = (RightUnaryCondition)queryValue;
+      key.append(condition.getOperator());
+      key.append('(');
+      if (appendSqlCacheKey(key, recordStore, recordDefinition, condition.getValue())) {
+        key.append(')');
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void clearOrderBy() {
     this.orderBy.clear();
   }
@@ -645,7 +714,13 @@ public class Query extends BaseObjectWithProperties
     final TableReference table = getTable();
     final RecordDefinition recordDefinition = getRecordDefinition();
     if (sql == null) {
-      sql = newSelectSql(orderBy, table);
+      final String cacheKey = getSelectSqlCacheKey(orderBy, table, recordDefinition);
+      if (cacheKey == null) {
+        sql = newSelectSql(orderBy, table);
+      } else {
+        sql = ((JdbcRecordDefinition)recordDefinition).getSql(cacheKey,
+          () -> newSelectSql(orderBy, table));
+      }
     } else {
       if (sql.toUpperCase().startsWith("SELECT * FROM ")) {
         final StringBuilder newSql = new StringBuilder("SELECT ");
@@ -667,6 +742,54 @@ public class Query extends BaseObjectWithProperties
     return sql;
   }
 
+  /**
+   * Get the key for the cached select SQL. Only queries on all the fields of a
+   * {@link JdbcRecordDefinition}, with the where and order by using the
+   * table's fields, values and the AND, OR, comparison and IS NULL conditions
+   * are cached. The key is the shape of the query as the SQL for these only
+   * depends on the field names, not the values.
+   *
+   * @return The key or null if the SQL is not cached.
+   */
+  private String getSelectSqlCacheKey(final List<OrderBy> orderBy, final TableReference table,
+    final RecordDefinition recordDefinition) {
+    if (table != recordDefinition || !(recordDefinition instanceof JdbcRecordDefinition)
+      || this.from != null || !this.joins.isEmpty() || !this.groupBy.isEmpty()
+      || !this.selectExpressions.isEmpty()) {
+      return null;
+    }
+    final RecordStore recordStore = recordDefinition.getRecordStore();
+    final StringBuilder key = new StringBuilder("select:");
+    if (this.distinct) {
+      key.append("distinct:");
+    }
+    key.append(this.lockMode);
+    key.append(':');
+    final Condition where = this.whereCondition;
+    if (!where.isEmpty()) {
+      if (!appendSqlCacheKey(key, recordStore, recordDefinition, where)) {
+        return null;
+      }
+    }
+    for (final OrderBy order : orderBy) {
+      key.append(",order:");
+      final QueryValue field = order.getField();
+      if (!(field instanceof FieldDefinition)
+        || !appendSqlCacheKey(key, recordStore, recordDefinition, field)) {
+        return null;
+      }
+      if (!order.isAscending()) {
+        key.append(" desc");
+      }
+      final String collate = order.getCollate();
+      if (collate != null) {
+        key.append(" collate ");
+        key.append(collate);
+      }
+    }
+    return key.toString();
+  }
+
   public String getSql() {
     return this.sql;
   }
@@ -1155,7 +1278,7 @@ public class Query extends BaseObjectWithProperties
   }
 
   public Query setOffset(final int offset) {
-    if (offset > 0) {
+    if (offset >= 0) {
       this.offset = offset;
     }
     return this;
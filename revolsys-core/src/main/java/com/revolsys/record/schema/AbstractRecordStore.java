@@ -11,7 +11,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import org.jeometry.common.data.identifier.Identifier;
 import org.jeometry.common.function.Consumer3;
 import org.jeometry.common.io.PathName;
 import org.jeometry.common.logging.Logs;
@@ -60,6 +62,8 @@ public abstract class AbstractRecordStore extends BaseObjectWithProperties imple
 
   private boolean loadFullSchema = true;
 
+  private RecordStoreRecordCache recordCache;
+
   private RecordFactory<Record> recordFactory;
 
   private final Set<RecordStoreExtension> recordStoreExtensions = new LinkedHashSet<>();
@@ -141,6 +145,24 @@ public abstract class AbstractRecordStore extends BaseObjectWithProperties imple
     recordDefinition.setProperties(properties);
   }
 
+  /**
+   * Cache the records returned by {@link #getRecord(PathName, Identifier)} for
+   * the table. Records changed outside this record store's writers (e.g. by raw
+   * SQL or on a remote server) are only refreshed after the time to live.
+   *
+   * @param typePath The table.
+   * @param maxSize The maximum number of records to cache.
+   * @param timeToLiveMillis The time a record is cached for, or 0 to keep
+   *          records until they are evicted or changed.
+   */
+  public synchronized void addRecordCache(final PathName typePath, final int maxSize,
+    final long timeToLiveMillis) {
+    if (this.recordCache == null) {
+      this.recordCache = new RecordStoreRecordCache(this);
+    }
+    this.recordCache.addTable(typePath, maxSize, timeToLiveMillis);
+  }
+
   public void addRecordStoreExtension(final RecordStoreExtension extension) {
     if (extension != null) {
       try {
@@ -249,6 +271,40 @@ public abstract class AbstractRecordStore extends BaseObjectWithProperties imple
     return this.label;
   }
 
+  @Override
+  public Record getRecord(final PathName typePath, final Identifier id) {
+    return getRecordCached(typePath, id, () -> RecordStore.super.getRecord(typePath, id));
+  }
+
+  /**
+   * Get the record cache, or null if no tables are cached.
+   *
+   * @return The record cache.
+   */
+  public RecordStoreRecordCache getRecordCache() {
+    return this.recordCache;
+  }
+
+  /**
+   * Get the record from the record cache if it is enabled for the table,
+   * otherwise from the loader. Subclasses that override
+   * {@link #getRecord(PathName, Identifier)} use this so the cache is used.
+   *
+   * @param typePath The table.
+   * @param id The record's identifier.
+   * @param loader The loader to read the record from the record store.
+   * @return The record or null if it doesn't exist.
+   */
+  protected Record getRecordCached(final PathName typePath, final Identifier id,
+    final Supplier<Record> loader) {
+    final RecordStoreRecordCache recordCache = this.recordCache;
+    if (recordCache != null && recordCache.isCached(typePath)) {
+      return recordCache.getRecord(typePath, id, loader);
+    } else {
+      return loader.get();
+    }
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <RD extends RecordDefinition> RD getRecordDefinition(
@@ -295,6 +351,10 @@ public abstract class AbstractRecordStore extends BaseObjectWithProperties imple
     return (String)this.connectionProperties.get("user");
   }
 
+  public boolean hasSqlQueryAppender(final Class<?> clazz) {
+    return this.sqlQueryAppenderByClass.containsKey(clazz);
+  }
+
   @Override
   public final void initialize() {
     synchronized (this) {
@@ -339,6 +399,27 @@ public abstract class AbstractRecordStore extends BaseObjectWithProperties imple
     }
   }
 
+  /**
+   * Remove the record from the record cache, if it is enabled for the table.
+   * Each method that writes records calls this (or uses a writer that does).
+   *
+   * @param typePath The table.
+   * @param identifier The record's identifier.
+   */
+  public void invalidateRecordCache(final PathName typePath, final Identifier identifier) {
+    final RecordStoreRecordCache recordCache = this.recordCache;
+    if (recordCache != null) {
+      recordCache.invalidate(typePath, identifier);
+    }
+  }
+
+  public void invalidateRecordCache(final Record record) {
+    final RecordStoreRecordCache recordCache = this.recordCache;
+    if (recordCache != null && record != null) {
+      recordCache.invalidate(record);
+    }
+  }
+
   @Override
   public boolean isClosed() {
     return this.closed;
@@ -110,6 +110,10 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
 
   private final Set<String> searchFieldNames = new LinkedHashSet<>();
 
+  private boolean writeBehind = false;
+
+  private int writeBehindBatchSize = 100;
+
   public AbstractTableRecordStore(final PathName typePath) {
     this.tablePath = typePath;
     this.typeName = typePath.getName();
@@ -210,6 +214,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
   public boolean deleteRecord(final TableRecordStoreConnection connection, final Object id) {
     try (
       Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
+      flushWriteBehind();
       return newQuery(connection).andEqualId(id).deleteRecords() == 1;
     }
   }
@@ -217,6 +222,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
   public boolean deleteRecord(final TableRecordStoreConnection connection, final Record record) {
     try (
       Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
+      flushWriteBehind();
       return this.recordStore.deleteRecord(record);
     }
   }
@@ -224,6 +230,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
   protected int deleteRecords(final TableRecordStoreConnection connection, final Query query) {
     try (
       Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
+      flushWriteBehind();
       return this.recordStore.deleteRecords(query);
     }
   }
@@ -240,6 +247,16 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
 
   }
 
+  /**
+   * Write any pending updates for this table in the current transaction.
+   */
+  public void flushWriteBehind() {
+    final TableRecordStoreWriteBehind writeBehind = TableRecordStoreWriteBehind.get(this, false);
+    if (writeBehind != null) {
+      writeBehind.flush();
+    }
+  }
+
   public Map<QueryValue, Boolean> getDefaultSortOrder() {
     return this.defaultSortOrder;
   }
@@ -257,6 +274,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
     final Query query) {
     try (
       Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
+      flushWriteBehind();
       return (R)this.recordStore.getRecord(query);
     }
   }
@@ -267,16 +285,25 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
   }
 
   public Record getRecordById(final TableRecordStoreConnection connection, final Object id) {
+    final ChangeTrackRecord pendingRecord = getWriteBehindRecord(id);
+    if (pendingRecord != null) {
+      return pendingRecord.newRecord();
+    }
     return getRecord(connection, "id", id);
   }
 
   public Record getRecordById(final TableRecordStoreConnection connection, final UUID id) {
+    final ChangeTrackRecord pendingRecord = getWriteBehindRecord(id);
+    if (pendingRecord != null) {
+      return pendingRecord.newRecord();
+    }
     return getRecord(connection, "id", id);
   }
 
   protected long getRecordCount(final TableRecordStoreConnection connection, final Query query) {
     try (
       Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
+      flushWriteBehind();
       return this.recordStore.getRecordCount(query);
     }
   }
@@ -289,6 +316,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
   protected RecordReader getRecordReader(final TableRecordStoreConnection connection,
     final Query query) {
     final Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED);
+    flushWriteBehind();
     final RecordReader reader = this.recordStore.getRecords(query);
     return new TransactionRecordReader(reader, transaction);
   }
@@ -298,6 +326,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
     if (transaction == null) {
       return getRecordReader(connection, query);
     } else {
+      flushWriteBehind();
       return this.recordStore.getRecords(query);
     }
   }
@@ -320,8 +349,23 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
     return this.typeName;
   }
 
+  private ChangeTrackRecord getWriteBehindRecord(final Object id) {
+    if (this.writeBehind && id != null) {
+      final TableRecordStoreWriteBehind writeBehind = TableRecordStoreWriteBehind.get(this, false);
+      if (writeBehind != null) {
+        final Identifier identifier = Identifier.newIdentifier(id);
+        return writeBehind.getRecord(identifier);
+      }
+    }
+    return null;
+  }
+
+  public int getWriteBehindBatchSize() {
+    return this.writeBehindBatchSize;
+  }
+
   public boolean hasRecord(final TableRecordStoreConnection connection, final Query query) {
-    return query.getRecordCount() > 0;
+    return getRecordCount(connection, query) > 0;
   }
 
   public boolean hasRecord(final TableRecordStoreConnection connection, final String fieldName,
@@ -337,7 +381,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
 
     try (
       Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
-      final ChangeTrackRecord changeTrackRecord = query.getRecord();
+      final ChangeTrackRecord changeTrackRecord = getRecord(connection, query);
       if (changeTrackRecord == null) {
         final Record newRecord = newRecordSupplier.get();
         if (newRecord == null) {
@@ -359,7 +403,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
 
     try (
       Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
-      final ChangeTrackRecord changeTrackRecord = query.getRecord();
+      final ChangeTrackRecord changeTrackRecord = getRecord(connection, query);
       if (changeTrackRecord == null) {
         final Record newRecord = action.insertRecord();
         if (newRecord == null) {
@@ -378,7 +422,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
   protected Record insertRecord(final TableRecordStoreConnection connection, final Query query,
     final Supplier<Record> newRecordSupplier) {
     query.setRecordFactory(ArrayChangeTrackRecord.FACTORY);
-    final ChangeTrackRecord changeTrackRecord = query.getRecord();
+    final ChangeTrackRecord changeTrackRecord = getRecord(connection, query);
     if (changeTrackRecord == null) {
       final Record newRecord = newRecordSupplier.get();
       if (newRecord == null) {
@@ -414,6 +458,10 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
     return this.recordDefinition.isIdField(fieldName);
   }
 
+  public boolean isWriteBehind() {
+    return this.writeBehind;
+  }
+
   public void lockTable() {
     if (this.recordStore instanceof JdbcRecordStore) {
       this.recordStore.<JdbcRecordStore> getRecordStore().lockTable(this.tablePath);
@@ -623,8 +671,40 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
     return this;
   }
 
+  /**
+   * <p>
+   * Enable write behind of updates. Updates in a transaction are kept pending
+   * and repeated updates to the same record by id are applied to the pending
+   * record, so only one UPDATE is written for each record. The pending records
+   * are written in batches using the record store's writer when the batch
+   * size is reached, before any query on this table and before the
+   * transaction commits.
+   * </p>
+   * <p>
+   * Only applies within a transaction with synchronization. The
+   * {@link #updateRecordAfter(TableRecordStoreConnection, ChangeTrackRecord)}
+   * method is called before the record is written.
+   * </p>
+   *
+   * @param writeBehind True if write behind is enabled.
+   * @return this
+   */
+  public AbstractTableRecordStore setWriteBehind(final boolean writeBehind) {
+    this.writeBehind = writeBehind;
+    return this;
+  }
+
+  public AbstractTableRecordStore setWriteBehindBatchSize(final int writeBehindBatchSize) {
+    this.writeBehindBatchSize = Math.max(1, writeBehindBatchSize);
+    return this;
+  }
+
   public Record updateRecord(final TableRecordStoreConnection connection, final Identifier id,
     final Consumer<Record> updateAction) {
+    final Record pendingRecord = updateWriteBehindRecord(connection, id, updateAction);
+    if (pendingRecord != null) {
+      return pendingRecord;
+    }
     final Query query = newQuery(connection)
       .and(Q.equalId(getRecordDefinition().getIdFieldNames(), id));
     return query.updateRecord(updateAction);
@@ -637,6 +717,10 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
 
   public Record updateRecord(final TableRecordStoreConnection connection, final Object id,
     final Consumer<Record> updateAction) {
+    final Record pendingRecord = updateWriteBehindRecord(connection, id, updateAction);
+    if (pendingRecord != null) {
+      return pendingRecord;
+    }
     final Query query = newQuery(connection);
     query.and(getRecordDefinition().getIdFieldName(), id);
     return query.updateRecord(updateAction);
@@ -647,7 +731,7 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
     try (
       Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
       query.setRecordFactory(ArrayChangeTrackRecord.FACTORY);
-      final ChangeTrackRecord record = query.getRecord();
+      final ChangeTrackRecord record = getRecord(connection, query);
       if (record == null) {
         return null;
       } else {
@@ -670,13 +754,40 @@ public class AbstractTableRecordStore implements RecordDefinitionProxy {
     final ChangeTrackRecord record) {
     if (record.isModified()) {
       updateRecordBefore(connection, record);
-      this.recordStore.updateRecord(record);
+      final TableRecordStoreWriteBehind writeBehind;
+      if (this.writeBehind) {
+        writeBehind = TableRecordStoreWriteBehind.get(this, true);
+      } else {
+        writeBehind = null;
+      }
+      if (writeBehind == null) {
+        this.recordStore.updateRecord(record);
+      } else {
+        writeBehind.put(record, this.writeBehindBatchSize);
+      }
       updateRecordAfter(connection, record);
     }
   }
 
+  private Record updateWriteBehindRecord(final TableRecordStoreConnection connection,
+    final Object id, final Consumer<Record> updateAction) {
+    if (this.writeBehind) {
+      try (
+        Transaction transaction = connection.newTransaction(TransactionOptions.REQUIRED)) {
+        final ChangeTrackRecord record = getWriteBehindRecord(id);
+        if (record != null) {
+          updateAction.accept(record);
+          updateRecordDo(connection, record);
+          return record.newRecord();
+        }
+      }
+    }
+    return null;
+  }
+
   public int updateRecords(final TableRecordStoreConnection connection, final Query query,
     final Consumer<? super ChangeTrackRecord> updateAction) {
+    flushWriteBehind();
     int i = 0;
     final RecordDefinition recordDefinition = getRecordDefinition();
     final RecordStore recordStore = this.recordStore;
@@ -0,0 +1,311 @@
+package com.revolsys.record.schema;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.jeometry.common.data.identifier.Identifier;
+import org.jeometry.common.io.PathName;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.revolsys.record.Record;
+import com.revolsys.record.RecordState;
+
+/**
+ * <p>
+ * A read through cache of the records returned by
+ * {@link RecordStore#getRecord(PathName, Identifier)} for the tables it is
+ * enabled for. Each table has a least recently used cache with a maximum size
+ * and an optional time to live for each record.
+ * </p>
+ * <p>
+ * Records are removed when they are updated or deleted using the record
+ * store's writers, and again when the transaction completes so a record read
+ * by another transaction before the commit is not kept. Each table has a
+ * generation that is incremented when records are removed. A loaded record is
+ * only cached if the generation didn't change while it was loaded, as it may
+ * have been read before the change was committed. Records for a table changed in the current
+ * transaction are not cached until it completes. A copy of the cached record
+ * is returned so callers can't change the cached values.
+ * </p>
+ * <p>
+ * The hits and misses are recorded in the record store's statistics as
+ * "Record Cache Hit" and "Record Cache Miss".
+ * </p>
+ */
+public class RecordStoreRecordCache {
+
+  private static class CacheEntry {
+    private final Record record;
+
+    private final long expiryTime;
+
+    private CacheEntry(final Record record, final long expiryTime) {
+      this.record = record;
+      this.expiryTime = expiryTime;
+    }
+  }
+
+  /**
+   * The tables and records changed in a transaction, removed from the cache
+   * again when the transaction completes.
+   */
+  private class TransactionChanges extends TransactionSynchronizationAdapter {
+    private final Map<PathName, Set<Identifier>> identifiersByTable = new HashMap<>();
+
+    private final Set<PathName> tables = new HashSet<>();
+
+    @Override
+    public void afterCompletion(final int status) {
+      TransactionSynchronizationManager.unbindResourceIfPossible(RecordStoreRecordCache.this);
+      for (final PathName typePath : this.tables) {
+        final TableCache tableCache = RecordStoreRecordCache.this.tableCaches.get(typePath);
+        if (tableCache != null) {
+          synchronized (tableCache) {
+            tableCache.invalidate();
+          }
+        }
+      }
+      for (final Entry<PathName, Set<Identifier>> entry : this.identifiersByTable.entrySet()) {
+        final TableCache tableCache = RecordStoreRecordCache.this.tableCaches.get(entry.getKey());
+        if (tableCache != null) {
+          synchronized (tableCache) {
+            for (final Identifier identifier : entry.getValue()) {
+              tableCache.invalidate(identifier);
+            }
+          }
+        }
+      }
+    }
+
+    private boolean isChanged(final PathName typePath) {
+      return this.tables.contains(typePath) || this.identifiersByTable.containsKey(typePath);
+    }
+  }
+
+  private static class TableCache extends LinkedHashMap<Identifier, CacheEntry> {
+    private static final long serialVersionUID = 1L;
+
+    private long generation;
+
+    private long hitCount;
+
+    private final int maxSize;
+
+    private long missCount;
+
+    private final long timeToLiveMillis;
+
+    private TableCache(final int maxSize, final long timeToLiveMillis) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+      this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    private void invalidate() {
+      this.generation++;
+      clear();
+    }
+
+    private void invalidate(final Identifier identifier) {
+      this.generation++;
+      remove(identifier);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<Identifier, CacheEntry> eldest) {
+      return size() > this.maxSize;
+    }
+  }
+
+  private static Record copy(final Record record) {
+    final RecordDefinition recordDefinition = record.getRecordDefinition();
+    final Record copy = recordDefinition.newRecord(record);
+    copy.setState(RecordState.PERSISTED);
+    return copy;
+  }
+
+  private final RecordStore recordStore;
+
+  private final Map<PathName, TableCache> tableCaches = new ConcurrentHashMap<>();
+
+  public RecordStoreRecordCache(final RecordStore recordStore) {
+    this.recordStore = recordStore;
+  }
+
+  /**
+   * Enable the cache for the table.
+   *
+   * @param typePath The table.
+   * @param maxSize The maximum number of records to cache.
+   * @param timeToLiveMillis The time a record is cached for, or 0 to keep
+   *          records until they are evicted or changed.
+   */
+  public void addTable(final PathName typePath, final int maxSize, final long timeToLiveMillis) {
+    this.tableCaches.put(typePath, new TableCache(Math.max(1, maxSize), timeToLiveMillis));
+  }
+
+  public void clear() {
+    for (final TableCache tableCache : this.tableCaches.values()) {
+      synchronized (tableCache) {
+        tableCache.invalidate();
+      }
+    }
+  }
+
+  /**
+   * Get the proportion of lookups for the table that were returned from the
+   * cache.
+   *
+   * @param typePath The table.
+   * @return The hit rate (0-1).
+   */
+  public double getHitRate(final PathName typePath) {
+    final TableCache tableCache = this.tableCaches.get(typePath);
+    if (tableCache != null) {
+      synchronized (tableCache) {
+        final long count = tableCache.hitCount + tableCache.missCount;
+        if (count > 0) {
+          return tableCache.hitCount / (double)count;
+        }
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Get the record from the cache, loading it using the loader if it is not
+   * cached or has expired. Records that don't exist are not cached.
+   *
+   * @param typePath The table.
+   * @param identifier The record's identifier.
+   * @param loader The loader to read the record from the record store.
+   * @return A copy of the record or null if it doesn't exist.
+   */
+  public Record getRecord(final PathName typePath, final Identifier identifier,
+    final Supplier<Record> loader) {
+    final TableCache tableCache = this.tableCaches.get(typePath);
+    if (tableCache == null || identifier == null) {
+      return loader.get();
+    } else {
+      final String path = typePath.toString();
+      final long time = System.currentTimeMillis();
+      final long generation;
+      synchronized (tableCache) {
+        final CacheEntry entry = tableCache.get(identifier);
+        if (entry != null) {
+          if (entry.expiryTime == 0 || entry.expiryTime > time) {
+            tableCache.hitCount++;
+            this.recordStore.addStatistic("Record Cache Hit", path, 1);
+            return copy(entry.record);
+          } else {
+            tableCache.remove(identifier);
+          }
+        }
+        tableCache.missCount++;
+        generation = tableCache.generation;
+      }
+      this.recordStore.addStatistic("Record Cache Miss", path, 1);
+      final Record record = loader.get();
+      final TransactionChanges changes = getTransactionChanges(false);
+      if (changes != null && changes.isChanged(typePath)) {
+        // Don't cache records that may have uncommitted changes
+        return record;
+      } else if (record != null) {
+        long expiryTime = 0;
+        if (tableCache.timeToLiveMillis > 0) {
+          expiryTime = time + tableCache.timeToLiveMillis;
+        }
+        final CacheEntry newEntry = new CacheEntry(copy(record), expiryTime);
+        synchronized (tableCache) {
+          // Records were removed while loading, the record may be stale
+          if (tableCache.generation == generation) {
+            tableCache.put(identifier, newEntry);
+          }
+        }
+      }
+      return record;
+    }
+  }
+
+  private TransactionChanges getTransactionChanges(final boolean create) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionChanges changes = (TransactionChanges)TransactionSynchronizationManager
+        .getResource(this);
+      if (changes == null && create) {
+        changes = new TransactionChanges();
+        TransactionSynchronizationManager.bindResource(this, changes);
+        TransactionSynchronizationManager.registerSynchronization(changes);
+      }
+      return changes;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Remove all the records for the table from the cache, and again after the
+   * current transaction completes.
+   *
+   * @param typePath The table.
+   */
+  public void invalidate(final PathName typePath) {
+    final TableCache tableCache = this.tableCaches.get(typePath);
+    if (tableCache != null) {
+      synchronized (tableCache) {
+        tableCache.invalidate();
+      }
+      final TransactionChanges changes = getTransactionChanges(true);
+      if (changes != null) {
+        changes.tables.add(typePath);
+      }
+    }
+  }
+
+  /**
+   * Remove the record from the cache, and again after the current transaction
+   * completes.
+   *
+   * @param typePath The table.
+   * @param identifier The record's identifier.
+   */
+  public void invalidate(final PathName typePath, final Identifier identifier) {
+    final TableCache tableCache = this.tableCaches.get(typePath);
+    if (tableCache != null && identifier != null) {
+      synchronized (tableCache) {
+        tableCache.invalidate(identifier);
+      }
+      final TransactionChanges changes = getTransactionChanges(true);
+      if (changes != null) {
+        changes.identifiersByTable.computeIfAbsent(typePath, k -> new HashSet<>())
+          .add(identifier);
+      }
+    }
+  }
+
+  /**
+   * Remove the record from the cache, and again after the current transaction
+   * completes.
+   *
+   * @param record The record.
+   */
+  public void invalidate(final Record record) {
+    final PathName typePath = record.getPathName();
+    final Identifier identifier = record.getIdentifier();
+    invalidate(typePath, identifier);
+  }
+
+  public boolean isCached(final PathName typePath) {
+    return this.tableCaches.containsKey(typePath);
+  }
+
+  public void removeTable(final PathName typePath) {
+    this.tableCaches.remove(typePath);
+  }
+}
@@ -10,7 +10,6 @@ import com.revolsys.record.query.InsertUpdateAction;
 import com.revolsys.record.query.Query;
 import com.revolsys.transaction.Transaction;
 import com.revolsys.transaction.TransactionOption;
-import com.revolsys.transaction.TransactionOptions;
 
 public class TableRecordStoreQuery extends Query {
 
@@ -27,10 +26,7 @@ public class TableRecordStoreQuery extends Query {
 
   @Override
   public int deleteRecords() {
-    try (
-      Transaction transaction = this.connection.newTransaction(TransactionOptions.REQUIRED)) {
-      return this.recordStore.getRecordStore().deleteRecords(this);
-    }
+    return this.recordStore.deleteRecords(this.connection, this);
   }
 
   @Override
@@ -0,0 +1,198 @@
+package com.revolsys.record.schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeometry.common.data.identifier.Identifier;
+import org.jeometry.common.io.PathName;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.revolsys.record.ChangeTrackRecord;
+import com.revolsys.record.io.RecordWriter;
+
+/**
+ * <p>
+ * The updated records for a {@link AbstractTableRecordStore} in the current
+ * transaction that have not been written to the record store yet. Repeated
+ * updates to the same record are applied to the same pending record so only
+ * one update is written.
+ * </p>
+ * <p>
+ * The pending records are written using a single {@link RecordWriter} when the
+ * batch size is reached, before any query on the table and before the
+ * transaction is committed. Queries run directly on the record store also
+ * write the pending records for the table first (see
+ * {@link #flush(RecordStore, PathName)}). They are discarded if the
+ * transaction is rolled back. A record is removed from the record store's
+ * record cache when it is added, so a cached copy isn't returned while the
+ * update is pending.
+ * </p>
+ * <p>
+ * The write behinds for all the tables in a transaction are bound to the
+ * transaction as a single resource.
+ * </p>
+ */
+public class TableRecordStoreWriteBehind {
+
+  /**
+   * The write behinds for each table in a transaction.
+   */
+  private static class TransactionWriteBehinds extends TransactionSynchronizationAdapter {
+    private boolean active = true;
+
+    private final Map<AbstractTableRecordStore, TableRecordStoreWriteBehind> writeBehinds = new LinkedHashMap<>();
+
+    @Override
+    public void afterCompletion(final int status) {
+      if (this.active) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+        this.active = false;
+      }
+      for (final TableRecordStoreWriteBehind writeBehind : this.writeBehinds.values()) {
+        writeBehind.clear();
+      }
+      this.writeBehinds.clear();
+    }
+
+    @Override
+    public void beforeCommit(final boolean readOnly) {
+      flush(null, null);
+    }
+
+    private void flush(final RecordStore recordStore, final PathName tablePath) {
+      List<TableRecordStoreWriteBehind> writeBehinds = null;
+      for (final TableRecordStoreWriteBehind writeBehind : this.writeBehinds.values()) {
+        final AbstractTableRecordStore tableRecordStore = writeBehind.tableRecordStore;
+        if ((recordStore == null || tableRecordStore.getRecordStore() == recordStore)
+          && (tablePath == null || tablePath.equals(tableRecordStore.getTablePath()))
+          && !writeBehind.isEmpty()) {
+          if (writeBehinds == null) {
+            writeBehinds = new ArrayList<>();
+          }
+          writeBehinds.add(writeBehind);
+        }
+      }
+      if (writeBehinds != null) {
+        // Flushed after the loop as writing may add new write behinds
+        for (final TableRecordStoreWriteBehind writeBehind : writeBehinds) {
+          writeBehind.flush();
+        }
+      }
+    }
+
+    @Override
+    public void resume() {
+      if (this.active) {
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, this);
+      }
+    }
+
+    @Override
+    public void suspend() {
+      if (this.active) {
+        TransactionSynchronizationManager.unbindResource(RESOURCE_KEY);
+      }
+    }
+  }
+
+  private static final Object RESOURCE_KEY = TableRecordStoreWriteBehind.class;
+
+  /**
+   * Write the pending records in the current transaction for the table in the
+   * record store, or all tables if the table path is null (e.g. for SQL
+   * queries).
+   *
+   * @param recordStore The record store.
+   * @param tablePath The table path.
+   */
+  public static void flush(final RecordStore recordStore, final PathName tablePath) {
+    final TransactionWriteBehinds transactionWriteBehinds = getTransactionWriteBehinds(false);
+    if (transactionWriteBehinds != null) {
+      transactionWriteBehinds.flush(recordStore, tablePath);
+    }
+  }
+
+  static TableRecordStoreWriteBehind get(final AbstractTableRecordStore tableRecordStore,
+    final boolean create) {
+    final TransactionWriteBehinds transactionWriteBehinds = getTransactionWriteBehinds(create);
+    if (transactionWriteBehinds == null) {
+      return null;
+    } else if (create) {
+      return transactionWriteBehinds.writeBehinds.computeIfAbsent(tableRecordStore,
+        TableRecordStoreWriteBehind::new);
+    } else {
+      return transactionWriteBehinds.writeBehinds.get(tableRecordStore);
+    }
+  }
+
+  private static TransactionWriteBehinds getTransactionWriteBehinds(final boolean create) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionWriteBehinds transactionWriteBehinds = (TransactionWriteBehinds)TransactionSynchronizationManager
+        .getResource(RESOURCE_KEY);
+      if (transactionWriteBehinds == null && create) {
+        transactionWriteBehinds = new TransactionWriteBehinds();
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, transactionWriteBehinds);
+        TransactionSynchronizationManager.registerSynchronization(transactionWriteBehinds);
+      }
+      return transactionWriteBehinds;
+    } else {
+      return null;
+    }
+  }
+
+  private final Map<Identifier, ChangeTrackRecord> records = new LinkedHashMap<>();
+
+  private final AbstractTableRecordStore tableRecordStore;
+
+  private TableRecordStoreWriteBehind(final AbstractTableRecordStore tableRecordStore) {
+    this.tableRecordStore = tableRecordStore;
+  }
+
+  private synchronized void clear() {
+    this.records.clear();
+  }
+
+  public synchronized void flush() {
+    if (!this.records.isEmpty()) {
+      final RecordStore recordStore = this.tableRecordStore.getRecordStore();
+      try (
+        RecordWriter writer = recordStore.newRecordWriter(true)) {
+        for (final ChangeTrackRecord record : this.records.values()) {
+          writer.write(record);
+        }
+      } finally {
+        this.records.clear();
+      }
+    }
+  }
+
+  public synchronized ChangeTrackRecord getRecord(final Identifier identifier) {
+    return this.records.get(identifier);
+  }
+
+  public synchronized boolean isEmpty() {
+    return this.records.isEmpty();
+  }
+
+  /**
+   * Add the updated record, writing the pending records if the batch size has
+   * been reached. The record is removed from the record cache.
+   *
+   * @param record The record.
+   * @param batchSize The maximum number of pending records.
+   */
+  public synchronized void put(final ChangeTrackRecord record, final int batchSize) {
+    final Identifier identifier = record.getIdentifier();
+    this.records.put(identifier, record);
+    final RecordStore recordStore = this.tableRecordStore.getRecordStore();
+    if (recordStore instanceof AbstractRecordStore) {
+      ((AbstractRecordStore)recordStore).invalidateRecordCache(record);
+    }
+    if (this.records.size() >= batchSize) {
+      flush();
+    }
+  }
+}
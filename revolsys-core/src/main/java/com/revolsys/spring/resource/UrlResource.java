@@ -538,7 +538,7 @@ public class UrlResource extends AbstractResource {
   @Override
   public ChannelReader newChannelReader(final ByteBuffer byteBuffer) {
     if (getProtocol().startsWith("http")) {
-      return new HttpChannelReader(this.url);
+      return new HttpChannelReader(this.url, byteBuffer);
     } else {
       return super.newChannelReader(byteBuffer);
     }
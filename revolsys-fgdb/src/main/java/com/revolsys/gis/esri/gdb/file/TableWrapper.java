@@ -32,7 +32,9 @@ public interface TableWrapper extends ValueHolderWrapper<Table>, BaseCloseable {
 
   default boolean deleteRecord(final Record record) {
     final TableReference tableReference = getTableReference();
-    return tableReference.deleteRecordRow(record);
+    final boolean deleted = tableReference.deleteRecordRow(record);
+    getRecordStore().invalidateRecordCache(record);
+    return deleted;
   }
 
   default Row getNext(final EnumRows rows) {
@@ -149,6 +151,7 @@ public interface TableWrapper extends ValueHolderWrapper<Table>, BaseCloseable {
     } else if (record.getState() == RecordState.MODIFIED) {
       final TableReference tableReference = getTableReference();
       tableReference.updateRecordRow(record);
+      getRecordStore().invalidateRecordCache(record);
     }
   }
 
@@ -65,6 +65,9 @@ public class GeoPackageRecordStore extends AbstractJdbcRecordStore {
 
   private static final int APPLICATION_ID = ByteBuffer.wrap("GPKG".getBytes()).asIntBuffer().get();
 
+  private static final List<String> RTREE_TRIGGER_SUFFIXES = Arrays.asList("insert", "update1",
+    "update2", "update3", "update4", "delete");
+
   private Path file;
 
   private final BusyHandler busyHandler = new BusyHandler() {
@@ -102,6 +105,45 @@ public class GeoPackageRecordStore extends AbstractJdbcRecordStore {
     }
   }
 
+  private void addSpatialReferenceSystem(final CoordinateSystem coordinateSystem) {
+    if (coordinateSystem != null) {
+      final int coordinateSystemId = coordinateSystem.getCoordinateSystemId();
+      final String sridSql = "SELECT srs_id from gpkg_spatial_ref_sys where srs_id = ?";
+      try (
+        JdbcConnection connection = super.getJdbcConnection(true)) {
+        try (
+          final PreparedStatement statement = connection.prepareStatement(sridSql)) {
+          statement.setInt(1, coordinateSystemId);
+
+          try (
+            final ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+              final String insertSrsSql = "INSERT INTO gpkg_spatial_ref_sys (srs_name, srs_id, organization, organization_coordsys_id, definition, description) VALUES (?,?,?,?,?,?)";
+              final String coordinateSystemName = coordinateSystem.getCoordinateSystemName();
+              final String esriWktCs = coordinateSystem.toEsriWktCs();
+
+              try (
+                final PreparedStatement insertStatement = connection
+                  .prepareStatement(insertSrsSql)) {
+                insertStatement.setString(1, coordinateSystemName);
+                insertStatement.setInt(2, coordinateSystemId);
+                insertStatement.setString(3, "EPSG");
+                insertStatement.setInt(4, coordinateSystemId);
+                insertStatement.setString(5, esriWktCs);
+                insertStatement.setNull(6, Types.CHAR);
+                insertStatement.executeUpdate();
+              } catch (final SQLException e2) {
+                throw connection.getException("Update", insertSrsSql, e2);
+              }
+            }
+          }
+        } catch (final SQLException e) {
+          throw connection.getException("selectInt", sridSql, e);
+        }
+      }
+    }
+  }
+
   private void appendEvelopeIntersects(final Query query, final Appendable sql,
     final QueryValue queryValue) {
     try {
@@ -200,49 +242,11 @@ public class GeoPackageRecordStore extends AbstractJdbcRecordStore {
 
     for (final FieldDefinition field : newRecordDefinition.getGeometryFields()) {
       final CoordinateSystem coordinateSystem = field.getHorizontalCoordinateSystem();
-      if (coordinateSystem != null) {
-        final int coordinateSystemId = coordinateSystem.getCoordinateSystemId();
-        final String sridSql = "SELECT srs_id from gpkg_spatial_ref_sys where srs_id = ?";
-        try (
-          JdbcConnection connection = super.getJdbcConnection(true)) {
-          try (
-            final PreparedStatement statement = connection.prepareStatement(sridSql)) {
-            statement.setInt(1, coordinateSystemId);
-
-            try (
-              final ResultSet resultSet = statement.executeQuery()) {
-              if (!resultSet.next()) {
-                final String insertSrsSql = "INSERT INTO gpkg_spatial_ref_sys (srs_name, srs_id, organization, organization_coordsys_id, definition, description) VALUES (?,?,?,?,?,?)";
-                final String coordinateSystemName = coordinateSystem.getCoordinateSystemName();
-                final String esriWktCs = coordinateSystem.toEsriWktCs();
-
-                try (
-                  final PreparedStatement insertStatement = connection
-                    .prepareStatement(insertSrsSql)) {
-                  insertStatement.setString(1, coordinateSystemName);
-                  insertStatement.setInt(2, coordinateSystemId);
-                  insertStatement.setString(3, "EPSG");
-                  insertStatement.setInt(4, coordinateSystemId);
-                  insertStatement.setString(5, esriWktCs);
-                  insertStatement.setNull(6, Types.CHAR);
-                  insertStatement.executeUpdate();
-                } catch (final SQLException e2) {
-                  throw connection.getException("Update", insertSrsSql, e2);
-                }
-              }
-            }
-          } catch (final SQLException e) {
-            throw connection.getException("selectInt", sridSql, e);
-          }
-        }
-      }
+      addSpatialReferenceSystem(coordinateSystem);
       final String gpkgGeometryColumns = ddlWriter.insertGpkgGeometryColumns(field);
       executeSqlNoFunctions("gpkgGeometryColumns", gpkgGeometryColumns);
       final String fieldName = field.getName();
-      for (String sql : getSqlTemplates("rtree_tiggers.sql")) {
-        sql = sql.replace("<t>", tableName);
-        sql = sql.replace("<c>", fieldName);
-        sql = sql.replace("<i>", idFieldName);
+      for (final String sql : getRTreeSql(tableName, fieldName, idFieldName)) {
         executeSqlNoFunctions("rtree", sql);
       }
     }
@@ -252,15 +256,37 @@ public class GeoPackageRecordStore extends AbstractJdbcRecordStore {
     return rootSchema.getRecordDefinition(newRecordDefinition.getPathName());
   }
 
+  /**
+   * Create the triggers that update the R-tree index for the geometry fields
+   * after they were dropped using
+   * {@link #dropRTreeTriggers(Statement, JdbcRecordDefinition)}.
+   *
+   * @param statement The statement to execute the SQL with.
+   * @param recordDefinition The table.
+   * @throws SQLException If the triggers could not be created.
+   */
+  public void createRTreeTriggers(final Statement statement,
+    final JdbcRecordDefinition recordDefinition) throws SQLException {
+    final String tableName = recordDefinition.getDbTableName();
+    final String idFieldName = recordDefinition.getIdFieldName();
+    for (final FieldDefinition field : recordDefinition.getGeometryFields()) {
+      final String fieldName = field.getName();
+      for (final String sql : getRTreeSql(tableName, fieldName, idFieldName)) {
+        if (sql.contains("CREATE TRIGGER")) {
+          statement.execute(sql);
+        }
+      }
+    }
+  }
+
   private void createRecordStore() {
     executeSql("application_id", "PRAGMA application_id = " + APPLICATION_ID + ";");
     executeSql("user_version", "PRAGMA user_version = 10201;");
 
     for (final String fileName : Arrays.asList("gpkg_spatial_ref_sys.sql", "gpkg_contents.sql",
       "gpkg_data_columns.sql", "gpkg_data_column_constraints.sql", "gpkg_extensions.sql",
-      "gpkg_geometry_columns.sql", "gpkg_metadata.sql", "gpkg_metadata_reference.sql"
-    // , "gpkg_tile_matrix.sql", "gpkg_tile_matrix_set.sql"
-    )) {
+      "gpkg_geometry_columns.sql", "gpkg_metadata.sql", "gpkg_metadata_reference.sql",
+      "gpkg_tile_matrix.sql", "gpkg_tile_matrix_set.sql")) {
       for (final String sql : getSqlTemplates(fileName)) {
         executeSql(fileName, sql);
       }
@@ -268,6 +294,37 @@ public class GeoPackageRecordStore extends AbstractJdbcRecordStore {
     }
   }
 
+  private void createTileMatrixTables() {
+    for (final String tableName : Arrays.asList("gpkg_tile_matrix", "gpkg_tile_matrix_set")) {
+      if (!hasTable(tableName)) {
+        final String fileName = tableName + ".sql";
+        for (final String sql : getSqlTemplates(fileName)) {
+          executeSqlNoFunctions(fileName, sql);
+        }
+      }
+    }
+  }
+
+  /**
+   * Drop the triggers that update the R-tree index for the geometry fields so
+   * records can be loaded without updating the index for each row.
+   *
+   * @param statement The statement to execute the SQL with.
+   * @param recordDefinition The table.
+   * @throws SQLException If the triggers could not be dropped.
+   */
+  public void dropRTreeTriggers(final Statement statement,
+    final JdbcRecordDefinition recordDefinition) throws SQLException {
+    final String tableName = recordDefinition.getDbTableName();
+    for (final FieldDefinition field : recordDefinition.getGeometryFields()) {
+      final String fieldName = field.getName();
+      for (final String suffix : RTREE_TRIGGER_SUFFIXES) {
+        statement
+          .execute("DROP TRIGGER IF EXISTS rtree_" + tableName + "_" + fieldName + "_" + suffix);
+      }
+    }
+  }
+
   @Override
   public void execteBatch(final PreparedStatement statement) throws SQLException {
     statement.executeBatch();
@@ -371,6 +428,18 @@ public class GeoPackageRecordStore extends AbstractJdbcRecordStore {
     return (RD)rd;
   }
 
+  private List<String> getRTreeSql(final String tableName, final String fieldName,
+    final String idFieldName) {
+    final List<String> sqlStatements = new ArrayList<>();
+    for (String sql : getSqlTemplates("rtree_tiggers.sql")) {
+      sql = sql.replace("<t>", tableName);
+      sql = sql.replace("<c>", fieldName);
+      sql = sql.replace("<i>", idFieldName);
+      sqlStatements.add(sql);
+    }
+    return sqlStatements;
+  }
+
   @Override
   public String getRecordStoreType() {
     return "GeoPackageFactory";
@@ -388,6 +457,98 @@ public class GeoPackageRecordStore extends AbstractJdbcRecordStore {
     return sqlStatements.split("-- END --");
   }
 
+  /**
+   * Get the tile pyramid stored in a tiles table.
+   *
+   * @param tableName The name of the tiles table.
+   * @return The tile set or null if the table isn't a tiles table.
+   */
+  public GeoPackageTileSet getTileSet(final String tableName) {
+    final String tileMatrixSetSql = "SELECT srs_id, min_x, min_y, max_x, max_y FROM gpkg_tile_matrix_set WHERE table_name = ?";
+    final String tileMatrixSql = "SELECT zoom_level, matrix_width, matrix_height, tile_width, tile_height, pixel_x_size, pixel_y_size FROM gpkg_tile_matrix WHERE table_name = ? ORDER BY zoom_level";
+    if (!hasTable("gpkg_tile_matrix_set")) {
+      return null;
+    }
+    try (
+      JdbcConnection connection = super.getJdbcConnection(true)) {
+      final BoundingBox boundingBox;
+      try (
+        final PreparedStatement statement = connection.prepareStatement(tileMatrixSetSql)) {
+        statement.setString(1, tableName);
+        try (
+          final ResultSet resultSet = statement.executeQuery()) {
+          if (resultSet.next()) {
+            final int coordinateSystemId = resultSet.getInt("srs_id");
+            final GeometryFactory geometryFactory = getGeometryFactory(connection,
+              coordinateSystemId);
+            boundingBox = geometryFactory.newBoundingBox(resultSet.getDouble("min_x"),
+              resultSet.getDouble("min_y"), resultSet.getDouble("max_x"),
+              resultSet.getDouble("max_y"));
+          } else {
+            return null;
+          }
+        }
+      } catch (final SQLException e) {
+        throw connection.getException("Get tile matrix set", tileMatrixSetSql, e);
+      }
+
+      final List<GeoPackageTileMatrix> tileMatrices = new ArrayList<>();
+      try (
+        final PreparedStatement statement = connection.prepareStatement(tileMatrixSql)) {
+        statement.setString(1, tableName);
+        try (
+          final ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            final GeoPackageTileMatrix tileMatrix = new GeoPackageTileMatrix(boundingBox,
+              resultSet.getInt("zoom_level"), resultSet.getInt("matrix_width"),
+              resultSet.getInt("matrix_height"), resultSet.getInt("tile_width"),
+              resultSet.getInt("tile_height"), resultSet.getDouble("pixel_x_size"),
+              resultSet.getDouble("pixel_y_size"));
+            tileMatrices.add(tileMatrix);
+          }
+        }
+      } catch (final SQLException e) {
+        throw connection.getException("Get tile matrix", tileMatrixSql, e);
+      }
+      return new GeoPackageTileSet(this, tableName, boundingBox, tileMatrices);
+    }
+  }
+
+  /**
+   * Get the names of the tiles tables.
+   *
+   * @return The table names.
+   */
+  public List<String> getTileSetNames() {
+    final String sql = "SELECT table_name FROM gpkg_contents WHERE data_type = 'tiles' ORDER BY table_name";
+    final List<String> tableNames = new ArrayList<>();
+    try (
+      JdbcConnection connection = super.getJdbcConnection(true)) {
+      try (
+        final PreparedStatement statement = connection.prepareStatement(sql);
+        final ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          tableNames.add(resultSet.getString(1));
+        }
+      } catch (final SQLException e) {
+        throw connection.getException("Get tile sets", sql, e);
+      }
+    }
+    return tableNames;
+  }
+
+  private boolean hasTable(final String tableName) {
+    final String sql = "SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = ?";
+    try (
+      JdbcConnection connection = super.getJdbcConnection(true)) {
+      try {
+        return JdbcUtils.selectInt(connection, sql, tableName) > 0;
+      } catch (final SQLException e) {
+        throw connection.getException("hasTable", sql, e);
+      }
+    }
+  }
+
   @Override
   @PostConstruct
   public void initializeDo() {
@@ -472,6 +633,107 @@ public class GeoPackageRecordStore extends AbstractJdbcRecordStore {
     return super.newRecordWriter(rd);
   }
 
+  /**
+   * Construct a new connection used to read or write tiles outside of the
+   * record store's transactions.
+   */
+  Connection newTileConnection() throws SQLException {
+    return getDataSource().getConnection();
+  }
+
+  /**
+   * <p>
+   * Create a new tiles table and the tile matrix for each resolution. The
+   * resolutions are sorted from the lowest to highest resolution and assigned
+   * zoom levels starting at 0. The tile matrix set's bounding box starts at
+   * the top left of the bounding box and is expanded to a whole number of
+   * tiles at the lowest resolution so the tiles at all the zoom levels are
+   * aligned.
+   * </p>
+   *
+   * @param tableName The name of the tiles table.
+   * @param boundingBox The area covered by the tiles.
+   * @param tileSizePixels The width and height of the tiles in pixels.
+   * @param resolutions The size of a pixel for each zoom level.
+   * @return The new tile set.
+   */
+  public GeoPackageTileSet newTileSet(final String tableName, final BoundingBox boundingBox,
+    final int tileSizePixels, final double... resolutions) {
+    if (resolutions.length == 0) {
+      throw new IllegalArgumentException("At least one resolution is required");
+    }
+    final GeometryFactory geometryFactory = boundingBox.getGeometryFactory();
+    final CoordinateSystem coordinateSystem = geometryFactory.getHorizontalCoordinateSystem();
+    addSpatialReferenceSystem(coordinateSystem);
+    createTileMatrixTables();
+
+    final double[] sortedResolutions = resolutions.clone();
+    Arrays.sort(sortedResolutions);
+    final double minX = boundingBox.getMinX();
+    final double maxY = boundingBox.getMaxY();
+    final double width = boundingBox.getWidth();
+    final double height = boundingBox.getHeight();
+    final double lowestResolution = sortedResolutions[sortedResolutions.length - 1];
+    final double lowestTileSize = tileSizePixels * lowestResolution;
+    final double maxX = minX + Math.max(1, Math.ceil(width / lowestTileSize)) * lowestTileSize;
+    final double minY = maxY - Math.max(1, Math.ceil(height / lowestTileSize)) * lowestTileSize;
+    final int coordinateSystemId = geometryFactory.getHorizontalCoordinateSystemId();
+
+    executeSqlNoFunctions("Create tiles table", "CREATE TABLE \"" + tableName
+      + "\" (id INTEGER PRIMARY KEY AUTOINCREMENT, zoom_level INTEGER NOT NULL, tile_column INTEGER NOT NULL, tile_row INTEGER NOT NULL, tile_data BLOB NOT NULL, UNIQUE (zoom_level, tile_column, tile_row))");
+    try (
+      JdbcConnection connection = super.getJdbcConnection(true)) {
+      String sql = "INSERT INTO gpkg_contents (table_name, data_type, identifier, min_x, min_y, max_x, max_y, srs_id) VALUES (?, 'tiles', ?, ?, ?, ?, ?, ?)";
+      try {
+        JdbcUtils.executeUpdate(connection, sql, tableName, tableName, boundingBox.getMinX(),
+          boundingBox.getMinY(), boundingBox.getMaxX(), boundingBox.getMaxY(),
+          coordinateSystemId);
+
+        sql = "INSERT INTO gpkg_tile_matrix_set (table_name, srs_id, min_x, min_y, max_x, max_y) VALUES (?, ?, ?, ?, ?, ?)";
+        JdbcUtils.executeUpdate(connection, sql, tableName, coordinateSystemId, minX, minY, maxX,
+          maxY);
+
+        sql = "INSERT INTO gpkg_tile_matrix (table_name, zoom_level, matrix_width, matrix_height, tile_width, tile_height, pixel_x_size, pixel_y_size) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        for (int i = 0; i < sortedResolutions.length; i++) {
+          final int zoomLevel = sortedResolutions.length - 1 - i;
+          final double resolution = sortedResolutions[i];
+          final double tileSize = tileSizePixels * resolution;
+          final int matrixWidth = (int)Math.ceil((maxX - minX) / tileSize);
+          final int matrixHeight = (int)Math.ceil((maxY - minY) / tileSize);
+          JdbcUtils.executeUpdate(connection, sql, tableName, zoomLevel, matrixWidth,
+            matrixHeight, tileSizePixels, tileSizePixels, resolution, resolution);
+        }
+      } catch (final SQLException e) {
+        throw connection.getException("Create tile set", sql, e);
+      }
+    }
+    return getTileSet(tableName);
+  }
+
+  /**
+   * Replace the contents of the R-tree index for the geometry fields with the
+   * bounding boxes of all the records in the table in one pass. The connection
+   * must have the GeoPackage functions added.
+   *
+   * @param statement The statement to execute the SQL with.
+   * @param recordDefinition The table.
+   * @throws SQLException If the index could not be built.
+   */
+  public void rebuildRTree(final Statement statement, final JdbcRecordDefinition recordDefinition)
+    throws SQLException {
+    final String tableName = recordDefinition.getDbTableName();
+    final String idFieldName = recordDefinition.getIdFieldName();
+    for (final FieldDefinition field : recordDefinition.getGeometryFields()) {
+      final String fieldName = field.getName();
+      final String rtreeName = "rtree_" + tableName + "_" + fieldName;
+      statement.execute("DELETE FROM " + rtreeName);
+      statement.execute("INSERT INTO " + rtreeName + " SELECT " + idFieldName + ", ST_MinX("
+        + fieldName + "), ST_MaxX(" + fieldName + "), ST_MinY(" + fieldName + "), ST_MaxY("
+        + fieldName + ") FROM " + tableName + " WHERE " + fieldName
+        + " NOT NULL AND NOT ST_IsEmpty(" + fieldName + ")");
+    }
+  }
+
   @Override
   protected Map<PathName, ? extends RecordStoreSchemaElement> refreshSchemaElementsDo(
     final JdbcRecordStoreSchema schema, final PathName schemaPath) {
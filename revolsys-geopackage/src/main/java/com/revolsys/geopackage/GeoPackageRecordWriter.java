@@ -1,22 +1,231 @@
 package com.revolsys.geopackage;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.revolsys.jdbc.JdbcConnection;
+import com.revolsys.jdbc.io.JdbcRecordDefinition;
 import com.revolsys.jdbc.io.JdbcRecordWriter;
+import com.revolsys.record.Record;
 import com.revolsys.record.io.RecordStoreRecordWriter;
 import com.revolsys.record.schema.RecordDefinitionProxy;
 
+/**
+ * <p>
+ * Write records to a GeoPackage table.
+ * </p>
+ * <p>
+ * In bulk load mode ({@link #setBulkLoad(boolean)}) the R-tree triggers for
+ * the table are dropped before the first record is written, the connection
+ * uses an in memory journal with synchronous writes off and a large page
+ * cache, and the records are committed every
+ * {@link #setBulkLoadCommitInterval(int)} records. When the writer is closed
+ * the R-tree index is built in one pass, the triggers are created again and
+ * the connection settings are restored. If bulk load mode can't be started the
+ * connection settings and triggers are restored before the exception is
+ * thrown. If the writer is not closed the R-tree index will be out of date.
+ * </p>
+ */
 public class GeoPackageRecordWriter extends RecordStoreRecordWriter {
 
+  private boolean bulkLoad = false;
+
+  private int bulkLoadCacheSize = 256 * 1024;
+
+  private int bulkLoadCommitInterval = 100000;
+
+  private boolean bulkLoadStarted = false;
+
+  private String cacheSize;
+
+  private String journalMode;
+
+  private final GeoPackageRecordStore recordStore;
+
+  private String synchronous;
+
+  private String tempStore;
+
+  private long uncommittedCount = 0;
+
   public GeoPackageRecordWriter(final GeoPackageRecordStore recordStore,
     final RecordDefinitionProxy recordDefinition) {
     super(recordStore, recordDefinition);
+    this.recordStore = recordStore;
     getWriter().setProperty("batchSize", 1000);
   }
 
+  private void bulkLoadFinish() {
+    final JdbcRecordWriter writer = getJdbcWriter();
+    final JdbcConnection connection = writer.getConnection();
+    final JdbcRecordDefinition recordDefinition = getRecordDefinition();
+    try (
+      Statement statement = connection.createStatement()) {
+      this.recordStore.rebuildRTree(statement, recordDefinition);
+      this.recordStore.createRTreeTriggers(statement, recordDefinition);
+      connection.commit();
+      connection.setAutoCommit(true);
+      restorePragmas(statement);
+      connection.setAutoCommit(false);
+    } catch (final SQLException e) {
+      throw connection.getException("Finish bulk load", null, e);
+    } finally {
+      this.bulkLoadStarted = false;
+    }
+  }
+
+  private void bulkLoadStart() {
+    final JdbcRecordWriter writer = getJdbcWriter();
+    writer.commit();
+    final JdbcConnection connection = writer.getConnection();
+    try (
+      Statement statement = connection.createStatement()) {
+      // The journal mode can't be changed inside a transaction
+      connection.setAutoCommit(true);
+      this.cacheSize = getPragma(statement, "cache_size");
+      this.journalMode = getPragma(statement, "journal_mode");
+      this.synchronous = getPragma(statement, "synchronous");
+      this.tempStore = getPragma(statement, "temp_store");
+      try {
+        statement.execute("PRAGMA synchronous = OFF");
+        statement.execute("PRAGMA journal_mode = MEMORY");
+        statement.execute("PRAGMA temp_store = MEMORY");
+        statement.execute("PRAGMA cache_size = -" + this.bulkLoadCacheSize);
+        this.recordStore.dropRTreeTriggers(statement, getRecordDefinition());
+      } catch (final SQLException | RuntimeException e) {
+        bulkLoadStartFailed(statement, e);
+        throw e;
+      }
+      connection.setAutoCommit(false);
+      this.bulkLoadStarted = true;
+    } catch (final SQLException e) {
+      throw connection.getException("Start bulk load", null, e);
+    }
+  }
+
+  /**
+   * Restore the connection settings and the R-tree triggers after bulk load
+   * mode couldn't be started. Some of the triggers may have been dropped so
+   * they are all dropped and created again. Any errors are added to the
+   * original exception.
+   */
+  private void bulkLoadStartFailed(final Statement statement, final Exception exception) {
+    try {
+      final JdbcRecordDefinition recordDefinition = getRecordDefinition();
+      this.recordStore.dropRTreeTriggers(statement, recordDefinition);
+      this.recordStore.createRTreeTriggers(statement, recordDefinition);
+    } catch (final SQLException | RuntimeException e) {
+      exception.addSuppressed(e);
+    }
+    try {
+      restorePragmas(statement);
+    } catch (final SQLException | RuntimeException e) {
+      exception.addSuppressed(e);
+    }
+  }
+
   @Override
   public void close() {
-    final JdbcRecordWriter writer = (JdbcRecordWriter)getWriter();
-    writer.commit();
-    super.close();
+    final JdbcRecordWriter writer = getJdbcWriter();
+    try {
+      writer.commit();
+      if (this.bulkLoadStarted) {
+        bulkLoadFinish();
+      }
+    } finally {
+      super.close();
+    }
+  }
+
+  /**
+   * Get the size of the page cache in KiB used in bulk load mode.
+   *
+   * @return The cache size.
+   */
+  public int getBulkLoadCacheSize() {
+    return this.bulkLoadCacheSize;
   }
 
+  public int getBulkLoadCommitInterval() {
+    return this.bulkLoadCommitInterval;
+  }
+
+  private JdbcRecordWriter getJdbcWriter() {
+    return (JdbcRecordWriter)getWriter();
+  }
+
+  private String getPragma(final Statement statement, final String name) throws SQLException {
+    try (
+      ResultSet resultSet = statement.executeQuery("PRAGMA " + name)) {
+      if (resultSet.next()) {
+        return resultSet.getString(1);
+      } else {
+        return null;
+      }
+    }
+  }
+
+  @Override
+  public JdbcRecordDefinition getRecordDefinition() {
+    return (JdbcRecordDefinition)super.getRecordDefinition();
+  }
+
+  public boolean isBulkLoad() {
+    return this.bulkLoad;
+  }
+
+  /**
+   * Restore the pragmas that were changed for bulk load mode. Must be called
+   * outside a transaction.
+   */
+  private void restorePragmas(final Statement statement) throws SQLException {
+    statement.execute("PRAGMA synchronous = " + this.synchronous);
+    statement.execute("PRAGMA journal_mode = " + this.journalMode);
+    statement.execute("PRAGMA temp_store = " + this.tempStore);
+    statement.execute("PRAGMA cache_size = " + this.cacheSize);
+  }
+
+  /**
+   * Use bulk load mode. Must be set before the first record is written.
+   *
+   * @param bulkLoad True if bulk load mode is used.
+   */
+  public void setBulkLoad(final boolean bulkLoad) {
+    this.bulkLoad = bulkLoad;
+  }
+
+  /**
+   * Set the size of the page cache in KiB used in bulk load mode.
+   *
+   * @param bulkLoadCacheSize The cache size.
+   */
+  public void setBulkLoadCacheSize(final int bulkLoadCacheSize) {
+    this.bulkLoadCacheSize = bulkLoadCacheSize;
+  }
+
+  /**
+   * Set the number of records written in bulk load mode before they are
+   * committed, or 0 to commit when the writer is closed.
+   *
+   * @param bulkLoadCommitInterval The number of records.
+   */
+  public void setBulkLoadCommitInterval(final int bulkLoadCommitInterval) {
+    this.bulkLoadCommitInterval = bulkLoadCommitInterval;
+  }
+
+  @Override
+  public void write(final Record record) {
+    if (this.bulkLoad && !this.bulkLoadStarted) {
+      bulkLoadStart();
+    }
+    super.write(record);
+    if (this.bulkLoadStarted && this.bulkLoadCommitInterval > 0) {
+      this.uncommittedCount++;
+      if (this.uncommittedCount >= this.bulkLoadCommitInterval) {
+        getJdbcWriter().commit();
+        this.uncommittedCount = 0;
+      }
+    }
+  }
 }
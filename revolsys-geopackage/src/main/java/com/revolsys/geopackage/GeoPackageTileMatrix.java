@@ -0,0 +1,35 @@
+package com.revolsys.geopackage;
+
+import org.jeometry.common.data.identifier.Identifier;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.gis.tiled.BaseTileLevel;
+
+/**
+ * A zoom level in a GeoPackage tile pyramid from the gpkg_tile_matrix table.
+ * Tile columns start at the west edge and tile rows start at the north edge
+ * of the tile matrix set's bounding box.
+ */
+public class GeoPackageTileMatrix extends BaseTileLevel {
+
+  private final int zoomLevel;
+
+  public GeoPackageTileMatrix(final BoundingBox tileMatrixSetBoundingBox, final int zoomLevel,
+    final int matrixWidth, final int matrixHeight, final int tileWidth, final int tileHeight,
+    final double pixelXSize, final double pixelYSize) {
+    this.zoomLevel = zoomLevel;
+    this.level = Identifier.newIdentifier(zoomLevel);
+    this.geometryFactory = tileMatrixSetBoundingBox.getGeometryFactory();
+    this.tileXCount = matrixWidth;
+    this.tileYCount = matrixHeight;
+    this.tileWidthPixels = tileWidth;
+    this.tileHeightPixels = tileHeight;
+    this.pixelWidth = pixelXSize;
+    this.pixelHeight = pixelYSize;
+    setOrigin(tileMatrixSetBoundingBox.getMinX(), tileMatrixSetBoundingBox.getMaxY());
+  }
+
+  public int getZoomLevel() {
+    return this.zoomLevel;
+  }
+}
@@ -0,0 +1,349 @@
+package com.revolsys.geopackage;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+import javax.imageio.ImageIO;
+
+import org.jeometry.common.exception.Exceptions;
+import org.jeometry.common.logging.Logs;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.gis.tiled.BaseTileLevelSet;
+import com.revolsys.gis.tiled.TileLevelSet;
+import com.revolsys.io.BaseCloseable;
+import com.revolsys.raster.AbstractGeoreferencedImage;
+import com.revolsys.raster.GeoreferencedImageMapTile;
+import com.revolsys.raster.TiledGeoreferencedImage;
+
+/**
+ * <p>
+ * A tile pyramid stored in a GeoPackage tiles table. Each zoom level is a
+ * {@link GeoPackageTileMatrix} and the tiles are PNG or JPEG images stored in
+ * the tile_data column.
+ * </p>
+ * <p>
+ * Tiles are read using a small pool of connections so multiple threads can
+ * read tiles at the same time. Use {@link #newTileWriter(int)} to write
+ * tiles.
+ * </p>
+ */
+public class GeoPackageTileSet extends AbstractGeoreferencedImage
+  implements BaseCloseable, TiledGeoreferencedImage, TileLevelSet {
+
+  private class GeoPackageMapTile extends GeoreferencedImageMapTile {
+    private final GeoPackageTileMatrix tileMatrix;
+
+    private final int tileX;
+
+    private final int tileY;
+
+    public GeoPackageMapTile(final GeoPackageTileMatrix tileMatrix, final int tileX,
+      final int tileY) {
+      super(tileMatrix.getBoundingBox(tileX, tileY), tileMatrix.getTileWidthPixels(),
+        tileMatrix.getTileHeightPixels());
+      this.tileMatrix = tileMatrix;
+      this.tileX = tileX;
+      this.tileY = tileY;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj instanceof GeoPackageMapTile) {
+        final GeoPackageMapTile tile = (GeoPackageMapTile)obj;
+        return tile.tileMatrix == this.tileMatrix && tile.tileX == this.tileX
+          && tile.tileY == this.tileY;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(GeoPackageTileSet.this.tableName, this.tileMatrix.getZoomLevel(),
+        this.tileX, this.tileY);
+    }
+
+    @Override
+    protected BufferedImage loadBuffferedImage() {
+      return getTileImage(this.tileMatrix, this.tileX, this.tileY);
+    }
+
+    @Override
+    public String toString() {
+      return GeoPackageTileSet.this.tableName + " " + this.tileMatrix + "/" + this.tileX + "/"
+        + this.tileY;
+    }
+  }
+
+  private boolean closed = false;
+
+  private final Deque<Connection> connections = new ArrayDeque<>();
+
+  private int maxIdleConnections = 4;
+
+  private final GeoPackageRecordStore recordStore;
+
+  private final String selectSql;
+
+  private final String tableName;
+
+  private final List<GeoPackageTileMatrix> tileMatrices;
+
+  GeoPackageTileSet(final GeoPackageRecordStore recordStore, final String tableName,
+    final BoundingBox boundingBox, final List<GeoPackageTileMatrix> tileMatrices) {
+    this.recordStore = recordStore;
+    this.tableName = tableName;
+    this.selectSql = "SELECT tile_data FROM \"" + tableName
+      + "\" WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?";
+    // Lower resolution first
+    this.tileMatrices = new ArrayList<>(tileMatrices);
+    this.tileMatrices.sort((matrix1, matrix2) -> -Double.compare(matrix1.getPixelWidth(),
+      matrix2.getPixelWidth()));
+    if (!this.tileMatrices.isEmpty()) {
+      final GeoPackageTileMatrix firstMatrix = this.tileMatrices.get(0);
+      setImageWidth(firstMatrix.getTileXCount() * firstMatrix.getTileWidthPixels());
+      setImageHeight(firstMatrix.getTileYCount() * firstMatrix.getTileHeightPixels());
+      setResolutionX(firstMatrix.getPixelWidth());
+      setResolutionY(firstMatrix.getPixelHeight());
+    }
+    setBoundingBox(boundingBox);
+    setHasChanges(false);
+  }
+
+  @Override
+  public void close() {
+    final List<Connection> connections;
+    synchronized (this.connections) {
+      this.closed = true;
+      connections = new ArrayList<>(this.connections);
+      this.connections.clear();
+    }
+    for (final Connection connection : connections) {
+      closeConnection(connection);
+    }
+  }
+
+  private void closeConnection(final Connection connection) {
+    try {
+      connection.close();
+    } catch (final SQLException e) {
+      Logs.debug(this, "Unable to close connection", e);
+    }
+  }
+
+  private Connection getConnection() throws SQLException {
+    synchronized (this.connections) {
+      if (this.closed) {
+        throw new IllegalStateException("Tile set is closed: " + this.tableName);
+      }
+      final Connection connection = this.connections.pollFirst();
+      if (connection != null) {
+        return connection;
+      }
+    }
+    return this.recordStore.newTileConnection();
+  }
+
+  public int getMaxIdleConnections() {
+    return this.maxIdleConnections;
+  }
+
+  @Override
+  public List<GeoreferencedImageMapTile> getOverlappingMapTiles(BoundingBox boundingBox,
+    final double resolution) {
+    final GeoPackageTileMatrix tileMatrix = getTileLevel(resolution);
+    if (tileMatrix != null) {
+      boundingBox = boundingBox.bboxToCs(this);
+      if (bboxIntersects(boundingBox)) {
+        final List<GeoreferencedImageMapTile> tiles = new ArrayList<>();
+        final double minX = boundingBox.getMinX();
+        final double minY = boundingBox.getMinY();
+        final double maxX = boundingBox.getMaxX();
+        final double maxY = boundingBox.getMaxY();
+
+        // Tiles start at the North-West corner of the map
+        final int minTileX = Math.max(0, tileMatrix.getTileX(minX));
+        final int minTileY = Math.max(0, tileMatrix.getTileY(maxY));
+        final int maxTileX = Math.min(tileMatrix.getTileXCount() - 1, tileMatrix.getTileX(maxX));
+        final int maxTileY = Math.min(tileMatrix.getTileYCount() - 1, tileMatrix.getTileY(minY));
+
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+          for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+            final GeoPackageMapTile tile = new GeoPackageMapTile(tileMatrix, tileX, tileY);
+            tiles.add(tile);
+          }
+        }
+        return tiles;
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  GeoPackageRecordStore getRecordStore() {
+    return this.recordStore;
+  }
+
+  /**
+   * Get an image of the lowest resolution zoom level.
+   */
+  @Override
+  public synchronized RenderedImage getRenderedImage() {
+    RenderedImage image = super.getRenderedImage();
+    if (image == null && !this.tileMatrices.isEmpty()) {
+      final GeoPackageTileMatrix tileMatrix = this.tileMatrices.get(0);
+      final int tileWidth = tileMatrix.getTileWidthPixels();
+      final int tileHeight = tileMatrix.getTileHeightPixels();
+      final BufferedImage bufferedImage = new BufferedImage(
+        tileMatrix.getTileXCount() * tileWidth, tileMatrix.getTileYCount() * tileHeight,
+        BufferedImage.TYPE_INT_ARGB);
+      final Graphics2D graphics = bufferedImage.createGraphics();
+      try {
+        for (int tileY = 0; tileY < tileMatrix.getTileYCount(); tileY++) {
+          for (int tileX = 0; tileX < tileMatrix.getTileXCount(); tileX++) {
+            final BufferedImage tileImage = getTileImage(tileMatrix, tileX, tileY);
+            if (tileImage != null) {
+              graphics.drawImage(tileImage, tileX * tileWidth, tileY * tileHeight, null);
+            }
+          }
+        }
+      } finally {
+        graphics.dispose();
+      }
+      setRenderedImage(bufferedImage);
+      image = bufferedImage;
+    }
+    return image;
+  }
+
+  @Override
+  public double getResolution(final BoundingBox boundingBox, final double resolution) {
+    final GeoPackageTileMatrix tileMatrix = getTileLevel(resolution);
+    if (tileMatrix == null) {
+      return resolution;
+    } else {
+      return tileMatrix.getPixelWidth();
+    }
+  }
+
+  public String getTableName() {
+    return this.tableName;
+  }
+
+  /**
+   * Get the encoded image for a tile.
+   *
+   * @param zoomLevel The zoom level.
+   * @param tileX The tile column.
+   * @param tileY The tile row.
+   * @return The image bytes or null if the tile doesn't exist.
+   */
+  public byte[] getTileData(final int zoomLevel, final int tileX, final int tileY) {
+    Connection connection = null;
+    try {
+      connection = getConnection();
+      try (
+        PreparedStatement statement = connection.prepareStatement(this.selectSql)) {
+        statement.setInt(1, zoomLevel);
+        statement.setInt(2, tileX);
+        statement.setInt(3, tileY);
+        try (
+          ResultSet resultSet = statement.executeQuery()) {
+          if (resultSet.next()) {
+            return resultSet.getBytes(1);
+          } else {
+            return null;
+          }
+        }
+      }
+    } catch (final SQLException e) {
+      throw Exceptions.wrap(
+        "Unable to read tile " + this.tableName + " " + zoomLevel + "/" + tileX + "/" + tileY, e);
+    } finally {
+      if (connection != null) {
+        releaseConnection(connection);
+      }
+    }
+  }
+
+  public BufferedImage getTileImage(final GeoPackageTileMatrix tileMatrix, final int tileX,
+    final int tileY) {
+    final int zoomLevel = tileMatrix.getZoomLevel();
+    final byte[] data = getTileData(zoomLevel, tileX, tileY);
+    if (data == null) {
+      return null;
+    } else {
+      try {
+        return ImageIO.read(new ByteArrayInputStream(data));
+      } catch (final IOException e) {
+        throw Exceptions.wrap(
+          "Unable to read tile " + this.tableName + " " + zoomLevel + "/" + tileX + "/" + tileY, e);
+      }
+    }
+  }
+
+  @Override
+  public GeoPackageTileMatrix getTileLevel(final double metresPerPixel) {
+    return BaseTileLevelSet.getTileLevel(this.tileMatrices, metresPerPixel);
+  }
+
+  public List<GeoPackageTileMatrix> getTileMatrices() {
+    return Collections.unmodifiableList(this.tileMatrices);
+  }
+
+  public GeoPackageTileMatrix getTileMatrix(final int zoomLevel) {
+    for (final GeoPackageTileMatrix tileMatrix : this.tileMatrices) {
+      if (tileMatrix.getZoomLevel() == zoomLevel) {
+        return tileMatrix;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Construct a new writer to insert or replace tiles in this tile set.
+   *
+   * @param batchSize The number of tiles to insert in each batch and
+   *          transaction.
+   * @return The writer.
+   */
+  public GeoPackageTileWriter newTileWriter(final int batchSize) {
+    return new GeoPackageTileWriter(this, batchSize);
+  }
+
+  private void releaseConnection(final Connection connection) {
+    synchronized (this.connections) {
+      if (!this.closed && this.connections.size() < this.maxIdleConnections) {
+        this.connections.addFirst(connection);
+        return;
+      }
+    }
+    closeConnection(connection);
+  }
+
+  /**
+   * Set the maximum number of idle connections kept open for reading tiles.
+   *
+   * @param maxIdleConnections The maximum number of connections.
+   */
+  public void setMaxIdleConnections(final int maxIdleConnections) {
+    this.maxIdleConnections = maxIdleConnections;
+  }
+
+  @Override
+  public String toString() {
+    return this.recordStore + " " + this.tableName;
+  }
+}
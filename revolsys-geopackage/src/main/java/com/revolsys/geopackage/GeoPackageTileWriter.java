@@ -0,0 +1,146 @@
+package com.revolsys.geopackage;
+
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.imageio.ImageIO;
+
+import org.jeometry.common.exception.Exceptions;
+
+import com.revolsys.io.BaseCloseable;
+
+/**
+ * Insert or replace tiles in a {@link GeoPackageTileSet}. The tiles are
+ * written using a single connection and are inserted using JDBC batches, with
+ * each batch committed in one transaction. The writer must be closed to write
+ * the last batch.
+ */
+public class GeoPackageTileWriter implements BaseCloseable {
+
+  private final int batchSize;
+
+  private int batchCount = 0;
+
+  private Connection connection;
+
+  private String formatName = "png";
+
+  private PreparedStatement statement;
+
+  private final GeoPackageTileSet tileSet;
+
+  GeoPackageTileWriter(final GeoPackageTileSet tileSet, final int batchSize) {
+    this.tileSet = tileSet;
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      flush();
+    } finally {
+      try {
+        if (this.statement != null) {
+          this.statement.close();
+        }
+        if (this.connection != null) {
+          this.connection.close();
+        }
+      } catch (final SQLException e) {
+        throw Exceptions.wrap("Unable to close tile writer " + this.tileSet, e);
+      } finally {
+        this.statement = null;
+        this.connection = null;
+      }
+    }
+  }
+
+  /**
+   * Write and commit the tiles in the current batch.
+   */
+  public synchronized void flush() {
+    if (this.batchCount > 0) {
+      try {
+        this.statement.executeBatch();
+        this.connection.commit();
+      } catch (final SQLException e) {
+        throw Exceptions.wrap("Unable to write tiles " + this.tileSet, e);
+      } finally {
+        this.batchCount = 0;
+      }
+    }
+  }
+
+  public String getFormatName() {
+    return this.formatName;
+  }
+
+  /**
+   * Set the ImageIO format name used to encode images passed to
+   * {@link #writeTile(int, int, int, RenderedImage)} (e.g. png or jpeg).
+   *
+   * @param formatName The format name.
+   */
+  public void setFormatName(final String formatName) {
+    this.formatName = formatName;
+  }
+
+  /**
+   * Write a tile that is already encoded as a PNG or JPEG image.
+   *
+   * @param zoomLevel The zoom level.
+   * @param tileX The tile column.
+   * @param tileY The tile row.
+   * @param data The image bytes.
+   */
+  public synchronized void writeTile(final int zoomLevel, final int tileX, final int tileY,
+    final byte[] data) {
+    try {
+      if (this.statement == null) {
+        this.connection = this.tileSet.getRecordStore().newTileConnection();
+        this.connection.setAutoCommit(false);
+        final String sql = "INSERT OR REPLACE INTO \"" + this.tileSet.getTableName()
+          + "\" (zoom_level, tile_column, tile_row, tile_data) VALUES (?, ?, ?, ?)";
+        this.statement = this.connection.prepareStatement(sql);
+      }
+      this.statement.setInt(1, zoomLevel);
+      this.statement.setInt(2, tileX);
+      this.statement.setInt(3, tileY);
+      this.statement.setBytes(4, data);
+      this.statement.addBatch();
+    } catch (final SQLException e) {
+      throw Exceptions.wrap(
+        "Unable to write tile " + this.tileSet + " " + zoomLevel + "/" + tileX + "/" + tileY, e);
+    }
+    this.batchCount++;
+    if (this.batchCount >= this.batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Encode the image using the {@link #getFormatName()} and write the tile.
+   *
+   * @param zoomLevel The zoom level.
+   * @param tileX The tile column.
+   * @param tileY The tile row.
+   * @param image The tile image.
+   */
+  public void writeTile(final int zoomLevel, final int tileX, final int tileY,
+    final RenderedImage image) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      if (!ImageIO.write(image, this.formatName, out)) {
+        throw new IllegalArgumentException("No image writer for " + this.formatName);
+      }
+    } catch (final IOException e) {
+      throw Exceptions.wrap("Unable to encode tile " + this.tileSet + " " + zoomLevel + "/"
+        + tileX + "/" + tileY, e);
+    }
+    writeTile(zoomLevel, tileX, tileY, out.toByteArray());
+  }
+}
@@ -0,0 +1,202 @@
+package com.revolsys.oracle.recordstore;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.revolsys.io.FileUtil;
+import com.revolsys.jdbc.JdbcConnection;
+import com.revolsys.jdbc.io.JdbcRecordDefinition;
+import com.revolsys.jdbc.io.JdbcRecordWriter;
+import com.revolsys.record.Record;
+import com.revolsys.record.RecordState;
+import com.revolsys.record.schema.RecordDefinitionProxy;
+
+/**
+ * <p>
+ * A record writer for loading large numbers of records into Oracle. Inserts
+ * are sent as JDBC batches which the Oracle driver executes as a single array
+ * bind of each column, so the batch size should be large (e.g. 1,000-10,000).
+ * </p>
+ * <p>
+ * If {@link #setAppendValues(boolean)} is true the inserts use the
+ * <code>APPEND_VALUES</code> hint for direct path loading. Oracle does not
+ * allow a table to be read or modified after a direct path insert in the same
+ * transaction, so in this mode the writer commits after each batch, and before
+ * any update or delete. Updates and deletes are written using the same
+ * statements as {@link JdbcRecordWriter}.
+ * </p>
+ * <p>
+ * If {@link #setCommitInterval(int)} is set the writer commits after that many
+ * records have been written so the undo for a large load is bounded.
+ * </p>
+ * <p>
+ * The intermediate commits are never made on the current transaction's
+ * connection. Both modes switch the writer to a connection it opens itself,
+ * which is committed when the writer is closed. As the records would not be
+ * rolled back with a transaction, both modes throw an
+ * {@link IllegalStateException} if a transaction is active. Create the writer
+ * in a {@link com.revolsys.transaction.Transaction} with
+ * {@link com.revolsys.transaction.Propagation#NOT_SUPPORTED} to use them.
+ * </p>
+ * <p>
+ * SDO_GEOMETRY values are converted to a Struct for each row as they are added
+ * to the batch.
+ * </p>
+ */
+public class OracleBulkRecordWriter extends JdbcRecordWriter {
+  private static final String APPEND_VALUES_HINT = "/*+ APPEND_VALUES */";
+
+  private boolean appendValues = false;
+
+  private int commitInterval = 0;
+
+  private long insertCount = 0;
+
+  private boolean ownConnection = false;
+
+  private long uncommittedCount = 0;
+
+  private boolean written = false;
+
+  public OracleBulkRecordWriter(final OracleRecordStore recordStore,
+    final RecordDefinitionProxy recordDefinition, final int batchSize) {
+    super(recordStore, recordDefinition, batchSize);
+    setSqlPrefix(recordStore.getSqlPrefix());
+    setSqlSuffix(recordStore.getSqlSuffix());
+    setLabel(recordStore.getLabel());
+    setFlushBetweenTypes(recordStore.isFlushBetweenTypes());
+    setQuoteColumnNames(false);
+  }
+
+  @Override
+  protected synchronized void closeDo() {
+    try {
+      if (this.ownConnection && getRecordStore() != null && this.connection != null) {
+        try {
+          this.connection.commit();
+        } catch (final SQLException e) {
+          throw new RuntimeException("Failed to commit data:", e);
+        }
+      }
+    } finally {
+      super.closeDo();
+    }
+  }
+
+  @Override
+  public synchronized void commit() {
+    super.commit();
+    this.uncommittedCount = 0;
+  }
+
+  public int getCommitInterval() {
+    return this.commitInterval;
+  }
+
+  public long getInsertCount() {
+    return this.insertCount;
+  }
+
+  @Override
+  protected void insert(final JdbcRecordDefinition recordDefinition, final Record record)
+    throws SQLException {
+    super.insert(recordDefinition, record);
+    this.insertCount++;
+    this.uncommittedCount++;
+    if (this.appendValues) {
+      if (this.uncommittedCount >= Math.max(1, getBatchSize())) {
+        commit();
+      }
+    } else if (this.commitInterval > 0 && this.uncommittedCount >= this.commitInterval) {
+      commit();
+    }
+  }
+
+  public boolean isAppendValues() {
+    return this.appendValues;
+  }
+
+  /**
+   * Use the APPEND_VALUES hint for direct path inserts. Must be set before the
+   * first record is written.
+   *
+   * @param appendValues True if direct path inserts are used.
+   */
+  public void setAppendValues(final boolean appendValues) {
+    if (appendValues) {
+      useOwnConnection();
+    }
+    this.appendValues = appendValues;
+    if (appendValues) {
+      setInsertHint(APPEND_VALUES_HINT);
+    } else {
+      setInsertHint(null);
+    }
+  }
+
+  /**
+   * Commit after the number of records have been written. Must be set before
+   * the first record is written.
+   *
+   * @param commitInterval The number of records between commits, 0 to only
+   *          commit when the writer is closed.
+   */
+  public void setCommitInterval(final int commitInterval) {
+    if (commitInterval > 0) {
+      useOwnConnection();
+    }
+    this.commitInterval = commitInterval;
+  }
+
+  /**
+   * Replace the connection with a connection owned by this writer so the
+   * intermediate commits can be made. The connection bound to an active
+   * transaction is never closed or committed, instead an exception is thrown.
+   */
+  private void useOwnConnection() {
+    if (!this.ownConnection) {
+      if (this.written) {
+        throw new IllegalStateException(
+          "Intermediate commits must be enabled before the first record is written");
+      }
+      if (TransactionSynchronizationManager.isActualTransactionActive()) {
+        throw new IllegalStateException(
+          "Intermediate commits can't be used in an active transaction");
+      }
+      final DataSource dataSource = this.connection.getDataSource();
+      if (dataSource == null) {
+        throw new IllegalStateException("Intermediate commits require a data source");
+      }
+      try {
+        final Connection connection = dataSource.getConnection();
+        FileUtil.closeSilent(this.connection);
+        this.connection = new JdbcConnection(connection, dataSource, false);
+        this.ownConnection = true;
+      } catch (final SQLException e) {
+        throw new RuntimeException("Unable to create connection", e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void write(final Record record) {
+    final RecordState state = record.getState();
+    final boolean modify = record.getRecordStore() == getRecordStore()
+      && (state == RecordState.MODIFIED || state == RecordState.DELETED);
+    this.written = true;
+    if (modify && this.appendValues && this.uncommittedCount > 0) {
+      commit();
+    }
+    super.write(record);
+    if (modify && this.commitInterval > 0 && !this.appendValues) {
+      this.uncommittedCount++;
+      if (this.uncommittedCount >= this.commitInterval) {
+        commit();
+      }
+    }
+  }
+}
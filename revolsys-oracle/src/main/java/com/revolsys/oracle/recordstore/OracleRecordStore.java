@@ -55,6 +55,7 @@ import com.revolsys.record.query.functions.GeometryEqual2d;
 import com.revolsys.record.query.functions.WithinDistance;
 import com.revolsys.record.schema.FieldDefinition;
 import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.record.schema.RecordDefinitionProxy;
 import com.revolsys.transaction.Transaction;
 import com.revolsys.transaction.TransactionOptions;
 import com.revolsys.util.Property;
@@ -489,6 +490,19 @@ public class OracleRecordStore extends AbstractJdbcRecordStore {
     return this.useSchemaSequencePrefix;
   }
 
+  /**
+   * Create a writer for loading large numbers of records using array binds and
+   * optionally direct path inserts.
+   *
+   * @param recordDefinition The record definition.
+   * @param batchSize The number of records in each array bind.
+   * @return The writer.
+   */
+  public OracleBulkRecordWriter newBulkRecordWriter(final RecordDefinitionProxy recordDefinition,
+    final int batchSize) {
+    return new OracleBulkRecordWriter(this, recordDefinition, batchSize);
+  }
+
   @Override
   public RecordIterator newIterator(final Query query, final Map<String, Object> properties) {
     return new OracleJdbcQueryIterator(this, query, properties);
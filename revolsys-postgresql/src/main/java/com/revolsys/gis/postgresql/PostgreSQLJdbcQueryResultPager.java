@@ -4,6 +4,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -11,17 +12,75 @@ import java.util.function.Consumer;
 import com.revolsys.jdbc.io.JdbcQueryResultPager;
 import com.revolsys.jdbc.io.JdbcRecordStore;
 import com.revolsys.record.Record;
+import com.revolsys.record.query.ColumnReference;
+import com.revolsys.record.query.OrderBy;
 import com.revolsys.record.query.Query;
+import com.revolsys.record.query.QueryValue;
+import com.revolsys.record.query.SqlCondition;
+import com.revolsys.record.schema.FieldDefinition;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.util.Booleans;
 
+/**
+ * <p>
+ * Result pager for PostgreSQL using LIMIT to read a single page.
+ * </p>
+ * <p>
+ * If the query is sorted (or not sorted and has id fields) by required fields
+ * in the same direction then keyset pagination is used. The key of the last
+ * record of each page read is cached and the next page is read using
+ * <code>WHERE (k1, k2) &gt; (?, ?) ORDER BY k1, k2 LIMIT n</code>, so the time
+ * to read a page doesn't depend on how deep the page is. Jumping to a page
+ * that doesn't have a cached start key uses an OFFSET relative to the nearest
+ * cached page before it. The id fields are added to the sort order if
+ * required to make the key unique.
+ * </p>
+ * <p>
+ * Keyset pagination can be disabled by setting the property
+ * <code>keysetPaging=false</code> on the record store.
+ * </p>
+ */
 public class PostgreSQLJdbcQueryResultPager extends JdbcQueryResultPager {
 
   private Integer numResults;
 
   private List<Record> results = null;
 
+  private boolean keysetPaging;
+
+  private List<FieldDefinition> keyFields;
+
+  private boolean keyAscending = true;
+
+  /** The key of the last record on each page, indexed by page number. */
+  private final Map<Integer, Object[]> pageEndKeys = new HashMap<>();
+
+  private int keyPageSize = -1;
+
   public PostgreSQLJdbcQueryResultPager(final JdbcRecordStore recordStore,
     final Map<String, Object> properties, final Query query) {
     super(recordStore, properties, query);
+    final Object keysetPaging = properties.get("keysetPaging");
+    this.keysetPaging = keysetPaging == null || Booleans.getBoolean(keysetPaging);
+  }
+
+  private void forEachInPage(final String sql, final Query query,
+    final Consumer<Record> action) {
+    final int pageSize = getPageSize();
+    try (
+      final PreparedStatement statement = this.connection.prepareStatement(sql);
+      final ResultSet resultSet = createResultSet(statement, query);) {
+      if (resultSet.next()) {
+        int i = 0;
+        do {
+          final Record record = getNextRecord(resultSet);
+          action.accept(record);
+          i++;
+        } while (resultSet.next() && i < pageSize);
+      }
+    } catch (final SQLException e) {
+      throw this.connection.getException("updateResults", sql, e);
+    }
   }
 
   @Override
@@ -30,30 +89,71 @@ public class PostgreSQLJdbcQueryResultPager extends JdbcQueryResultPager {
       final int pageSize = getPageSize();
       final int pageNumber = getPageNumber();
       if (pageNumber != -1) {
-        String sql = getSql();
-
-        final int startRowNum = (pageNumber - 1) * pageSize;
-        sql = getSql() + " OFFSET " + startRowNum + " LIMIT " + pageSize;
-
-        try (
-          final PreparedStatement statement = this.connection.prepareStatement(sql);
-          final ResultSet resultSet = createResultSet(statement);) {
-          if (resultSet.next()) {
-            int i = 0;
-            do {
-              final Record record = getNextRecord(resultSet);
-              action.accept(record);
-              i++;
-            } while (resultSet.next() && i < pageSize);
-          }
-        } catch (final SQLException e) {
-          throw this.connection.getException("updateResults", sql, e);
+        if (initKeyFields()) {
+          forEachInPageKeyset(pageNumber, action);
+        } else {
+          final int startRowNum = (pageNumber - 1) * pageSize;
+          final String sql = getSql() + " OFFSET " + startRowNum + " LIMIT " + pageSize;
+          forEachInPage(sql, getQuery(), action);
         }
       }
+    }
+  }
+
+  private void forEachInPageKeyset(final int pageNumber, final Consumer<Record> action) {
+    final int pageSize = getPageSize();
+    if (this.keyPageSize != pageSize) {
+      this.pageEndKeys.clear();
+      this.keyPageSize = pageSize;
+    }
+
+    int startPageNumber = pageNumber - 1;
+    Object[] startKey = null;
+    while (startPageNumber > 0 && startKey == null) {
+      startKey = this.pageEndKeys.get(startPageNumber);
+      if (startKey == null) {
+        startPageNumber--;
+      }
+    }
+
+    final Query query = getQuery().clone();
+    query.clearOrderBy();
+    for (final FieldDefinition field : this.keyFields) {
+      query.addOrderBy(field, this.keyAscending);
+    }
+    if (startKey != null) {
+      query.and(newKeyCondition(startKey));
+    }
+    final StringBuilder sql = new StringBuilder(query.getSelectSql());
+    final int skipCount = (pageNumber - 1 - startPageNumber) * pageSize;
+    if (skipCount > 0) {
+      sql.append(" OFFSET ");
+      sql.append(skipCount);
+    }
+    sql.append(" LIMIT ");
+    sql.append(pageSize);
 
+    final Record[] lastRecord = new Record[1];
+    forEachInPage(sql.toString(), query, record -> {
+      lastRecord[0] = record;
+      action.accept(record);
+    });
+    if (lastRecord[0] != null) {
+      final Object[] endKey = getKey(lastRecord[0]);
+      this.pageEndKeys.put(pageNumber, endKey);
     }
   }
 
+  private Object[] getKey(final Record record) {
+    final List<FieldDefinition> keyFields = this.keyFields;
+    final Object[] key = new Object[keyFields.size()];
+    for (int i = 0; i < key.length; i++) {
+      final String name = keyFields.get(i).getName();
+      key[i] = record.getValue(name);
+    }
+    return key;
+  }
+
   @Override
   public List<Record> getList() {
     synchronized (this) {
@@ -77,6 +177,112 @@ public class PostgreSQLJdbcQueryResultPager extends JdbcQueryResultPager {
     return this.numResults;
   }
 
+  /**
+   * Get the fields to use as the key for keyset pagination. These are the
+   * order by fields followed by any id fields not in the order by. All the
+   * fields must be required fields of the record definition, included in the
+   * select and sorted in the same direction.
+   *
+   * @return True if keyset pagination can be used.
+   */
+  private boolean initKeyFields() {
+    if (this.keysetPaging && this.keyFields == null) {
+      final Query query = getQuery();
+      RecordDefinition recordDefinition = query.getRecordDefinition();
+      if (recordDefinition == null) {
+        recordDefinition = getRecordStore().getRecordDefinition(query.getTablePath());
+      }
+      final List<FieldDefinition> keyFields = new ArrayList<>();
+      boolean valid = recordDefinition != null && recordDefinition.hasIdField()
+        && query.getSql() == null && query.getGroupBy().isEmpty();
+      if (valid) {
+        final List<OrderBy> orderBys = query.getOrderBy();
+        for (int i = 0; valid && i < orderBys.size(); i++) {
+          final OrderBy orderBy = orderBys.get(i);
+          final QueryValue value = orderBy.getField();
+          if (i == 0) {
+            this.keyAscending = orderBy.isAscending();
+          }
+          if (value instanceof ColumnReference && orderBy.isAscending() == this.keyAscending) {
+            final String name = ((ColumnReference)value).getName();
+            final FieldDefinition field = recordDefinition.getField(name);
+            valid = field != null && field.isRequired() && isSelected(query, name);
+            if (valid) {
+              keyFields.add(field);
+            }
+          } else {
+            valid = false;
+          }
+        }
+      }
+      if (valid) {
+        for (final FieldDefinition idField : recordDefinition.getIdFields()) {
+          final String name = idField.getName();
+          if (!keyFields.contains(idField)) {
+            if (isSelected(query, name)) {
+              keyFields.add(idField);
+            } else {
+              valid = false;
+            }
+          }
+        }
+      }
+      if (valid) {
+        this.keyFields = keyFields;
+      } else {
+        this.keysetPaging = false;
+      }
+    }
+    return this.keysetPaging;
+  }
+
+  private boolean isSelected(final Query query, final String name) {
+    if (query.hasSelect()) {
+      for (final QueryValue select : query.getSelect()) {
+        if (select instanceof ColumnReference) {
+          if (((ColumnReference)select).getName().equalsIgnoreCase(name)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    } else {
+      return true;
+    }
+  }
+
+  public boolean isKeysetPaging() {
+    return this.keysetPaging;
+  }
+
+  private SqlCondition newKeyCondition(final Object[] key) {
+    final StringBuilder sql = new StringBuilder("(");
+    final List<FieldDefinition> keyFields = this.keyFields;
+    for (int i = 0; i < keyFields.size(); i++) {
+      if (i > 0) {
+        sql.append(", ");
+      }
+      keyFields.get(i).appendColumnName(sql);
+    }
+    if (this.keyAscending) {
+      sql.append(") > (");
+    } else {
+      sql.append(") < (");
+    }
+    for (int i = 0; i < keyFields.size(); i++) {
+      if (i > 0) {
+        sql.append(", ");
+      }
+      sql.append('?');
+    }
+    sql.append(')');
+    final List<Object> values = new ArrayList<>(key.length);
+    for (final Object value : key) {
+      values.add(value);
+    }
+    return new SqlCondition(sql.toString(), keyFields, values);
+  }
+
   /**
    * Update the cached results for the current page.
    */
@@ -36,6 +36,7 @@ import com.revolsys.jdbc.field.JdbcFieldDefinition;
 import com.revolsys.jdbc.field.JdbcStringFieldAdder;
 import com.revolsys.jdbc.io.AbstractJdbcDatabaseFactory;
 import com.revolsys.jdbc.io.AbstractJdbcRecordStore;
+import com.revolsys.jdbc.io.JdbcPartitionedRecordReader;
 import com.revolsys.jdbc.io.JdbcRecordDefinition;
 import com.revolsys.jdbc.io.JdbcRecordStoreSchema;
 import com.revolsys.record.ArrayRecord;
@@ -43,6 +44,7 @@ import com.revolsys.record.Record;
 import com.revolsys.record.RecordFactory;
 import com.revolsys.record.io.RecordIterator;
 import com.revolsys.record.property.ShortNameProperty;
+import com.revolsys.record.query.Q;
 import com.revolsys.record.query.Query;
 import com.revolsys.record.query.QueryValue;
 import com.revolsys.record.query.functions.EnvelopeIntersects;
@@ -57,6 +59,8 @@ public class PostgreSQLRecordStore extends AbstractJdbcRecordStore {
   public static final List<String> POSTGRESQL_INTERNAL_SCHEMAS = Arrays.asList("information_schema",
     "pg_catalog", "pg_toast_temp_1");
 
+  private int serverVersionNumber;
+
   private boolean useSchemaSequencePrefix = true;
 
   public PostgreSQLRecordStore() {
@@ -250,6 +254,18 @@ public class PostgreSQLRecordStore extends AbstractJdbcRecordStore {
 
   }
 
+  /**
+   * Get the server_version_num of the database server (e.g. 140005 for 14.5).
+   *
+   * @return The version number.
+   */
+  public int getServerVersionNumber() {
+    if (this.serverVersionNumber == 0) {
+      this.serverVersionNumber = selectInt("SELECT current_setting('server_version_num')::int");
+    }
+    return this.serverVersionNumber;
+  }
+
   @Override
   public void initializeDo() {
     super.initializeDo();
@@ -430,6 +446,46 @@ order by 1, 2, 3
       dbSchemaName, quoteName);
   }
 
+  /**
+   * Create a reader that reads the query using partitions of the table's
+   * physical pages (ctid ranges), which doesn't require an index. The number
+   * of pages is the estimate from pg_class so the last partition reads to the
+   * end of the table.
+   * <p>
+   * Only PostgreSQL 14+ can use a TID range scan for a ctid range, older
+   * servers would read the whole table for each partition. For those servers
+   * the reader is partitioned using
+   * {@link JdbcPartitionedRecordReader#addIdRangePartitions(int)} instead,
+   * which reads the records sequentially if the table doesn't have a single
+   * numeric id field.
+   * </p>
+   *
+   * @param query The query.
+   * @param partitionCount The number of partitions.
+   * @return The reader.
+   */
+  public JdbcPartitionedRecordReader newCtidPartitionedReader(final Query query,
+    final int partitionCount) {
+    final JdbcPartitionedRecordReader reader = new JdbcPartitionedRecordReader(this, query);
+    if (getServerVersionNumber() < 140000) {
+      return reader.addIdRangePartitions(partitionCount);
+    }
+    final JdbcRecordDefinition recordDefinition = getRecordDefinition(query.getTablePath());
+    final String tableName = recordDefinition.getQualifiedTableName();
+    final long pageCount = Math.max(1,
+      selectLong("SELECT relpages FROM pg_class WHERE oid = ?::regclass", tableName));
+    final long step = Math.max(1, (pageCount + partitionCount - 1) / partitionCount);
+    for (long startPage = 0; startPage < pageCount; startPage += step) {
+      final long endPage = startPage + step;
+      String sql = "ctid >= '(" + startPage + ",0)'::tid";
+      if (endPage < pageCount) {
+        sql += " AND ctid < '(" + endPage + ",0)'::tid";
+      }
+      reader.addPartition(Q.sql(sql));
+    }
+    return reader;
+  }
+
   @Override
   public ResultPager<Record> page(final Query query) {
     return new PostgreSQLJdbcQueryResultPager(this, getProperties(), query);
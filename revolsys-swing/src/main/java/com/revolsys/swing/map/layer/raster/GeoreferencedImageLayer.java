@@ -22,6 +22,7 @@ import com.revolsys.geometry.model.LineString;
 import com.revolsys.geometry.model.Point;
 import com.revolsys.geometry.model.editor.BoundingBoxEditor;
 import com.revolsys.geometry.model.impl.PointDoubleXY;
+import com.revolsys.io.BaseCloseable;
 import com.revolsys.io.FileUtil;
 import com.revolsys.io.IoFactory;
 import com.revolsys.raster.GeoreferencedImage;
@@ -163,6 +164,18 @@ public class GeoreferencedImageLayer extends AbstractLayer {
     firePropertyChange("hasChanges", true, false);
   }
 
+  private void closeImage(final GeoreferencedImage image) {
+    if (image instanceof BaseCloseable) {
+      ((BaseCloseable)image).close();
+    }
+  }
+
+  @Override
+  public void delete() {
+    super.delete();
+    closeImage(this.image);
+  }
+
   public void deleteTiePoint(final MappedLocation tiePoint) {
     if (isEditable()) {
       this.image.deleteTiePoint(tiePoint);
@@ -395,6 +408,9 @@ public class GeoreferencedImageLayer extends AbstractLayer {
     final GeoreferencedImage old = this.image;
     Property.removeListener(this.image, this);
     this.image = image;
+    if (old != image) {
+      closeImage(old);
+    }
     if (image == null) {
       setExists(false);
     } else {
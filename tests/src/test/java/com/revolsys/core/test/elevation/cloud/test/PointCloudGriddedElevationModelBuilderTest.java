@@ -0,0 +1,170 @@
+package com.revolsys.core.test.elevation.cloud.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.elevation.cloud.PointCloudGridMethod;
+import com.revolsys.elevation.cloud.PointCloudGriddedElevationModelBuilder;
+import com.revolsys.elevation.gridded.GriddedElevationModel;
+import com.revolsys.geometry.model.GeometryFactory;
+
+public class PointCloudGriddedElevationModelBuilderTest {
+
+  private static final double CELL_SIZE = 2;
+
+  /** The grid cells with points, including negative cells and several tiles. */
+  private static final int MIN_CELL = -10;
+
+  private static final int CELL_COUNT = 30;
+
+  /** A cell with no points. */
+  private static final int EMPTY_CELL_X = 3;
+
+  private static final int EMPTY_CELL_Y = 5;
+
+  private static final int POINT_COUNT = 200000;
+
+  private static final GeometryFactory GEOMETRY_FACTORY = GeometryFactory.floating3d(26910);
+
+  private static double[] newPoints() {
+    final Random random = new Random(1);
+    final double[] points = new double[POINT_COUNT * 3];
+    int i = 0;
+    while (i < points.length) {
+      final double x = (MIN_CELL + random.nextDouble() * CELL_COUNT) * CELL_SIZE;
+      final double y = (MIN_CELL + random.nextDouble() * CELL_COUNT) * CELL_SIZE;
+      if ((int)Math.floor(x / CELL_SIZE) != EMPTY_CELL_X
+        || (int)Math.floor(y / CELL_SIZE) != EMPTY_CELL_Y) {
+        points[i++] = x;
+        points[i++] = y;
+        points[i++] = 100 + random.nextDouble() * 50 + x / 10;
+      }
+    }
+    return points;
+  }
+
+  private void assertMethod(final PointCloudGridMethod method) {
+    assertMethod(method, Integer.MAX_VALUE);
+  }
+
+  private void assertMethod(final PointCloudGridMethod method, final int maxLoadedTileCount) {
+    final double[] points = newPoints();
+    final GriddedElevationModel elevationModel;
+    try (
+      PointCloudGriddedElevationModelBuilder builder = new PointCloudGriddedElevationModelBuilder(
+        GEOMETRY_FACTORY, CELL_SIZE, method)) {
+      builder.setTileSize(16);
+      builder.setMaxLoadedTileCount(maxLoadedTileCount);
+      for (int i = 0; i < points.length; i += 3) {
+        builder.addPoint(points[i], points[i + 1], points[i + 2]);
+      }
+      Assert.assertEquals(POINT_COUNT, builder.getPointCount());
+      elevationModel = builder.newGriddedElevationModel();
+    }
+    Assert.assertEquals(CELL_COUNT, elevationModel.getGridWidth());
+    Assert.assertEquals(CELL_COUNT, elevationModel.getGridHeight());
+
+    final int cellCount = CELL_COUNT * CELL_COUNT;
+    final double[] values = new double[cellCount];
+    final double[] weights = new double[cellCount];
+    if (method == PointCloudGridMethod.MIN) {
+      Arrays.fill(values, Double.POSITIVE_INFINITY);
+    } else if (method == PointCloudGridMethod.MAX) {
+      Arrays.fill(values, Double.NEGATIVE_INFINITY);
+    } else if (method == PointCloudGridMethod.NEAREST) {
+      Arrays.fill(weights, Double.POSITIVE_INFINITY);
+    }
+    for (int i = 0; i < points.length; i += 3) {
+      final double x = points[i];
+      final double y = points[i + 1];
+      final double z = points[i + 2];
+      final int cellX = (int)Math.floor(x / CELL_SIZE);
+      final int cellY = (int)Math.floor(y / CELL_SIZE);
+      final int index = (cellY - MIN_CELL) * CELL_COUNT + cellX - MIN_CELL;
+      final double dx = x - (cellX + 0.5) * CELL_SIZE;
+      final double dy = y - (cellY + 0.5) * CELL_SIZE;
+      final double distanceSquared = dx * dx + dy * dy;
+      switch (method) {
+        case MIN:
+          values[index] = Math.min(values[index], z);
+        break;
+        case MAX:
+          values[index] = Math.max(values[index], z);
+        break;
+        case MEAN:
+          values[index] += z;
+          weights[index]++;
+        break;
+        case IDW:
+          final double weight = 1 / Math.max(CELL_SIZE * CELL_SIZE * 1e-6, distanceSquared);
+          values[index] += weight * z;
+          weights[index] += weight;
+        break;
+        case NEAREST:
+          if (distanceSquared < weights[index]) {
+            weights[index] = distanceSquared;
+            values[index] = z;
+          }
+        break;
+      }
+    }
+
+    for (int cellY = MIN_CELL; cellY < MIN_CELL + CELL_COUNT; cellY++) {
+      for (int cellX = MIN_CELL; cellX < MIN_CELL + CELL_COUNT; cellX++) {
+        final int index = (cellY - MIN_CELL) * CELL_COUNT + cellX - MIN_CELL;
+        final double actual = elevationModel.getValue((cellX + 0.5) * CELL_SIZE,
+          (cellY + 0.5) * CELL_SIZE);
+        final String message = method + " cell " + cellX + "," + cellY;
+        if (cellX == EMPTY_CELL_X && cellY == EMPTY_CELL_Y) {
+          Assert.assertTrue(message + " is empty", Double.isNaN(actual));
+        } else {
+          double expected = values[index];
+          if (method == PointCloudGridMethod.MEAN || method == PointCloudGridMethod.IDW) {
+            expected /= weights[index];
+          }
+          // The z values are stored to 3 decimal places
+          Assert.assertEquals(message, expected, actual, 0.0011);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIdw() {
+    assertMethod(PointCloudGridMethod.IDW);
+  }
+
+  @Test
+  public void testMax() {
+    assertMethod(PointCloudGridMethod.MAX);
+  }
+
+  @Test
+  public void testMean() {
+    assertMethod(PointCloudGridMethod.MEAN);
+  }
+
+  @Test
+  public void testMin() {
+    assertMethod(PointCloudGridMethod.MIN);
+  }
+
+  @Test
+  public void testNearest() {
+    assertMethod(PointCloudGridMethod.NEAREST);
+  }
+
+  /**
+   * Only one tile is kept in memory so the other tiles are spilled to the
+   * temporary file and loaded again as points are added.
+   */
+  @Test
+  public void testSpill() {
+    for (final PointCloudGridMethod method : PointCloudGridMethod.values()) {
+      assertMethod(method, 1);
+    }
+  }
+}
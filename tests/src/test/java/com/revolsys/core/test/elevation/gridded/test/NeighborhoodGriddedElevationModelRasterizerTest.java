@@ -0,0 +1,90 @@
+package com.revolsys.core.test.elevation.gridded.test;
+
+import java.awt.image.DataBufferInt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.elevation.gridded.DoubleArrayGriddedElevationModel;
+import com.revolsys.elevation.gridded.GriddedElevationModel;
+import com.revolsys.elevation.gridded.rasterizer.AbstractNeighborhoodGriddedElevationModelRasterizer;
+import com.revolsys.elevation.gridded.rasterizer.HillShadeGriddedElevationModelRasterizer;
+import com.revolsys.elevation.gridded.rasterizer.SlopeColorGradientGriddedElevationModelRasterizer;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.grid.Grid;
+
+/**
+ * Checks that rasterizing in parallel row blocks gives the same colours as
+ * calculating each cell on its own.
+ */
+public class NeighborhoodGriddedElevationModelRasterizerTest {
+
+  /** Not a multiple of the 64 row blocks. */
+  private static final int GRID_HEIGHT = 203;
+
+  private static final int GRID_WIDTH = 150;
+
+  /**
+   * A surface with null cells on the edges, in isolated cells and in a block.
+   */
+  private static GriddedElevationModel newElevationModel() {
+    final GeometryFactory geometryFactory = GeometryFactory.fixed3d(3005, 1000.0, 1000.0,
+      1000.0);
+    final GriddedElevationModel elevationModel = new DoubleArrayGriddedElevationModel(
+      geometryFactory, 0, 0, GRID_WIDTH, GRID_HEIGHT, 2);
+    for (int gridY = 0; gridY < GRID_HEIGHT; gridY++) {
+      for (int gridX = 0; gridX < GRID_WIDTH; gridX++) {
+        final boolean hole = gridX == 0 || gridY == GRID_HEIGHT - 1
+          || (gridX * 31 + gridY) % 17 == 0
+          || gridX >= 60 && gridX < 70 && gridY >= 60 && gridY < 70;
+        if (!hole) {
+          final double elevation = 100 + Math.sin(gridX / 7.0) * 30 + Math.cos(gridY / 5.0) * 20
+            + gridX * 0.3;
+          elevationModel.setValue(gridX, gridY, elevation);
+        }
+      }
+    }
+    elevationModel.updateValues();
+    return elevationModel;
+  }
+
+  private void assertParallelEquals(
+    final AbstractNeighborhoodGriddedElevationModelRasterizer rasterizer) {
+    final int size = GRID_WIDTH * GRID_HEIGHT;
+    final DataBufferInt intBuffer = new DataBufferInt(size);
+    rasterizer.rasterize(intBuffer);
+    // Multiple banks are written using setElem
+    final DataBufferInt bankBuffer = new DataBufferInt(size, 2);
+    rasterizer.rasterize(bankBuffer);
+
+    int nullCount = 0;
+    for (int gridY = 0; gridY < GRID_HEIGHT; gridY++) {
+      for (int gridX = 0; gridX < GRID_WIDTH; gridX++) {
+        final int expected = rasterizer.getValue(gridX, gridY);
+        if (expected == Grid.NULL_COLOUR) {
+          nullCount++;
+        }
+        // Image rows start at the top
+        final int index = (GRID_HEIGHT - 1 - gridY) * GRID_WIDTH + gridX;
+        final String message = rasterizer.getName() + " " + gridX + "," + gridY;
+        Assert.assertEquals(message, expected, intBuffer.getElem(index));
+        Assert.assertEquals(message + " setElem", expected, bankBuffer.getElem(0, index));
+      }
+    }
+    Assert.assertTrue("null cells", nullCount > 0);
+  }
+
+  @Test
+  public void testHillShade() {
+    final HillShadeGriddedElevationModelRasterizer rasterizer = new HillShadeGriddedElevationModelRasterizer(
+      newElevationModel());
+    assertParallelEquals(rasterizer);
+  }
+
+  @Test
+  public void testSlope() {
+    final SlopeColorGradientGriddedElevationModelRasterizer rasterizer = new SlopeColorGradientGriddedElevationModelRasterizer(
+      newElevationModel());
+    assertParallelEquals(rasterizer);
+  }
+}
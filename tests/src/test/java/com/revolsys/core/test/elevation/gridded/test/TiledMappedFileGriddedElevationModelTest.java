@@ -0,0 +1,146 @@
+package com.revolsys.core.test.elevation.gridded.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.elevation.gridded.TiledMappedFileGriddedElevationModel;
+import com.revolsys.geometry.model.GeometryFactory;
+
+public class TiledMappedFileGriddedElevationModelTest {
+
+  private static final GeometryFactory GEOMETRY_FACTORY = GeometryFactory.fixed3d(0, 1000.0,
+    1000.0, 1000.0);
+
+  private static final int GRID_HEIGHT = 90;
+
+  private static final int GRID_WIDTH = 100;
+
+  private static final int TILE_SIZE = 16;
+
+  private static void assertValues(final String message,
+    final TiledMappedFileGriddedElevationModel model) {
+    for (int gridY = 0; gridY < GRID_HEIGHT; gridY++) {
+      for (int gridX = 0; gridX < GRID_WIDTH; gridX++) {
+        final double expected = value(gridX, gridY);
+        final double actual = model.getValue(gridX, gridY);
+        Assert.assertEquals(message + " " + gridX + "," + gridY, expected, actual, 0);
+      }
+    }
+  }
+
+  private static TiledMappedFileGriddedElevationModel newModel(final Path file) {
+    return new TiledMappedFileGriddedElevationModel(GEOMETRY_FACTORY, 0, 0, GRID_WIDTH,
+      GRID_HEIGHT, 1, 1, file, TILE_SIZE);
+  }
+
+  /**
+   * Values including zero, negative values and NaN. The cells in the last
+   * column of tiles are never written.
+   */
+  private static double value(final int gridX, final int gridY) {
+    if (gridX >= GRID_WIDTH - 4 || (gridX + gridY) % 7 == 0) {
+      return Double.NaN;
+    } else if ((gridX + gridY) % 11 == 0) {
+      return 0;
+    } else {
+      return (gridX - gridY) * 0.5;
+    }
+  }
+
+  private static void writeValues(final TiledMappedFileGriddedElevationModel model) {
+    for (int gridY = 0; gridY < GRID_HEIGHT; gridY++) {
+      for (int gridX = 0; gridX < GRID_WIDTH - 4; gridX++) {
+        model.setValue(gridX, gridY, value(gridX, gridY));
+      }
+    }
+  }
+
+  private void assertAllNull(final TiledMappedFileGriddedElevationModel model) {
+    for (int gridY = 0; gridY < GRID_HEIGHT; gridY++) {
+      for (int gridX = 0; gridX < GRID_WIDTH; gridX++) {
+        Assert.assertTrue(gridX + "," + gridY, Double.isNaN(model.getValue(gridX, gridY)));
+      }
+    }
+  }
+
+  @Test
+  public void testClear() {
+    try (
+      TiledMappedFileGriddedElevationModel model = newModel(null)) {
+      model.setMaxResidentTiles(2);
+      writeValues(model);
+      model.clear();
+      assertAllNull(model);
+      model.updateValues();
+      Assert.assertTrue("min", Double.isNaN(model.getMinValue()));
+
+      writeValues(model);
+      assertValues("after clear", model);
+    }
+  }
+
+  /**
+   * Cells that were never written are read as NaN, as the file is zero filled.
+   */
+  @Test
+  public void testEmpty() {
+    try (
+      TiledMappedFileGriddedElevationModel model = newModel(null)) {
+      assertAllNull(model);
+      model.setValue(GRID_WIDTH - 1, GRID_HEIGHT - 1, 1.5);
+      Assert.assertEquals(1.5, model.getValue(GRID_WIDTH - 1, GRID_HEIGHT - 1), 0);
+      Assert.assertTrue(Double.isNaN(model.getValue(0, 0)));
+    }
+  }
+
+  /**
+   * Values are read back after their tiles were evicted and mapped again.
+   */
+  @Test
+  public void testEviction() {
+    for (final int maxResidentTiles : new int[] {
+      1, 2, 3, 256
+    }) {
+      try (
+        TiledMappedFileGriddedElevationModel model = newModel(null)) {
+        model.setMaxResidentTiles(maxResidentTiles);
+        writeValues(model);
+        assertValues("maxResidentTiles=" + maxResidentTiles, model);
+        model.updateValues();
+        Assert.assertEquals(-44.5, model.getMinValue(), 0);
+        Assert.assertEquals(47.5, model.getMaxValue(), 0);
+      }
+    }
+  }
+
+  /**
+   * The values of a file that is kept are read when the file is opened again,
+   * including the tiles that were evicted before it was closed.
+   */
+  @Test
+  public void testReopen() throws IOException {
+    final Path file = Files.createTempFile("tiled", ".tiles");
+    try {
+      try (
+        TiledMappedFileGriddedElevationModel model = newModel(file)) {
+        model.setMaxResidentTiles(2);
+        writeValues(model);
+      }
+      try (
+        TiledMappedFileGriddedElevationModel model = newModel(file)) {
+        assertValues("reopened", model);
+        model.clear();
+      }
+      try (
+        TiledMappedFileGriddedElevationModel model = newModel(file)) {
+        assertAllNull(model);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
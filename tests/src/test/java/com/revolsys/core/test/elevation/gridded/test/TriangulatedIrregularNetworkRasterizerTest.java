@@ -0,0 +1,91 @@
+package com.revolsys.core.test.elevation.gridded.test;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.elevation.gridded.GriddedElevationModel;
+import com.revolsys.elevation.gridded.IntArrayScaleGriddedElevationModel;
+import com.revolsys.elevation.tin.TriangulatedIrregularNetworkRasterizer;
+import com.revolsys.elevation.tin.quadedge.intscale.DivideAndConquerDelaunayTinBuilder;
+import com.revolsys.geometry.model.GeometryFactory;
+
+public class TriangulatedIrregularNetworkRasterizerTest {
+
+  private static final GeometryFactory GEOMETRY_FACTORY = GeometryFactory.fixed3d(0, 1000.0,
+    1000.0, 1000.0);
+
+  /**
+   * A TIN over 0..100, with half the vertices on whole numbers so that
+   * vertices and edges lie on the cell corners.
+   */
+  private static DivideAndConquerDelaunayTinBuilder newTin(final int seed) {
+    final Random random = new Random(seed);
+    final DivideAndConquerDelaunayTinBuilder tinBuilder = new DivideAndConquerDelaunayTinBuilder(
+      GEOMETRY_FACTORY);
+    for (int i = 0; i < 2000; i++) {
+      final double z = random.nextInt(100000) / 1000.0;
+      if (i % 2 == 0) {
+        tinBuilder.insertVertex(random.nextInt(101), random.nextInt(101), z);
+      } else {
+        tinBuilder.insertVertex(random.nextInt(100001) / 1000.0, random.nextInt(100001) / 1000.0,
+          z);
+      }
+    }
+    return tinBuilder;
+  }
+
+  private void assertRasterize(final double minX, final int gridSize, final double gridCellSize) {
+    for (int seed = 0; seed < 3; seed++) {
+      final DivideAndConquerDelaunayTinBuilder tin = newTin(seed);
+
+      final GriddedElevationModel expectedModel = new IntArrayScaleGriddedElevationModel(
+        GEOMETRY_FACTORY, minX, minX, gridSize, gridSize, gridCellSize);
+      tin.forEachTriangle(expectedModel::setElevationsForTriangle);
+
+      final GriddedElevationModel actualModel = new IntArrayScaleGriddedElevationModel(
+        GEOMETRY_FACTORY, minX, minX, gridSize, gridSize, gridCellSize);
+      final TriangulatedIrregularNetworkRasterizer rasterizer = new TriangulatedIrregularNetworkRasterizer(
+        actualModel);
+      // Small buckets so the triangles are rasterized in many parallel batches
+      rasterizer.setTileTriangleCount(50);
+      rasterizer.setMaxBufferedTriangleCount(1000);
+      tin.forEachTriangle(rasterizer);
+      rasterizer.flush();
+
+      int cellCount = 0;
+      for (int gridY = 0; gridY < gridSize; gridY++) {
+        for (int gridX = 0; gridX < gridSize; gridX++) {
+          final double expected = expectedModel.getValue(gridX, gridY);
+          final double actual = actualModel.getValue(gridX, gridY);
+          final String message = "seed=" + seed + " cell " + gridX + "," + gridY;
+          if (Double.isNaN(expected)) {
+            Assert.assertTrue(message + " is empty", Double.isNaN(actual));
+          } else {
+            cellCount++;
+            // Cells on an edge shared by two triangles may be set by either
+            Assert.assertEquals(message, expected, actual, 0.0011);
+          }
+        }
+      }
+      Assert.assertTrue("Cells set", cellCount > 0);
+    }
+  }
+
+  @Test
+  public void testGridBeyondTin() {
+    assertRasterize(-10, 60, 2);
+  }
+
+  @Test
+  public void testGridInsideTin() {
+    assertRasterize(0, 100, 1);
+  }
+
+  @Test
+  public void testMultipleTiles() {
+    // 1200 x 1200 cells is several 512 cell tiles
+    assertRasterize(20, 1200, 0.125);
+  }
+}
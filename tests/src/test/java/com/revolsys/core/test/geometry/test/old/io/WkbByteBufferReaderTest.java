@@ -0,0 +1,137 @@
+package com.revolsys.core.test.geometry.test.old.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geometry.wkb.ByteArrayInStream;
+import com.revolsys.geometry.wkb.ByteOrderValues;
+import com.revolsys.geometry.wkb.ParseException;
+import com.revolsys.geometry.wkb.WKBReader;
+import com.revolsys.geometry.wkb.WKBWriter;
+import com.revolsys.geometry.wkb.WkbByteBufferReader;
+
+/**
+ * Checks that reading WKB from a {@link ByteBuffer} returns the same geometries
+ * as reading it from a stream.
+ */
+public class WkbByteBufferReaderTest {
+
+  private static final GeometryFactory GEOMETRY_FACTORY = GeometryFactory.DEFAULT_3D;
+
+  private static final String[] WKTS = {
+    "POINT Z(1 2 3)", //
+    "LINESTRING Z(1 2 3, 10 20 30, 100 200 300)", //
+    "POLYGON Z((0 0 1, 100 0 2, 100 100 3, 0 100 4, 0 0 1), (10 10 5, 10 20 6, 20 20 7, 10 10 5))", //
+    "MULTIPOINT Z((0 0 1), (1 4 2), (100 200 3))", //
+    "MULTILINESTRING Z((10 10 1, 20 20 2, 10 40 3), (40 40 4, 30 30 5, 40 20 6, 30 10 7))", //
+    "MULTIPOLYGON Z(((40 40 1, 20 45 2, 45 30 3, 40 40 1)), ((30 20 4, 20 15 5, 20 25 6, 30 20 4)))", //
+    "GEOMETRYCOLLECTION Z(POINT Z(4 6 1), LINESTRING Z(4 6 2, 7 10 3))", //
+    "LINESTRING EMPTY"
+  };
+
+  private static List<byte[]> newWkbValues(final int axisCount, final int byteOrder,
+    final boolean includeSrid) {
+    final WKBWriter writer = new WKBWriter(axisCount, byteOrder, includeSrid);
+    final List<byte[]> values = new ArrayList<>();
+    for (final String wkt : WKTS) {
+      final Geometry geometry = GEOMETRY_FACTORY.geometry(wkt);
+      values.add(writer.write(geometry));
+    }
+    return values;
+  }
+
+  private void assertGeometryEquals(final String message, final int axisCount,
+    final Geometry expected, final Geometry actual) {
+    Assert.assertEquals(message, expected.getGeometryType(), actual.getGeometryType());
+    Assert.assertTrue(message + " " + expected + " != " + actual,
+      expected.equals(axisCount, actual));
+  }
+
+  /**
+   * The geometries read from a stream, a wrapped array, a buffer with other
+   * data before and after and the {@link WkbByteBufferReader} are the same.
+   */
+  @Test
+  public void testParity() throws IOException, ParseException {
+    for (final int axisCount : new int[] {
+      2, 3
+    }) {
+      for (final int byteOrder : new int[] {
+        ByteOrderValues.BIG_ENDIAN, ByteOrderValues.LITTLE_ENDIAN
+      }) {
+        for (final boolean includeSrid : new boolean[] {
+          false, true
+        }) {
+          final WKBReader reader = new WKBReader(GEOMETRY_FACTORY);
+          for (final byte[] wkb : newWkbValues(axisCount, byteOrder, includeSrid)) {
+            final String message = WKBWriter.toHex(wkb);
+            final Geometry expected = reader.read(new ByteArrayInStream(wkb));
+
+            assertGeometryEquals(message + " array", axisCount, expected, reader.read(wkb));
+
+            final ByteBuffer buffer = ByteBuffer.allocate(wkb.length + 8);
+            buffer.position(5);
+            buffer.put(wkb);
+            buffer.flip();
+            buffer.position(5);
+            assertGeometryEquals(message + " buffer", axisCount, expected, reader.read(buffer));
+            Assert.assertEquals(message + " position", 5 + wkb.length, buffer.position());
+
+            final Geometry bufferGeometry = WkbByteBufferReader.readGeometry(GEOMETRY_FACTORY,
+              wkb);
+            assertGeometryEquals(message + " byte buffer reader", axisCount, expected,
+              bufferGeometry);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A batch large enough to be decoded in parallel returns the same geometries
+   * in the same order as decoding each value.
+   */
+  @Test
+  public void testReadGeometries() {
+    final List<byte[]> values = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      values.addAll(newWkbValues(3, ByteOrderValues.LITTLE_ENDIAN, false));
+      values.add(null);
+    }
+    Assert.assertTrue(values.size() >= 64);
+    final Geometry[] geometries = WkbByteBufferReader.readGeometries(GEOMETRY_FACTORY, values);
+    Assert.assertEquals(values.size(), geometries.length);
+    for (int i = 0; i < geometries.length; i++) {
+      final byte[] wkb = values.get(i);
+      if (wkb == null) {
+        Assert.assertNull(geometries[i]);
+      } else {
+        final Geometry expected = WkbByteBufferReader.readGeometry(GEOMETRY_FACTORY, wkb);
+        assertGeometryEquals("index " + i, 3, expected, geometries[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testTruncated() {
+    final WKBReader reader = new WKBReader(GEOMETRY_FACTORY);
+    final byte[] wkb = newWkbValues(3, ByteOrderValues.BIG_ENDIAN, false).get(2);
+    for (final int length : new int[] {
+      1, 9, wkb.length / 2, wkb.length - 1
+    }) {
+      try {
+        reader.read(Arrays.copyOf(wkb, length));
+        Assert.fail("Truncated to " + length);
+      } catch (final ParseException e) {
+      }
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package com.revolsys.core.test.geometry.test.old.triangulate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.elevation.tin.quadedge.QuadEdgeDelaunayTinBuilder;
+import com.revolsys.elevation.tin.quadedge.intscale.DivideAndConquerDelaunayTinBuilder;
+import com.revolsys.geometry.model.GeometryFactory;
+
+public class DivideAndConquerDelaunayTinBuilderTest {
+
+  private static final double SCALE = 1000.0;
+
+  static final GeometryFactory GEOMETRY_FACTORY = GeometryFactory.fixed3d(0, SCALE, SCALE,
+    SCALE);
+
+  /**
+   * Assert that each triangle is counter-clockwise and no vertex is inside its
+   * circumcircle, using exact integer arithmetic.
+   */
+  static void assertDelaunay(final List<int[]> triangles, final List<int[]> points) {
+    for (final int[] triangle : triangles) {
+      final long x1 = triangle[0];
+      final long y1 = triangle[1];
+      final long x2 = triangle[2];
+      final long y2 = triangle[3];
+      final long x3 = triangle[4];
+      final long y3 = triangle[5];
+      Assert.assertTrue("Counter-clockwise " + Arrays.toString(triangle),
+        (x2 - x1) * (y3 - y1) - (y2 - y1) * (x3 - x1) > 0);
+      for (final int[] point : points) {
+        final long deltaX1 = x1 - point[0];
+        final long deltaY1 = y1 - point[1];
+        final long deltaX2 = x2 - point[0];
+        final long deltaY2 = y2 - point[1];
+        final long deltaX3 = x3 - point[0];
+        final long deltaY3 = y3 - point[1];
+        final long disc = (deltaX1 * deltaX1 + deltaY1 * deltaY1)
+          * (deltaX2 * deltaY3 - deltaX3 * deltaY2)
+          + (deltaX2 * deltaX2 + deltaY2 * deltaY2) * (deltaX3 * deltaY1 - deltaX1 * deltaY3)
+          + (deltaX3 * deltaX3 + deltaY3 * deltaY3) * (deltaX1 * deltaY2 - deltaX2 * deltaY1);
+        if (disc > 0) {
+          Assert.fail("Vertex " + Arrays.toString(point) + " inside circumcircle of "
+            + Arrays.toString(triangle));
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the number of triangles in the triangulation of the points, 2n - h - 2
+   * where h is the number of vertices on the convex hull.
+   */
+  static int expectedTriangleCount(final List<int[]> points) {
+    final List<int[]> sortedPoints = new ArrayList<>(points);
+    sortedPoints.sort((a, b) -> a[0] == b[0] ? Integer.compare(a[1], b[1])
+      : Integer.compare(a[0], b[0]));
+    final int pointCount = sortedPoints.size();
+    final int[][] hull = new int[pointCount * 2][];
+    int hullCount = 0;
+    // Monotone chain keeping collinear vertices on the hull
+    for (int i = 0; i < pointCount; i++) {
+      final int[] point = sortedPoints.get(i);
+      while (hullCount >= 2 && orientation(hull[hullCount - 2], hull[hullCount - 1], point) < 0) {
+        hullCount--;
+      }
+      hull[hullCount++] = point;
+    }
+    final int lowerCount = hullCount + 1;
+    for (int i = pointCount - 2; i >= 0; i--) {
+      final int[] point = sortedPoints.get(i);
+      while (hullCount >= lowerCount
+        && orientation(hull[hullCount - 2], hull[hullCount - 1], point) < 0) {
+        hullCount--;
+      }
+      hull[hullCount++] = point;
+    }
+    return 2 * pointCount - (hullCount - 1) - 2;
+  }
+
+  /**
+   * Get a key for the triangle that is the same for each starting vertex.
+   */
+  static String key(final int[] triangle) {
+    int start = 0;
+    for (int i = 2; i < 6; i += 2) {
+      if (triangle[i] < triangle[start]
+        || triangle[i] == triangle[start] && triangle[i + 1] < triangle[start + 1]) {
+        start = i;
+      }
+    }
+    final int[] key = new int[6];
+    for (int i = 0; i < 6; i++) {
+      key[i] = triangle[(start + i) % 6];
+    }
+    return Arrays.toString(key);
+  }
+
+  /**
+   * A 40 x 40 grid in random order with duplicates, so many vertices are
+   * collinear and co-circular.
+   */
+  static List<int[]> newGridPoints() {
+    final List<int[]> points = new ArrayList<>();
+    for (int x = 0; x < 40; x++) {
+      for (int y = 0; y < 40; y++) {
+        points.add(new int[] {
+          x * 10, y * 10
+        });
+      }
+    }
+    points.addAll(new ArrayList<>(points.subList(0, 100)));
+    Collections.shuffle(points, new Random(1));
+    return points;
+  }
+
+  /**
+   * Random points with every 60th point a duplicate of an earlier point.
+   */
+  static List<int[]> newRandomPoints(final int seed) {
+    final Random random = new Random(seed);
+    final List<int[]> points = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      if (i % 60 == 59) {
+        points.add(points.get(i - 30));
+      } else {
+        points.add(new int[] {
+          random.nextInt(10000), random.nextInt(10000)
+        });
+      }
+    }
+    return points;
+  }
+
+  private static long orientation(final int[] point1, final int[] point2, final int[] point3) {
+    return (long)(point2[0] - point1[0]) * (point3[1] - point1[1])
+      - (long)(point2[1] - point1[1]) * (point3[0] - point1[0]);
+  }
+
+  /**
+   * Get the triangles from a {@link QuadEdgeDelaunayTinBuilder}. The triangles
+   * next to the frame it uses may be missing on the convex hull.
+   */
+  static List<int[]> quadEdgeTriangles(final List<int[]> points) {
+    final QuadEdgeDelaunayTinBuilder builder = new QuadEdgeDelaunayTinBuilder(GEOMETRY_FACTORY);
+    for (final int[] point : points) {
+      builder.insertVertex(point[0] / SCALE, point[1] / SCALE, 0);
+    }
+    final List<int[]> triangles = new ArrayList<>();
+    builder.forEachTriangle((x1, y1, z1, x2, y2, z2, x3, y3, z3) -> {
+      triangles.add(new int[] {
+        (int)Math.round(x1 * SCALE), (int)Math.round(y1 * SCALE), //
+        (int)Math.round(x2 * SCALE), (int)Math.round(y2 * SCALE), //
+        (int)Math.round(x3 * SCALE), (int)Math.round(y3 * SCALE)
+      });
+    });
+    return triangles;
+  }
+
+  static List<int[]> uniquePoints(final List<int[]> points) {
+    final Map<String, int[]> uniquePoints = new LinkedHashMap<>();
+    for (final int[] point : points) {
+      uniquePoints.put(Arrays.toString(point), point);
+    }
+    return new ArrayList<>(uniquePoints.values());
+  }
+
+  private List<int[]> divideAndConquerTriangles(final List<int[]> points,
+    final int sequentialVertexCount) {
+    final DivideAndConquerDelaunayTinBuilder builder = new DivideAndConquerDelaunayTinBuilder(
+      GEOMETRY_FACTORY);
+    builder.setSequentialVertexCount(sequentialVertexCount);
+    for (final int[] point : points) {
+      builder.insertVertex(point[0], point[1], 0);
+    }
+    final List<int[]> triangles = new ArrayList<>();
+    builder.forEachTriangleInt((x1, y1, z1, x2, y2, z2, x3, y3, z3) -> {
+      triangles.add(new int[] {
+        x1, y1, x2, y2, x3, y3
+      });
+    });
+    Assert.assertEquals("Triangle count", triangles.size(), builder.getTriangleCount());
+    return triangles;
+  }
+
+  @Test
+  public void testGrid() {
+    final List<int[]> points = newGridPoints();
+    final List<int[]> uniquePoints = uniquePoints(points);
+    final int expectedCount = expectedTriangleCount(uniquePoints);
+    Assert.assertEquals(3042, expectedCount);
+    Assert.assertEquals("QuadEdgeDelaunayTinBuilder", expectedCount,
+      quadEdgeTriangles(points).size());
+    for (final int sequentialVertexCount : new int[] {
+      16, 100000
+    }) {
+      final List<int[]> triangles = divideAndConquerTriangles(points, sequentialVertexCount);
+      Assert.assertEquals("Triangle count", expectedCount, triangles.size());
+      assertDelaunay(triangles, uniquePoints);
+    }
+  }
+
+  @Test
+  public void testRandom() {
+    for (int seed = 0; seed < 3; seed++) {
+      final List<int[]> points = newRandomPoints(seed);
+      final List<int[]> uniquePoints = uniquePoints(points);
+      final List<int[]> quadEdgeTriangles = quadEdgeTriangles(points);
+      for (final int sequentialVertexCount : new int[] {
+        16, 100000
+      }) {
+        final List<int[]> triangles = divideAndConquerTriangles(points, sequentialVertexCount);
+        Assert.assertEquals("Triangle count", expectedTriangleCount(uniquePoints),
+          triangles.size());
+        assertDelaunay(triangles, uniquePoints);
+
+        // The QuadEdgeDelaunayTinBuilder triangles are the same except for
+        // any it is missing on the convex hull
+        final Set<String> keys = new HashSet<>();
+        for (final int[] triangle : triangles) {
+          keys.add(key(triangle));
+        }
+        Assert.assertTrue("Triangle count", triangles.size() >= quadEdgeTriangles.size());
+        for (final int[] triangle : quadEdgeTriangles) {
+          Assert.assertTrue("QuadEdgeDelaunayTinBuilder triangle " + Arrays.toString(triangle),
+            keys.contains(key(triangle)));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.revolsys.core.test.geometry.test.old.triangulate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.elevation.tin.quadedge.intscale.IntArrayQuadEdgeSubdivision;
+
+public class IntArrayQuadEdgeSubdivisionTest {
+
+  private static Set<String> keys(final List<int[]> triangles) {
+    final Set<String> keys = new HashSet<>();
+    for (final int[] triangle : triangles) {
+      keys.add(DivideAndConquerDelaunayTinBuilderTest.key(triangle));
+    }
+    return keys;
+  }
+
+  private List<int[]> insertVertices(final List<int[]> points) {
+    final int[] bounds = {
+      Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE
+    };
+    for (final int[] point : points) {
+      bounds[0] = Math.min(bounds[0], point[0]);
+      bounds[1] = Math.min(bounds[1], point[1]);
+      bounds[2] = Math.max(bounds[2], point[0]);
+      bounds[3] = Math.max(bounds[3], point[1]);
+    }
+    final IntArrayQuadEdgeSubdivision subdivision = new IntArrayQuadEdgeSubdivision(bounds,
+      DivideAndConquerDelaunayTinBuilderTest.GEOMETRY_FACTORY);
+    for (final int[] point : points) {
+      subdivision.insertVertex(point[0], point[1], 0);
+    }
+    final List<int[]> triangles = new ArrayList<>();
+    subdivision.forEachTriangleInt((x1, y1, z1, x2, y2, z2, x3, y3, z3) -> {
+      triangles.add(new int[] {
+        x1, y1, x2, y2, x3, y3
+      });
+    });
+    Assert.assertEquals("Triangle count", triangles.size(), subdivision.getTriangleCount());
+    return triangles;
+  }
+
+  /**
+   * Many vertices on or next to the edges of existing triangles.
+   */
+  @Test
+  public void testCloseVertices() {
+    final Random random = new Random(1);
+    final List<int[]> points = new ArrayList<>();
+    for (int i = 0; i < 1500; i++) {
+      points.add(new int[] {
+        random.nextInt(60), random.nextInt(60)
+      });
+    }
+    final List<int[]> uniquePoints = DivideAndConquerDelaunayTinBuilderTest.uniquePoints(points);
+    final List<int[]> triangles = insertVertices(points);
+    Assert.assertEquals("Triangle count",
+      DivideAndConquerDelaunayTinBuilderTest.expectedTriangleCount(uniquePoints),
+      triangles.size());
+    DivideAndConquerDelaunayTinBuilderTest.assertDelaunay(triangles, uniquePoints);
+  }
+
+  @Test
+  public void testGrid() {
+    final List<int[]> points = DivideAndConquerDelaunayTinBuilderTest.newGridPoints();
+    final List<int[]> triangles = insertVertices(points);
+    Assert.assertEquals("Triangle count", 3042, triangles.size());
+    Assert.assertEquals("QuadEdgeDelaunayTinBuilder",
+      DivideAndConquerDelaunayTinBuilderTest.quadEdgeTriangles(points).size(), triangles.size());
+    DivideAndConquerDelaunayTinBuilderTest.assertDelaunay(triangles,
+      DivideAndConquerDelaunayTinBuilderTest.uniquePoints(points));
+  }
+
+  @Test
+  public void testRandom() {
+    for (int seed = 0; seed < 3; seed++) {
+      final List<int[]> points = DivideAndConquerDelaunayTinBuilderTest.newRandomPoints(seed);
+      final List<int[]> triangles = insertVertices(points);
+      DivideAndConquerDelaunayTinBuilderTest.assertDelaunay(triangles,
+        DivideAndConquerDelaunayTinBuilderTest.uniquePoints(points));
+
+      // The same frame is used so the same triangles are missing on the hull
+      final List<int[]> quadEdgeTriangles = DivideAndConquerDelaunayTinBuilderTest
+        .quadEdgeTriangles(points);
+      Assert.assertEquals("QuadEdgeDelaunayTinBuilder", quadEdgeTriangles.size(),
+        triangles.size());
+      Assert.assertEquals("QuadEdgeDelaunayTinBuilder", keys(quadEdgeTriangles), keys(triangles));
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package com.revolsys.core.test.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.io.channels.HttpRangeBlockCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpRangeBlockCacheTest {
+
+  private static final int BLOCK_SIZE = 1024;
+
+  private static byte[] newData(final int length, final int seed) {
+    final byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte)(i * 31 + seed);
+    }
+    return data;
+  }
+
+  private HttpRangeBlockCache cache;
+
+  private volatile byte[] data = newData(10 * BLOCK_SIZE + 100, 0);
+
+  private volatile String etag = "\"1\"";
+
+  private HttpServer server;
+
+  private URL url;
+
+  private void assertRead(final long position, final int length) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(length);
+    int offset = 0;
+    while (buffer.hasRemaining()) {
+      final int count = this.cache.read(this.url, position + offset, buffer, false);
+      if (count == -1) {
+        break;
+      }
+      offset += count;
+    }
+    final byte[] data = this.data;
+    final int expectedLength = (int)Math.min(length, data.length - position);
+    Assert.assertEquals("Read length", expectedLength, buffer.position());
+    final byte[] expected = Arrays.copyOfRange(data, (int)position,
+      (int)position + expectedLength);
+    final byte[] actual = Arrays.copyOf(buffer.array(), expectedLength);
+    Assert.assertArrayEquals("Read " + position + " " + length, expected, actual);
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    final byte[] data = this.data;
+    exchange.getResponseHeaders().add("ETag", this.etag);
+    if ("HEAD".equals(exchange.getRequestMethod())) {
+      exchange.getResponseHeaders().add("Content-Length", Integer.toString(data.length));
+      exchange.sendResponseHeaders(200, -1);
+    } else {
+      final String range = exchange.getRequestHeaders().getFirst("Range");
+      int start = 0;
+      int end = data.length - 1;
+      if (range != null) {
+        final String[] parts = range.substring("bytes=".length()).split("-");
+        start = Integer.parseInt(parts[0]);
+        end = Math.min(end, Integer.parseInt(parts[1]));
+      }
+      if (start > end) {
+        exchange.getResponseHeaders().add("Content-Range", "bytes */" + data.length);
+        exchange.sendResponseHeaders(416, -1);
+      } else {
+        final int length = end - start + 1;
+        if (range == null) {
+          exchange.sendResponseHeaders(200, length);
+        } else {
+          exchange.getResponseHeaders()
+            .add("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+          exchange.sendResponseHeaders(206, length);
+        }
+        try (
+          OutputStream out = exchange.getResponseBody()) {
+          out.write(data, start, length);
+        }
+      }
+    }
+    exchange.close();
+  }
+
+  @Before
+  public void startServer() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/data.bin", this::handle);
+    this.server.start();
+    this.url = new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/data.bin");
+    this.cache = new HttpRangeBlockCache(BLOCK_SIZE, 4);
+  }
+
+  @After
+  public void stopServer() {
+    this.cache.close();
+    this.server.stop(0);
+  }
+
+  @Test
+  public void testBlockBoundaryReads() throws IOException {
+    assertRead(BLOCK_SIZE - 1, 2);
+    assertRead(2 * BLOCK_SIZE, BLOCK_SIZE);
+    assertRead(3 * BLOCK_SIZE - 10, 2 * BLOCK_SIZE + 20);
+    assertRead(this.data.length - 50, 200);
+    Assert.assertEquals(this.data.length, this.cache.getLength(this.url));
+    final ByteBuffer buffer = ByteBuffer.allocate(10);
+    Assert.assertEquals(-1, this.cache.read(this.url, this.data.length, buffer, false));
+  }
+
+  @Test
+  public void testCachedReads() throws IOException {
+    assertRead(100, 2 * BLOCK_SIZE);
+    final long requestCount = this.cache.getRequestCount();
+    Assert.assertEquals("One range request for adjacent blocks", 1, requestCount);
+    assertRead(100, 2 * BLOCK_SIZE);
+    assertRead(BLOCK_SIZE + 10, 100);
+    Assert.assertEquals("Cached blocks", requestCount, this.cache.getRequestCount());
+
+    // Blocks removed from memory are read from the disk cache
+    this.cache.setDiskCacheDirectory(Files.createTempDirectory("HttpRangeBlockCacheTest"));
+    assertRead(5 * BLOCK_SIZE, 5 * BLOCK_SIZE);
+    final long diskRequestCount = this.cache.getRequestCount();
+    assertRead(5 * BLOCK_SIZE, BLOCK_SIZE);
+    Assert.assertEquals("Disk cached blocks", diskRequestCount, this.cache.getRequestCount());
+  }
+
+  @Test
+  public void testChangedResource() throws IOException {
+    assertRead(0, 3 * BLOCK_SIZE);
+
+    this.data = newData(8 * BLOCK_SIZE, 7);
+    this.etag = "\"2\"";
+
+    // A read of an uncached block sees the new version and discards the old
+    assertRead(5 * BLOCK_SIZE, 10);
+    assertRead(0, 3 * BLOCK_SIZE);
+    Assert.assertEquals(this.data.length, this.cache.getLength(this.url));
+
+    // Cached blocks are revalidated after the max age
+    this.data = newData(8 * BLOCK_SIZE, 13);
+    this.etag = "\"3\"";
+    this.cache.setMaxAge(0);
+    assertRead(0, 3 * BLOCK_SIZE);
+  }
+}
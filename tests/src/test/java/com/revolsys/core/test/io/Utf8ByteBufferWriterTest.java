@@ -0,0 +1,79 @@
+package com.revolsys.core.test.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.io.Utf8ByteBufferWriter;
+
+public class Utf8ByteBufferWriterTest {
+
+  private static final String[] PARTS = {
+    "ascii text ", "\u00e9", "\u20ac", "\ud83d\ude00", "\n", "{\"key\":123.5}"
+  };
+
+  /**
+   * Runs of ASCII and multi-byte characters longer than the 64KB buffer.
+   */
+  private static String newText() {
+    final Random random = new Random(1);
+    final StringBuilder text = new StringBuilder();
+    while (text.length() < 200000) {
+      text.append(PARTS[random.nextInt(PARTS.length)]);
+    }
+    return text.toString();
+  }
+
+  private void assertWrite(final String message, final String text, final int chunkSize,
+    final boolean chars) throws IOException {
+    final char[] characters = text.toCharArray();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (
+      Utf8ByteBufferWriter writer = new Utf8ByteBufferWriter(bytes)) {
+      // Chunks may end between the two characters of a surrogate pair
+      for (int offset = 0; offset < text.length(); offset += chunkSize) {
+        final int length = Math.min(chunkSize, text.length() - offset);
+        if (chars) {
+          writer.write(characters, offset, length);
+        } else {
+          writer.write(text, offset, length);
+        }
+      }
+    }
+    Assert.assertArrayEquals(message + " chunk=" + chunkSize,
+      text.getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+  }
+
+  @Test
+  public void testWriteChars() throws IOException {
+    final String text = newText();
+    for (final int chunkSize : new int[] {
+      1, 7, 4096, 65537, text.length()
+    }) {
+      assertWrite("char[]", text, chunkSize, true);
+    }
+  }
+
+  @Test
+  public void testWriteString() throws IOException {
+    final String text = newText();
+    for (final int chunkSize : new int[] {
+      1, 7, 4096, 65537, text.length()
+    }) {
+      assertWrite("String", text, chunkSize, false);
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (
+      Utf8ByteBufferWriter writer = new Utf8ByteBufferWriter(bytes)) {
+      writer.write(text);
+      writer.append(new StringBuilder(text));
+    }
+    Assert.assertArrayEquals("write and append",
+      (text + text).getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+  }
+}
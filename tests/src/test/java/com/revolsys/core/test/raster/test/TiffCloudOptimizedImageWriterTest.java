@@ -0,0 +1,232 @@
+package com.revolsys.core.test.raster.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.raster.BufferedGeoreferencedImage;
+import com.revolsys.raster.GeoreferencedImage;
+import com.revolsys.raster.io.format.tiff.TiffCloudOptimizedImageWriter;
+import com.revolsys.raster.io.format.tiff.TiffDirectory;
+import com.revolsys.raster.io.format.tiff.TiffDirectoryIterator;
+import com.revolsys.raster.io.format.tiff.TiffImageFactory;
+import com.revolsys.raster.io.format.tiff.code.TiffCompression;
+import com.revolsys.raster.io.format.tiff.compression.TiffLzwInputStream;
+import com.revolsys.raster.io.format.tiff.compression.TiffLzwOutputStream;
+import com.revolsys.raster.io.format.tiff.image.TiffImage;
+import com.revolsys.raster.io.format.tiff.image.TiffMultiResolutionImage;
+import com.revolsys.raster.io.format.tiff.image.TiffTileCache;
+import com.revolsys.spring.resource.PathResource;
+
+public class TiffCloudOptimizedImageWriterTest {
+
+  private static final int TILE_SIZE = 64;
+
+  private static int average(final BufferedImage image, final int x, final int y,
+    final int shift) {
+    int sum = 0;
+    int count = 0;
+    for (int dy = 0; dy < 2; dy++) {
+      for (int dx = 0; dx < 2; dx++) {
+        final int pixelX = Math.min(image.getWidth() - 1, x * 2 + dx);
+        final int pixelY = Math.min(image.getHeight() - 1, y * 2 + dy);
+        sum += image.getRGB(pixelX, pixelY) >>> shift & 0xff;
+        count++;
+      }
+    }
+    return sum / count;
+  }
+
+  private static BufferedImage newImage(final int width, final int height, final boolean alpha) {
+    final BufferedImage image = new BufferedImage(width, height,
+      alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    final Random random = new Random(width * 31 + height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        // Smooth gradients so the predictor has an effect, plus noise
+        final int red = (x + random.nextInt(4)) & 0xff;
+        final int green = (y * 2) & 0xff;
+        final int blue = (x + y) / 2 & 0xff;
+        final int opacity = alpha ? x * 255 / width : 255;
+        image.setRGB(x, y, opacity << 24 | red << 16 | green << 8 | blue);
+      }
+    }
+    return image;
+  }
+
+  private static void writeImage(final PathResource resource, final TiffCompression compression,
+    final boolean predictor, final BoundingBox boundingBox, final BufferedImage sourceImage) {
+    try (
+      TiffCloudOptimizedImageWriter writer = new TiffCloudOptimizedImageWriter(resource)) {
+      writer.setCompression(compression);
+      writer.setPredictor(predictor);
+      writer.setTileSize(TILE_SIZE);
+      writer.write(new BufferedGeoreferencedImage(boundingBox, sourceImage));
+    }
+  }
+
+  private void assertWriteRead(final TiffCompression compression, final boolean predictor,
+    final boolean alpha) throws IOException {
+    final int width = 200;
+    final int height = 150;
+    final BufferedImage sourceImage = newImage(width, height, alpha);
+    final GeometryFactory geometryFactory = GeometryFactory.floating2d(26910);
+    final BoundingBox boundingBox = geometryFactory.newBoundingBox(500000, 5400000,
+      500000 + width, 5400000 + height);
+
+    final Path file = Files.createTempFile("TiffCloudOptimizedImageWriterTest", ".tif");
+    try {
+      final PathResource resource = new PathResource(file);
+      writeImage(resource, compression, predictor, boundingBox, sourceImage);
+
+      final List<BufferedImage> levels = new ArrayList<>();
+      try (
+        TiffDirectoryIterator iterator = new TiffDirectoryIterator(resource)) {
+        for (final TiffDirectory directory : iterator) {
+          final TiffImage image = directory.getImage();
+          levels.add(image.getBufferedImage());
+        }
+      }
+      // 200x150 -> 100x75 -> 50x38
+      Assert.assertEquals("Levels", 3, levels.size());
+
+      final String message = compression + " predictor=" + predictor + " alpha=" + alpha;
+      final BufferedImage fullImage = levels.get(0);
+      Assert.assertEquals(width, fullImage.getWidth());
+      Assert.assertEquals(height, fullImage.getHeight());
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          final int expected = sourceImage.getRGB(x, y);
+          final int actual = fullImage.getRGB(x, y);
+          if (expected != actual) {
+            Assert.assertEquals(message + " pixel " + x + "," + y, Integer.toHexString(expected),
+              Integer.toHexString(actual));
+          }
+        }
+      }
+
+      final BufferedImage overview = levels.get(1);
+      Assert.assertEquals(100, overview.getWidth());
+      Assert.assertEquals(75, overview.getHeight());
+      for (final int[] pixel : new int[][] {
+        {
+          0, 0
+        }, {
+          37, 20
+        }, {
+          99, 74
+        }
+      }) {
+        final int x = pixel[0];
+        final int y = pixel[1];
+        final int actual = overview.getRGB(x, y);
+        for (int shift = 0; shift < 24; shift += 8) {
+          final int expected = average(sourceImage, x, y, shift);
+          Assert.assertEquals(message + " overview " + x + "," + y, expected,
+            actual >>> shift & 0xff, 1);
+        }
+      }
+      Assert.assertEquals(50, levels.get(2).getWidth());
+      Assert.assertEquals(38, levels.get(2).getHeight());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testDeflate() throws IOException {
+    assertWriteRead(TiffCompression.DEFLATE, false, false);
+    assertWriteRead(TiffCompression.DEFLATE, true, false);
+    assertWriteRead(TiffCompression.DEFLATE, true, true);
+  }
+
+  @Test
+  public void testLzw() throws IOException {
+    assertWriteRead(TiffCompression.LZW, false, false);
+    assertWriteRead(TiffCompression.LZW, true, false);
+    assertWriteRead(TiffCompression.LZW, true, true);
+  }
+
+  @Test
+  public void testLzwStream() throws IOException {
+    // Repeated runs and random bytes so the code table fills and is cleared
+    final Random random = new Random(1);
+    final byte[] data = new byte[200000];
+    for (int i = 0; i < data.length;) {
+      final int runLength = Math.min(data.length - i, 1 + random.nextInt(20));
+      final byte value = (byte)random.nextInt(256);
+      final boolean run = random.nextBoolean();
+      for (int j = 0; j < runLength; j++) {
+        data[i++] = run ? value : (byte)random.nextInt(256);
+      }
+    }
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (
+      OutputStream out = new TiffLzwOutputStream(compressed)) {
+      out.write(data);
+    }
+    final byte[] actual = new byte[data.length];
+    try (
+      InputStream in = new TiffLzwInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      int offset = 0;
+      while (offset < actual.length) {
+        final int count = in.read(actual, offset, actual.length - offset);
+        if (count == -1) {
+          break;
+        }
+        offset += count;
+      }
+      Assert.assertEquals("Length", data.length, offset);
+    }
+    Assert.assertArrayEquals(data, actual);
+  }
+
+  /**
+   * Closing the image removes the tiles read from each resolution from the
+   * shared tile cache.
+   */
+  @Test
+  public void testMultiResolutionClose() throws IOException {
+    final int width = 200;
+    final int height = 150;
+    final GeometryFactory geometryFactory = GeometryFactory.floating2d(26910);
+    final BoundingBox boundingBox = geometryFactory.newBoundingBox(500000, 5400000,
+      500000 + width, 5400000 + height);
+    final Path file = Files.createTempFile("TiffCloudOptimizedImageWriterTest", ".tif");
+    try {
+      final PathResource resource = new PathResource(file);
+      writeImage(resource, TiffCompression.DEFLATE, false, boundingBox,
+        newImage(width, height, false));
+
+      TiffTileCache.clear();
+      final GeoreferencedImage image = new TiffImageFactory().readGeoreferencedImage(resource);
+      Assert.assertTrue("Multi resolution", image instanceof TiffMultiResolutionImage);
+      final TiffMultiResolutionImage multiResolutionImage = (TiffMultiResolutionImage)image;
+      final BoundingBox window = geometryFactory.newBoundingBox(500010, 5400010, 500150,
+        5400100);
+      Assert.assertNotNull(multiResolutionImage.readWindow(window, 1));
+      final long fullSize = TiffTileCache.getSize();
+      Assert.assertTrue("Full resolution tiles cached", fullSize > 0);
+      Assert.assertNotNull(multiResolutionImage.readWindow(window, 3));
+      Assert.assertTrue("Overview tiles cached", TiffTileCache.getSize() > fullSize);
+
+      multiResolutionImage.close();
+      Assert.assertEquals("Cache size after close", 0, TiffTileCache.getSize());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
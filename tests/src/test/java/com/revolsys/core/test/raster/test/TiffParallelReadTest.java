@@ -0,0 +1,188 @@
+package com.revolsys.core.test.raster.test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.raster.BufferedGeoreferencedImage;
+import com.revolsys.raster.io.format.tiff.TiffCloudOptimizedImageWriter;
+import com.revolsys.raster.io.format.tiff.TiffDirectoryIterator;
+import com.revolsys.raster.io.format.tiff.TiffGeoreferencedImageWriter;
+import com.revolsys.raster.io.format.tiff.code.TiffCompression;
+import com.revolsys.raster.io.format.tiff.image.AbstractTiffImage;
+import com.revolsys.raster.io.format.tiff.image.TiffTileCache;
+import com.revolsys.spring.resource.PathResource;
+
+/**
+ * Checks that reading a TIFF image or window, which decodes the strips or tiles
+ * in parallel, gives the same pixels as decoding each strip or tile on its
+ * own.
+ */
+public class TiffParallelReadTest {
+
+  private static final int HEIGHT = 410;
+
+  private static final int WIDTH = 330;
+
+  private static final BoundingBox BOUNDING_BOX = GeometryFactory.floating2d(26910)
+    .newBoundingBox(500000, 5400000, 500000 + WIDTH, 5400000 + HEIGHT);
+
+  private static BufferedImage newImage() {
+    final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    final Random random = new Random(WIDTH * 31 + HEIGHT);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        final int red = (x + random.nextInt(8)) & 0xff;
+        final int green = y & 0xff;
+        final int blue = random.nextInt(256);
+        image.setRGB(x, y, 0xff000000 | red << 16 | green << 8 | blue);
+      }
+    }
+    return image;
+  }
+
+  private static AbstractTiffImage readImage(final PathResource resource) {
+    try (
+      TiffDirectoryIterator iterator = new TiffDirectoryIterator(resource)) {
+      return (AbstractTiffImage)iterator.next().getImage();
+    }
+  }
+
+  /**
+   * Decode each strip or tile on its own and copy it into a full image.
+   */
+  private static BufferedImage readSequential(final AbstractTiffImage image) {
+    final BufferedImage expected = new BufferedImage(WIDTH, HEIGHT,
+      BufferedImage.TYPE_INT_ARGB);
+    final int partWidth;
+    final int partHeight;
+    if (image.isTiled()) {
+      partWidth = image.getTileWidth();
+      partHeight = image.getTileHeight();
+    } else {
+      partWidth = WIDTH;
+      partHeight = image.getRowsPerStrip();
+    }
+    final int partCountX = (WIDTH + partWidth - 1) / partWidth;
+    final int partCountY = (HEIGHT + partHeight - 1) / partHeight;
+    for (int partY = 0; partY < partCountY; partY++) {
+      for (int partX = 0; partX < partCountX; partX++) {
+        final BufferedImage part = image.getStripOrTileImage(partY * partCountX + partX);
+        for (int y = 0; y < part.getHeight(); y++) {
+          for (int x = 0; x < part.getWidth(); x++) {
+            expected.setRGB(partX * partWidth + x, partY * partHeight + y, part.getRGB(x, y));
+          }
+        }
+      }
+    }
+    return expected;
+  }
+
+  private void assertPixelsEqual(final String message, final BufferedImage expected,
+    final int offsetX, final int offsetY, final BufferedImage actual) {
+    for (int y = 0; y < actual.getHeight(); y++) {
+      for (int x = 0; x < actual.getWidth(); x++) {
+        final int expectedPixel = expected.getRGB(offsetX + x, offsetY + y);
+        final int actualPixel = actual.getRGB(x, y);
+        if (expectedPixel != actualPixel) {
+          Assert.assertEquals(message + " pixel " + x + "," + y,
+            Integer.toHexString(expectedPixel), Integer.toHexString(actualPixel));
+        }
+      }
+    }
+  }
+
+  private void assertParallelEquals(final String message, final PathResource resource,
+    final BufferedImage sourceImage) {
+    TiffTileCache.clear();
+    final BufferedImage expected;
+    try (
+      AbstractTiffImage image = readImage(resource)) {
+      expected = readSequential(image);
+    }
+    assertPixelsEqual(message + " sequential", sourceImage, 0, 0, expected);
+
+    TiffTileCache.clear();
+    try (
+      AbstractTiffImage image = readImage(resource)) {
+      final BufferedImage actual = image.getBufferedImage();
+      Assert.assertEquals(message, WIDTH, actual.getWidth());
+      Assert.assertEquals(message, HEIGHT, actual.getHeight());
+      assertPixelsEqual(message + " full", expected, 0, 0, actual);
+    }
+
+    // Windows that start and end part way through the strips or tiles
+    for (final int[] window : new int[][] {
+      {
+        0, 0, WIDTH, HEIGHT
+      }, {
+        7, 13, 250, 301
+      }, {
+        70, 150, 1, 200
+      }, {
+        300, 390, 100, 100
+      }
+    }) {
+      TiffTileCache.clear();
+      try (
+        AbstractTiffImage image = readImage(resource)) {
+        final int x = window[0];
+        final int y = window[1];
+        final BufferedImage actual = image.readWindow(x, y, window[2], window[3]);
+        Assert.assertEquals(message, Math.min(window[2], WIDTH - x), actual.getWidth());
+        Assert.assertEquals(message, Math.min(window[3], HEIGHT - y), actual.getHeight());
+        assertPixelsEqual(message + " window " + x + "," + y, expected, x, y, actual);
+      }
+    }
+  }
+
+  @Test
+  public void testStrips() throws IOException {
+    final BufferedImage sourceImage = newImage();
+    final Path file = Files.createTempFile("TiffParallelReadTest", ".tif");
+    try {
+      final PathResource resource = new PathResource(file);
+      try (
+        TiffGeoreferencedImageWriter writer = new TiffGeoreferencedImageWriter(resource)) {
+        writer.write(new BufferedGeoreferencedImage(BOUNDING_BOX, sourceImage));
+      }
+      try (
+        AbstractTiffImage image = readImage(resource)) {
+        Assert.assertFalse("tiled", image.isTiled());
+        Assert.assertTrue("multiple strips", image.getRowsPerStrip() < HEIGHT / 8);
+      }
+      assertParallelEquals("strips", resource, sourceImage);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testTiles() throws IOException {
+    final BufferedImage sourceImage = newImage();
+    for (final TiffCompression compression : new TiffCompression[] {
+      TiffCompression.NONE, TiffCompression.DEFLATE, TiffCompression.LZW
+    }) {
+      final Path file = Files.createTempFile("TiffParallelReadTest", ".tif");
+      try {
+        final PathResource resource = new PathResource(file);
+        try (
+          TiffCloudOptimizedImageWriter writer = new TiffCloudOptimizedImageWriter(resource)) {
+          writer.setCompression(compression);
+          writer.setTileSize(32);
+          writer.write(new BufferedGeoreferencedImage(BOUNDING_BOX, sourceImage));
+        }
+        assertParallelEquals(compression.toString(), resource, sourceImage);
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+}
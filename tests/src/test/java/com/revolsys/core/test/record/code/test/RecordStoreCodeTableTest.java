@@ -0,0 +1,183 @@
+package com.revolsys.core.test.record.code.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jeometry.common.data.identifier.Identifier;
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.geopackage.GeoPackage;
+import com.revolsys.geopackage.GeoPackageRecordStore;
+import com.revolsys.record.code.CodeTableEntry;
+import com.revolsys.record.code.RecordStoreCodeTable;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.record.schema.RecordDefinitionBuilder;
+
+/**
+ * Checks the preloaded snapshot of a code table is used for lookups and is
+ * replaced when the code table is refreshed. A GeoPackage (SQLite) record store
+ * holds the codes.
+ */
+public class RecordStoreCodeTableTest {
+
+  private static final int CODE_COUNT = 50;
+
+  private static final PathName TABLE_PATH = PathName.newPathName("/CODES");
+
+  private RecordStoreCodeTable codeTable;
+
+  private Path file;
+
+  private GeoPackageRecordStore recordStore;
+
+  @After
+  public void close() throws IOException {
+    if (this.codeTable != null) {
+      this.codeTable.close();
+    }
+    if (this.recordStore != null) {
+      this.recordStore.close();
+    }
+    Files.deleteIfExists(this.file);
+  }
+
+  @Before
+  public void open() throws IOException {
+    this.file = Files.createTempFile("codes", ".gpkg");
+    Files.delete(this.file);
+    this.recordStore = GeoPackage.createRecordStore(this.file);
+
+    final RecordDefinitionBuilder builder = new RecordDefinitionBuilder(TABLE_PATH) //
+      .addField("id", DataTypes.LONG, true) //
+      .addField("VALUE", DataTypes.STRING, 20, true);
+    builder.setIdFieldName("id");
+    final RecordDefinition recordDefinition = this.recordStore
+      .getRecordDefinition(builder.getRecordDefinition());
+    for (long id = 1; id <= CODE_COUNT; id++) {
+      this.recordStore.insertRecord(TABLE_PATH, id, "V" + id);
+    }
+
+    this.codeTable = new RecordStoreCodeTable() //
+      .setValueFieldName("VALUE") //
+      .setRecordDefinition(recordDefinition);
+    this.codeTable.setPreload(true);
+  }
+
+  private void assertEntry(final long id, final String value) {
+    final String message = Long.toString(id);
+    CodeTableEntry entry = this.codeTable.getEntry(id);
+    Assert.assertTrue(message + " loaded", entry.isLoaded());
+    Assert.assertEquals(message + " long", value, entry.getValue());
+    Assert.assertEquals(message + " identifier", id, getId(entry));
+
+    entry = this.codeTable.getEntry((int)id);
+    Assert.assertEquals(message + " int", value, entry.getValue());
+
+    entry = this.codeTable.getEntry(Identifier.newIdentifier(id));
+    Assert.assertEquals(message + " Identifier", value, entry.getValue());
+
+    entry = this.codeTable.getEntry(value);
+    Assert.assertEquals(message + " value", id, getId(entry));
+
+    entry = this.codeTable.getEntry(value.toLowerCase());
+    Assert.assertEquals(message + " lower case value", id, getId(entry));
+  }
+
+  private long getId(final CodeTableEntry entry) {
+    return entry.getIdentifier().getLong(0);
+  }
+
+  private void replaceValue(final long id, final String value) {
+    this.recordStore.deleteRecord(TABLE_PATH, id);
+    this.recordStore.insertRecord(TABLE_PATH, id, value);
+  }
+
+  /**
+   * Lookups running while the code table is refreshed always see a loaded
+   * entry with either the old or new value.
+   */
+  @Test
+  public void testConcurrentRefresh() throws InterruptedException {
+    this.codeTable.preload();
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final Thread thread = new Thread(() -> {
+        try {
+          while (running.get()) {
+            for (long id = 1; id <= CODE_COUNT; id++) {
+              final CodeTableEntry entry = this.codeTable.getEntry(id);
+              Assert.assertTrue(id + " loaded", entry.isLoaded());
+              final String value = entry.getValue();
+              if (!value.equals("V" + id) && !value.equals("X" + id)) {
+                Assert.fail(id + "=" + value);
+              }
+            }
+          }
+        } catch (final Throwable e) {
+          error.compareAndSet(null, e);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    try {
+      for (long id = 1; id <= CODE_COUNT; id += 7) {
+        replaceValue(id, "X" + id);
+        this.codeTable.refresh();
+      }
+    } finally {
+      running.set(false);
+      for (final Thread thread : threads) {
+        thread.join();
+      }
+    }
+    if (error.get() != null) {
+      throw new AssertionError("Lookup during refresh", error.get());
+    }
+    for (long id = 1; id <= CODE_COUNT; id++) {
+      if (id % 7 == 1) {
+        assertEntry(id, "X" + id);
+      } else {
+        assertEntry(id, "V" + id);
+      }
+    }
+  }
+
+  /**
+   * Changes to the table aren't seen until the code table is refreshed, then
+   * the new snapshot has the changed and added codes.
+   */
+  @Test
+  public void testRefresh() {
+    Assert.assertTrue(this.codeTable.isPreload());
+    this.codeTable.preload();
+    Assert.assertTrue("loaded", this.codeTable.isLoaded());
+    for (long id = 1; id <= CODE_COUNT; id++) {
+      assertEntry(id, "V" + id);
+    }
+
+    replaceValue(5, "X5");
+    this.recordStore.insertRecord(TABLE_PATH, (long)CODE_COUNT + 1, "V" + (CODE_COUNT + 1));
+    // A second preload doesn't reload the snapshot
+    this.codeTable.preload();
+    assertEntry(5, "V5");
+
+    this.codeTable.refresh();
+    assertEntry(5, "X5");
+    assertEntry(CODE_COUNT + 1, "V" + (CODE_COUNT + 1));
+    assertEntry(6, "V6");
+    Assert.assertEquals(CODE_COUNT + 1, this.codeTable.getIdentifiers().size());
+  }
+}
@@ -0,0 +1,148 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.record.Record;
+import com.revolsys.record.io.format.csv.CsvParallelRecordReader;
+import com.revolsys.record.io.format.csv.CsvRecordReader;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.spring.resource.PathResource;
+
+public class CsvParallelRecordReaderTest {
+
+  private static final int RECORD_COUNT = 500;
+
+  private static List<String> toStrings(final Iterable<Record> records) {
+    final List<String> values = new ArrayList<>();
+    for (final Record record : records) {
+      values.add(record.getValues().toString());
+    }
+    return values;
+  }
+
+  private Path file;
+
+  private void assertParallelRead(final int chunkSize, final boolean ordered) {
+    final List<String> expected;
+    try (
+      CsvRecordReader reader = new CsvRecordReader(new PathResource(this.file))) {
+      expected = toStrings(reader);
+    }
+    Assert.assertEquals(RECORD_COUNT, expected.size());
+
+    final List<String> actual;
+    try (
+      CsvParallelRecordReader reader = new CsvParallelRecordReader(new PathResource(this.file))) {
+      reader.setChunkSize(chunkSize);
+      reader.setThreadCount(3);
+      reader.setOrdered(ordered);
+      actual = toStrings(reader);
+    }
+    if (!ordered) {
+      Collections.sort(expected);
+      Collections.sort(actual);
+    }
+    Assert.assertEquals("chunkSize=" + chunkSize, expected, actual);
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  @Before
+  public void newFile() throws IOException {
+    final StringBuilder csv = new StringBuilder("ID,NAME,DESCRIPTION\r\n");
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      csv.append(i).append(',');
+      switch (i % 5) {
+        case 0:
+          csv.append("\"line 1\nline 2\",plain");
+        break;
+        case 1:
+          // A quote in the middle of an unquoted value is part of the value
+          csv.append("ab\"c,\"quoted, \"\"escaped\"\"\nnext line\"");
+        break;
+        case 2:
+          csv.append("6'2\",\"\n\"");
+        break;
+        case 3:
+          csv.append("\"caf\u00e9\",\"\r\n\"");
+        break;
+        default:
+          csv.append(",");
+        break;
+      }
+      csv.append(i % 2 == 0 ? "\n" : "\r\n");
+    }
+    this.file = Files.createTempFile("CsvParallelRecordReaderTest", ".csv");
+    Files.write(this.file, csv.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * The byte order mark is skipped before the ranges are scanned, so a quoted
+   * first header containing a new line is still one header.
+   */
+  @Test
+  public void testByteOrderMark() throws IOException {
+    final String csv = "\ufeff\"RECORD\nID\",NAME\n1,\"a\nb\"\n2,c\n";
+    Files.write(this.file, csv.getBytes(StandardCharsets.UTF_8));
+    for (final int chunkSize : new int[] {
+      1, 7, 1024
+    }) {
+      try (
+        CsvParallelRecordReader reader = new CsvParallelRecordReader(
+          new PathResource(this.file))) {
+        reader.setChunkSize(chunkSize);
+        final List<Record> records = reader.toList();
+        final RecordDefinition recordDefinition = reader.getRecordDefinition();
+        final String message = "chunkSize=" + chunkSize;
+        Assert.assertEquals(message, 2, recordDefinition.getFieldCount());
+        Assert.assertEquals(message, "RECORD\nID", recordDefinition.getFieldName(0));
+        Assert.assertEquals(message, 2, records.size());
+        Assert.assertEquals(message, "a\nb", records.get(0).getValue("NAME"));
+        Assert.assertEquals(message, "2", records.get(1).getValue(0).toString());
+      }
+    }
+  }
+
+  @Test
+  public void testQuotedNewlines() {
+    for (final int chunkSize : new int[] {
+      1, 7, 64, 1000, 1024 * 1024
+    }) {
+      assertParallelRead(chunkSize, true);
+    }
+    assertParallelRead(50, false);
+  }
+
+  @Test
+  public void testValues() {
+    try (
+      CsvParallelRecordReader reader = new CsvParallelRecordReader(new PathResource(this.file))) {
+      reader.setChunkSize(16);
+      final List<Record> records = reader.toList();
+      Assert.assertEquals(RECORD_COUNT, records.size());
+      Assert.assertEquals("line 1\nline 2", records.get(0).getValue("NAME"));
+      Assert.assertEquals("ab\"c", records.get(1).getValue("NAME"));
+      Assert.assertEquals("quoted, \"escaped\"\nnext line", records.get(1).getValue("DESCRIPTION"));
+      Assert.assertEquals("6'2\"", records.get(2).getValue("NAME"));
+      Assert.assertEquals("\n", records.get(2).getValue("DESCRIPTION"));
+      Assert.assertEquals("caf\u00e9", records.get(3).getValue("NAME"));
+      Assert.assertEquals("\r\n", records.get(3).getValue("DESCRIPTION"));
+      Assert.assertEquals(Integer.toString(RECORD_COUNT - 1),
+        records.get(RECORD_COUNT - 1).getValue("ID").toString());
+    }
+  }
+}
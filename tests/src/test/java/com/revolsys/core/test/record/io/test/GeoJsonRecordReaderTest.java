@@ -0,0 +1,101 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.geometry.model.Point;
+import com.revolsys.record.ArrayRecord;
+import com.revolsys.record.Record;
+import com.revolsys.record.io.format.geojson.GeoJsonRecordReader;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.spring.resource.ByteArrayResource;
+
+public class GeoJsonRecordReaderTest {
+
+  private static final String FEATURES = "{\"type\":\"FeatureCollection\",\"features\":[" //
+    + "{\"type\":\"Feature\",\"id\":1,\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]}," //
+    + "\"properties\":{\"name\":\"a\",\"code\":null}}," //
+    + "{\"type\":\"Feature\",\"id\":2,\"geometry\":{\"type\":\"Point\",\"coordinates\":[3,4]}," //
+    + "\"properties\":{\"name\":\"b\",\"height\":12.5,\"code\":\"X\"}}," //
+    + "{\"type\":\"Feature\",\"id\":3,\"geometry\":null," //
+    + "\"properties\":{\"name\":\"c\",\"height\":\"tall\",\"extra\":true}}" //
+    + "]}";
+
+  private static List<Record> read(final GeoJsonRecordReader reader) {
+    final List<Record> records = new ArrayList<>();
+    try (
+      GeoJsonRecordReader recordReader = reader) {
+      for (final Record record : recordReader) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  private static GeoJsonRecordReader newReader(final String json) {
+    return new GeoJsonRecordReader(new ByteArrayResource("features.geojson", json),
+      ArrayRecord.FACTORY);
+  }
+
+  @Test
+  public void testEmpty() {
+    final GeoJsonRecordReader reader = newReader(
+      "{\"type\":\"FeatureCollection\",\"features\":[]}");
+    Assert.assertEquals(0, read(reader).size());
+  }
+
+  /**
+   * Only the properties in the sample are used, later values are ignored.
+   */
+  @Test
+  public void testSampleSize() {
+    final GeoJsonRecordReader reader = newReader(FEATURES);
+    reader.setSchemaSampleSize(1);
+    final List<Record> records = read(reader);
+    final RecordDefinition recordDefinition = reader.getRecordDefinition();
+    Assert.assertEquals(3, records.size());
+    Assert.assertTrue(recordDefinition.hasField("name"));
+    Assert.assertFalse(recordDefinition.hasField("height"));
+    Assert.assertEquals("c", records.get(2).getValue("name"));
+  }
+
+  /**
+   * The record definition has the properties from all the sampled features,
+   * properties with different types are objects.
+   */
+  @Test
+  public void testSchemaFromSample() {
+    final GeoJsonRecordReader reader = newReader(FEATURES);
+    final List<Record> records = read(reader);
+    final RecordDefinition recordDefinition = reader.getRecordDefinition();
+    Assert.assertEquals(3, records.size());
+    Assert.assertEquals(DataTypes.STRING, recordDefinition.getFieldType("name"));
+    Assert.assertEquals(DataTypes.STRING, recordDefinition.getFieldType("code"));
+    Assert.assertEquals(DataTypes.OBJECT, recordDefinition.getFieldType("height"));
+    Assert.assertEquals(DataTypes.BOOLEAN, recordDefinition.getFieldType("extra"));
+    Assert.assertTrue(recordDefinition.hasField("id"));
+
+    final Record record1 = records.get(0);
+    Assert.assertEquals("a", record1.getValue("name"));
+    Assert.assertNull(record1.getValue("height"));
+    final Point point = record1.getGeometry();
+    Assert.assertEquals(1, point.getX(), 0);
+    Assert.assertEquals(2, point.getY(), 0);
+
+    final Record record2 = records.get(1);
+    Assert.assertEquals("X", record2.getValue("code"));
+    Assert.assertEquals(0, new BigDecimal("12.5")
+      .compareTo(new BigDecimal(record2.getValue("height").toString())));
+
+    final Record record3 = records.get(2);
+    Assert.assertEquals("tall", record3.getValue("height"));
+    Assert.assertEquals(Boolean.TRUE, record3.getValue("extra"));
+    Assert.assertEquals(3, record3.getInteger("id").intValue());
+    Assert.assertNull(record3.getGeometry());
+  }
+}
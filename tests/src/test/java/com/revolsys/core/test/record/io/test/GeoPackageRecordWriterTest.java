@@ -0,0 +1,120 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.geometry.model.GeometryDataTypes;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geopackage.GeoPackage;
+import com.revolsys.geopackage.GeoPackageRecordStore;
+import com.revolsys.geopackage.GeoPackageRecordWriter;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.record.schema.RecordDefinitionBuilder;
+
+public class GeoPackageRecordWriterTest {
+
+  private static final GeometryFactory GEOMETRY_FACTORY = GeometryFactory.floating2d(4326);
+
+  private static final int RECORD_COUNT = 250;
+
+  private static final String RTREE = "rtree_BULK_GEOMETRY";
+
+  private static final PathName TABLE_PATH = PathName.newPathName("/BULK");
+
+  private Path file;
+
+  private RecordDefinition recordDefinition;
+
+  private GeoPackageRecordStore recordStore;
+
+  @After
+  public void close() throws IOException {
+    if (this.recordStore != null) {
+      this.recordStore.close();
+    }
+    Files.deleteIfExists(this.file);
+  }
+
+  private int getRTreeCount() {
+    return this.recordStore.selectInt("SELECT COUNT(*) FROM " + RTREE);
+  }
+
+  private int getTriggerCount() {
+    return this.recordStore.selectInt(
+      "SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE ?", RTREE + "%");
+  }
+
+  private GeoPackageRecordWriter newWriter(final boolean bulkLoad) {
+    final GeoPackageRecordWriter writer = new GeoPackageRecordWriter(this.recordStore,
+      this.recordDefinition);
+    writer.setBulkLoad(bulkLoad);
+    writer.setBulkLoadCommitInterval(100);
+    return writer;
+  }
+
+  @Before
+  public void open() throws IOException {
+    this.file = Files.createTempFile("bulkLoad", ".gpkg");
+    Files.delete(this.file);
+    this.recordStore = GeoPackage.createRecordStore(this.file);
+
+    final RecordDefinitionBuilder builder = new RecordDefinitionBuilder(TABLE_PATH) //
+      .addField("id", DataTypes.LONG, true) //
+      .addField("GEOMETRY", GeometryDataTypes.POINT) //
+      .setGeometryFactory(GEOMETRY_FACTORY);
+    builder.setIdFieldName("id");
+    this.recordDefinition = this.recordStore.getRecordDefinition(builder.getRecordDefinition());
+  }
+
+  private void write(final GeoPackageRecordWriter writer, final int startId) {
+    for (int i = 0; i < RECORD_COUNT; i++) {
+      final long id = startId + i;
+      writer.write(writer.newRecord(id, GEOMETRY_FACTORY.point(i % 100, i / 100)));
+    }
+  }
+
+  /**
+   * The triggers are dropped while loading, the R-tree is built when the writer
+   * is closed and the triggers are created again so later writes update it.
+   */
+  @Test
+  public void testBulkLoad() {
+    final int triggerCount = getTriggerCount();
+    Assert.assertEquals("triggers", 6, triggerCount);
+
+    try (
+      GeoPackageRecordWriter writer = newWriter(true)) {
+      write(writer, 1);
+      Assert.assertEquals("triggers while loading", 0, getTriggerCount());
+    }
+    Assert.assertEquals("triggers after load", triggerCount, getTriggerCount());
+    Assert.assertEquals("rtree after load", RECORD_COUNT, getRTreeCount());
+    Assert.assertEquals("rtree bounding box", 1,
+      this.recordStore.selectInt("SELECT COUNT(*) FROM " + RTREE
+        + " WHERE minx = 49 AND maxx = 49 AND miny = 2 AND maxy = 2"));
+
+    try (
+      GeoPackageRecordWriter writer = newWriter(false)) {
+      write(writer, RECORD_COUNT + 1);
+    }
+    Assert.assertEquals("rtree updated by triggers", RECORD_COUNT * 2, getRTreeCount());
+  }
+
+  @Test
+  public void testNotBulkLoad() {
+    try (
+      GeoPackageRecordWriter writer = newWriter(false)) {
+      write(writer, 1);
+      Assert.assertEquals("triggers while writing", 6, getTriggerCount());
+    }
+    Assert.assertEquals(RECORD_COUNT, getRTreeCount());
+  }
+}
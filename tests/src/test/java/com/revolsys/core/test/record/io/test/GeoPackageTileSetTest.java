@@ -0,0 +1,153 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.geometry.model.BoundingBox;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.geopackage.GeoPackage;
+import com.revolsys.geopackage.GeoPackageRecordStore;
+import com.revolsys.geopackage.GeoPackageTileMatrix;
+import com.revolsys.geopackage.GeoPackageTileSet;
+import com.revolsys.geopackage.GeoPackageTileWriter;
+
+/**
+ * Writes a tile pyramid to a GeoPackage and checks the tile matrices and tiles
+ * read back, including after the file is opened again.
+ */
+public class GeoPackageTileSetTest {
+
+  private static final BoundingBox BOUNDING_BOX = GeometryFactory.floating2d(3005)
+    .newBoundingBox(1000, 2000, 1500, 2300);
+
+  private static final String TABLE_NAME = "PYRAMID";
+
+  private static final int TILE_SIZE = 16;
+
+  private Path file;
+
+  private GeoPackageRecordStore recordStore;
+
+  @After
+  public void close() throws IOException {
+    if (this.recordStore != null) {
+      this.recordStore.close();
+    }
+    Files.deleteIfExists(this.file);
+  }
+
+  private static int getColour(final int zoomLevel, final int tileX, final int tileY) {
+    return 0xFF000000 | zoomLevel * 80 << 16 | tileX * 60 << 8 | tileY * 60;
+  }
+
+  private static BufferedImage newTileImage(final int zoomLevel, final int tileX,
+    final int tileY) {
+    final BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE,
+      BufferedImage.TYPE_INT_ARGB);
+    final int colour = getColour(zoomLevel, tileX, tileY);
+    for (int y = 0; y < TILE_SIZE; y++) {
+      for (int x = 0; x < TILE_SIZE; x++) {
+        image.setRGB(x, y, colour);
+      }
+    }
+    // Mark the top left pixel so flipped tiles are detected
+    image.setRGB(0, 0, 0xFFFFFFFF);
+    return image;
+  }
+
+  @Before
+  public void open() throws IOException {
+    this.file = Files.createTempFile("tiles", ".gpkg");
+    Files.delete(this.file);
+    this.recordStore = GeoPackage.createRecordStore(this.file);
+  }
+
+  private void assertTiles(final GeoPackageTileSet tileSet) {
+    Assert.assertEquals(TABLE_NAME, tileSet.getTableName());
+    Assert.assertEquals("zoom levels", 3, tileSet.getTileMatrices().size());
+    for (final GeoPackageTileMatrix tileMatrix : tileSet.getTileMatrices()) {
+      final int zoomLevel = tileMatrix.getZoomLevel();
+      final int tileCount = 1 << zoomLevel;
+      Assert.assertEquals("tile x count " + zoomLevel, tileCount, tileMatrix.getTileXCount());
+      Assert.assertEquals("tile y count " + zoomLevel, tileCount, tileMatrix.getTileYCount());
+      Assert.assertEquals("pixel size " + zoomLevel, 64 >> zoomLevel, tileMatrix.getPixelWidth(),
+        0);
+      Assert.assertEquals("origin x " + zoomLevel, 1000, tileMatrix.getOriginX(), 0);
+      Assert.assertEquals("origin y " + zoomLevel, 2300, tileMatrix.getOriginY(), 0);
+      for (int tileY = 0; tileY < tileCount; tileY++) {
+        for (int tileX = 0; tileX < tileCount; tileX++) {
+          final String message = zoomLevel + "/" + tileX + "/" + tileY;
+          final BufferedImage image = tileSet.getTileImage(tileMatrix, tileX, tileY);
+          Assert.assertNotNull(message, image);
+          Assert.assertEquals(message + " width", TILE_SIZE, image.getWidth());
+          Assert.assertEquals(message + " height", TILE_SIZE, image.getHeight());
+          Assert.assertEquals(message + " corner", 0xFFFFFFFF, image.getRGB(0, 0));
+          Assert.assertEquals(message + " colour", getColour(zoomLevel, tileX, tileY),
+            image.getRGB(TILE_SIZE - 1, TILE_SIZE - 1));
+        }
+      }
+      Assert.assertNull("outside matrix " + zoomLevel,
+        tileSet.getTileData(zoomLevel, tileCount, 0));
+    }
+    Assert.assertEquals("level for resolution", 1,
+      tileSet.getTileLevel(32).getZoomLevel());
+    Assert.assertNull("missing zoom level", tileSet.getTileMatrix(3));
+  }
+
+  /**
+   * The tiles written at each zoom level are read back from the same store and
+   * after the GeoPackage is opened again.
+   */
+  @Test
+  public void testRoundTrip() {
+    Assert.assertEquals(Collections.emptyList(), this.recordStore.getTileSetNames());
+    // The resolutions are sorted so zoom level 0 is the lowest resolution
+    try (
+      GeoPackageTileSet tileSet = this.recordStore.newTileSet(TABLE_NAME, BOUNDING_BOX, TILE_SIZE,
+        16, 64, 32)) {
+      // A batch size that doesn't divide the 21 tiles
+      try (
+        GeoPackageTileWriter writer = tileSet.newTileWriter(4)) {
+        for (final GeoPackageTileMatrix tileMatrix : tileSet.getTileMatrices()) {
+          final int zoomLevel = tileMatrix.getZoomLevel();
+          for (int tileY = 0; tileY < tileMatrix.getTileYCount(); tileY++) {
+            for (int tileX = 0; tileX < tileMatrix.getTileXCount(); tileX++) {
+              writer.writeTile(zoomLevel, tileX, tileY, newTileImage(zoomLevel, tileX, tileY));
+            }
+          }
+        }
+      }
+      assertTiles(tileSet);
+
+      // Writing a tile again replaces it
+      final byte[] data = tileSet.getTileData(0, 0, 0);
+      try (
+        GeoPackageTileWriter writer = tileSet.newTileWriter(10)) {
+        writer.writeTile(2, 3, 3, data);
+      }
+      Assert.assertArrayEquals("replaced", data, tileSet.getTileData(2, 3, 3));
+      try (
+        GeoPackageTileWriter writer = tileSet.newTileWriter(10)) {
+        writer.writeTile(2, 3, 3, newTileImage(2, 3, 3));
+      }
+    }
+    this.recordStore.close();
+
+    this.recordStore = GeoPackage.openRecordStore(this.file);
+    Assert.assertEquals(Arrays.asList(TABLE_NAME), this.recordStore.getTileSetNames());
+    Assert.assertNull("not a tile set", this.recordStore.getTileSet("MISSING"));
+    try (
+      GeoPackageTileSet tileSet = this.recordStore.getTileSet(TABLE_NAME)) {
+      assertTiles(tileSet);
+    }
+  }
+}
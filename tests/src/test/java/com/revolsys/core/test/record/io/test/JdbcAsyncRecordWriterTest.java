@@ -0,0 +1,124 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.geopackage.GeoPackage;
+import com.revolsys.geopackage.GeoPackageRecordStore;
+import com.revolsys.jdbc.io.JdbcAsyncRecordWriter;
+import com.revolsys.record.query.Query;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.record.schema.RecordDefinitionBuilder;
+import com.revolsys.transaction.Transaction;
+import com.revolsys.transaction.TransactionOptions;
+
+public class JdbcAsyncRecordWriterTest {
+
+  private static final int RECORD_COUNT = 250;
+
+  private static final PathName TABLE_PATH = PathName.newPathName("/ASYNC");
+
+  private Path file;
+
+  private RecordDefinition recordDefinition;
+
+  private GeoPackageRecordStore recordStore;
+
+  @After
+  public void close() throws IOException {
+    if (this.recordStore != null) {
+      this.recordStore.close();
+    }
+    Files.deleteIfExists(this.file);
+  }
+
+  private int getRecordCount() {
+    return this.recordStore.getRecordCount(new Query(TABLE_PATH));
+  }
+
+  @Before
+  public void open() throws IOException {
+    this.file = Files.createTempFile("async", ".gpkg");
+    Files.delete(this.file);
+    this.recordStore = GeoPackage.createRecordStore(this.file);
+    this.recordStore.setBatchSize(10);
+
+    final RecordDefinitionBuilder builder = new RecordDefinitionBuilder(TABLE_PATH) //
+      .addField("id", DataTypes.LONG, true) //
+      .addField("name", DataTypes.STRING, 20);
+    builder.setIdFieldName("id");
+    this.recordDefinition = this.recordStore.getRecordDefinition(builder.getRecordDefinition());
+  }
+
+  private void write(final JdbcAsyncRecordWriter writer, final long id) {
+    writer.write(writer.newRecord(id, "n" + id));
+  }
+
+  /**
+   * A duplicate id fails on the writer thread. The error is thrown from a
+   * later write, flush or close and the writer is closed.
+   */
+  @Test
+  public void testError() {
+    final JdbcAsyncRecordWriter writer;
+    try (
+      Transaction transaction = this.recordStore.newTransaction(TransactionOptions.REQUIRED)) {
+      writer = this.recordStore.newAsyncRecordWriter(this.recordDefinition, true, 2);
+      RuntimeException error = null;
+      try {
+        for (long id = 1; id <= RECORD_COUNT; id++) {
+          write(writer, id);
+          if (id == 25) {
+            write(writer, 5);
+          }
+        }
+        writer.flush();
+      } catch (final RuntimeException e) {
+        error = e;
+      }
+      try {
+        writer.close();
+      } catch (final RuntimeException e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+      Assert.assertNotNull("Duplicate id error", error);
+      transaction.setRollbackOnly();
+    }
+    try {
+      write(writer, RECORD_COUNT + 1);
+      Assert.fail("Write after close");
+    } catch (final IllegalStateException e) {
+    }
+    // Closing again does nothing
+    writer.close();
+    Assert.assertEquals(0, getRecordCount());
+  }
+
+  @Test
+  public void testWrite() {
+    try (
+      Transaction transaction = this.recordStore.newTransaction(TransactionOptions.REQUIRED)) {
+      try (
+        JdbcAsyncRecordWriter writer = this.recordStore.newAsyncRecordWriter(this.recordDefinition,
+          true, 2)) {
+        for (long id = 1; id <= RECORD_COUNT; id++) {
+          write(writer, id);
+        }
+        writer.flush();
+        Assert.assertEquals("after flush", RECORD_COUNT, getRecordCount());
+        write(writer, RECORD_COUNT + 1);
+      }
+    }
+    Assert.assertEquals("after close", RECORD_COUNT + 1, getRecordCount());
+  }
+}
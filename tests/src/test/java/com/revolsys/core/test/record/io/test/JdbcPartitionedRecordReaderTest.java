@@ -0,0 +1,160 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.geopackage.GeoPackage;
+import com.revolsys.geopackage.GeoPackageRecordStore;
+import com.revolsys.jdbc.io.JdbcPartitionedRecordReader;
+import com.revolsys.record.Record;
+import com.revolsys.record.query.Query;
+import com.revolsys.record.schema.RecordDefinitionBuilder;
+
+public class JdbcPartitionedRecordReaderTest {
+
+  private static final PathName CODED_PATH = PathName.newPathName("/CODED");
+
+  private static final PathName NUMBERED_PATH = PathName.newPathName("/NUMBERED");
+
+  private static final int RECORD_COUNT = 200;
+
+  private static String code(final int i) {
+    return String.format("C%03d", i);
+  }
+
+  private Path file;
+
+  private GeoPackageRecordStore recordStore;
+
+  @After
+  public void close() throws IOException {
+    if (this.recordStore != null) {
+      this.recordStore.close();
+    }
+    Files.deleteIfExists(this.file);
+  }
+
+  private void newTable(final String idFieldName, final RecordDefinitionBuilder builder) {
+    builder.setIdFieldName(idFieldName);
+    this.recordStore.getRecordDefinition(builder.getRecordDefinition());
+  }
+
+  @Before
+  public void open() throws IOException {
+    this.file = Files.createTempFile("partitioned", ".gpkg");
+    Files.delete(this.file);
+    this.recordStore = GeoPackage.createRecordStore(this.file);
+
+    newTable("id", new RecordDefinitionBuilder(NUMBERED_PATH) //
+      .addField("id", DataTypes.LONG, true) //
+      .addField("name", DataTypes.STRING, 20));
+    newTable("code", new RecordDefinitionBuilder(CODED_PATH) //
+      .addField("code", DataTypes.STRING, 10, true) //
+      .addField("name", DataTypes.STRING, 20));
+    // Insert in reverse order so the rows aren't stored in id order
+    for (int i = RECORD_COUNT; i > 0; i--) {
+      this.recordStore.insertRecord(NUMBERED_PATH, (long)i, "n" + i);
+      this.recordStore.insertRecord(CODED_PATH, code(i), "c" + i);
+    }
+  }
+
+  private List<Record> read(final JdbcPartitionedRecordReader reader) {
+    final List<Record> records = new ArrayList<>();
+    try (
+      JdbcPartitionedRecordReader partitionedReader = reader) {
+      for (final Record record : partitionedReader) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  private Set<Object> readIds(final JdbcPartitionedRecordReader reader, final String idFieldName) {
+    final List<Record> records = read(reader);
+    final Set<Object> ids = new HashSet<>();
+    for (final Record record : records) {
+      Assert.assertTrue("Duplicate " + record, ids.add(record.getValue(idFieldName)));
+    }
+    return ids;
+  }
+
+  @Test
+  public void testIdRangePartitions() {
+    final JdbcPartitionedRecordReader reader = new JdbcPartitionedRecordReader(this.recordStore,
+      new Query(NUMBERED_PATH)).setThreadCount(4);
+    reader.addIdRangePartitions(8);
+    Assert.assertEquals("Partition count", 8, reader.getPartitionCount());
+    final Set<Object> ids = readIds(reader, "id");
+    Assert.assertEquals(RECORD_COUNT, ids.size());
+  }
+
+  /**
+   * A table with a non-numeric id is read using a single partition, so the
+   * offset, limit and order by of the query are used directly.
+   */
+  @Test
+  public void testNonNumericId() {
+    final JdbcPartitionedRecordReader reader = new JdbcPartitionedRecordReader(this.recordStore,
+      new Query(CODED_PATH));
+    reader.addIdRangePartitions(8);
+    Assert.assertEquals("Partition count", 1, reader.getPartitionCount());
+    Assert.assertEquals(RECORD_COUNT, readIds(reader, "code").size());
+
+    final Query query = new Query(CODED_PATH) //
+      .setOrderBy("code") //
+      .setOffset(10) //
+      .setLimit(5);
+    final List<Record> records = read(new JdbcPartitionedRecordReader(this.recordStore, query));
+    Assert.assertEquals(5, records.size());
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(code(11 + i), records.get(i).getValue("code"));
+    }
+  }
+
+  /**
+   * The offset and limit are applied to the merged records, not to each
+   * partition.
+   */
+  @Test
+  public void testOffsetLimit() {
+    final Query query = new Query(NUMBERED_PATH) //
+      .setOffset(30) //
+      .setLimit(50);
+    final JdbcPartitionedRecordReader reader = new JdbcPartitionedRecordReader(this.recordStore,
+      query).setThreadCount(4);
+    reader.addIdRangePartitions(8);
+    Assert.assertEquals(50, readIds(reader, "id").size());
+
+    final Query tailQuery = new Query(NUMBERED_PATH) //
+      .setOffset(RECORD_COUNT - 10) //
+      .setLimit(50);
+    final JdbcPartitionedRecordReader tailReader = new JdbcPartitionedRecordReader(
+      this.recordStore, tailQuery).setThreadCount(4);
+    tailReader.addIdRangePartitions(8);
+    Assert.assertEquals(10, readIds(tailReader, "id").size());
+
+    final Query filterQuery = new Query(NUMBERED_PATH) //
+      .setOffset(5) //
+      .setLimit(20);
+    final JdbcPartitionedRecordReader filterReader = new JdbcPartitionedRecordReader(
+      this.recordStore, filterQuery);
+    filterReader.addPartition(null, record -> record.getLong("id") % 2 == 0);
+    final List<Record> records = read(filterReader);
+    Assert.assertEquals(20, records.size());
+    for (final Record record : records) {
+      Assert.assertEquals(0, record.getLong("id") % 2);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.record.io.format.json.JsonParser;
+import com.revolsys.record.io.format.json.JsonParser.EventType;
+
+public class JsonParserTest {
+
+  /** The size of the parser's character and byte buffers. */
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final String TOKENS = "[\"ab\\\"\\u00e9\\ud83d\\ude00c\", -12.5e-3, 123456789012345678901, true, null, {\"k\u00e9y\": \"v\u00e4lue \ud83d\ude00\"}]";
+
+  private static void assertDouble(final String json) {
+    final double expected = Double.parseDouble(json);
+    final double actual = readDouble(json);
+    Assert.assertEquals(json, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void assertTokens(final String message, final List<Object> values) {
+    Assert.assertEquals(message, 6, values.size());
+    Assert.assertEquals(message, "ab\"\u00e9\ud83d\ude00c", values.get(0));
+    Assert.assertEquals(message, -0.0125, ((Number)values.get(1)).doubleValue(), 0);
+    Assert.assertEquals(message, new BigDecimal("123456789012345678901"), values.get(2));
+    Assert.assertEquals(message, Boolean.TRUE, values.get(3));
+    Assert.assertNull(message, values.get(4));
+    final Map<String, Object> map = (Map<String, Object>)values.get(5);
+    Assert.assertEquals(message, "v\u00e4lue \ud83d\ude00", map.get("k\u00e9y"));
+  }
+
+  private static double readDouble(final String json) {
+    try (
+      JsonParser parser = new JsonParser(new StringReader(json))) {
+      Assert.assertEquals(EventType.startDocument, parser.next());
+      Assert.assertEquals(EventType.number, parser.next());
+      return parser.getDoubleValue();
+    }
+  }
+
+  private static String readString(final String json) {
+    return JsonParser.read(json);
+  }
+
+  /**
+   * Tokens that start in one buffer and end in the next, read from characters
+   * and from UTF-8 bytes where multi-byte characters are also split.
+   */
+  @Test
+  public void testBufferBoundary() {
+    for (int padding = BUFFER_SIZE - TOKENS.length() - 8; padding <= BUFFER_SIZE + 8; padding++) {
+      final StringBuilder json = new StringBuilder();
+      for (int i = 0; i < padding; i++) {
+        json.append(' ');
+      }
+      json.append(TOKENS);
+      final String text = json.toString();
+      final String message = "padding=" + padding;
+      assertTokens(message, JsonParser.read(text));
+
+      final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      try (
+        JsonParser parser = new JsonParser(new ByteArrayInputStream(bytes))) {
+        assertTokens(message + " stream", JsonParser.read(parser));
+      }
+      try (
+        JsonParser parser = new JsonParser(ByteBuffer.wrap(bytes))) {
+        assertTokens(message + " buffer", JsonParser.read(parser));
+      }
+    }
+  }
+
+  @Test
+  public void testEscapes() {
+    Assert.assertEquals("a\"b\\c/d\b\f\n\r\te", readString("\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\te\""));
+    Assert.assertEquals("\u00e9\u20ac\u0000", readString("\"\\u00e9\\u20AC\\u0000\""));
+    Assert.assertEquals("", readString("\"\""));
+  }
+
+  @Test
+  public void testExponents() {
+    for (final String json : new String[] {
+      "1e2", "1E2", "1e+2", "1E-2", "-1.5e-3", "2.5E10", "0.5e0", "1e300", "1e-300", "4.9e-324",
+      "1.7976931348623157e308", "1e400", "-1e400", "1e-400", "123.456e-7"
+    }) {
+      assertDouble(json);
+    }
+  }
+
+  @Test
+  public void testLongMantissa() {
+    for (final String json : new String[] {
+      "9007199254740993", "0.30000000000000004", "123456789012345678", "1234567890123456789",
+      "12345678901234567890123", "0.1234567890123456789012345", "-98765432109876543210.5",
+      "1.00000000000000000000001", "0.000000000000000000000001234", "3.14159265358979323846e-5"
+    }) {
+      assertDouble(json);
+    }
+    final String json = "[12345678901234567890123.25]";
+    final List<Object> values = JsonParser.read(json);
+    Assert.assertEquals(new BigDecimal("12345678901234567890123.25"), values.get(0));
+  }
+
+  @Test
+  public void testNegativeZero() {
+    for (final String json : new String[] {
+      "-0", "-0.0", "-0e5", "-0.000E-3", "0", "0.0"
+    }) {
+      assertDouble(json);
+    }
+  }
+
+  @Test
+  public void testSurrogates() {
+    final String emoji = "\ud83d\ude00";
+    Assert.assertEquals(emoji, readString("\"\\ud83d\\ude00\""));
+    Assert.assertEquals("a" + emoji + "b", readString("\"a" + emoji + "b\""));
+
+    final byte[] bytes = ("[\"" + emoji + "\", \"\\uD83D\\uDE00\"]")
+      .getBytes(StandardCharsets.UTF_8);
+    final List<Object> values = JsonParser.read(new ByteArrayInputStream(bytes));
+    Assert.assertEquals(emoji, values.get(0));
+    Assert.assertEquals(emoji, values.get(1));
+  }
+}
@@ -0,0 +1,118 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.revolsys.geometry.model.Geometry;
+import com.revolsys.geometry.model.GeometryDataTypes;
+import com.revolsys.geometry.model.GeometryFactory;
+import com.revolsys.record.ArrayRecord;
+import com.revolsys.record.Record;
+import com.revolsys.record.io.RecordReader;
+import com.revolsys.record.io.format.geojson.GeoJsonRecordWriter;
+import com.revolsys.record.io.format.json.Json;
+import com.revolsys.record.io.format.json.JsonObject;
+import com.revolsys.record.io.format.json.JsonRecordWriter;
+import com.revolsys.record.io.format.json.JsonWriter;
+import com.revolsys.record.schema.RecordDefinitionImpl;
+import com.revolsys.spring.resource.ByteArrayResource;
+import com.revolsys.testapi.GeometryAssert;
+
+public class JsonWriterTest {
+  private static final GeometryFactory WGS84_2D = GeometryFactory.wgs84().convertAxisCount(2);
+
+  private static void assertGeoJsonWriteRead(final Geometry geometry) {
+    final RecordDefinitionImpl recordDefinition = new RecordDefinitionImpl(
+      PathName.newPathName("TEST"));
+    recordDefinition.addField("ID", DataTypes.INT, true);
+    recordDefinition.addField("GEOMETRY", GeometryDataTypes.GEOMETRY, true);
+    recordDefinition.setGeometryFactory(WGS84_2D);
+
+    final Record record = new ArrayRecord(recordDefinition);
+    record.setValue("ID", 1);
+    record.setGeometryValue(geometry);
+
+    final StringWriter out = new StringWriter();
+    try (
+      GeoJsonRecordWriter writer = new GeoJsonRecordWriter(out, recordDefinition)) {
+      writer.write(record);
+    }
+    final String geoJson = out.toString();
+
+    final JsonObject featureCollection = Json.toObjectMap(geoJson);
+    final List<JsonObject> features = featureCollection.getValue("features");
+    Assert.assertEquals(geoJson, 1, features.size());
+
+    try (
+      RecordReader reader = RecordReader
+        .newRecordReader(new ByteArrayResource("test.geojson", geoJson))) {
+      final List<Record> records = reader.toList();
+      Assert.assertEquals(geoJson, 1, records.size());
+      final Geometry actualGeometry = records.get(0).getGeometry();
+      GeometryAssert.assertEqualsExact(2, geometry, actualGeometry);
+    }
+  }
+
+  private static void assertJsonValue(final String expected, final Object value) {
+    final StringWriter out = new StringWriter();
+    try (
+      JsonWriter writer = new JsonWriter(out, false)) {
+      writer.value(value);
+    }
+    Assert.assertEquals(expected, out.toString());
+  }
+
+  @Test
+  public void testGeoJsonLineString() {
+    assertGeoJsonWriteRead(WGS84_2D.lineString(2, 0.0, 0.0, 1, 1, 2, 0, 3, 1, 4, 0));
+  }
+
+  @Test
+  public void testGeoJsonMultiPoint() {
+    assertGeoJsonWriteRead(WGS84_2D.punctual(2, 0.0, 0.0, 1, 1, 2, 0, 3, 1));
+  }
+
+  @Test
+  public void testGeoJsonPolygonWithHole() {
+    assertGeoJsonWriteRead(WGS84_2D.polygon(
+      WGS84_2D.linearRing(2, 0.0, 0.0, 10, 0, 10, 10, 0, 10, 0, 0), //
+      WGS84_2D.linearRing(2, 2.0, 2.0, 2, 8, 8, 8, 8, 2, 2, 2)));
+  }
+
+  @Test
+  public void testJsonFloat() {
+    final RecordDefinitionImpl recordDefinition = new RecordDefinitionImpl(
+      PathName.newPathName("TEST"));
+    recordDefinition.addField("FLOAT", DataTypes.FLOAT, true);
+    recordDefinition.addField("DOUBLE", DataTypes.DOUBLE, true);
+
+    final Record record = new ArrayRecord(recordDefinition);
+    record.setValue("FLOAT", 0.1f);
+    record.setValue("DOUBLE", 0.1);
+
+    final StringWriter out = new StringWriter();
+    try (
+      JsonRecordWriter writer = new JsonRecordWriter(recordDefinition, out)) {
+      writer.write(record);
+    }
+    final String json = out.toString();
+    Assert.assertFalse(json, json.contains("0.100000001"));
+    Assert.assertTrue(json, json.contains("\"FLOAT\":0.1") || json.contains("\"FLOAT\": 0.1"));
+  }
+
+  @Test
+  public void testJsonWriterFloat() {
+    assertJsonValue("0.1", 0.1f);
+    assertJsonValue("123.456", 123.456f);
+    assertJsonValue("-0.00007", -7.0E-5f);
+    assertJsonValue("10000000000", 1.0E10f);
+    assertJsonValue("1", 1.0f);
+    assertJsonValue("null", Float.NaN);
+    assertJsonValue("0.1", 0.1);
+  }
+}
@@ -0,0 +1,91 @@
+package com.revolsys.core.test.record.io.test;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.sqlite.SQLiteDataSource;
+
+import com.revolsys.oracle.recordstore.OracleBulkRecordWriter;
+import com.revolsys.oracle.recordstore.OracleRecordStore;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.record.schema.RecordDefinitionBuilder;
+import com.revolsys.transaction.Propagation;
+import com.revolsys.transaction.Transaction;
+import com.revolsys.transaction.TransactionOptions;
+
+/**
+ * Checks when the intermediate commits of the {@link OracleBulkRecordWriter}
+ * can be enabled. No records are written so an in memory SQLite database is
+ * used as the data source.
+ */
+public class OracleBulkRecordWriterTest {
+
+  private static final RecordDefinition RECORD_DEFINITION = new RecordDefinitionBuilder("/BULK")
+    .addField("ID", DataTypes.LONG, true)
+    .getRecordDefinition();
+
+  private OracleRecordStore recordStore;
+
+  private DataSourceTransactionManager transactionManager;
+
+  @After
+  public void close() {
+    this.recordStore.close();
+  }
+
+  @Before
+  public void open() {
+    final SQLiteDataSource dataSource = new SQLiteDataSource();
+    dataSource.setUrl("jdbc:sqlite::memory:");
+    this.recordStore = new OracleRecordStore(dataSource);
+    this.transactionManager = new DataSourceTransactionManager(dataSource);
+  }
+
+  /**
+   * Intermediate commits would commit or close the transaction's connection so
+   * they fail fast, leaving the writer usable.
+   */
+  @Test
+  public void testInTransaction() {
+    try (
+      Transaction transaction = new Transaction(this.transactionManager,
+        TransactionOptions.REQUIRED);
+      OracleBulkRecordWriter writer = this.recordStore.newBulkRecordWriter(RECORD_DEFINITION,
+        100)) {
+      try {
+        writer.setCommitInterval(1000);
+        Assert.fail("Commit interval in a transaction");
+      } catch (final IllegalStateException e) {
+      }
+      Assert.assertEquals(0, writer.getCommitInterval());
+
+      try {
+        writer.setAppendValues(true);
+        Assert.fail("Append values in a transaction");
+      } catch (final IllegalStateException e) {
+      }
+      Assert.assertFalse(writer.isAppendValues());
+
+      // Settings that don't commit are still allowed
+      writer.setCommitInterval(0);
+      writer.setAppendValues(false);
+    }
+  }
+
+  @Test
+  public void testWithoutTransaction() {
+    try (
+      Transaction transaction = new Transaction(this.transactionManager,
+        Propagation.NOT_SUPPORTED);
+      OracleBulkRecordWriter writer = this.recordStore.newBulkRecordWriter(RECORD_DEFINITION,
+        100)) {
+      writer.setCommitInterval(1000);
+      writer.setAppendValues(true);
+      Assert.assertEquals(1000, writer.getCommitInterval());
+      Assert.assertTrue(writer.isAppendValues());
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.revolsys.core.test.record.io.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.geopackage.GeoPackage;
+import com.revolsys.geopackage.GeoPackageRecordStore;
+import com.revolsys.gis.postgresql.PostgreSQLJdbcQueryResultPager;
+import com.revolsys.record.Record;
+import com.revolsys.record.io.RecordReader;
+import com.revolsys.record.query.Query;
+import com.revolsys.record.schema.RecordDefinitionBuilder;
+
+/**
+ * Checks the keyset page boundaries when the sort key has duplicate values.
+ * The pager only generates standard row value comparisons, so a GeoPackage
+ * (SQLite) record store is used instead of a PostgreSQL database.
+ */
+public class PostgreSQLJdbcQueryResultPagerTest {
+
+  private static final int PAGE_SIZE = 10;
+
+  private static final int RECORD_COUNT = 95;
+
+  private static final PathName TABLE_PATH = PathName.newPathName("/KEYSET");
+
+  private Path file;
+
+  private GeoPackageRecordStore recordStore;
+
+  @After
+  public void close() throws IOException {
+    if (this.recordStore != null) {
+      this.recordStore.close();
+    }
+    Files.deleteIfExists(this.file);
+  }
+
+  private List<Long> getExpectedIds(final boolean ascending) {
+    final Query query = new Query(TABLE_PATH) //
+      .addOrderBy("category", ascending) //
+      .addOrderBy("id", ascending);
+    final List<Long> ids = new ArrayList<>();
+    try (
+      RecordReader reader = this.recordStore.getRecords(query)) {
+      for (final Record record : reader) {
+        ids.add(record.getLong("id"));
+      }
+    }
+    return ids;
+  }
+
+  private List<Long> getPageIds(final PostgreSQLJdbcQueryResultPager pager,
+    final int pageNumber) {
+    pager.setPageNumber(pageNumber);
+    final List<Long> ids = new ArrayList<>();
+    for (final Record record : pager.getList()) {
+      ids.add(record.getLong("id"));
+    }
+    return ids;
+  }
+
+  private PostgreSQLJdbcQueryResultPager newPager(final boolean ascending) {
+    final Query query = new Query(TABLE_PATH).addOrderBy("category", ascending);
+    final PostgreSQLJdbcQueryResultPager pager = new PostgreSQLJdbcQueryResultPager(
+      this.recordStore, Collections.emptyMap(), query);
+    pager.setPageSize(PAGE_SIZE);
+    return pager;
+  }
+
+  @Before
+  public void open() throws IOException {
+    this.file = Files.createTempFile("keyset", ".gpkg");
+    Files.delete(this.file);
+    this.recordStore = GeoPackage.createRecordStore(this.file);
+
+    final RecordDefinitionBuilder builder = new RecordDefinitionBuilder(TABLE_PATH) //
+      .addField("id", DataTypes.LONG, true) //
+      .addField("category", DataTypes.STRING, 10, true);
+    builder.setIdFieldName("id");
+    this.recordStore.getRecordDefinition(builder.getRecordDefinition());
+    for (int i = 1; i <= RECORD_COUNT; i++) {
+      // Each category has 13 or 14 records, so the runs span page boundaries
+      this.recordStore.insertRecord(TABLE_PATH, (long)i, "C" + i % 7);
+    }
+  }
+
+  private void assertPages(final boolean ascending) {
+    final List<Long> expected = getExpectedIds(ascending);
+    Assert.assertEquals(RECORD_COUNT, expected.size());
+    try (
+      PostgreSQLJdbcQueryResultPager pager = newPager(ascending)) {
+      final int pageCount = pager.getNumPages();
+      Assert.assertEquals((RECORD_COUNT + PAGE_SIZE - 1) / PAGE_SIZE, pageCount);
+      final List<Long> actual = new ArrayList<>();
+      for (int pageNumber = 1; pageNumber <= pageCount; pageNumber++) {
+        final List<Long> pageIds = getPageIds(pager, pageNumber);
+        Assert.assertEquals("page " + pageNumber,
+          expected.subList((pageNumber - 1) * PAGE_SIZE,
+            Math.min(RECORD_COUNT, pageNumber * PAGE_SIZE)),
+          pageIds);
+        actual.addAll(pageIds);
+      }
+      Assert.assertTrue("keyset paging", pager.isKeysetPaging());
+      Assert.assertEquals(expected, actual);
+
+      // Pages read again use the cached key of the page before
+      Assert.assertEquals(expected.subList(30, 40), getPageIds(pager, 4));
+    }
+  }
+
+  @Test
+  public void testAscending() {
+    assertPages(true);
+  }
+
+  @Test
+  public void testDescending() {
+    assertPages(false);
+  }
+
+  /**
+   * Pages read out of order use an offset from the nearest page before with a
+   * cached key.
+   */
+  @Test
+  public void testPageJump() {
+    final List<Long> expected = getExpectedIds(true);
+    try (
+      PostgreSQLJdbcQueryResultPager pager = newPager(true)) {
+      Assert.assertEquals(expected.subList(60, 70), getPageIds(pager, 7));
+      Assert.assertEquals(expected.subList(20, 30), getPageIds(pager, 3));
+      Assert.assertEquals(expected.subList(80, 90), getPageIds(pager, 9));
+      Assert.assertEquals(expected.subList(90, RECORD_COUNT), getPageIds(pager, 10));
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package com.revolsys.core.test.record.schema.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jeometry.common.data.identifier.Identifier;
+import org.jeometry.common.data.type.DataTypes;
+import org.jeometry.common.io.PathName;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.revolsys.geopackage.GeoPackage;
+import com.revolsys.geopackage.GeoPackageRecordStore;
+import com.revolsys.record.Record;
+import com.revolsys.record.query.Query;
+import com.revolsys.record.schema.AbstractTableRecordStore;
+import com.revolsys.record.schema.RecordDefinition;
+import com.revolsys.record.schema.RecordDefinitionBuilder;
+import com.revolsys.record.schema.RecordStore;
+import com.revolsys.record.schema.TableRecordStoreConnection;
+import com.revolsys.transaction.Transaction;
+import com.revolsys.transaction.TransactionOptions;
+
+public class TableRecordStoreWriteBehindTest {
+
+  private static final PathName TABLE_PATH = PathName.newPathName("/WRITE_BEHIND");
+
+  private TableRecordStoreConnection connection;
+
+  private Path file;
+
+  private Identifier id1;
+
+  private Identifier id2;
+
+  private GeoPackageRecordStore recordStore;
+
+  private AbstractTableRecordStore tableRecordStore;
+
+  private void assertName(final String expected, final Identifier id) {
+    final Record record = this.recordStore.getRecord(TABLE_PATH, id);
+    Assert.assertEquals("name", expected, record.getString("name"));
+  }
+
+  @After
+  public void close() throws IOException {
+    if (this.recordStore != null) {
+      this.recordStore.close();
+    }
+    Files.deleteIfExists(this.file);
+  }
+
+  private int getCount(final String name) {
+    final Query query = Query.equal(this.tableRecordStore, "name", name);
+    return this.recordStore.getRecordCount(query);
+  }
+
+  @Before
+  public void open() throws IOException {
+    this.file = Files.createTempFile("writeBehind", ".gpkg");
+    Files.delete(this.file);
+    this.recordStore = GeoPackage.createRecordStore(this.file);
+
+    final RecordDefinitionBuilder builder = new RecordDefinitionBuilder(TABLE_PATH) //
+      .addField("id", DataTypes.LONG, true) //
+      .addField("name", DataTypes.STRING, 20);
+    builder.setIdFieldName("id");
+    final RecordDefinition recordDefinition = this.recordStore
+      .getRecordDefinition(builder.getRecordDefinition());
+    this.id1 = this.recordStore.insertRecord(recordDefinition.getPathName(), 1L, "a")
+      .getIdentifier();
+    this.id2 = this.recordStore.insertRecord(recordDefinition.getPathName(), 2L, "a")
+      .getIdentifier();
+    this.recordStore.addRecordCache(TABLE_PATH, 100, 0);
+
+    this.tableRecordStore = new AbstractTableRecordStore(TABLE_PATH, this.recordStore);
+    this.tableRecordStore.setWriteBehind(true);
+    this.connection = new TableRecordStoreConnection() {
+      @Override
+      public RecordStore getRecordStore() {
+        return TableRecordStoreWriteBehindTest.this.recordStore;
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public <TRS extends AbstractTableRecordStore> TRS getTableRecordStore(
+        final CharSequence pathName) {
+        return (TRS)TableRecordStoreWriteBehindTest.this.tableRecordStore;
+      }
+    };
+    // Load the records into the record cache
+    assertName("a", this.id1);
+    assertName("a", this.id2);
+  }
+
+  private void setName(final Identifier id, final String name) {
+    this.tableRecordStore.updateRecord(this.connection, id,
+      record -> record.setValue("name", name));
+  }
+
+  /**
+   * A query on the table writes the pending updates first.
+   */
+  @Test
+  public void testFlushBeforeQuery() {
+    try (
+      Transaction transaction = this.recordStore.newTransaction(TransactionOptions.REQUIRED)) {
+      setName(this.id1, "b");
+      setName(this.id2, "b");
+      Assert.assertEquals("pending updates", 2, getCount("b"));
+    }
+    Assert.assertEquals("committed", 2, getCount("b"));
+  }
+
+  /**
+   * A record updated in the transaction isn't returned from the record cache,
+   * either while the update is pending or after it is written.
+   */
+  @Test
+  public void testReadAfterWrite() {
+    try (
+      Transaction transaction = this.recordStore.newTransaction(TransactionOptions.REQUIRED)) {
+      setName(this.id1, "b");
+      final Object id = this.id1.getValue(0);
+      Assert.assertEquals("pending record", "b",
+        this.tableRecordStore.getRecordById(this.connection, id).getString("name"));
+      assertName("b", this.id1);
+      assertName("a", this.id2);
+
+      setName(this.id1, "c");
+      assertName("c", this.id1);
+    }
+    assertName("c", this.id1);
+    assertName("c", this.id1);
+    assertName("a", this.id2);
+  }
+
+  /**
+   * Pending and written updates are discarded on rollback and the record cache
+   * doesn't keep the rolled back values.
+   */
+  @Test
+  public void testRollback() {
+    try (
+      Transaction transaction = this.recordStore.newTransaction(TransactionOptions.REQUIRED)) {
+      setName(this.id1, "b");
+      assertName("b", this.id1);
+      setName(this.id2, "b");
+      transaction.setRollbackOnly();
+    }
+    assertName("a", this.id1);
+    assertName("a", this.id2);
+    Assert.assertEquals(0, getCount("b"));
+  }
+}